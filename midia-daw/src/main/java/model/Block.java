@@ -1,6 +1,8 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 
 import org.json.JSONArray;
@@ -10,6 +12,7 @@ import model.editing.Copyable;
 import model.editing.Pastable;
 import model.event.Event;
 import model.event.EventLog;
+import model.event.LogLevel;
 import persistance.Writable;
 
 /**
@@ -18,9 +21,20 @@ import persistance.Writable;
  */
 public class Block implements Writable, Copyable, Pastable, Cloneable {
 
+    // Event templates matching Note.toString() and info(), formatted only if the event is read
+    private static final String NOTE_TEMPLATE = "pitch: %d, velocity: %d, startTick: %d, durationTicks: %d";
+    private static final String INFO_TEMPLATE = "Start tick: %d, duration: %d, current note count: %d";
+
     private ArrayList<Note> notes;
     private long startTick;
     private long durationTicks;
+    private MidiTrack midiTrack; // the track this block currently belongs to, if any
+    private long version;
+    private long lastNoteEndTick; // block-relative end of the latest ending note, 0 if there are no notes
+    private volatile BlockEvents compiledEvents; // null until needed, reset whenever the notes change
+    private HashMap<Integer, TickIntervalIndex<Note>> notesByPitch; // null until the first hit test
+    private TickIntervalIndex<Note> notesByStartTick; // null until the first range query
+    private long nextNoteSequence; // numbers the notes in list order for the indexes
 
     /**
      * Constructs an empty block.
@@ -34,6 +48,7 @@ public class Block implements Writable, Copyable, Pastable, Cloneable {
         this.notes = new ArrayList<>();
         this.startTick = startTick;
         this.durationTicks = durationTicks;
+        this.version = ModelVersion.next();
     }
     
     /**
@@ -47,18 +62,68 @@ public class Block implements Writable, Copyable, Pastable, Cloneable {
      */
     public int addNote(Note note) {
         if (note.getStartTick() + note.getDurationTicks() > durationTicks) {
-            Event e = new Event(String.format("Unable to add note (out of bounds): %s to Block: %s", note, info()));
-            EventLog.getInstance().logEvent(e);
+            logNoteEvent(LogLevel.WARN, "Unable to add note (out of bounds): " + NOTE_TEMPLATE + " to Block: ", note);
             return -1;
         }
 
-        notes.add(note);
-        Event e = new Event(String.format("Added note: %s to Block: %s", note, info()));
-        EventLog.getInstance().logEvent(e);
+        long oldLastNoteEndTick = getLastNoteEndTickTimeline();
+        insertNote(note);
+        notesModified(oldLastNoteEndTick);
+        logNoteEvent(LogLevel.DEBUG, "Added note: " + NOTE_TEMPLATE + " to Block: ", note);
 
         return notes.size() - 1;
     }
 
+    /**
+     * Adds all the given notes to this block, in order, as a single modification.
+     * <p>
+     * Notes extending beyond this block's duration are rejected, as with {@link #addNote(Note)}. Intended for
+     * bulk loading: a single event is logged for the whole operation instead of one per note.
+     *
+     * @param newNotes the notes to add
+     * @return the number of notes added
+     */
+    public int addNotes(Collection<Note> newNotes) {
+        long oldLastNoteEndTick = getLastNoteEndTickTimeline();
+        notes.ensureCapacity(notes.size() + newNotes.size());
+        int added = 0;
+
+        for (Note note : newNotes) {
+            if (note.getStartTick() + note.getDurationTicks() > durationTicks) {
+                continue;
+            }
+
+            insertNote(note);
+            added++;
+        }
+
+        notesModified(oldLastNoteEndTick);
+        LogLevel level = added < newNotes.size() ? LogLevel.WARN : LogLevel.DEBUG;
+        EventLog log = EventLog.getInstance();
+        if (log.isLoggable(level)) {
+            log.logEvent(new Event(level, "Added %d notes (%d out of bounds) to Block: " + INFO_TEMPLATE,
+                    added, newNotes.size() - added, startTick, durationTicks, notes.size()));
+        }
+
+        return added;
+    }
+
+    // MODIFIES: this, note
+    // EFFECTS: appends the note to this block, adds it to the built indexes and extends the last note end tick
+    private void insertNote(Note note) {
+        long sequence = Math.max(nextNoteSequence, notes.size());
+        nextNoteSequence = sequence + 1;
+        notes.add(note);
+        note.setBlock(this);
+        if (notesByPitch != null) {
+            indexNote(note, sequence);
+        }
+        if (notesByStartTick != null) {
+            notesByStartTick.add(note, sequence);
+        }
+        lastNoteEndTick = Math.max(lastNoteEndTick, note.getStartTick() + note.getDurationTicks());
+    }
+
     /**
      * Removes and returns the note at the given index.
      * <p>
@@ -68,14 +133,44 @@ public class Block implements Writable, Copyable, Pastable, Cloneable {
      * @return the removed note
      */
     public Note removeNote(int index) {
+        long oldLastNoteEndTick = getLastNoteEndTickTimeline();
         Note n = notes.remove(index);
+        n.setBlock(null);
+        if (notesByPitch != null) {
+            notesByPitch.get(n.getPitch()).remove(n, n.getStartTick());
+        }
+        if (notesByStartTick != null) {
+            notesByStartTick.remove(n, n.getStartTick());
+        }
+        if (n.getStartTick() + n.getDurationTicks() == lastNoteEndTick) {
+            recomputeLastNoteEndTick();
+        }
+        notesModified(oldLastNoteEndTick);
 
-        Event e = new Event(String.format("Removed note: %s from Block: %s", n, info()));
-        EventLog.getInstance().logEvent(e);
+        logNoteEvent(LogLevel.DEBUG, "Removed note: " + NOTE_TEMPLATE + " from Block: ", n);
 
         return n;
     }
 
+    /**
+     * Removes the given note from this block, if present.
+     * <p>
+     * Takes time linear in the number of notes, as the note is looked up and removed in the list; only the
+     * indexes are updated in logarithmic time.
+     *
+     * @param note the note to remove
+     * @return true if the note was in this block and has been removed
+     */
+    public boolean removeNote(Note note) {
+        int index = notes.indexOf(note);
+        if (index == -1) {
+            return false;
+        }
+
+        removeNote(index);
+        return true;
+    }
+
     /**
      * Sets the start tick of the block, changing its position on the timeline.
      * <p>
@@ -84,15 +179,218 @@ public class Block implements Writable, Copyable, Pastable, Cloneable {
      * @param newStartTick the new start tick (>= 0)
      */
     public void setStartTick(long newStartTick) {
+        long oldStartTick = startTick;
+        long oldLastNoteEndTick = getLastNoteEndTickTimeline();
         startTick = newStartTick;
+        if (midiTrack != null) {
+            midiTrack.blockBoundsChanged(this, oldStartTick, durationTicks);
+        }
+        markModified(oldLastNoteEndTick);
     }
 
     public void setDurationTicks(long durationTicks) {
+        long oldDurationTicks = this.durationTicks;
         this.durationTicks = durationTicks;
+        if (midiTrack != null) {
+            midiTrack.blockBoundsChanged(this, startTick, oldDurationTicks);
+        }
+        markModified(getLastNoteEndTickTimeline());
+    }
+
+    /**
+     * Called by a note of this block after one of its attributes was edited in place.
+     *
+     * @param note             the edited note
+     * @param oldPitch         the pitch of the note before the edit
+     * @param oldStartTick     the start tick of the note before the edit
+     * @param oldDurationTicks the duration of the note before the edit
+     */
+    void noteChanged(Note note, int oldPitch, long oldStartTick, long oldDurationTicks) {
+        long oldLastNoteEndTick = getLastNoteEndTickTimeline();
+        long noteEndTick = note.getStartTick() + note.getDurationTicks();
+
+        if (noteEndTick >= lastNoteEndTick) {
+            lastNoteEndTick = noteEndTick;
+        } else if (oldStartTick + oldDurationTicks == lastNoteEndTick) {
+            recomputeLastNoteEndTick();
+        }
+
+        reindexNote(note, oldPitch, oldStartTick);
+        notesModified(oldLastNoteEndTick);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: moves the note within the built indexes from its old pitch and start tick to its current ones
+    private void reindexNote(Note note, int oldPitch, long oldStartTick) {
+        if (notesByPitch != null) {
+            if (oldPitch != note.getPitch()) {
+                indexNote(note, notesByPitch.get(oldPitch).remove(note, oldStartTick));
+            } else {
+                notesByPitch.get(oldPitch).update(note, oldStartTick);
+            }
+        }
+        if (notesByStartTick != null) {
+            notesByStartTick.update(note, oldStartTick);
+        }
+    }
+
+    /**
+     * Returns the note of the given pitch that sounds at the given block-relative tick (both ends inclusive).
+     * If several notes match, the one added first is returned, as a scan of {@link #getNotes()} would.
+     * <p>
+     * The first call indexes the notes by pitch and start tick; the index is then kept up to date, making
+     * subsequent lookups logarithmic.
+     *
+     * @param tick  the tick relative to the start of this block
+     * @param pitch the pitch of the note
+     * @return the note at the given position, or null if there is none
+     */
+    public Note getNoteAt(long tick, int pitch) {
+        if (notesByPitch == null) {
+            notesByPitch = new HashMap<>();
+            for (int i = 0; i < notes.size(); i++) {
+                indexNote(notes.get(i), i);
+            }
+        }
+
+        TickIntervalIndex<Note> pitchIndex = notesByPitch.get(pitch);
+        return pitchIndex == null ? null : pitchIndex.findCovering(tick);
+    }
+
+    // EFFECTS: logs an event about the note and this block if the level is loggable, capturing their current
+    //          values; prefix is a template for the note's values that ends before the block's info
+    private void logNoteEvent(LogLevel level, String prefix, Note note) {
+        EventLog log = EventLog.getInstance();
+        if (log.isLoggable(level)) {
+            log.logEvent(new Event(level, prefix + INFO_TEMPLATE, note.getPitch(), note.getVelocity(),
+                    note.getStartTick(), note.getDurationTicks(), startTick, durationTicks, notes.size()));
+        }
+    }
+
+    private void indexNote(Note note, long sequence) {
+        notesByPitch.computeIfAbsent(note.getPitch(),
+                k -> new TickIntervalIndex<>(Note::getStartTick, Note::getDurationTicks)).add(note, sequence);
+    }
+
+    /**
+     * Rescans all notes for the latest note end. Only needed when the note ending last was removed or shortened.
+     */
+    private void recomputeLastNoteEndTick() {
+        lastNoteEndTick = 0;
+        for (Note note : notes) {
+            lastNoteEndTick = Math.max(lastNoteEndTick, note.getStartTick() + note.getDurationTicks());
+        }
+    }
+
+    /**
+     * Returns the tick at which the last note of this block ends, relative to the timeline.
+     *
+     * @return the end tick of the latest ending note, or 0 if the block has no notes
+     */
+    public long getLastNoteEndTickTimeline() {
+        return notes.isEmpty() ? 0 : startTick + lastNoteEndTick;
+    }
+
+    /**
+     * Drops the compiled events and takes a new modification stamp.
+     *
+     * @param oldLastNoteEndTick the value of {@link #getLastNoteEndTickTimeline()} before the change
+     */
+    private void notesModified(long oldLastNoteEndTick) {
+        compiledEvents = null;
+        markModified(oldLastNoteEndTick);
+    }
+
+    /**
+     * Returns the NOTE_ON/NOTE_OFF events of this block's notes, relative to the block's start tick.
+     * <p>
+     * The events are compiled on first use and reused until a note of this block is added, removed or edited.
+     * Moving or resizing the block does not invalidate them.
+     *
+     * @return the compiled events of this block
+     */
+    public BlockEvents getCompiledEvents() {
+        BlockEvents events = compiledEvents;
+        if (events == null) {
+            events = BlockEvents.compile(notes);
+            compiledEvents = events;
+        }
+        return events;
+    }
+
+    /**
+     * Takes a new modification stamp and propagates the change to the owning track.
+     *
+     * @param oldLastNoteEndTick the value of {@link #getLastNoteEndTickTimeline()} before the change
+     */
+    private void markModified(long oldLastNoteEndTick) {
+        version = ModelVersion.next();
+        if (midiTrack != null) {
+            midiTrack.blockChanged(this, oldLastNoteEndTick);
+        }
+    }
+
+    /**
+     * Returns the modification stamp of this block.
+     * <p>
+     * The stamp changes whenever the block is moved, resized, or any of its notes are added, removed or edited.
+     *
+     * @return the current modification stamp
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    MidiTrack getMidiTrack() {
+        return midiTrack;
+    }
+
+    void setMidiTrack(MidiTrack midiTrack) {
+        this.midiTrack = midiTrack;
+    }
+
+    /**
+     * Visits every note of this block with its start tick adjusted relative to the timeline (not the block).
+     * Nothing is allocated per note.
+     *
+     * @param visitor the visitor called for each note, in block order
+     */
+    public void forEachNoteTimeline(NoteVisitor visitor) {
+        for (int i = 0; i < notes.size(); i++) {
+            Note note = notes.get(i);
+            visitor.visit(startTick + note.getStartTick(), note.getDurationTicks(), note.getPitch(),
+                    note.getVelocity());
+        }
+    }
+
+    /**
+     * Visits the notes sounding anywhere in the timeline tick range {@code [fromTick, toTick]}, in start tick
+     * order, with their start ticks adjusted relative to the timeline. Nothing is allocated per note.
+     * <p>
+     * The first call indexes the notes by start tick; the index is then kept up to date, making subsequent
+     * queries logarithmic plus the number of notes visited.
+     *
+     * @param fromTick the first timeline tick of the range
+     * @param toTick   the last timeline tick of the range
+     * @param visitor  the visitor called for each note in the range
+     */
+    public void forEachNoteTimelineInRange(long fromTick, long toTick, NoteVisitor visitor) {
+        if (notesByStartTick == null) {
+            notesByStartTick = new TickIntervalIndex<>(Note::getStartTick, Note::getDurationTicks);
+            for (int i = 0; i < notes.size(); i++) {
+                notesByStartTick.add(notes.get(i), i);
+            }
+        }
+
+        notesByStartTick.forEachOverlapping(fromTick - startTick, toTick - startTick, note ->
+                visitor.visit(startTick + note.getStartTick(), note.getDurationTicks(), note.getPitch(),
+                        note.getVelocity()));
     }
 
     /**
      * Returns the notes with their start times adjusted relative to the timeline (not the block).
+     * <p>
+     * Every call clones all notes; prefer {@link #forEachNoteTimeline(NoteVisitor)} when only reading them.
      *
      * @return a new list of notes adjusted to absolute timeline ticks
      */
@@ -125,7 +423,11 @@ public class Block implements Writable, Copyable, Pastable, Cloneable {
     public Block clone() {
         try {
             Block cloneBlock = (Block) super.clone();
+            cloneBlock.midiTrack = null;
             cloneBlock.notes = new ArrayList<>();
+            cloneBlock.lastNoteEndTick = 0;
+            cloneBlock.notesByPitch = null;
+            cloneBlock.notesByStartTick = null;
             cloneBlock.setDurationTicks(this.durationTicks);
             cloneBlock.setStartTick(this.startTick);
             for (Note note : notes) {
@@ -0,0 +1,157 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+/**
+ * The compiled, immutable NOTE_ON/NOTE_OFF events of a single Block.
+ * <p>
+ * Events are kept in tick order with ticks relative to the start of the block. Each message is packed into
+ * an int as {@code command << 16 | data1 << 8 | data2}; the channel is left out so the same events can be
+ * emitted for any track. Ties keep the order the notes had in the block, with each note's NOTE_ON before
+ * its NOTE_OFF, matching what adding the notes to a {@link Track} one by one would produce.
+ */
+public final class BlockEvents {
+
+    private static final int INDEX_BITS = 24;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    static final BlockEvents EMPTY = new BlockEvents(new long[0], new int[0]);
+
+    private final long[] ticks;
+    private final int[] messages;
+
+    private BlockEvents(long[] ticks, int[] messages) {
+        this.ticks = ticks;
+        this.messages = messages;
+    }
+
+    /**
+     * Compiles the given notes into their NOTE_ON/NOTE_OFF events.
+     * <p>
+     * Preconditions: fewer than 2^23 notes, note ticks below 2^39
+     *
+     * @param notes the notes of a block, with block-relative ticks
+     * @return the compiled events
+     * @throws RuntimeException if a note's pitch or velocity is outside the MIDI range [0, 127]
+     */
+    static BlockEvents compile(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return EMPTY;
+        }
+
+        int eventCount = notes.size() * 2;
+        int[] unsortedMessages = new int[eventCount];
+        long[] sortKeys = new long[eventCount];
+
+        for (int i = 0; i < notes.size(); i++) {
+            Note note = notes.get(i);
+            if (!isMidiDataByte(note.getPitch()) || !isMidiDataByte(note.getVelocity())) {
+                throw new RuntimeException("Failed to apply track", new InvalidMidiDataException(
+                        String.format("Note outside of the MIDI range: %s", note)));
+            }
+
+            int on = 2 * i;
+            int off = on + 1;
+
+            unsortedMessages[on] = pack(ShortMessage.NOTE_ON, note.getPitch(), note.getVelocity());
+            unsortedMessages[off] = pack(ShortMessage.NOTE_OFF, note.getPitch(), 0);
+            // The event index in the low bits makes the sort stable
+            sortKeys[on] = note.getStartTick() << INDEX_BITS | on;
+            sortKeys[off] = (note.getStartTick() + note.getDurationTicks()) << INDEX_BITS | off;
+        }
+
+        return sorted(sortKeys, unsortedMessages);
+    }
+
+    // MODIFIES: sortKeys
+    // EFFECTS: sorts the events by their keys and returns them, unpacking each key into the tick and the index of
+    //          the event's message
+    private static BlockEvents sorted(long[] sortKeys, int[] unsortedMessages) {
+        Arrays.sort(sortKeys);
+
+        long[] ticks = new long[sortKeys.length];
+        int[] messages = new int[sortKeys.length];
+        for (int i = 0; i < sortKeys.length; i++) {
+            ticks[i] = sortKeys[i] >> INDEX_BITS;
+            messages[i] = unsortedMessages[(int) (sortKeys[i] & INDEX_MASK)];
+        }
+
+        return new BlockEvents(ticks, messages);
+    }
+
+    private static boolean isMidiDataByte(int value) {
+        return value >= 0 && value <= 127;
+    }
+
+    private static int pack(int command, int data1, int data2) {
+        return command << 16 | data1 << 8 | data2;
+    }
+
+    /**
+     * Adds these events to the given track.
+     *
+     * @param track         the track to add the events to
+     * @param tickOffset    the tick added to every event, i.e. the block's start tick on the timeline
+     * @param channel       the MIDI channel of the events
+     * @param data1Override the data1 byte to use instead of the pitch (percussive tracks), or -1 to keep the pitch
+     * @throws InvalidMidiDataException if a message cannot be built from the stored data
+     */
+    public void emit(Track track, long tickOffset, int channel, int data1Override) throws InvalidMidiDataException {
+        for (int i = 0; i < messages.length; i++) {
+            int data1 = data1Override == -1 ? getData1(i) : data1Override;
+            ShortMessage message = new ShortMessage(getCommand(i), channel, data1, getData2(i));
+            track.add(new MidiEvent(message, ticks[i] + tickOffset));
+        }
+    }
+
+    /**
+     * Returns the number of events.
+     *
+     * @return the number of events, two per note
+     */
+    public int size() {
+        return messages.length;
+    }
+
+    /**
+     * Returns the index of the first event at or after the given tick, in logarithmic time.
+     *
+     * @param tick the tick relative to the start of the block
+     * @return the index of the first event with a tick >= the given tick, or size() if there is none
+     */
+    public int indexOfFirstAtOrAfter(long tick) {
+        int low = 0;
+        int high = ticks.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ticks[mid] < tick) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public long getTick(int index) {
+        return ticks[index];
+    }
+
+    public int getCommand(int index) {
+        return messages[index] >>> 16;
+    }
+
+    public int getData1(int index) {
+        return (messages[index] >>> 8) & 0xFF;
+    }
+
+    public int getData2(int index) {
+        return messages[index] & 0xFF;
+    }
+}
@@ -0,0 +1,153 @@
+package model;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.Timer;
+
+/**
+ * A PropertyChangeSupport that delivers high-frequency properties at most once per display frame.
+ * <p>
+ * Changes to {@code tickPosition}, {@code horizontalScaleFactor}, {@code bpm} and {@code tempoMap} are held back and
+ * merged, keeping the first old value and the latest new value of each property, then delivered together on the EDT
+ * when the frame ends. All other properties are delivered immediately on the firing thread, as with
+ * PropertyChangeSupport, after any held back changes are flushed, so listeners see changes in the order they were
+ * fired.
+ * Fired and delivered events are counted so the savings can be inspected.
+ */
+public class CoalescingPropertyChangeSupport extends PropertyChangeSupport {
+
+    public static final int FRAME_DELAY_MS = 16;
+
+    private static final Set<String> COALESCED_PROPERTIES = Set.of("tickPosition", "horizontalScaleFactor", "bpm",
+            "tempoMap");
+
+    private final transient Object sourceBean;
+    private final transient Map<String, Object[]> pending; // property name -> { oldValue, newValue }
+    private final transient Timer flushTimer;
+    private final transient AtomicLong firedCount;
+    private final transient AtomicLong deliveredCount;
+
+    /**
+     * Constructs a coalescing PropertyChangeSupport.
+     *
+     * @param sourceBean the bean to be given as the source of every event
+     */
+    public CoalescingPropertyChangeSupport(Object sourceBean) {
+        super(sourceBean);
+        this.sourceBean = sourceBean;
+        pending = new LinkedHashMap<>();
+        firedCount = new AtomicLong();
+        deliveredCount = new AtomicLong();
+
+        flushTimer = new Timer(FRAME_DELAY_MS, e -> flush());
+        flushTimer.setRepeats(false);
+    }
+
+    /**
+     * Delivers the change immediately, or holds it until the end of the frame if the property is coalesced.
+     * No event is allocated for a coalesced property until it is delivered.
+     */
+    @Override
+    public void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+        if (propertyName == null || !COALESCED_PROPERTIES.contains(propertyName)) {
+            super.firePropertyChange(propertyName, oldValue, newValue);
+            return;
+        }
+
+        if (isUnchanged(oldValue, newValue)) {
+            return;
+        }
+
+        firedCount.incrementAndGet();
+        synchronized (pending) {
+            Object[] values = pending.get(propertyName);
+            if (values == null) {
+                pending.put(propertyName, new Object[] { oldValue, newValue });
+            } else {
+                values[1] = newValue;
+            }
+
+            if (!flushTimer.isRunning()) {
+                flushTimer.start();
+            }
+        }
+    }
+
+    /**
+     * Delivers the event immediately, unless its old and new values are equal and non-null.
+     * Held back changes are flushed first, since they were fired before this event.
+     */
+    @Override
+    public void firePropertyChange(PropertyChangeEvent event) {
+        if (isUnchanged(event.getOldValue(), event.getNewValue())) {
+            return;
+        }
+
+        firedCount.incrementAndGet();
+        flush();
+        deliver(event);
+    }
+
+    /**
+     * Delivers all held back changes now, in the order their properties were first fired.
+     * Changes that ended where they started are dropped.
+     */
+    public void flush() {
+        ArrayList<PropertyChangeEvent> events = new ArrayList<>();
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            flushTimer.stop();
+            for (Map.Entry<String, Object[]> entry : pending.entrySet()) {
+                Object[] values = entry.getValue();
+                if (!isUnchanged(values[0], values[1])) {
+                    events.add(new PropertyChangeEvent(sourceBean, entry.getKey(), values[0], values[1]));
+                }
+            }
+            pending.clear();
+        }
+
+        for (PropertyChangeEvent event : events) {
+            deliver(event);
+        }
+    }
+
+    private void deliver(PropertyChangeEvent event) {
+        deliveredCount.incrementAndGet();
+        super.firePropertyChange(event);
+    }
+
+    private static boolean isUnchanged(Object oldValue, Object newValue) {
+        return oldValue != null && newValue != null && oldValue.equals(newValue);
+    }
+
+    /**
+     * Returns the number of changes fired since the last reset, counting every coalesced change.
+     */
+    public long getFiredCount() {
+        return firedCount.get();
+    }
+
+    /**
+     * Returns the number of events delivered to listeners since the last reset.
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * Resets the fired and delivered counters.
+     */
+    public void resetStatistics() {
+        firedCount.set(0);
+        deliveredCount.set(0);
+    }
+}
@@ -0,0 +1,347 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiDeviceReceiver;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+
+import model.event.Event;
+import model.event.EventLog;
+import model.event.LogLevel;
+
+/**
+ * Plays a {@link PlaybackSchedule} by sending its events straight to a {@link Receiver} from a dedicated
+ * high-priority scheduler thread.
+ * <p>
+ * The scheduler wakes every quarter of the lookahead window and sends every event due before the end of the
+ * window, timestamped with the device time it is due at, so the device rather than the thread's wake-up
+ * jitter decides when it sounds. Devices without a clock are sent each event once it is due instead.
+ * <p>
+ * Starting only asks the player for its schedule, which reuses the compiled events of unchanged tracks, so
+ * start latency does not grow with the size of the project. Edits made during playback are picked up by
+ * {@link #refresh()} and heard once the events already sent have played; notes of a changed track that are
+ * sounding at that point are released. A new tempo map likewise applies after the events already sent.
+ * <p>
+ * Ticks and device time are converted through the {@link TempoMap}, relative to the tick and time of the last
+ * start or tempo map change.
+ * <p>
+ * Events the receiver rejects are skipped; only the first rejection of each engine is logged, so a failing
+ * device cannot flood the EventLog from the scheduler thread.
+ */
+public class LookaheadEngine implements PlaybackEngine {
+
+    public static final int DEFAULT_LOOKAHEAD_MS = 50;
+
+    private static final int CHANNELS = 16;
+    private static final int ALL_NOTES_OFF = 123;
+    private static final double TICK_EPSILON = 1e-6;
+
+    private final Supplier<PlaybackSchedule> scheduleSource;
+    private final Runnable endListener;
+    private final Receiver receiver;
+    private final LongSupplier clockMicros;
+    private final boolean timestamped;
+    private final long lookaheadMicros;
+    private final MidiDevice device;
+
+    // Guarded by this
+    private PlaybackSchedule schedule;
+    private Thread schedulerThread;
+    private long segmentTick;   // the tick playing at segmentMicros; the tempo map is unchanged since then
+    private long segmentMicros;
+    private TempoMap tempoMap;
+    private double segmentMapMicros; // the time segmentTick plays at in the tempo map
+    private long cursorTick;    // every event before this tick has been sent
+    private long stoppedTick;
+    private final int[][] soundingNotes;
+    private boolean sendFailureLogged;
+
+    /**
+     * Opens the default MIDI receiver, the same one the JDK sequencer plays to.
+     *
+     * @param scheduleSource returns the player's current schedule; called on start and on refresh
+     * @param endListener    called on the scheduler thread once playback reaches the end of the schedule
+     * @param lookaheadMs    how far ahead of the playing tick events are sent, in milliseconds (> 0)
+     * @return the engine
+     * @throws MidiUnavailableException if no receiver is available
+     */
+    public static LookaheadEngine open(Supplier<PlaybackSchedule> scheduleSource, Runnable endListener,
+                                       int lookaheadMs) throws MidiUnavailableException {
+        Receiver receiver = MidiSystem.getReceiver();
+        MidiDevice device = receiver instanceof MidiDeviceReceiver deviceReceiver
+                ? deviceReceiver.getMidiDevice() : null;
+
+        if (device != null && device.getMicrosecondPosition() != -1) {
+            return new LookaheadEngine(scheduleSource, endListener, receiver, device::getMicrosecondPosition,
+                    true, lookaheadMs, device);
+        }
+        return new LookaheadEngine(scheduleSource, endListener, receiver,
+                () -> TimeUnit.NANOSECONDS.toMicros(System.nanoTime()), false, lookaheadMs, device);
+    }
+
+    /**
+     * Creates an engine sending to the given receiver.
+     *
+     * @param scheduleSource returns the player's current schedule; called on start and on refresh
+     * @param endListener    called on the scheduler thread once playback reaches the end of the schedule
+     * @param receiver       receives the events
+     * @param clockMicros    the time in microseconds, in the receiver's time base if timestamped
+     * @param timestamped    whether the receiver honours timestamps; if not, events are sent once due
+     * @param lookaheadMs    how far ahead of the playing tick events are sent, in milliseconds (> 0)
+     * @param device         the device closed along with the receiver, or null
+     */
+    LookaheadEngine(Supplier<PlaybackSchedule> scheduleSource, Runnable endListener, Receiver receiver,
+                    LongSupplier clockMicros, boolean timestamped, int lookaheadMs, MidiDevice device) {
+        this.scheduleSource = scheduleSource;
+        this.endListener = endListener;
+        this.receiver = receiver;
+        this.clockMicros = clockMicros;
+        this.timestamped = timestamped;
+        this.lookaheadMicros = TimeUnit.MILLISECONDS.toMicros(lookaheadMs);
+        this.device = device;
+        schedule = PlaybackSchedule.EMPTY;
+        tempoMap = new TempoMap(Player.DEFAULT_BPM);
+        soundingNotes = new int[CHANNELS][128];
+    }
+
+    /**
+     * Sends the setup messages of every part and starts a new scheduler thread.
+     */
+    @Override
+    public synchronized void start(long tickPosition, TempoMap tempoMap) throws InvalidMidiDataException {
+        stop();
+        schedule = scheduleSource.get();
+        this.tempoMap = tempoMap;
+        segmentTick = tickPosition;
+        segmentMicros = clockMicros.getAsLong();
+        segmentMapMicros = tempoMap.ticksToMicros(tickPosition);
+        cursorTick = tickPosition;
+
+        for (PlaybackSchedule.Part part : schedule.getParts()) {
+            sendSetupEvents(part);
+        }
+
+        schedulerThread = new Thread(this::runScheduler, "playback-scheduler");
+        schedulerThread.setPriority(Thread.MAX_PRIORITY);
+        schedulerThread.setDaemon(true);
+        schedulerThread.start();
+    }
+
+    /**
+     * Stops the scheduler thread and silences every channel, both now and after the events already sent.
+     */
+    @Override
+    public synchronized void stop() {
+        if (schedulerThread == null) {
+            return;
+        }
+        stoppedTick = Math.max(segmentTick, tickAt(clockMicros.getAsLong()));
+        endPlayback();
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return schedulerThread != null;
+    }
+
+    @Override
+    public synchronized long getTickPosition() {
+        if (schedulerThread == null) {
+            return stoppedTick;
+        }
+        return Math.max(segmentTick, tickAt(clockMicros.getAsLong()));
+    }
+
+    @Override
+    public synchronized void setTempoMap(TempoMap tempoMap) {
+        if (schedulerThread != null) {
+            long now = clockMicros.getAsLong();
+            segmentTick = Math.max(segmentTick, tickAt(now));
+            segmentMicros = now;
+        }
+        this.tempoMap = tempoMap;
+        segmentMapMicros = tempoMap.ticksToMicros(segmentTick);
+    }
+
+    /**
+     * Replaces the schedule with the player's current one if it changed. Sends the setup messages of new parts
+     * and releases the sounding notes of channels whose parts changed.
+     */
+    @Override
+    public synchronized void refresh() {
+        if (schedulerThread == null) {
+            return;
+        }
+        PlaybackSchedule newSchedule = scheduleSource.get();
+        if (newSchedule == schedule) {
+            return;
+        }
+
+        boolean[] changedChannels = new boolean[CHANNELS];
+        List<PlaybackSchedule.Part> oldParts = schedule.getParts();
+        List<PlaybackSchedule.Part> newParts = newSchedule.getParts();
+        for (PlaybackSchedule.Part part : oldParts) {
+            if (!containsIdentical(newParts, part)) {
+                changedChannels[part.getChannel()] = true;
+            }
+        }
+        for (PlaybackSchedule.Part part : newParts) {
+            if (!containsIdentical(oldParts, part)) {
+                changedChannels[part.getChannel()] = true;
+                sendSetupEvents(part);
+            }
+        }
+
+        releaseSoundingNotes(changedChannels);
+        schedule = newSchedule;
+    }
+
+    @Override
+    public void close() {
+        stop();
+        receiver.close();
+        if (device != null) {
+            device.close();
+        }
+    }
+
+    // EFFECTS: sends due events until this thread is no longer the scheduler thread; calls the end listener
+    //          if playback reached the end of the schedule
+    private void runScheduler() {
+        long periodNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1000, lookaheadMicros / 4));
+        Thread self = Thread.currentThread();
+
+        while (true) {
+            synchronized (this) {
+                if (schedulerThread != self) {
+                    return;
+                }
+                if (dispatchDueEvents()) {
+                    break;
+                }
+            }
+            LockSupport.parkNanos(periodNanos);
+        }
+        endListener.run();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: sends every event before the end of the lookahead window; returns true and ends playback if the
+    //          end of the schedule has been played
+    private boolean dispatchDueEvents() {
+        long now = clockMicros.getAsLong();
+        long horizonTick = tickAt(timestamped ? now + lookaheadMicros : now) + 1;
+
+        if (horizonTick > cursorTick) {
+            schedule.forEachEvent(cursorTick, horizonTick, this::dispatch);
+            cursorTick = horizonTick;
+        }
+
+        long endTick = schedule.getEndTick();
+        if (cursorTick > endTick && tickAt(now) >= endTick) {
+            stoppedTick = Math.max(segmentTick, endTick);
+            endPlayback();
+            return true;
+        }
+        return false;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: sends one event of the schedule at the time it is due, tracking which notes are sounding
+    private void dispatch(long tick, int command, int channel, int data1, int data2) {
+        if (command == ShortMessage.NOTE_ON && data2 > 0) {
+            soundingNotes[channel][data1]++;
+        } else if (soundingNotes[channel][data1] > 0
+                && (command == ShortMessage.NOTE_OFF || command == ShortMessage.NOTE_ON)) {
+            soundingNotes[channel][data1]--;
+        }
+        send(timestamped ? microsAt(tick) : -1, command, channel, data1, data2);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops the scheduler thread and silences every channel now and after the events already sent
+    private void endPlayback() {
+        long afterSentMicros = timestamped ? microsAt(cursorTick) : -1;
+        schedulerThread = null;
+
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            send(-1, ShortMessage.CONTROL_CHANGE, channel, ALL_NOTES_OFF, 0);
+            if (afterSentMicros != -1) {
+                send(afterSentMicros, ShortMessage.CONTROL_CHANGE, channel, ALL_NOTES_OFF, 0);
+            }
+            Arrays.fill(soundingNotes[channel], 0);
+        }
+    }
+
+    // EFFECTS: sends the setup messages of the part now
+    private void sendSetupEvents(PlaybackSchedule.Part part) {
+        part.forEachSetupEvent((tick, command, channel, data1, data2) -> send(-1, command, channel, data1, data2));
+    }
+
+    // MODIFIES: this
+    // EFFECTS: releases the sounding notes of the given channels once the events already sent have played
+    private void releaseSoundingNotes(boolean[] channels) {
+        long releaseMicros = timestamped ? microsAt(cursorTick) : -1;
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            if (channels[channel]) {
+                releaseSoundingNotes(channel, releaseMicros);
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: sends a NOTE_OFF for every sounding note of the channel at the given time
+    private void releaseSoundingNotes(int channel, long timestampMicros) {
+        for (int key = 0; key < 128; key++) {
+            if (soundingNotes[channel][key] > 0) {
+                send(timestampMicros, ShortMessage.NOTE_OFF, channel, key, 0);
+                soundingNotes[channel][key] = 0;
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: sends a short message to the receiver, skipping messages the device rejects and logging only the
+    //          first rejection
+    private void send(long timestampMicros, int command, int channel, int data1, int data2) {
+        try {
+            receiver.send(new ShortMessage(command, channel, data1, data2), timestampMicros);
+        } catch (InvalidMidiDataException | IllegalStateException e) {
+            if (!sendFailureLogged) {
+                sendFailureLogged = true;
+                EventLog.getInstance().logEvent(new Event(LogLevel.WARN,
+                        "Unable to send MIDI events, later failures are not logged: %s", e.getMessage()));
+            }
+        }
+    }
+
+    // EFFECTS: returns the tick playing at the given time
+    private long tickAt(long micros) {
+        double mapMicros = segmentMapMicros + (micros - segmentMicros);
+        return (long) Math.floor(tempoMap.microsToTicks(mapMicros) + TICK_EPSILON);
+    }
+
+    // EFFECTS: returns the time the given tick plays at
+    private long microsAt(long tick) {
+        return segmentMicros + Math.round(tempoMap.ticksToMicros(tick) - segmentMapMicros);
+    }
+
+    private static boolean containsIdentical(List<PlaybackSchedule.Part> parts, PlaybackSchedule.Part part) {
+        for (PlaybackSchedule.Part candidate : parts) {
+            if (candidate == part) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
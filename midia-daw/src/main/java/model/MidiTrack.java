@@ -2,6 +2,7 @@ package model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiEvent;
@@ -15,6 +16,7 @@ import model.editing.Copyable;
 import model.editing.Pastable;
 import model.event.Event;
 import model.event.EventLog;
+import model.event.LogLevel;
 import model.instrument.Instrument;
 import persistance.Writable;
 
@@ -34,7 +36,13 @@ public class MidiTrack implements Writable, Pastable {
     private int volume; // 0 to 127 inclusive
     private String name;
     private final ArrayList<Block> blocks;
+    private final TickIntervalIndex<Block> blockIndex;
+    private long nextBlockSequence; // numbers the blocks in list order for the index
+    private long endTick; // the latest block end, start tick + duration
     private final int channel;
+    private long version;
+    private long lastNoteEndTick; // timeline tick at which the latest ending note of any block ends
+    private Timeline timeline; // the timeline this track currently belongs to, if any
 
     /**
      * Constructs a MidiTrack.
@@ -52,10 +60,12 @@ public class MidiTrack implements Writable, Pastable {
     public MidiTrack(String name, Instrument instrument, int channel) {
         this.muted = false;
         this.blocks = new ArrayList<>();
+        this.blockIndex = new TickIntervalIndex<>(Block::getStartTick, Block::getDurationTicks);
         this.instrument = instrument;
         this.volume = DEFAULT_VOLUME;
         this.channel = channel;
         this.name = name;
+        this.version = ModelVersion.next();
     }
 
     /**
@@ -66,9 +76,15 @@ public class MidiTrack implements Writable, Pastable {
      */
     public int addBlock(Block block) {
         blocks.add(block);
-        Event e = new Event(String.format("Added Block with %d notes to MidiTrack %s", 
-                                          block.getNotes().size(), name));
-        EventLog.getInstance().logEvent(e);
+        block.setMidiTrack(this);
+        blockIndex.add(block, nextBlockSequence++);
+        endTick = Math.max(endTick, block.getStartTick() + block.getDurationTicks());
+        blockChanged(block, 0);
+        EventLog log = EventLog.getInstance();
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.logEvent(new Event(LogLevel.DEBUG, "Added Block with %d notes to MidiTrack %s",
+                    block.getNotes().size(), name));
+        }
         return blocks.size() - 1;
     }
 
@@ -82,10 +98,19 @@ public class MidiTrack implements Writable, Pastable {
      */
     public Block removeBlock(int index) {
         Block b = blocks.remove(index);
+        b.setMidiTrack(null);
+        blockIndex.remove(b, b.getStartTick());
+        if (b.getStartTick() + b.getDurationTicks() == endTick) {
+            recomputeEndTick();
+        }
+        markModified();
+        updateLastNoteEndTick(b.getLastNoteEndTickTimeline(), 0);
 
-        Event e = new Event(String.format("Removed Block with %d notes in MidiTrack %s", 
-                                          b.getNotes().size(), name));
-        EventLog.getInstance().logEvent(e);
+        EventLog log = EventLog.getInstance();
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.logEvent(new Event(LogLevel.DEBUG, "Removed Block with %d notes in MidiTrack %s",
+                    b.getNotes().size(), name));
+        }
         return b;
     }
 
@@ -93,7 +118,7 @@ public class MidiTrack implements Writable, Pastable {
      * Applies this MidiTrack's data to the given {@link Track}.
      * <p>
      * Creates initial volume and (if applicable) program change messages,
-     * then converts each block's notes to NOTE_ON and NOTE_OFF events and adds them to the track.
+     * then emits each block's compiled NOTE_ON and NOTE_OFF events, offset by the block's start tick.
      *
      * @param track the Java MIDI track to populate
      * @throws InvalidMidiDataException if invalid MIDI data is encountered
@@ -108,42 +133,20 @@ public class MidiTrack implements Writable, Pastable {
         }
         track.add(new MidiEvent(volMessage, 0));
 
+        int data1Override = getNoteData1Override();
         for (Block currentBlock : blocks) {
-            for (Note note : currentBlock.getNotesTimeline()) {
-                applyNoteToTrack(track, note, isPercussive(), instrument, getChannel());
-            }
+            currentBlock.getCompiledEvents().emit(track, currentBlock.getStartTick(), getChannel(), data1Override);
         }
     }
 
     /**
-     * Helper for {@link #applyToTrack(Track)} to add NOTE_ON and NOTE_OFF events for a note.
+     * Returns the data1 byte that replaces the pitch of this track's note messages.
+     * Percussive tracks use data1 for the instrument as they have no pitch.
      *
-     * @param track        the track to add events to
-     * @param note         the note to apply
-     * @param isPercussive whether the track is percussive (channel 9 semantics)
-     * @param instrument   the instrument to use (used for percussive data1)
-     * @param channel      the MIDI channel
-     * @throws RuntimeException if invalid, MIDI data prevents applying the note
+     * @return the instrument program number if percussive, otherwise -1 (keep the pitch)
      */
-    public static void applyNoteToTrack(Track track, Note note, boolean isPercussive,
-                                        Instrument instrument, int channel) {
-        try {
-            ShortMessage onMessage = new ShortMessage();
-            ShortMessage offMessage = new ShortMessage();
-            // Percussive tracks use data1 for the instrument as they have no pitch
-            int data1 = isPercussive ? instrument.getProgramNumber() : note.getPitch();
-
-            onMessage.setMessage(ShortMessage.NOTE_ON, channel, data1, note.getVelocity());
-            offMessage.setMessage(ShortMessage.NOTE_OFF, channel, data1, 0); 
-
-            MidiEvent noteOnEvent = new MidiEvent(onMessage, note.getStartTick());
-            MidiEvent noteOffEvent = new MidiEvent(offMessage, note.getStartTick() + note.getDurationTicks());
-
-            track.add(noteOnEvent);
-            track.add(noteOffEvent);
-        } catch (InvalidMidiDataException e) {
-            throw new RuntimeException("Failed to apply track", e);
-        }
+    public int getNoteData1Override() {
+        return isPercussive() ? instrument.getProgramNumber() : -1;
     }
 
     /**
@@ -153,6 +156,7 @@ public class MidiTrack implements Writable, Pastable {
      */
     public void setVolume(int newVolume) {
         volume = newVolume;
+        markModified();
     }
 
     /**
@@ -162,6 +166,7 @@ public class MidiTrack implements Writable, Pastable {
      */
     public void setVolumeScaled(int newVolume) {
         volume = (int) Math.round(newVolume * 1.27);
+        markModified();
     }
 
     public int getChannel() {
@@ -170,6 +175,7 @@ public class MidiTrack implements Writable, Pastable {
 
     public void setMuted(boolean mutedValue) {
         muted = mutedValue;
+        markModified();
     }
 
     /**
@@ -183,10 +189,143 @@ public class MidiTrack implements Writable, Pastable {
      */
     public void setInstrument(Instrument instrument) {
         this.instrument = instrument;
+        markModified();
     }
 
     public void setName(String newName) {
         this.name = newName;
+        if (timeline != null) {
+            timeline.markEdited(); // not playback-relevant, so no new stamp
+        }
+    }
+
+    /**
+     * Takes a new modification stamp and counts an edit to the owning timeline. Called directly on track-level
+     * changes and by blocks of this track whenever their contents change.
+     */
+    void markModified() {
+        version = ModelVersion.next();
+        if (timeline != null) {
+            timeline.markEdited();
+        }
+    }
+
+    /**
+     * Called by a block of this track after it was moved or resized, keeping the block index and end tick current.
+     *
+     * @param block            the moved or resized block
+     * @param oldStartTick     the start tick of the block before the change
+     * @param oldDurationTicks the duration of the block before the change
+     */
+    void blockBoundsChanged(Block block, long oldStartTick, long oldDurationTicks) {
+        blockIndex.update(block, oldStartTick);
+
+        long blockEndTick = block.getStartTick() + block.getDurationTicks();
+        if (blockEndTick >= endTick) {
+            endTick = blockEndTick;
+        } else if (oldStartTick + oldDurationTicks == endTick) {
+            recomputeEndTick();
+        }
+    }
+
+    private void recomputeEndTick() {
+        endTick = 0;
+        for (Block block : blocks) {
+            endTick = Math.max(endTick, block.getStartTick() + block.getDurationTicks());
+        }
+    }
+
+    /**
+     * Returns the tick at which the last block of this track ends, maintained as blocks change.
+     *
+     * @return the maximum of start tick + duration over all blocks, or 0 if there are none
+     */
+    public long getEndTick() {
+        return endTick;
+    }
+
+    /**
+     * Returns the block spanning the given tick (both ends inclusive).
+     * If several blocks overlap at the tick, the one added first is returned, as a scan of the blocks would.
+     *
+     * @param tick the tick on the timeline
+     * @return the block at the given tick, or null if there is none
+     */
+    public Block getBlockAt(long tick) {
+        return blockIndex.findCovering(tick);
+    }
+
+    /**
+     * Passes every block spanning part of the tick range {@code [fromTick, toTick]} to the consumer,
+     * in start tick order.
+     *
+     * @param fromTick the first tick of the range
+     * @param toTick   the last tick of the range
+     * @param consumer receives the overlapping blocks
+     */
+    public void forEachBlockInRange(long fromTick, long toTick, Consumer<Block> consumer) {
+        blockIndex.forEachOverlapping(fromTick, toTick, consumer);
+    }
+
+    /**
+     * Called by a block of this track (and when a block is added) after its contents or position changed.
+     *
+     * @param block              the changed block
+     * @param oldLastNoteEndTick the block's last note end tick on the timeline before the change
+     */
+    void blockChanged(Block block, long oldLastNoteEndTick) {
+        markModified();
+        updateLastNoteEndTick(oldLastNoteEndTick, block.getLastNoteEndTickTimeline());
+    }
+
+    /**
+     * Updates the cached last note end after the last note end of one block moved from {@code oldBlockEnd} to
+     * {@code newBlockEnd}. Blocks are only rescanned if the block that ended last moved backwards.
+     */
+    private void updateLastNoteEndTick(long oldBlockEnd, long newBlockEnd) {
+        long oldTrackEnd = lastNoteEndTick;
+
+        if (newBlockEnd >= lastNoteEndTick) {
+            lastNoteEndTick = newBlockEnd;
+        } else if (oldBlockEnd == lastNoteEndTick) {
+            lastNoteEndTick = 0;
+            for (Block block : blocks) {
+                lastNoteEndTick = Math.max(lastNoteEndTick, block.getLastNoteEndTickTimeline());
+            }
+        }
+
+        if (timeline != null && lastNoteEndTick != oldTrackEnd) {
+            timeline.trackLengthChanged(oldTrackEnd, lastNoteEndTick);
+        }
+    }
+
+    /**
+     * Returns the tick at which the last note of this track ends, maintained as blocks and notes change.
+     *
+     * @return the end tick of the latest ending note across all blocks, or 0 if there are no notes
+     */
+    public long getLastNoteEndTick() {
+        return lastNoteEndTick;
+    }
+
+    Timeline getTimeline() {
+        return timeline;
+    }
+
+    void setTimeline(Timeline timeline) {
+        this.timeline = timeline;
+    }
+
+    /**
+     * Returns the modification stamp of this track.
+     * <p>
+     * The stamp changes whenever anything that affects playback of this track changes: its blocks or notes,
+     * instrument, volume, or mute state.
+     *
+     * @return the current modification stamp
+     */
+    public long getVersion() {
+        return version;
     }
 
     public Block getBlock(int index) {
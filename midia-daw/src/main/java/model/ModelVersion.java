@@ -0,0 +1,26 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of monotonically increasing modification stamps for the model.
+ * <p>
+ * Every playback-relevant mutation of a Block or MidiTrack takes a new stamp, so comparing
+ * a stored stamp against the current one is enough to tell whether anything changed in between.
+ */
+final class ModelVersion {
+
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private ModelVersion() {
+    }
+
+    /**
+     * Returns a new stamp, strictly greater than every stamp handed out before it.
+     *
+     * @return the next modification stamp
+     */
+    static long next() {
+        return COUNTER.incrementAndGet();
+    }
+}
@@ -19,6 +19,7 @@ public class Note implements Writable, Copyable, Cloneable {
     private int velocity;
     private long startTick;
     private long durationTicks;
+    private Block block; // the block this note currently belongs to, if any
 
     /**
      * Constructs a Note with the given attributes.
@@ -63,7 +64,9 @@ public class Note implements Writable, Copyable, Cloneable {
      * @param newPitch the MIDI pitch (0-127)
      */
     public void setPitch(int newPitch) {
+        int oldPitch = pitch;
         pitch = newPitch;
+        notifyBlock(oldPitch, startTick, durationTicks);
     }
 
     /**
@@ -73,6 +76,7 @@ public class Note implements Writable, Copyable, Cloneable {
      */
     public void setVelocity(int newVelocity) {
         velocity = newVelocity;
+        notifyBlock(pitch, startTick, durationTicks);
     }
 
     /**
@@ -81,7 +85,9 @@ public class Note implements Writable, Copyable, Cloneable {
      * @param newStartTick the new start tick (>= 0)
      */
     public void setStartTick(long newStartTick) {
+        long oldStartTick = startTick;
         startTick = newStartTick;
+        notifyBlock(pitch, oldStartTick, durationTicks);
     }
 
     /**
@@ -90,11 +96,35 @@ public class Note implements Writable, Copyable, Cloneable {
      * @param newDurationTicks the new duration in ticks (>= 0)
      */
     public void setDurationTicks(long newDurationTicks) {
+        long oldDurationTicks = durationTicks;
         durationTicks = newDurationTicks;
+        notifyBlock(pitch, startTick, oldDurationTicks);
+    }
+
+    /**
+     * Informs the containing block, if any, that this note was edited in place.
+     *
+     * @param oldPitch         the pitch before the edit
+     * @param oldStartTick     the start tick before the edit
+     * @param oldDurationTicks the duration before the edit
+     */
+    private void notifyBlock(int oldPitch, long oldStartTick, long oldDurationTicks) {
+        if (block != null) {
+            block.noteChanged(this, oldPitch, oldStartTick, oldDurationTicks);
+        }
+    }
+
+    Block getBlock() {
+        return block;
+    }
+
+    void setBlock(Block block) {
+        this.block = block;
     }
 
     /**
      * Returns a copy of this note with the same attributes.
+     * The copy does not belong to any block.
      *
      * @return a new Note instance equal to this one
      */
@@ -102,6 +132,7 @@ public class Note implements Writable, Copyable, Cloneable {
     public Note clone() {
         try {
             Note n = (Note) super.clone();
+            n.setBlock(null);
             n.setPitch(getPitch());
             n.setVelocity(getVelocity());
             n.setStartTick(getStartTick());
@@ -0,0 +1,18 @@
+package model;
+
+/**
+ * Receives the attributes of notes as primitives, so walking the notes of a block needs no copies.
+ */
+@FunctionalInterface
+public interface NoteVisitor {
+
+    /**
+     * Called once per visited note.
+     *
+     * @param startTick     the start tick of the note on the timeline (block offset applied)
+     * @param durationTicks the duration of the note in ticks
+     * @param pitch         the MIDI pitch of the note
+     * @param velocity      the MIDI velocity of the note
+     */
+    void visit(long startTick, long durationTicks, int pitch, int velocity);
+}
@@ -4,9 +4,11 @@ import javax.sound.midi.*;
 
 import model.event.Event;
 import model.event.EventLog;
+import model.event.LogLevel;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -19,7 +21,7 @@ import java.util.concurrent.TimeUnit;
  * property change notifications for UI synchronization (such as tick position updates).
  * Uses the parent track's instrument, channel, and volume settings for accurate playback.
  */
-public class PianoRollPlayer extends Player implements MetaEventListener {
+public class PianoRollPlayer extends Player {
 
     private static final int STOP_NOTE_SCHEDULER_DELAY = 500;
 
@@ -28,6 +30,10 @@ public class PianoRollPlayer extends Player implements MetaEventListener {
     private final PropertyChangeSupport propertyChangeSupport;
     private int volume;
     private boolean loop;
+    private PlaybackSchedule schedule;
+    private long scheduledBlockVersion;
+    private long scheduledTrackVersion;
+    private int scheduledVolume;
 
     private final Synthesizer previewSynthesizer;
     private ScheduledFuture<?> noteFuture;
@@ -36,7 +42,7 @@ public class PianoRollPlayer extends Player implements MetaEventListener {
     /**
      * Constructs a BlockPlayer for the given block using the parent track's configuration.
      * <p>
-     * Registers as a MetaEventListener on the sequencer and initializes tempo.
+     * Listens for the end of playback to loop and initializes tempo.
      *
      * @param block            the block to preview/play
      * @param parentMidiTrack  the parent track providing instrument, channel, and initial volume
@@ -55,7 +61,8 @@ public class PianoRollPlayer extends Player implements MetaEventListener {
         } catch (MidiUnavailableException e) {
             throw new RuntimeException("PianoRoll Synthesizer unavailable, note previews may not play", e);
         }
-        sequencer.addMetaEventListener(this);
+        this.schedule = PlaybackSchedule.EMPTY;
+        addPlaybackEndListener(this::playbackEnded);
 
         setBPM(initialBpm);
     }
@@ -96,14 +103,15 @@ public class PianoRollPlayer extends Player implements MetaEventListener {
      * Rebuilds the playback sequence for this block.
      * <p>
      * Creates a single MIDI track, applies the parent track's program change and volume,
-     * converts each note in the block to NOTE_ON/NOTE_OFF events, adjusts the system reset,
-     * and sets the sequence on the sequencer.
+     * emits the block's compiled NOTE_ON/NOTE_OFF events, adjusts the system reset,
+     * so the sequence can be played by the sequencer engine.
      *
      * @throws InvalidMidiDataException if invalid MIDI data is encountered
      */
     @Override
     public void updateSequence() throws InvalidMidiDataException {
         resetTracks();
+        updateTempoTrack();
         Track track = sequence.createTrack();
 
         ShortMessage programChangeMessage = new ShortMessage(ShortMessage.PROGRAM_CHANGE,
@@ -114,17 +122,40 @@ public class PianoRollPlayer extends Player implements MetaEventListener {
         track.add(new MidiEvent(programChangeMessage, 0));
         track.add(new MidiEvent(volMessage, 0));
 
-        for (Note note : block.getNotes()) {
-            MidiTrack.applyNoteToTrack(track, note, parentMidiTrack.isPercussive(),
-                    parentMidiTrack.getInstrument(), parentMidiTrack.getChannel());
-        }
+        block.getCompiledEvents().emit(track, 0, parentMidiTrack.getChannel(),
+                parentMidiTrack.getNoteData1Override());
 
         modifySystemReset(track);
-        sequencer.setSequence(sequence);
 
-        Event e = new Event(String.format("Playback sequence was updated in Block [Piano Roll] with instrument %s",
-                parentMidiTrack.getInstrument()));
-        EventLog.getInstance().logEvent(e);
+        EventLog log = EventLog.getInstance();
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.logEvent(new Event(LogLevel.DEBUG,
+                    "Playback sequence was updated in Block [Piano Roll] with instrument %s",
+                    parentMidiTrack.getInstrument()));
+        }
+    }
+
+    /**
+     * Returns the schedule of this block, starting at tick 0 and ending at the end of the block.
+     * Rebuilt only if the block, the parent track or the preview volume changed since the last call.
+     *
+     * @return the current schedule
+     */
+    @Override
+    public PlaybackSchedule updateSchedule() {
+        if (schedule != PlaybackSchedule.EMPTY && scheduledBlockVersion == block.getVersion()
+                && scheduledTrackVersion == parentMidiTrack.getVersion() && scheduledVolume == volume) {
+            return schedule;
+        }
+
+        scheduledBlockVersion = block.getVersion();
+        scheduledTrackVersion = parentMidiTrack.getVersion();
+        scheduledVolume = volume;
+        PlaybackSchedule.Part part = new PlaybackSchedule.Part(parentMidiTrack.getChannel(),
+                parentMidiTrack.getInstrument().getProgramNumber(), volume, parentMidiTrack.getNoteData1Override(),
+                new long[] { 0 }, new BlockEvents[] { block.getCompiledEvents() });
+        schedule = new PlaybackSchedule(List.of(part), block.getDurationTicks());
+        return schedule;
     }
 
     /**
@@ -150,7 +181,7 @@ public class PianoRollPlayer extends Player implements MetaEventListener {
 
     /**
      * Frees all system resources held by the player. <p>
-     * Closes {@code sequencer}, {@code previewSynthesizer}, and {@code scheduler}
+     * Closes {@code engine}, {@code previewSynthesizer}, and {@code scheduler}
      */
     @Override
     public void close() {
@@ -275,22 +306,17 @@ public class PianoRollPlayer extends Player implements MetaEventListener {
     }
 
     /**
-     * Handles end-of-track meta events to implement loop playback.
+     * Implements loop playback.
      * <p>
      * When looping is enabled and the end of the block is reached, resets the tick position and restarts playback.
-     *
-     * @param meta the meta event received from the sequencer
      */
-    @Override
-    public void meta(MetaMessage meta) {
-        if (meta.getType() == TimelineController.PLAYER_END_META_TYPE) {
-            if (loop) {
-                setTickPosition(0);
-                try {
-                    play();
-                } catch (InvalidMidiDataException e) {
-                    throw new RuntimeException("Failed to loop sequencer upon reaching end of block", e);
-                }
+    private void playbackEnded() {
+        if (loop) {
+            setTickPosition(0);
+            try {
+                play();
+            } catch (InvalidMidiDataException e) {
+                throw new RuntimeException("Failed to loop sequencer upon reaching end of block", e);
             }
         }
     }
@@ -0,0 +1,54 @@
+package model;
+
+import javax.sound.midi.InvalidMidiDataException;
+
+/**
+ * Plays the events of a Player on a MIDI device.
+ * <p>
+ * A Player owns exactly one engine and drives it from its transport methods. When playback reaches the end
+ * of the player's content the engine stops by itself and calls {@link Player#firePlaybackEnded()}, possibly
+ * from a thread other than the EDT; the player hands the end listeners to the EDT.
+ */
+public interface PlaybackEngine {
+
+    /**
+     * Starts playback at the given tick, stopping any playback in progress first.
+     *
+     * @param tickPosition the tick to start at
+     * @param tempoMap     the tempo changes to play with
+     * @throws InvalidMidiDataException if invalid MIDI data is found while preparing playback
+     */
+    void start(long tickPosition, TempoMap tempoMap) throws InvalidMidiDataException;
+
+    /**
+     * Stops playback, keeping the tick it was stopped at. Does nothing if not playing.
+     */
+    void stop();
+
+    boolean isRunning();
+
+    /**
+     * Returns the tick being played, or the tick playback stopped at if not playing.
+     *
+     * @return the current tick position
+     */
+    long getTickPosition();
+
+    /**
+     * Changes the tempo map of the playback in progress; the tick playing stays where it is.
+     *
+     * @param tempoMap the new tempo changes
+     */
+    void setTempoMap(TempoMap tempoMap);
+
+    /**
+     * Picks up edits made to the player's content since playback started, if the engine supports it.
+     * Called on the EDT while playing, once the player's schedule has changed.
+     */
+    void refresh();
+
+    /**
+     * Stops playback and frees all system resources held by the engine.
+     */
+    void close();
+}
@@ -0,0 +1,194 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sound.midi.ShortMessage;
+
+/**
+ * An immutable view of everything a {@link LookaheadEngine} plays, built on the EDT from the model's cached
+ * {@link BlockEvents}.
+ * <p>
+ * A schedule holds no references to mutable model objects, so the engine's scheduler thread can read it while
+ * the model keeps being edited. Each Part holds the events of one track; parts of tracks that did not change
+ * are shared between successive schedules, so rebuilding a schedule costs time proportional to the changed
+ * tracks rather than the size of the project.
+ */
+public final class PlaybackSchedule {
+
+    public static final PlaybackSchedule EMPTY = new PlaybackSchedule(List.of(), 0);
+
+    private final List<Part> parts;
+    private final long endTick;
+
+    /**
+     * Receives the events of a schedule.
+     */
+    @FunctionalInterface
+    public interface EventConsumer {
+        /**
+         * Receives one event.
+         *
+         * @param tick    the tick of the event on the timeline
+         * @param command the MIDI command, e.g. {@link ShortMessage#NOTE_ON}
+         * @param channel the MIDI channel
+         * @param data1   the first data byte
+         * @param data2   the second data byte
+         */
+        void accept(long tick, int command, int channel, int data1, int data2);
+    }
+
+    /**
+     * The events of one track: its blocks' compiled events in start tick order, and the setup messages sent
+     * before them.
+     */
+    public static final class Part {
+
+        private final int channel;
+        private final int program;
+        private final int volume;
+        private final int data1Override;
+        private final long[] blockStarts;
+        private final BlockEvents[] blockEvents;
+        private final long[] maxEventTicks; // the latest event tick of blocks 0..i, for pruning overlaps
+
+        /**
+         * Creates a part.
+         * <p>
+         * Preconditions: blockStarts is sorted and as long as blockEvents
+         *
+         * @param channel       the MIDI channel of the events
+         * @param program       the program sent before playback, or -1 to send none (percussive tracks)
+         * @param volume        the channel volume sent before playback
+         * @param data1Override the data1 byte to use instead of the pitch, or -1 to keep the pitch
+         * @param blockStarts   the tick each block's events are offset by
+         * @param blockEvents   the compiled events of each block
+         */
+        public Part(int channel, int program, int volume, int data1Override, long[] blockStarts,
+                    BlockEvents[] blockEvents) {
+            this.channel = channel;
+            this.program = program;
+            this.volume = volume;
+            this.data1Override = data1Override;
+            this.blockStarts = blockStarts;
+            this.blockEvents = blockEvents;
+
+            maxEventTicks = new long[blockStarts.length];
+            long maxEventTick = -1;
+            for (int i = 0; i < blockStarts.length; i++) {
+                BlockEvents events = blockEvents[i];
+                if (events.size() > 0) {
+                    maxEventTick = Math.max(maxEventTick, blockStarts[i] + events.getTick(events.size() - 1));
+                }
+                maxEventTicks[i] = maxEventTick;
+            }
+        }
+
+        /**
+         * Creates the part of a track from its blocks.
+         *
+         * @param midiTrack the track
+         * @return the part playing the track's blocks with the track's channel, instrument and volume
+         */
+        public static Part of(MidiTrack midiTrack) {
+            List<Block> blocks = new ArrayList<>(midiTrack.getBlocks().size());
+            midiTrack.forEachBlockInRange(0, Long.MAX_VALUE, blocks::add);
+
+            long[] blockStarts = new long[blocks.size()];
+            BlockEvents[] blockEvents = new BlockEvents[blocks.size()];
+            for (int i = 0; i < blocks.size(); i++) {
+                blockStarts[i] = blocks.get(i).getStartTick();
+                blockEvents[i] = blocks.get(i).getCompiledEvents();
+            }
+
+            int program = midiTrack.isPercussive() ? -1 : midiTrack.getInstrument().getProgramNumber();
+            return new Part(midiTrack.getChannel(), program, midiTrack.getVolume(),
+                    midiTrack.getNoteData1Override(), blockStarts, blockEvents);
+        }
+
+        /**
+         * Passes the program change and volume messages to send before this part's events.
+         *
+         * @param consumer receives the messages, at tick 0
+         */
+        public void forEachSetupEvent(EventConsumer consumer) {
+            if (program != -1) {
+                consumer.accept(0, ShortMessage.PROGRAM_CHANGE, channel, program, 0);
+            }
+            consumer.accept(0, ShortMessage.CONTROL_CHANGE, channel, 7, volume);
+        }
+
+        // EFFECTS: passes every event with fromTick <= tick < toTick to the consumer, block by block
+        private void forEachEvent(long fromTick, long toTick, EventConsumer consumer) {
+            int blockIndex = upperBound(blockStarts, toTick - 1);
+            for (int i = blockIndex - 1; i >= 0 && maxEventTicks[i] >= fromTick; i--) {
+                BlockEvents events = blockEvents[i];
+                long offset = blockStarts[i];
+                for (int j = events.indexOfFirstAtOrAfter(fromTick - offset); j < events.size(); j++) {
+                    long tick = events.getTick(j) + offset;
+                    if (tick >= toTick) {
+                        break;
+                    }
+                    int data1 = data1Override == -1 ? events.getData1(j) : data1Override;
+                    consumer.accept(tick, events.getCommand(j), channel, data1, events.getData2(j));
+                }
+            }
+        }
+
+        // EFFECTS: returns the number of values <= key in the sorted array
+        private static int upperBound(long[] sorted, long key) {
+            int low = 0;
+            int high = sorted.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid] <= key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        public int getChannel() {
+            return channel;
+        }
+    }
+
+    /**
+     * Creates a schedule.
+     *
+     * @param parts   the parts to play
+     * @param endTick the tick at which playback ends; later events are not played
+     */
+    public PlaybackSchedule(List<Part> parts, long endTick) {
+        this.parts = List.copyOf(parts);
+        this.endTick = endTick;
+    }
+
+    /**
+     * Passes every event of every part with {@code fromTick <= tick < toTick} and {@code tick <= endTick} to the
+     * consumer. Events are in tick order within a block, but not across blocks or parts.
+     *
+     * @param fromTick the first tick of the range
+     * @param toTick   the tick after the last tick of the range
+     * @param consumer receives the events
+     */
+    public void forEachEvent(long fromTick, long toTick, EventConsumer consumer) {
+        long to = Math.min(toTick, endTick + 1);
+        if (fromTick >= to) {
+            return;
+        }
+        for (Part part : parts) {
+            part.forEachEvent(fromTick, to, consumer);
+        }
+    }
+
+    public List<Part> getParts() {
+        return parts;
+    }
+
+    public long getEndTick() {
+        return endTick;
+    }
+}
@@ -4,13 +4,15 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
 import javax.sound.midi.MidiUnavailableException;
 import javax.sound.midi.Sequence;
-import javax.sound.midi.Sequencer;
 import javax.sound.midi.Track;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 import org.json.JSONArray;
@@ -18,6 +20,7 @@ import org.json.JSONObject;
 
 import model.event.Event;
 import model.event.EventLog;
+import model.event.LogLevel;
 import persistance.Writable;
 
 public abstract class Player implements Writable, ActionListener {
@@ -27,25 +30,39 @@ public abstract class Player implements Writable, ActionListener {
 
     public static final int PULSES_PER_QUARTER_NOTE = 960;
     protected static final float DEFAULT_BPM = 120;
-    public static final int UI_UPDATE_DELAY = 10;
+    public static final int UI_UPDATE_DELAY = CoalescingPropertyChangeSupport.FRAME_DELAY_MS;
 
-    protected Sequencer sequencer;
+    /** System property choosing the playback engine: {@code lookahead} (default) or {@code sequencer}. */
+    public static final String ENGINE_PROPERTY = "midia.playback.engine";
+    /** System property setting the lookahead window of the lookahead engine, in milliseconds. */
+    public static final String LOOKAHEAD_PROPERTY = "midia.playback.lookahead";
+
+    private static final int META_TEMPO = 0x51;
+
+    // Opened on the first play, so players that are only read, written or rendered need no MIDI device
+    private volatile PlaybackEngine engine;
+    private volatile PlayheadClock playheadClock;
     protected Sequence sequence;
+    private final List<Runnable> playbackEndListeners = new CopyOnWriteArrayList<>();
 
     protected int beatDivision;
     protected int beatsPerMeasure;
 
-    protected float bpm;
+    protected volatile TempoMap tempoMap; // read by the playhead clock thread
     protected long tickPosition;
     protected ArrayList<Integer> availableChannels;
     protected Timer playbackUpdateTimer;
     protected boolean isDraggingRuler;
+    private PlaybackSchedule refreshedSchedule; // the schedule the engine last picked up; only used on the EDT
+    private Track tempoTrack;
+    private TempoMap sequencedTempoMap;
 
     /**
-     * Creates a new Player instance. User must run close() to free resources after use.
+     * Creates a new Player instance. The playback engine is opened on the first play. User must run close() to
+     * free resources after use.
      */
     public Player() {
-        bpm = DEFAULT_BPM;
+        tempoMap = new TempoMap(DEFAULT_BPM);
         tickPosition = 0;
         beatDivision = DEFAULT_BEAT_DIVISION;
         beatsPerMeasure = DEFAULT_BEATS_PER_MEASURE;
@@ -53,11 +70,7 @@ public abstract class Player implements Writable, ActionListener {
         isDraggingRuler = false;
 
         try {
-            sequencer = MidiSystem.getSequencer();
             sequence = new Sequence(Sequence.PPQ, PULSES_PER_QUARTER_NOTE);
-            sequencer.open();
-        } catch (MidiUnavailableException e) {
-            throw new RuntimeException("MIDI device unavailable, unable to initialize player", e);
         } catch (InvalidMidiDataException e) {
             throw new RuntimeException("Invalid MIDI data found during player initialization, PPQ may be invalid", e);
         }
@@ -65,6 +78,46 @@ public abstract class Player implements Writable, ActionListener {
         availableChannels = new ArrayList<>(List.of(0,1,2,3,4,5,6,7,8,10,11,12,13,14,15));
     }
 
+    /**
+     * Returns the playback engine, opening it and its playhead clock if this is the first use.
+     *
+     * @return the opened engine
+     * @throws RuntimeException if no MIDI device is available
+     */
+    private synchronized PlaybackEngine openedEngine() {
+        if (engine == null) {
+            PlaybackEngine opened = openEngine();
+            playheadClock = new PlayheadClock(opened, this);
+            engine = opened;
+        }
+        return engine;
+    }
+
+    /**
+     * Opens the engine chosen by {@link #ENGINE_PROPERTY}, falling back to the sequencer engine if the
+     * lookahead engine cannot open its receiver.
+     *
+     * @return the opened engine
+     * @throws RuntimeException if no MIDI device is available
+     */
+    private PlaybackEngine openEngine() {
+        try {
+            if (!"sequencer".equals(System.getProperty(ENGINE_PROPERTY))) {
+                int lookaheadMs = Integer.getInteger(LOOKAHEAD_PROPERTY, LookaheadEngine.DEFAULT_LOOKAHEAD_MS);
+                try {
+                    return LookaheadEngine.open(this::updateSchedule, this::firePlaybackEnded,
+                            Math.max(1, lookaheadMs));
+                } catch (MidiUnavailableException e) {
+                    EventLog.getInstance().logEvent(new Event(LogLevel.WARN,
+                            "MIDI receiver unavailable, falling back to the sequencer: %s", e.getMessage()));
+                }
+            }
+            return new SequencerEngine(this);
+        } catch (MidiUnavailableException e) {
+            throw new RuntimeException("MIDI device unavailable, unable to initialize player", e);
+        }
+    }
+
     public ArrayList<Integer> getAvailableChannels() {
         return availableChannels;
     }
@@ -76,6 +129,14 @@ public abstract class Player implements Writable, ActionListener {
      */
     public abstract void updateSequence() throws InvalidMidiDataException;
 
+    /**
+     * Returns the schedule of the current notes/tracks for the lookahead engine, rebuilding only what changed.
+     * Must be called on the thread that edits the model.
+     *
+     * @return the current schedule; the same instance as the previous call if nothing changed since
+     */
+    public abstract PlaybackSchedule updateSchedule();
+
     /**
      * Deletes all tracks from the sequence, effectively resetting playback.
      */
@@ -83,47 +144,120 @@ public abstract class Player implements Writable, ActionListener {
         for (Track track : sequence.getTracks()) {
             sequence.deleteTrack(track);
         }
+        tempoTrack = null;
+    }
+
+    /**
+     * Rebuilds the track of tempo meta events in the sequence if the tempo map changed since it was built. A
+     * constant tempo needs no track, as the engine starts at the initial tempo.
+     *
+     * @throws InvalidMidiDataException if a tempo cannot be expressed as a tempo meta event
+     */
+    protected void updateTempoTrack() throws InvalidMidiDataException {
+        if (sequencedTempoMap == tempoMap && (tempoTrack != null || tempoMap.isConstant())) {
+            return;
+        }
+        if (tempoTrack != null) {
+            sequence.deleteTrack(tempoTrack);
+            tempoTrack = null;
+        }
+        sequencedTempoMap = tempoMap;
+        if (tempoMap.isConstant()) {
+            return;
+        }
+
+        tempoTrack = sequence.createTrack();
+        for (TempoMap.Change change : tempoMap.getChanges()) {
+            int microsPerQuarterNote = (int) Math.min(0xFFFFFF, Math.round(60_000_000.0 / change.bpm()));
+            byte[] data = { (byte) (microsPerQuarterNote >> 16), (byte) (microsPerQuarterNote >> 8),
+                    (byte) microsPerQuarterNote };
+            tempoTrack.add(new MidiEvent(new MetaMessage(META_TEMPO, data, data.length), change.tick()));
+        }
     }
 
     /**
-     * Begins playback at the current tick position with the current tempo.
+     * Begins playback at the current tick position with the current tempo map.
      *
      * @throws InvalidMidiDataException if invalid MIDI data is found during sequence update
      */
     public void play() throws InvalidMidiDataException {
-        updateSequence();
-        sequencer.setTickPosition(tickPosition);
-        sequencer.setTempoInBPM(bpm);
-        sequencer.start();
+        PlaybackEngine engine = openedEngine();
+        // Started first so waking the clock thread does not delay the engine's first events
+        playheadClock.start(tickPosition);
+        try {
+            engine.start(tickPosition, tempoMap);
+        } catch (InvalidMidiDataException | RuntimeException e) {
+            playheadClock.stop(tickPosition);
+            throw e;
+        }
+        refreshedSchedule = updateSchedule();
         playbackUpdateTimer.start();
 
-        Event e = new Event(String.format("Playback started, Sequence length: %d ticks",
-                sequencer.getTickLength()));
-        EventLog.getInstance().logEvent(e);
+        EventLog log = EventLog.getInstance();
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.logEvent(new Event(LogLevel.DEBUG, "Playback started, length: %d ticks", getLengthTicks()));
+        }
     }
 
     /**
-     * Pauses playback and synchronizes internal tick position with the sequencer.
+     * Pauses playback and synchronizes internal tick position with the engine.
      */
     public void pause() {
-        sequencer.stop();
         playbackUpdateTimer.stop();
-        syncToSequencerTickPosition();
+        if (engine == null) {
+            return;
+        }
+        engine.stop();
+        long stoppedTick = engine.getTickPosition();
+        playheadClock.stop(stoppedTick);
+        setTickPosition(stoppedTick);
     }
 
     /**
      * Frees all system resources held by the player. <p>
-     * Closes {@code sequencer}.
+     * Closes {@code engine} and the playhead clock if they were opened.
      */
-    public void close() {
-        sequencer.close();
+    public synchronized void close() {
+        playbackUpdateTimer.stop();
+        if (engine != null) {
+            playheadClock.close();
+            engine.close();
+        }
     }
 
     /**
-     * Updates the internal tick position from the sequencer's current playback tick.
+     * Updates the internal tick position from the engine's current playback tick.
      */
     public void syncToSequencerTickPosition() {
-        setTickPosition(sequencer.getTickPosition());
+        if (engine != null) {
+            setTickPosition(engine.getTickPosition());
+        }
+    }
+
+    /**
+     * Adds a listener called on the EDT when playback reaches the end.
+     *
+     * @param listener the listener to add
+     */
+    public void addPlaybackEndListener(Runnable listener) {
+        playbackEndListeners.add(listener);
+    }
+
+    public void removePlaybackEndListener(Runnable listener) {
+        playbackEndListeners.remove(listener);
+    }
+
+    /**
+     * Stops the playhead clock where playback ended and notifies the playback end listeners on the EDT. Called
+     * by the engine once playback reaches the end, possibly on the engine's own thread.
+     */
+    protected void firePlaybackEnded() {
+        playheadClock.stop(engine.getTickPosition());
+        SwingUtilities.invokeLater(() -> {
+            for (Runnable listener : playbackEndListeners) {
+                listener.run();
+            }
+        });
     }
 
     /**
@@ -190,7 +324,7 @@ public abstract class Player implements Writable, ActionListener {
     }
 
     public boolean isPlaying() {
-        return sequencer.isRunning();
+        return engine != null && engine.isRunning();
     }
 
     /**
@@ -216,7 +350,7 @@ public abstract class Player implements Writable, ActionListener {
     }
 
     /**
-     * Sets the tempo in beats per minute.
+     * Sets the tempo at the start of the timeline, keeping any later tempo changes.
      * <p>
      * Preconditions: {@code bpm >= 1}
      *
@@ -224,55 +358,86 @@ public abstract class Player implements Writable, ActionListener {
      * @return the previous tempo
      */
     public float setBPM(float bpm) {
-        float oldBpm = this.bpm;
-        this.bpm = bpm;
+        float oldBpm = tempoMap.getInitialBpm();
+        setTempoMap(tempoMap.withInitialBpm(bpm));
+        return oldBpm;
+    }
+
+    /**
+     * Replaces the tempo map, applying it to the playback in progress.
+     *
+     * @param newTempoMap the new tempo map
+     * @return the previous tempo map
+     */
+    public TempoMap setTempoMap(TempoMap newTempoMap) {
+        TempoMap oldTempoMap = tempoMap;
+        tempoMap = newTempoMap;
 
         if (isPlaying()) {
-            sequencer.setTempoInBPM(bpm);
+            engine.setTempoMap(newTempoMap);
         }
 
-        return oldBpm;
+        return oldTempoMap;
+    }
+
+    /**
+     * Adds a tempo change, replacing any change at the same tick.
+     * <p>
+     * Preconditions: {@code tick >= 0}, {@code bpm >= 1}
+     *
+     * @param tick the tick the tempo starts at
+     * @param bpm  the tempo from that tick on
+     */
+    public void addTempoChange(long tick, float bpm) {
+        setTempoMap(tempoMap.withChange(tick, bpm));
+    }
+
+    /**
+     * Removes the tempo change at the given tick, if any. The tempo at tick 0 cannot be removed.
+     *
+     * @param tick the tick of the change
+     */
+    public void removeTempoChange(long tick) {
+        TempoMap newTempoMap = tempoMap.withoutChange(tick);
+        if (newTempoMap != tempoMap) {
+            setTempoMap(newTempoMap);
+        }
     }
 
     /**
-     * Converts ticks to milliseconds using the current BPM.
+     * Converts a tick on the timeline to the milliseconds it plays at, following the tempo map.
      * <p>
      * Preconditions: {@code ticks >= 0}
      *
-     * @param ticks the tick count
-     * @return the duration in milliseconds
+     * @param ticks the tick count from the start of the timeline
+     * @return the time in milliseconds
      */
     public double ticksToMs(long ticks) {
-        double durationInQuarterNotes = (double) ticks / (double) sequence.getResolution();
-        double durationInMinutes = durationInQuarterNotes / bpm;
-        return durationInMinutes * 60000;
+        return tempoMap.ticksToMs(ticks);
     }
 
     /**
-     * Converts milliseconds to ticks.
+     * Converts a time to the tick playing at it, following the tempo map.
      * <p>
      * Preconditions: {@code ms >= 0}
      *
-     * @param ms the duration in milliseconds
+     * @param ms the time in milliseconds from the start of the timeline
      * @return the equivalent ticks
      */
     public long msToTicks(double ms) {
-        double durationInMinutes = ms / (double) 60000;
-        double durationInQuarterNotes = bpm * durationInMinutes;
-        double ticks = durationInQuarterNotes * sequence.getResolution();
-        return Math.round(ticks);
+        return tempoMap.msToTicks(ms);
     }
 
     /**
-     * Converts beats to milliseconds.
+     * Converts beats from the start of the timeline to milliseconds, following the tempo map.
      * <p>
      * Preconditions: {@code beats >= 0}
      *
      * @param beats the number of beats
-     * @return the duration in milliseconds
+     * @return the time in milliseconds
      */
     public long beatsToMs(double beats) {
-        return Math.round(beats / bpm * 60 * 1000);
+        return Math.round(ticksToMs(beatsToTicks(beats)));
     }
 
     /**
@@ -336,11 +501,21 @@ public abstract class Player implements Writable, ActionListener {
         isDraggingRuler = false;
     }
 
+    /**
+     * Moves the playhead to the position of the playhead clock once per display frame while playing, and lets
+     * the engine pick up edits. The schedule is built here, outside the engine, and the engine is only entered
+     * when edits replaced it, so a frame waits on neither the engine's lock nor the clock.
+     */
     @Override
     public void actionPerformed(ActionEvent e) {
         if (e.getSource().equals(playbackUpdateTimer)) {
+            PlaybackSchedule schedule = updateSchedule();
+            if (schedule != refreshedSchedule) {
+                refreshedSchedule = schedule;
+                engine.refresh();
+            }
             if (!isDraggingRuler) {
-                syncToSequencerTickPosition();
+                setTickPosition(playheadClock.getTick());
             }
         }
     }
@@ -397,16 +572,33 @@ public abstract class Player implements Writable, ActionListener {
         return getPositionBeats() + 1;
     }
 
+    /**
+     * Returns the tempo at the start of the timeline.
+     */
     public float getBPM() {
-        return bpm;
+        return tempoMap.getInitialBpm();
+    }
+
+    /**
+     * Returns the tempo playing at the given tick.
+     *
+     * @param tick the tick (>= 0)
+     * @return the tempo in beats per minute
+     */
+    public float getBPMAt(long tick) {
+        return tempoMap.getBpmAt(tick);
+    }
+
+    public TempoMap getTempoMap() {
+        return tempoMap;
     }
 
     public Sequence getSequence() {
         return sequence;
     }
 
-    public Sequencer getSequencer() {
-        return sequencer;
+    public PlaybackEngine getEngine() {
+        return openedEngine();
     }
 
     public int getBeatsPerMeasure() {
@@ -425,7 +617,15 @@ public abstract class Player implements Writable, ActionListener {
     public JSONObject toJson() {
         JSONObject playerJson = new JSONObject();
 
-        playerJson.put("beatsPerMinute", bpm);
+        playerJson.put("beatsPerMinute", tempoMap.getInitialBpm());
+        JSONArray tempoChanges = new JSONArray();
+        for (TempoMap.Change change : tempoMap.getChanges().subList(1, tempoMap.size())) {
+            JSONObject changeJson = new JSONObject();
+            changeJson.put("tick", change.tick());
+            changeJson.put("beatsPerMinute", change.bpm());
+            tempoChanges.put(changeJson);
+        }
+        playerJson.put("tempoChanges", tempoChanges);
         playerJson.put("tickPosition", tickPosition);
         playerJson.put("availableChannels", new JSONArray(availableChannels));
 
@@ -435,4 +635,9 @@ public abstract class Player implements Writable, ActionListener {
     public Timer getPlaybackUpdaterTimer() {
         return playbackUpdateTimer;
     }
+
+    public PlayheadClock getPlayheadClock() {
+        openedEngine();
+        return playheadClock;
+    }
 }
\ No newline at end of file
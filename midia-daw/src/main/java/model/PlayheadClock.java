@@ -0,0 +1,206 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Samples the tick a {@link PlaybackEngine} is playing on a dedicated thread and hands the latest sample to the
+ * UI without locks.
+ * <p>
+ * Asking an engine for its position may wait on the engine's lock, so the EDT never does it while playing.
+ * Instead the clock thread takes a sample every {@link #SAMPLE_PERIOD_MICROS} microseconds between
+ * {@link #start(long)} and {@link #stop(long)} and publishes it through an atomic reference. The UI reads the
+ * sample at display rate and moves it forward by the wall time elapsed since it was taken, following the tempo
+ * map, so a late display frame or a late sample never distorts where the playhead is drawn.
+ * <p>
+ * The thread is created on the first start and parks while nothing plays, until the clock is closed.
+ */
+public class PlayheadClock {
+
+    public static final int SAMPLE_PERIOD_MICROS = 1000;
+
+    private static final double TICK_EPSILON = 1e-6;
+
+    private final LongSupplier tickSource;
+    private final BooleanSupplier runningSource;
+    private final Supplier<TempoMap> tempoMapSource;
+    private final LongSupplier clockNanos;
+    private final AtomicReference<Sample> latest;
+    private final AtomicBoolean closed;
+    private Thread clockThread;
+
+    // Only used by the thread reading the playhead
+    private int displayedRun;
+    private long displayedTick;
+
+    /**
+     * The position of the engine at one instant.
+     *
+     * @param tick      the tick playing
+     * @param mapMicros the time the tick plays at in the tempo map
+     * @param nanos     the wall time the sample was taken at, from the clock's time source
+     * @param tempoMap  the tempo map playing
+     * @param running   whether playback was running; if not, the tick is where it stopped
+     * @param run       counts the starts of the clock, telling samples of different playbacks apart
+     */
+    public record Sample(long tick, double mapMicros, long nanos, TempoMap tempoMap, boolean running, int run) {
+
+        /**
+         * Returns the tick playing at the given wall time, moving the sampled tick forward by the time elapsed
+         * since the sample if playback was running.
+         *
+         * @param nowNanos the wall time, from the clock's time source
+         * @return the tick
+         */
+        public long tickAt(long nowNanos) {
+            if (!running) {
+                return tick;
+            }
+            double micros = mapMicros + Math.max(0, nowNanos - nanos) / 1000.0;
+            return Math.max(tick, (long) Math.floor(tempoMap.microsToTicks(micros) + TICK_EPSILON));
+        }
+    }
+
+    /**
+     * Creates a clock sampling the given engine, with the tempo map of the given player.
+     *
+     * @param engine the engine to sample
+     * @param player the player the engine plays
+     */
+    public PlayheadClock(PlaybackEngine engine, Player player) {
+        this(engine::getTickPosition, engine::isRunning, player::getTempoMap, System::nanoTime);
+    }
+
+    /**
+     * Creates a clock sampling the given sources.
+     *
+     * @param tickSource     returns the tick playing; may block
+     * @param runningSource  returns whether the engine is playing; may block
+     * @param tempoMapSource returns the tempo map playing
+     * @param clockNanos     the wall time in nanoseconds
+     */
+    PlayheadClock(LongSupplier tickSource, BooleanSupplier runningSource, Supplier<TempoMap> tempoMapSource,
+                  LongSupplier clockNanos) {
+        this.tickSource = tickSource;
+        this.runningSource = runningSource;
+        this.tempoMapSource = tempoMapSource;
+        this.clockNanos = clockNanos;
+        latest = new AtomicReference<>(new Sample(0, 0, clockNanos.getAsLong(), tempoMapSource.get(), false, 0));
+        closed = new AtomicBoolean();
+    }
+
+    /**
+     * Publishes the tick playback starts at and has the clock thread sample the engine until stopped. Does not
+     * wait on the engine; samples taken while the engine is not playing are dropped, so the clock may be
+     * started just before the engine.
+     *
+     * @param tickPosition the tick playback starts at
+     */
+    public synchronized void start(long tickPosition) {
+        if (closed.get()) {
+            return;
+        }
+        TempoMap tempoMap = tempoMapSource.get();
+        latest.set(new Sample(tickPosition, tempoMap.ticksToMicros(tickPosition), clockNanos.getAsLong(), tempoMap,
+                true, latest.get().run() + 1));
+
+        if (clockThread == null) {
+            clockThread = new Thread(this::runClock, "playhead-clock");
+            clockThread.setPriority(Thread.MAX_PRIORITY - 1);
+            clockThread.setDaemon(true);
+            clockThread.start();
+        } else {
+            LockSupport.unpark(clockThread);
+        }
+    }
+
+    /**
+     * Stops sampling and publishes the tick playback stopped at.
+     *
+     * @param tickPosition the tick playback stopped at
+     */
+    public synchronized void stop(long tickPosition) {
+        Sample previous = latest.get();
+        latest.set(new Sample(tickPosition, previous.tempoMap().ticksToMicros(tickPosition), clockNanos.getAsLong(),
+                previous.tempoMap(), false, previous.run()));
+    }
+
+    /**
+     * Stops sampling and ends the clock thread. The clock cannot be started again.
+     */
+    public synchronized void close() {
+        closed.set(true);
+        stop(latest.get().tick());
+        if (clockThread != null) {
+            LockSupport.unpark(clockThread);
+        }
+    }
+
+    /**
+     * Returns whether the clock is sampling a playback.
+     */
+    public boolean isRunning() {
+        return latest.get().running();
+    }
+
+    public Sample getLatestSample() {
+        return latest.get();
+    }
+
+    /**
+     * Returns the tick to draw the playhead at now. While one playback runs the tick never moves backwards, so
+     * a sample slightly behind the previous estimate does not make the playhead jitter. Must always be called
+     * on the same thread, normally the EDT.
+     *
+     * @return the tick
+     */
+    public long getTick() {
+        Sample sample = latest.get();
+        long tick = sample.tickAt(clockNanos.getAsLong());
+        if (sample.running() && sample.run() == displayedRun) {
+            tick = Math.max(tick, displayedTick);
+        }
+        displayedRun = sample.run();
+        displayedTick = tick;
+        return tick;
+    }
+
+    // EFFECTS: samples the engine while the clock runs and parks while it does not, until the clock is closed
+    private void runClock() {
+        long periodNanos = TimeUnit.MICROSECONDS.toNanos(SAMPLE_PERIOD_MICROS);
+
+        while (!closed.get()) {
+            if (latest.get().running()) {
+                // start published the first sample of the run
+                LockSupport.parkNanos(periodNanos);
+                sample();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Takes one sample of the engine and publishes it, unless the engine is not playing or the clock was
+     * started or stopped meanwhile.
+     *
+     * @return the published sample, or null if it was dropped
+     */
+    Sample sample() {
+        Sample previous = latest.get();
+        if (!previous.running() || !runningSource.getAsBoolean()) {
+            return null;
+        }
+        long tick = tickSource.getAsLong();
+        long nanos = clockNanos.getAsLong();
+        TempoMap tempoMap = tempoMapSource.get();
+
+        Sample sample = new Sample(tick, tempoMap.ticksToMicros(tick), nanos, tempoMap, true, previous.run());
+        return latest.compareAndSet(previous, sample) ? sample : null;
+    }
+}
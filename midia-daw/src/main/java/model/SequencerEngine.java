@@ -0,0 +1,93 @@
+package model;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaEventListener;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Sequencer;
+
+/**
+ * Plays a Player's sequence on the JDK's default {@link Sequencer}.
+ * <p>
+ * The player's sequence is brought up to date before every start, so starting takes time proportional to
+ * the amount of changed content, and edits made during playback are only heard after the next start. Tempo
+ * changes are tempo meta events in the sequence; a new tempo map applied during playback sets the tempo
+ * playing now, and its later changes are heard after the next start.
+ * Used when the {@link LookaheadEngine} is unavailable or disabled.
+ */
+public class SequencerEngine implements PlaybackEngine, MetaEventListener {
+
+    private final Player player;
+    private final Sequencer sequencer;
+
+    /**
+     * Opens the default sequencer, connected to the default synthesizer.
+     *
+     * @param player the player whose sequence is played
+     * @throws MidiUnavailableException if the sequencer cannot be opened
+     */
+    public SequencerEngine(Player player) throws MidiUnavailableException {
+        this.player = player;
+        sequencer = MidiSystem.getSequencer();
+        sequencer.open();
+        sequencer.addMetaEventListener(this);
+    }
+
+    @Override
+    public void start(long tickPosition, TempoMap tempoMap) throws InvalidMidiDataException {
+        player.updateSequence();
+        sequencer.setSequence(player.getSequence());
+        sequencer.setTickPosition(tickPosition);
+        sequencer.setTempoInBPM(tempoMap.getBpmAt(tickPosition));
+        sequencer.start();
+    }
+
+    @Override
+    public void stop() {
+        sequencer.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return sequencer.isRunning();
+    }
+
+    @Override
+    public long getTickPosition() {
+        return sequencer.getTickPosition();
+    }
+
+    @Override
+    public void setTempoMap(TempoMap tempoMap) {
+        sequencer.setTempoInBPM(tempoMap.getBpmAt(sequencer.getTickPosition()));
+    }
+
+    /**
+     * Does nothing; the sequence is only rebuilt when playback starts.
+     */
+    @Override
+    public void refresh() {
+    }
+
+    @Override
+    public void close() {
+        sequencer.close();
+    }
+
+    public Sequencer getSequencer() {
+        return sequencer;
+    }
+
+    /**
+     * Notifies the player when the sequencer reaches the end of the sequence.
+     *
+     * @param meta the meta event received from the sequencer
+     */
+    @Override
+    public void meta(MetaMessage meta) {
+        if (meta.getType() == TimelineController.PLAYER_END_META_TYPE) {
+            player.firePlaybackEnded();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable list of tempo changes, sorted by tick, the first of which is at tick 0.
+ * <p>
+ * Alongside the changes the map holds the time in microseconds at which each change plays, so converting a tick
+ * to a time, or a time to a tick, is a binary search over the changes followed by a constant tempo conversion.
+ * Edits return a new map; a map can therefore be shared with the playback threads while the model is edited.
+ */
+public final class TempoMap {
+
+    private static final double MICROS_PER_MINUTE = 60_000_000.0;
+
+    private final long[] ticks;
+    private final float[] bpms;
+    private final double[] micros; // the time each change plays at
+
+    /**
+     * One tempo change.
+     *
+     * @param tick the tick the tempo starts at (>= 0)
+     * @param bpm  the tempo in beats per minute (> 0)
+     */
+    public record Change(long tick, float bpm) {}
+
+    /**
+     * Creates a map with a constant tempo.
+     *
+     * @param bpm the tempo in beats per minute (> 0)
+     * @throws IllegalArgumentException if the tempo is not positive
+     */
+    public TempoMap(float bpm) {
+        this(List.of(new Change(0, bpm)));
+    }
+
+    /**
+     * Creates a map of the given changes, in any order. Of several changes at one tick the last one is kept,
+     * and changes that keep the tempo of the change before them are dropped.
+     *
+     * @param changes the tempo changes; one must be at tick 0
+     * @throws IllegalArgumentException if no change is at tick 0, or a change has a negative tick or a tempo
+     *                                  that is not positive
+     */
+    public TempoMap(List<Change> changes) {
+        List<Change> kept = normalize(changes);
+        ticks = new long[kept.size()];
+        bpms = new float[kept.size()];
+        for (int i = 0; i < kept.size(); i++) {
+            ticks[i] = kept.get(i).tick();
+            bpms[i] = kept.get(i).bpm();
+        }
+        micros = changeMicros();
+    }
+
+    // EFFECTS: returns the changes sorted by tick, keeping the last of several changes at one tick and dropping
+    //          changes that keep the tempo of the change before them; throws IllegalArgumentException if a
+    //          change is invalid or none is at tick 0
+    private static List<Change> normalize(List<Change> changes) {
+        List<Change> sorted = new ArrayList<>(changes);
+        sorted.sort(Comparator.comparingLong(Change::tick)); // stable, so later changes at a tick come last
+
+        List<Change> kept = new ArrayList<>(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            Change change = sorted.get(i);
+            if (change.tick() < 0 || !(change.bpm() > 0) || Float.isInfinite(change.bpm())) {
+                throw new IllegalArgumentException("Invalid tempo change: " + change);
+            }
+            boolean replaced = i + 1 < sorted.size() && sorted.get(i + 1).tick() == change.tick();
+            if (!replaced && (kept.isEmpty() || kept.get(kept.size() - 1).bpm() != change.bpm())) {
+                kept.add(change);
+            }
+        }
+        if (kept.isEmpty() || kept.get(0).tick() != 0) {
+            throw new IllegalArgumentException("A tempo map needs a tempo at tick 0");
+        }
+        return kept;
+    }
+
+    // EFFECTS: returns the time each change plays at, from the ticks and tempos of the changes
+    private double[] changeMicros() {
+        double[] changeMicros = new double[ticks.length];
+        for (int i = 1; i < ticks.length; i++) {
+            changeMicros[i] = changeMicros[i - 1] + spanMicros(ticks[i] - ticks[i - 1], i - 1);
+        }
+        return changeMicros;
+    }
+
+    /**
+     * Returns the number of tempo changes, including the one at tick 0.
+     */
+    public int size() {
+        return ticks.length;
+    }
+
+    /**
+     * Returns the changes in tick order.
+     */
+    public List<Change> getChanges() {
+        List<Change> changes = new ArrayList<>(ticks.length);
+        for (int i = 0; i < ticks.length; i++) {
+            changes.add(new Change(ticks[i], bpms[i]));
+        }
+        return changes;
+    }
+
+    public boolean isConstant() {
+        return ticks.length == 1;
+    }
+
+    /**
+     * Returns the tempo at tick 0.
+     */
+    public float getInitialBpm() {
+        return bpms[0];
+    }
+
+    /**
+     * Returns the tempo playing at the given tick.
+     * <p>
+     * Preconditions: {@code tick >= 0}
+     *
+     * @param tick the tick
+     * @return the tempo in beats per minute
+     */
+    public float getBpmAt(long tick) {
+        return bpms[indexAtTick(tick)];
+    }
+
+    /**
+     * Returns the time the given tick plays at, counted from tick 0.
+     * <p>
+     * Preconditions: {@code tick >= 0}
+     *
+     * @param tick the tick
+     * @return the time in microseconds
+     */
+    public double ticksToMicros(long tick) {
+        int i = indexAtTick(tick);
+        return micros[i] + spanMicros(tick - ticks[i], i);
+    }
+
+    /**
+     * Returns the tick playing at the given time, counted from tick 0. The result is fractional; round it as
+     * the use requires.
+     * <p>
+     * Preconditions: {@code micros >= 0}
+     *
+     * @param micros the time in microseconds
+     * @return the tick
+     */
+    public double microsToTicks(double micros) {
+        int i = indexAtMicros(micros);
+        return ticks[i] + (micros - this.micros[i]) * ticksPerMinute(i) / MICROS_PER_MINUTE;
+    }
+
+    /**
+     * Returns the time the given tick plays at in milliseconds.
+     *
+     * @param tick the tick (>= 0)
+     * @return the time in milliseconds
+     */
+    public double ticksToMs(long tick) {
+        return ticksToMicros(tick) / 1000;
+    }
+
+    /**
+     * Returns the tick playing at the given time, rounded to the nearest tick.
+     *
+     * @param ms the time in milliseconds (>= 0)
+     * @return the tick
+     */
+    public long msToTicks(double ms) {
+        return Math.round(microsToTicks(ms * 1000));
+    }
+
+    /**
+     * Returns a copy of this map with the tempo at tick 0 replaced.
+     *
+     * @param bpm the new initial tempo (> 0)
+     * @return the new map
+     */
+    public TempoMap withInitialBpm(float bpm) {
+        return withChange(0, bpm);
+    }
+
+    /**
+     * Returns a copy of this map with a tempo change added, replacing any change at the same tick.
+     *
+     * @param tick the tick the tempo starts at (>= 0)
+     * @param bpm  the tempo (> 0)
+     * @return the new map
+     */
+    public TempoMap withChange(long tick, float bpm) {
+        List<Change> changes = getChanges();
+        changes.add(new Change(tick, bpm));
+        return new TempoMap(changes);
+    }
+
+    /**
+     * Returns a copy of this map without the change at the given tick. The change at tick 0 cannot be removed.
+     *
+     * @param tick the tick of the change (> 0)
+     * @return the new map, or this map if it has no change at the tick
+     */
+    public TempoMap withoutChange(long tick) {
+        int i = Arrays.binarySearch(ticks, tick);
+        if (i <= 0) {
+            return this;
+        }
+        List<Change> changes = getChanges();
+        changes.remove(i);
+        return new TempoMap(changes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TempoMap other)) {
+            return false;
+        }
+        return Arrays.equals(ticks, other.ticks) && Arrays.equals(bpms, other.bpms);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(ticks) + Arrays.hashCode(bpms);
+    }
+
+    @Override
+    public String toString() {
+        return "TempoMap" + getChanges();
+    }
+
+    // EFFECTS: returns the index of the last change at or before the tick
+    private int indexAtTick(long tick) {
+        int i = Arrays.binarySearch(ticks, tick);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    // EFFECTS: returns the index of the last change playing at or before the time
+    private int indexAtMicros(double time) {
+        int i = Arrays.binarySearch(micros, time);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    // EFFECTS: returns the duration of the given ticks at the tempo of the change at index; multiplies before
+    //          dividing so whole beats convert exactly
+    private double spanMicros(long ticks, int index) {
+        return ticks * MICROS_PER_MINUTE / ticksPerMinute(index);
+    }
+
+    // EFFECTS: returns the ticks per minute at the tempo of the change at index
+    private double ticksPerMinute(int index) {
+        return (double) bpms[index] * Player.PULSES_PER_QUARTER_NOTE;
+    }
+}
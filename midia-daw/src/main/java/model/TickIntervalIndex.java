@@ -0,0 +1,153 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Indexes items spanning the tick interval {@code [start, start + duration]} by their start tick.
+ * <p>
+ * Alongside the start-ordered map, the durations of the indexed items are counted, so the longest one is always
+ * known and only items starting within that bound before a tick can cover it. Lookups are logarithmic plus the
+ * number of items starting inside the searched window; in the worst case, when one item spans nearly everything,
+ * that is every item.
+ * <p>
+ * Every item is added with a sequence number chosen by the owner; {@link #findCovering(long)} resolves overlaps
+ * by the lowest one, so an owner numbering its items in list order gets the same answer as a scan of its list.
+ * <p>
+ * Start ticks and durations are read when an item is added; an item whose start tick or duration changes must
+ * be passed to {@link #update(Object, long)}.
+ *
+ * @param <T> the type of the indexed items
+ */
+final class TickIntervalIndex<T> {
+
+    private final ToLongFunction<T> startTickOf;
+    private final ToLongFunction<T> durationTicksOf;
+    private final TreeMap<Long, ArrayList<Entry<T>>> entriesByStartTick;
+    private final TreeMap<Long, Integer> durationCounts; // the number of items of each duration
+    private int size;
+
+    /**
+     * An indexed item, with the duration it was indexed under.
+     */
+    private record Entry<T>(T item, long sequence, long durationTicks) {
+    }
+
+    TickIntervalIndex(ToLongFunction<T> startTickOf, ToLongFunction<T> durationTicksOf) {
+        this.startTickOf = startTickOf;
+        this.durationTicksOf = durationTicksOf;
+        this.entriesByStartTick = new TreeMap<>();
+        this.durationCounts = new TreeMap<>();
+    }
+
+    /**
+     * Adds the item under its current start tick and duration.
+     *
+     * @param item     the item to add
+     * @param sequence the owner's number for the item; lower numbers win overlaps in {@link #findCovering(long)}
+     */
+    void add(T item, long sequence) {
+        long durationTicks = durationTicksOf.applyAsLong(item);
+        entriesByStartTick.computeIfAbsent(startTickOf.applyAsLong(item), k -> new ArrayList<>(1))
+                .add(new Entry<>(item, sequence, durationTicks));
+        durationCounts.merge(durationTicks, 1, Integer::sum);
+        size++;
+    }
+
+    /**
+     * Removes the given item (compared by identity), which was indexed under the given start tick.
+     *
+     * @param item      the item to remove
+     * @param startTick the start tick the item had when it was last added or updated
+     * @return the sequence number the item was added with, or -1 if it was not found
+     */
+    long remove(T item, long startTick) {
+        ArrayList<Entry<T>> bucket = entriesByStartTick.get(startTick);
+        if (bucket == null) {
+            return -1;
+        }
+
+        for (int i = 0; i < bucket.size(); i++) {
+            Entry<T> entry = bucket.get(i);
+            if (entry.item() == item) {
+                bucket.remove(i);
+                if (bucket.isEmpty()) {
+                    entriesByStartTick.remove(startTick);
+                }
+                durationCounts.merge(entry.durationTicks(), -1, (count, change) -> count == 1 ? null : count - 1);
+                size--;
+                return entry.sequence();
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Re-indexes an item whose start tick or duration changed, keeping its sequence number.
+     *
+     * @param item         the changed item
+     * @param oldStartTick the start tick the item had when it was last added or updated
+     */
+    void update(T item, long oldStartTick) {
+        long sequence = remove(item, oldStartTick);
+        if (sequence != -1) {
+            add(item, sequence);
+        }
+    }
+
+    /**
+     * Returns an item covering the given tick. If several do, the one with the lowest sequence number is
+     * returned.
+     *
+     * @param tick the tick to look up
+     * @return an item with {@code start <= tick <= start + duration}, or null if there is none
+     */
+    T findCovering(long tick) {
+        Entry<T> found = null;
+        for (Map.Entry<Long, ArrayList<Entry<T>>> bucket : window(tick, tick).entrySet()) {
+            for (Entry<T> entry : bucket.getValue()) {
+                if (bucket.getKey() + entry.durationTicks() >= tick
+                        && (found == null || entry.sequence() < found.sequence())) {
+                    found = entry;
+                }
+            }
+        }
+
+        return found == null ? null : found.item();
+    }
+
+    /**
+     * Passes every item overlapping the tick range {@code [fromTick, toTick]} to the consumer, in start tick order.
+     *
+     * @param fromTick the first tick of the range
+     * @param toTick   the last tick of the range
+     * @param consumer receives the overlapping items
+     */
+    void forEachOverlapping(long fromTick, long toTick, Consumer<T> consumer) {
+        if (fromTick > toTick) {
+            return;
+        }
+
+        for (Map.Entry<Long, ArrayList<Entry<T>>> bucket : window(fromTick, toTick).entrySet()) {
+            for (Entry<T> entry : bucket.getValue()) {
+                if (bucket.getKey() + entry.durationTicks() >= fromTick) {
+                    consumer.accept(entry.item());
+                }
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // EFFECTS: returns the buckets of the items starting late enough to reach fromTick and no later than toTick
+    private Map<Long, ArrayList<Entry<T>>> window(long fromTick, long toTick) {
+        long maxDurationTicks = durationCounts.isEmpty() ? 0 : durationCounts.lastKey();
+        return entriesByStartTick.subMap(fromTick - maxDurationTicks, true, toTick, true);
+    }
+}
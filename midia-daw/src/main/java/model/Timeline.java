@@ -10,6 +10,7 @@ import org.json.JSONObject;
 
 import model.event.Event;
 import model.event.EventLog;
+import model.event.LogLevel;
 import model.instrument.Instrument;
 import persistance.Writable;
 
@@ -31,6 +32,8 @@ public class Timeline implements Writable {
     private PropertyChangeSupport pcs;
 
     private double horizontalScaleFactor;
+    private long lengthTicks; // the latest note end across all tracks
+    private long editCount; // number of edits to the project, excluding playback position and view changes
 
     /**
      * Constructs a timeline with no tracks, position at tick 0, and a default playback state.
@@ -46,8 +49,8 @@ public class Timeline implements Writable {
         player = new TimelinePlayer(this);
         midiTracks = new ArrayList<>();
 
-        Event e = new Event(String.format("A new timeline instance was created with project name: %s",
-                projectName));
+        Event e = new Event(LogLevel.INFO, "A new timeline instance was created with project name: %s",
+                projectName);
         EventLog.getInstance().logEvent(e);
     }
 
@@ -72,12 +75,14 @@ public class Timeline implements Writable {
 
         ArrayList<MidiTrack> oldTracks = new ArrayList<>(midiTracks);
         midiTracks.add(newMidiTrack);
+        newMidiTrack.setTimeline(this);
+        markEdited();
         pcs.firePropertyChange("midiTracks", oldTracks, new ArrayList<>(midiTracks));
 
-        Event e = new Event(String.format("Created new MidiTrack, instrument: %s, channel: %d, percussive: %b. "
+        Event e = new Event(LogLevel.INFO, "Created new MidiTrack, instrument: %s, channel: %d, percussive: %b. "
                 + "Remaining instrumental channels: %d",
                 instrument, newMidiTrack.getChannel(),
-                newMidiTrack.isPercussive(), player.getAvailableChannels().size()));
+                newMidiTrack.isPercussive(), player.getAvailableChannels().size());
         EventLog.getInstance().logEvent(e);
 
         return newMidiTrack;
@@ -95,6 +100,9 @@ public class Timeline implements Writable {
     public MidiTrack removeMidiTrack(int index) {
         ArrayList<MidiTrack> oldTracks = new ArrayList<>(midiTracks);
         MidiTrack removed = midiTracks.remove(index);
+        removed.setTimeline(null);
+        trackLengthChanged(removed.getLastNoteEndTick(), 0);
+        markEdited();
 
         if (!removed.isPercussive()) {
             player.getAvailableChannels().add(removed.getChannel());
@@ -102,8 +110,8 @@ public class Timeline implements Writable {
 
         pcs.firePropertyChange("midiTracks", oldTracks, new ArrayList<>(midiTracks));
 
-        Event e = new Event(String.format("Removed MidiTrack[%d]: %s. Remaining instrumental channels: %d",
-                index, removed, player.getAvailableChannels().size()));
+        Event e = new Event(LogLevel.INFO, "Removed MidiTrack[%d]: %s. Remaining instrumental channels: %d",
+                index, removed.toString(), player.getAvailableChannels().size());
         EventLog.getInstance().logEvent(e);
 
         return removed;
@@ -130,6 +138,7 @@ public class Timeline implements Writable {
     public void setProjectName(String newProjectName) {
         String oldProjectName = projectName;
         this.projectName = newProjectName;
+        markEdited();
 
         pcs.firePropertyChange("projectName", oldProjectName, newProjectName);
     }
@@ -156,24 +165,49 @@ public class Timeline implements Writable {
     }
 
     /**
-     * Calculates the tick at which the last note ends across all tracks and blocks.
+     * Counts one edit to this timeline. Called on track and timeline-level changes, by tracks of this timeline
+     * whenever they or their blocks change, and by the player when the tempo or meter changes.
+     */
+    void markEdited() {
+        editCount++;
+    }
+
+    /**
+     * Returns the number of edits made to this timeline since it was created. Playback position and view
+     * changes are not edits; loading a project counts the edits that built it.
+     *
+     * @return the edit count
+     */
+    public long getEditCount() {
+        return editCount;
+    }
+
+    /**
+     * Returns the tick at which the last note ends across all tracks and blocks.
      * Useful for computing the total length without updating the sequencer.
+     * <p>
+     * The value is maintained as notes, blocks and tracks change, so this is constant time.
      *
      * @return the last note end tick
      */
     public long getLengthTicks() {
-        long lastNoteEndTick = 0;
-        for (MidiTrack midiTrack : midiTracks) {
-            for (Block block : midiTrack.getBlocks()) {
-                for (Note note : block.getNotesTimeline()) {
-                    long endTick = note.getStartTick() + note.getDurationTicks();
-                    if (endTick > lastNoteEndTick) {
-                        lastNoteEndTick = endTick;
-                    }
-                }
+        return lengthTicks;
+    }
+
+    /**
+     * Called by a track of this timeline (and when a track is added or removed) after its last note end moved
+     * from {@code oldTrackEnd} to {@code newTrackEnd}. Tracks are only rescanned if the track that ended last
+     * moved backwards.
+     */
+    void trackLengthChanged(long oldTrackEnd, long newTrackEnd) {
+        if (newTrackEnd >= lengthTicks) {
+            lengthTicks = newTrackEnd;
+        } else if (oldTrackEnd == lengthTicks) {
+            lengthTicks = 0;
+            for (MidiTrack midiTrack : midiTracks) {
+                lengthTicks = Math.max(lengthTicks, midiTrack.getLastNoteEndTick());
             }
         }
-        return lastNoteEndTick;
     }
 
     public double getPixelsPerTick() {
@@ -249,9 +283,12 @@ public class Timeline implements Writable {
      */
     public void addMidiTrack(MidiTrack midiTrack) {
         midiTracks.add(midiTrack);
+        midiTrack.setTimeline(this);
+        trackLengthChanged(0, midiTrack.getLastNoteEndTick());
+        markEdited();
 
-        Event e = new Event(String.format("A MidiTrack was added to timeline %s. New Length: %d ticks",
-                projectName, getLengthTicks()));
+        Event e = new Event(LogLevel.INFO, "A MidiTrack was added to timeline %s. New Length: %d ticks",
+                projectName, getLengthTicks());
         EventLog.getInstance().logEvent(e);
     }
 
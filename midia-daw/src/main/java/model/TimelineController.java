@@ -1,35 +1,34 @@
 package model;
 
 import java.beans.PropertyChangeListener;
-import java.beans.PropertyChangeSupport;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MetaEventListener;
-import javax.sound.midi.MetaMessage;
 
 /**
  * Controls and manages a single Timeline instance, including playback wiring and lifecycle.
  */
-public class TimelineController implements MetaEventListener {
+public class TimelineController {
 
     public static final int PLAYER_END_META_TYPE = 47;
 
     private Timeline timeline;
-    private final PropertyChangeSupport pcs;
+    private final CoalescingPropertyChangeSupport pcs;
+    private final Runnable playbackEndListener;
 
     public TimelineController() {
        
-        pcs = new PropertyChangeSupport(this);
+        pcs = new CoalescingPropertyChangeSupport(this);
+        playbackEndListener = () -> pcs.firePropertyChange("playbackEnded", null, null);
         timeline = new Timeline("New Project", pcs);
-        updateSequencerListener();
+        updatePlaybackEndListener();
     }
 
     public Timeline getTimeline() {
         return timeline;
     }
 
-    private void updateSequencerListener() {
-        timeline.getPlayer().getSequencer().addMetaEventListener(this);
+    private void updatePlaybackEndListener() {
+        timeline.getPlayer().addPlaybackEndListener(playbackEndListener);
     }
 
     public void playTimeline() {
@@ -41,7 +40,7 @@ public class TimelineController implements MetaEventListener {
     }
 
     public boolean isPlaying() {
-        return timeline.getPlayer().getSequencer().isRunning();
+        return timeline.getPlayer().isPlaying();
     }
 
     public void pauseTimeline() {
@@ -58,12 +57,14 @@ public class TimelineController implements MetaEventListener {
 
         if (oldTimeline != null) {
             Player player = oldTimeline.getPlayer();
-            player.getSequencer().removeMetaEventListener(this);
+            player.removePlaybackEndListener(playbackEndListener);
             player.close();
         }
 
+        // Changes held back from the old timeline must not arrive after the replacement
+        pcs.flush();
         this.timeline = newTimeline;
-        updateSequencerListener();
+        updatePlaybackEndListener();
         pcs.firePropertyChange("timelineReplaced", oldTimeline, newTimeline);
     }
 
@@ -85,14 +86,7 @@ public class TimelineController implements MetaEventListener {
         pcs.removePropertyChangeListener(observer);
     }
 
-    public PropertyChangeSupport getPropertyChangeSupport() {
+    public CoalescingPropertyChangeSupport getPropertyChangeSupport() {
         return pcs;
     }
-
-    @Override
-    public void meta(MetaMessage meta) {
-        if (meta.getType() == PLAYER_END_META_TYPE) {
-            pcs.firePropertyChange("playbackEnded", null, null);
-        }
-    }
 }
@@ -1,63 +1,174 @@
 package model;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.Track;
 
 import model.event.Event;
 import model.event.EventLog;
+import model.event.LogLevel;
 
 /**
  * Plays back the entire Timeline.
  * <p>
- * Converts each MidiTrack into a {@code javax.sound.midi.Track} for playback,
- * manages updates to the underlying sequence, and propagates timeline-related
+ * Converts each MidiTrack into a {@code javax.sound.midi.Track} or a {@link PlaybackSchedule.Part} for playback,
+ * manages updates to the underlying sequence and schedule, and propagates timeline-related
  * property changes (e.g., BPM, ruler drag, tick position) for UI synchronization.
  */
 public class TimelinePlayer extends Player {
     
     private final Timeline timeline;
+    private final Map<MidiTrack, CompiledTrack> compiledTracks;
+    private final Map<MidiTrack, ScheduledTrack> scheduledTracks;
+    private PlaybackSchedule schedule;
+
+    /**
+     * A Track in the current sequence together with the version of the MidiTrack it was built from.
+     */
+    private record CompiledTrack(Track track, long version) {}
+
+    /**
+     * A Part of the current schedule together with the version of the MidiTrack it was built from.
+     */
+    private record ScheduledTrack(PlaybackSchedule.Part part, long version) {}
 
     public TimelinePlayer(Timeline timeline) {
         super();
         this.timeline = timeline;
+        this.compiledTracks = new IdentityHashMap<>();
+        this.scheduledTracks = new IdentityHashMap<>();
+        this.schedule = PlaybackSchedule.EMPTY;
     }
 
     /**
      * Updates the playback sequence with the current MidiTracks, converting each to a Java Track.
+     * <p>
+     * Only MidiTracks whose version changed since they were last converted (or that were just unmuted) are
+     * rebuilt; Tracks of removed, muted or silent MidiTracks are deleted and all others are left untouched.
+     * Rebuilt Tracks are appended, so the order of Tracks in the sequence may differ from the timeline order.
+     * The tempo map is a Track of tempo meta events, rebuilt only when the map changed.
      *
      * @throws InvalidMidiDataException if invalid MIDI data is encountered when setting the sequence
      */
     @Override
     public void updateSequence() throws InvalidMidiDataException {
-        resetTracks();
+        updateTempoTrack();
+        Map<MidiTrack, CompiledTrack> stillPlayable = new IdentityHashMap<>();
+        int rebuiltTracks = 0;
+
         for (MidiTrack currentMidiTrack : timeline.getMidiTracks()) {
             if (currentMidiTrack.isMuted() || currentMidiTrack.getVolume() == 0) {
                 continue;
             }
 
-            Track track = sequence.createTrack();
-            currentMidiTrack.applyToTrack(track);
+            CompiledTrack previous = compiledTracks.remove(currentMidiTrack);
+            CompiledTrack compiled = compile(currentMidiTrack, previous);
+            if (compiled != previous) {
+                rebuiltTracks++;
+            }
+            stillPlayable.put(currentMidiTrack, compiled);
+        }
+
+        replaceCompiledTracks(stillPlayable);
+
+        EventLog log = EventLog.getInstance();
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.logEvent(new Event(LogLevel.DEBUG,
+                    "Playback sequence was updated in Timeline %s, rebuilt %d of %d tracks",
+                    timeline.getProjectName(), rebuiltTracks, compiledTracks.size()));
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: deletes the Tracks still in compiledTracks from the sequence, as their MidiTracks were removed
+    //          from the timeline, muted, or silenced since the last update, then keeps the given tracks instead
+    private void replaceCompiledTracks(Map<MidiTrack, CompiledTrack> stillPlayable) {
+        for (CompiledTrack stale : compiledTracks.values()) {
+            sequence.deleteTrack(stale.track());
         }
+        compiledTracks.clear();
+        compiledTracks.putAll(stillPlayable);
+    }
 
-        sequencer.setSequence(sequence);
+    // MODIFIES: this
+    // EFFECTS: returns the given compiled track if it is up to date with the MidiTrack, otherwise replaces it in
+    //          the sequence with a newly compiled track and returns that
+    private CompiledTrack compile(MidiTrack midiTrack, CompiledTrack compiled) throws InvalidMidiDataException {
+        if (compiled != null && compiled.version() == midiTrack.getVersion()) {
+            return compiled;
+        }
+        if (compiled != null) {
+            sequence.deleteTrack(compiled.track());
+        }
 
-        Event e = new Event(String.format("Playback sequence was updated in Timeline %s", timeline.getProjectName()));
-        EventLog.getInstance().logEvent(e);
+        long version = midiTrack.getVersion();
+        Track track = sequence.createTrack();
+        midiTrack.applyToTrack(track);
+        return new CompiledTrack(track, version);
+    }
+
+    /**
+     * Returns the schedule of the current MidiTracks, in timeline order.
+     * <p>
+     * Like {@link #updateSequence()}, only MidiTracks whose version changed since they were last converted are
+     * rebuilt, from their blocks' compiled events; muted and silent MidiTracks are left out. If no track was
+     * rebuilt, added or left out since the last call, the previous schedule is returned.
+     *
+     * @return the current schedule
+     */
+    @Override
+    public PlaybackSchedule updateSchedule() {
+        Map<MidiTrack, ScheduledTrack> stillPlayable = new IdentityHashMap<>();
+        List<PlaybackSchedule.Part> parts = new ArrayList<>();
+        boolean changed = false;
+
+        for (MidiTrack currentMidiTrack : timeline.getMidiTracks()) {
+            if (currentMidiTrack.isMuted() || currentMidiTrack.getVolume() == 0) {
+                continue;
+            }
+
+            ScheduledTrack scheduled = scheduledTracks.get(currentMidiTrack);
+            if (scheduled == null || scheduled.version() != currentMidiTrack.getVersion()) {
+                long version = currentMidiTrack.getVersion();
+                scheduled = new ScheduledTrack(PlaybackSchedule.Part.of(currentMidiTrack), version);
+                changed = true;
+            }
+            stillPlayable.put(currentMidiTrack, scheduled);
+            parts.add(scheduled.part());
+        }
+
+        if (changed || stillPlayable.size() != scheduledTracks.size()
+                || schedule.getEndTick() != timeline.getLengthTicks()) {
+            scheduledTracks.clear();
+            scheduledTracks.putAll(stillPlayable);
+            schedule = new PlaybackSchedule(parts, timeline.getLengthTicks());
+        }
+        return schedule;
     }
 
     @Override
     public void resetTracks() {
         super.resetTracks();
-        Event e = new Event(String.format("Playback sequence cleared in Timeline %s", timeline.getProjectName()));
-        EventLog.getInstance().logEvent(e);
+        compiledTracks.clear();
+        EventLog log = EventLog.getInstance();
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.logEvent(new Event(LogLevel.DEBUG, "Playback sequence cleared in Timeline %s",
+                    timeline.getProjectName()));
+        }
     }
 
     @Override
     public void pause() {
         super.pause();
-        Event e = new Event(String.format("Playback paused in Timeline %s at tick: %d",
-                timeline.getProjectName(), sequencer.getTickPosition()));
-        EventLog.getInstance().logEvent(e);
+        EventLog log = EventLog.getInstance();
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.logEvent(new Event(LogLevel.DEBUG, "Playback paused in Timeline %s at tick: %d",
+                    timeline.getProjectName(), getTickPosition()));
+        }
     }
 
     /**
@@ -69,6 +180,7 @@ public class TimelinePlayer extends Player {
     @Override
     public int setBeatDivision(int newBeatDivision) {
         int oldBeatDivision = super.setBeatDivision(newBeatDivision);
+        timeline.markEdited();
         timeline.getPropertyChangeSupport().firePropertyChange("beatDivision", oldBeatDivision, newBeatDivision);
         return oldBeatDivision;
     }
@@ -82,6 +194,7 @@ public class TimelinePlayer extends Player {
     @Override
     public int setBeatsPerMeasure(int newBeatsPerMeasure) {
         int oldBeatsPerMeasure = super.setBeatsPerMeasure(newBeatsPerMeasure);
+        timeline.markEdited();
         timeline.getPropertyChangeSupport().firePropertyChange("beatsPerMeasure", oldBeatsPerMeasure, newBeatsPerMeasure);
         return oldBeatsPerMeasure;
     }
@@ -95,11 +208,19 @@ public class TimelinePlayer extends Player {
 
     @Override
     public float setBPM(float bpm) {
-        float oldBpm = super.setBPM(bpm);
+        float oldBpm = super.setBPM(bpm); // marked as an edit by setTempoMap
         timeline.getPropertyChangeSupport().firePropertyChange("bpm", oldBpm, bpm);
         return oldBpm;
     }
 
+    @Override
+    public TempoMap setTempoMap(TempoMap newTempoMap) {
+        TempoMap oldTempoMap = super.setTempoMap(newTempoMap);
+        timeline.markEdited();
+        timeline.getPropertyChangeSupport().firePropertyChange("tempoMap", oldTempoMap, newTempoMap);
+        return oldTempoMap;
+    }
+
     /**
      * Returns the total sequence length in beats.
      *
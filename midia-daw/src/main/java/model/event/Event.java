@@ -1,40 +1,97 @@
 package model.event;
 
-import java.util.Calendar;
 import java.util.Date;
 
 /**
  * Represents an alarm system event.
+ * <p>
+ * An event keeps its description as a format template and the arguments captured when it was logged, and
+ * only formats them the first time the description is read, so events that are never read cost no
+ * formatting. Arguments should be primitives or immutable values, as they are formatted later.
  */
 public class Event {
     private static final int HASH_CONSTANT = 13;
-    private final Date dateLogged;
-    private final String description;
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final long timeLogged;
+    private final LogLevel level;
+    private final String template;
+    private final Object[] args;
+    private String description;
 
     /**
-     * Creates an event with the given description
+     * Creates an INFO event with the given description
      * and the current date/time stamp.
      * @param description  a description of the event
      */
     public Event(String description) {
-        dateLogged = Calendar.getInstance().getTime();
+        this(LogLevel.INFO, description);
+    }
+
+    /**
+     * Creates an event with the given level and description
+     * and the current date/time stamp.
+     * @param level        the severity of the event
+     * @param description  a description of the event
+     */
+    public Event(LogLevel level, String description) {
+        this.timeLogged = System.currentTimeMillis();
+        this.level = level;
+        this.template = description;
+        this.args = NO_ARGS;
         this.description = description;
     }
 
+    /**
+     * Creates an event with the given level and a description that is formatted from the template and
+     * arguments when it is first read, with the current date/time stamp.
+     * @param level     the severity of the event
+     * @param template  a {@link String#format} template describing the event
+     * @param args      the template arguments
+     */
+    public Event(LogLevel level, String template, Object... args) {
+        this.timeLogged = System.currentTimeMillis();
+        this.level = level;
+        this.template = template;
+        this.args = args;
+    }
+
     /**
      * Gets the date of this event (includes time).
      * @return  the date of the event
      */
     public Date getDate() {
-        return dateLogged;
+        return new Date(timeLogged);
+    }
+
+    /**
+     * Gets the time of this event.
+     * @return  the time the event was created, in milliseconds since the epoch
+     */
+    public long getTimeMillis() {
+        return timeLogged;
     }
 
     /**
-     * Gets the description of this event.
+     * Gets the severity of this event.
+     * @return  the level of the event
+     */
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the description of this event, formatting it on first use.
      * @return  the description of the event
      */
     public String getDescription() {
-        return description;
+        String formatted = description;
+        if (formatted == null) {
+            // Racing readers format the same string; either result may be kept
+            formatted = String.format(template, args);
+            description = formatted;
+        }
+        return formatted;
     }
 
     @Override
@@ -49,17 +106,18 @@ public class Event {
 
         Event otherEvent = (Event) other;
 
-        return (this.dateLogged.equals(otherEvent.dateLogged) 
-                && this.description.equals(otherEvent.description));
+        return (this.timeLogged == otherEvent.timeLogged
+                && this.level == otherEvent.level
+                && this.getDescription().equals(otherEvent.getDescription()));
     }
 
     @Override
     public int hashCode() {
-        return (HASH_CONSTANT * dateLogged.hashCode() + description.hashCode());
+        return (HASH_CONSTANT * Long.hashCode(timeLogged) + getDescription().hashCode());
     }
 
     @Override
     public String toString() {
-        return dateLogged.toString() + "\n" + description;
+        return getDate().toString() + "\n" + getDescription();
     }
 }
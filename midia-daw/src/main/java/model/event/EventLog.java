@@ -1,62 +1,180 @@
 package model.event;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * Represents a log of alarm system events.
+ * Represents a log of the most recent application events.
  * We use the Singleton Design Pattern to ensure that there is only
  * one EventLog in the system and that the system has global access
  * to the single instance of the EventLog.
+ * <p>
+ * Events are kept in a fixed-capacity ring buffer, so the log never grows beyond {@link #getCapacity()}
+ * events; once full, each new event overwrites the oldest one. Events below the minimum level are not
+ * kept at all. Both are counted. Logging and iterating are lock-free and may happen on any thread.
+ * Kept events are also passed to every registered {@link EventSink}.
+ * <p>
+ * The capacity and the initial minimum level are read from the system properties
+ * {@value #CAPACITY_PROPERTY} and {@value #LEVEL_PROPERTY}. The level is matched ignoring case; an unknown
+ * level falls back to {@link #DEFAULT_MINIMUM_LEVEL}.
  */
-// TODO: Add types of logs ([INFO], [ERROR], [WARN]) and rework all exceptions accordingly.
 public class EventLog implements Iterable<Event> {
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+    public static final LogLevel DEFAULT_MINIMUM_LEVEL = LogLevel.INFO;
+    public static final String CAPACITY_PROPERTY = "midia.eventlog.capacity";
+    public static final String LEVEL_PROPERTY = "midia.eventlog.level";
+
     /** the only EventLog in the system (Singleton Design Pattern) */
-    private static EventLog theLog;
-    private final Collection<Event> events;
+    private static final EventLog theLog = new EventLog(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY),
+            LogLevel.parse(System.getProperty(LEVEL_PROPERTY), DEFAULT_MINIMUM_LEVEL));
+
+    /**
+     * An event together with its position in the sequence of all logged events, so a reader can tell
+     * whether a slot still holds the event it is looking for.
+     */
+    private record Slot(long sequence, Event event) {}
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final int mask;
+    private final AtomicLong nextSequence;
+    private final AtomicLong filteredCount;
+    private volatile long firstSequence;
+    private volatile LogLevel minimumLevel;
+    private volatile EventSink[] sinks;
 
-    /** 
+    /**
      * Prevent external construction.
      * (Singleton Design Pattern).
+     *
+     * @param capacity     the number of events kept, rounded up to a power of two
+     * @param minimumLevel the least severe level that is kept
      */
-    private EventLog() {
-        events = new ArrayList<>();
+    private EventLog(int capacity, LogLevel minimumLevel) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        nextSequence = new AtomicLong();
+        filteredCount = new AtomicLong();
+        this.minimumLevel = minimumLevel;
+        sinks = new EventSink[0];
     }
 
     /**
-     * Gets an instance of EventLog - creates it
-     * if it doesn't already exist.
+     * Gets the instance of EventLog.
      * (Singleton Design Pattern)
      * @return  instance of EventLog
      */
     public static EventLog getInstance() {
-        if (theLog == null) {
-            theLog = new EventLog();
-
-        }
-
         return theLog;
     }
 
     /**
-     * Adds an event to the event log.
+     * Adds an event to the event log, overwriting the oldest event if the log is full. Events below the
+     * minimum level are counted and discarded.
      * @param e the event to be added
      */
     public void logEvent(Event e) {
-        events.add(e);
+        if (!e.getLevel().isAtLeast(minimumLevel)) {
+            filteredCount.incrementAndGet();
+            return;
+        }
+        long sequence = nextSequence.getAndIncrement();
+        slots.set((int) (sequence & mask), new Slot(sequence, e));
+        for (EventSink sink : sinks) {
+            sink.accept(e);
+        }
+    }
+
+    /**
+     * Passes every event kept from now on to the sink as well.
+     *
+     * @param sink the sink to add
+     */
+    public synchronized void addSink(EventSink sink) {
+        EventSink[] newSinks = Arrays.copyOf(sinks, sinks.length + 1);
+        newSinks[sinks.length] = sink;
+        sinks = newSinks;
+    }
+
+    /**
+     * Stops passing events to the sink.
+     *
+     * @param sink the sink to remove
+     */
+    public synchronized void removeSink(EventSink sink) {
+        List<EventSink> newSinks = new ArrayList<>(Arrays.asList(sinks));
+        newSinks.remove(sink);
+        sinks = newSinks.toArray(new EventSink[0]);
+    }
+
+    /**
+     * Returns true if events of the given level are kept.
+     *
+     * @param level the level to check
+     * @return true if the level is at least the minimum level
+     */
+    public boolean isLoggable(LogLevel level) {
+        return level.isAtLeast(minimumLevel);
     }
 
     /**
      * Clears the event log and logs the event.
      */
     public void clear() {
-        events.clear();
+        firstSequence = nextSequence.get();
         logEvent(new Event("Event log cleared."));
     }
 
+    public LogLevel getMinimumLevel() {
+        return minimumLevel;
+    }
+
+    public void setMinimumLevel(LogLevel minimumLevel) {
+        this.minimumLevel = minimumLevel;
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Gets the number of events overwritten because the log was full.
+     * @return  the number of events dropped since the log was created
+     */
+    public long getDroppedCount() {
+        return Math.max(0, nextSequence.get() - getCapacity());
+    }
+
+    /**
+     * Gets the number of events discarded for being below the minimum level.
+     * @return  the number of events filtered since the log was created
+     */
+    public long getFilteredCount() {
+        return filteredCount.get();
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the events in the log, oldest first. Events logged while the
+     * snapshot is taken may or may not be included.
+     */
     @Override
     public Iterator<Event> iterator() {
+        long end = nextSequence.get();
+        long start = Math.max(firstSequence, end - getCapacity());
+        List<Event> events = new ArrayList<>((int) (end - start));
+
+        for (long sequence = start; sequence < end; sequence++) {
+            Slot slot = slots.get((int) (sequence & mask));
+            // The slot is still being written, or has already been overwritten by a newer event
+            if (slot != null && slot.sequence() == sequence) {
+                events.add(slot.event());
+            }
+        }
+
         return events.iterator();
     }
 }
@@ -0,0 +1,16 @@
+package model.event;
+
+/**
+ * Receives every event the EventLog keeps, in addition to the log's own buffer.
+ */
+@FunctionalInterface
+public interface EventSink {
+
+    /**
+     * Receives an event that was just logged. Called on the thread that logged it, which may be the EDT or a
+     * playback thread, so it must return quickly and never block.
+     *
+     * @param event the logged event
+     */
+    void accept(Event event);
+}
@@ -0,0 +1,41 @@
+package model.event;
+
+import java.util.Locale;
+
+/**
+ * The severity of an Event, from least to most severe.
+ */
+public enum LogLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR;
+
+    /**
+     * Returns true if this level is at least as severe as the given level.
+     *
+     * @param level the level to compare to
+     * @return true if this level is the given level or a more severe one
+     */
+    public boolean isAtLeast(LogLevel level) {
+        return compareTo(level) >= 0;
+    }
+
+    /**
+     * Returns the level with the given name, ignoring case and surrounding whitespace.
+     *
+     * @param name     the name of the level, may be null
+     * @param fallback the level returned if the name is null or names no level
+     * @return the named level, or fallback
+     */
+    public static LogLevel parse(String name, LogLevel fallback) {
+        if (name == null) {
+            return fallback;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package persistance;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import model.Block;
+import model.Timeline;
+import model.TimelineController;
+import model.event.Event;
+import model.event.EventLog;
+import model.event.LogLevel;
+import persistance.ProjectSnapshot.BlockSnapshot;
+
+/**
+ * Saves the current timeline to the autosave directory in the background while it has unsaved edits.
+ * <p>
+ * A save is triggered once the timeline has {@code editThreshold} unsaved edits, or has had any unsaved edits for
+ * {@code dirtySeconds} seconds, and whenever the timeline is about to be replaced. The timeline is copied into a
+ * {@link ProjectSnapshot} on the EDT, reusing the copies of unchanged blocks, and the snapshot is written on a
+ * background thread to a temporary file that is then atomically moved into place. Only the newest
+ * {@code maxSnapshots} autosaves of each project are kept. At most one write is in flight at a time; the EDT
+ * never waits for one.
+ * <p>
+ * All methods must be called on the EDT.
+ */
+public class AutoSaveService implements PropertyChangeListener {
+
+    public static final int DEFAULT_EDIT_THRESHOLD = 50;
+    public static final int DEFAULT_DIRTY_SECONDS = 30;
+    public static final int DEFAULT_MAX_SNAPSHOTS = 5;
+
+    static final String AUTOSAVE_INFIX = ".autosave-";
+
+    private static final int POLL_INTERVAL_MS = 1000;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final TimelineController timelineController;
+    private final Path directory;
+    private final int editThreshold;
+    private final long dirtyMillis;
+    private final int maxSnapshots;
+
+    private final ExecutorService writer;
+    private final Timer pollTimer;
+    private final Map<Block, BlockSnapshot> blockCache;
+
+    private Timeline trackedTimeline;
+    private long savedEditCount;
+    private long dirtySince;
+    private CompletableFuture<Path> pendingWrite;
+
+    /**
+     * Creates an autosave service with the default thresholds. Call {@link #start()} to begin saving.
+     *
+     * @param timelineController the controller whose timeline is saved
+     * @param directory          the directory autosaves are written to
+     */
+    public AutoSaveService(TimelineController timelineController, Path directory) {
+        this(timelineController, directory, DEFAULT_EDIT_THRESHOLD, DEFAULT_DIRTY_SECONDS, DEFAULT_MAX_SNAPSHOTS);
+    }
+
+    /**
+     * Creates an autosave service. Call {@link #start()} to begin saving.
+     *
+     * @param timelineController the controller whose timeline is saved
+     * @param directory          the directory autosaves are written to
+     * @param editThreshold      the number of unsaved edits that triggers a save (> 0)
+     * @param dirtySeconds       the seconds a timeline may have unsaved edits before it is saved (>= 0)
+     * @param maxSnapshots       the number of autosaves kept per project (> 0)
+     */
+    public AutoSaveService(TimelineController timelineController, Path directory, int editThreshold,
+                           int dirtySeconds, int maxSnapshots) {
+        this.timelineController = timelineController;
+        this.directory = directory;
+        this.editThreshold = editThreshold;
+        this.dirtyMillis = dirtySeconds * 1000L;
+        this.maxSnapshots = maxSnapshots;
+
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "autosave-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pollTimer = new Timer(POLL_INTERVAL_MS, e -> saveIfDue(System.currentTimeMillis()));
+        blockCache = new IdentityHashMap<>();
+        pendingWrite = CompletableFuture.completedFuture(null);
+        track(timelineController.getTimeline());
+    }
+
+    /**
+     * Starts watching the timeline for unsaved edits.
+     */
+    public void start() {
+        timelineController.addObserver(this);
+        pollTimer.start();
+    }
+
+    /**
+     * Saves the timeline that is about to be replaced.
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (evt.getPropertyName().equals("timelineAboutToBeReplaced")) {
+            saveNow();
+        }
+    }
+
+    /**
+     * Saves the current timeline if it has reached the edit threshold or has been dirty long enough, unless a
+     * previous save is still being written.
+     *
+     * @param now the current time in milliseconds
+     * @return true if a save was started
+     */
+    public boolean saveIfDue(long now) {
+        Timeline timeline = timelineController.getTimeline();
+        if (timeline != trackedTimeline) {
+            track(timeline);
+        }
+
+        long unsavedEdits = timeline.getEditCount() - savedEditCount;
+        if (unsavedEdits <= 0) {
+            dirtySince = -1;
+            return false;
+        }
+        if (dirtySince == -1) {
+            dirtySince = now;
+        }
+
+        if (!pendingWrite.isDone() || (unsavedEdits < editThreshold && now - dirtySince < dirtyMillis)) {
+            return false;
+        }
+        saveNow();
+        return true;
+    }
+
+    /**
+     * Snapshots the current timeline if it has unsaved edits and writes it in the background.
+     *
+     * @return a future completed with the autosave path once written, or with null if there was nothing to save
+     */
+    public CompletableFuture<Path> saveNow() {
+        Timeline timeline = timelineController.getTimeline();
+        if (timeline != trackedTimeline) {
+            track(timeline);
+        }
+        if (timeline.getEditCount() == savedEditCount) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ProjectSnapshot snapshot = ProjectSnapshot.of(timeline, blockCache);
+        long previousSavedEditCount = savedEditCount;
+        savedEditCount = snapshot.editCount();
+        dirtySince = -1;
+
+        pendingWrite = CompletableFuture.supplyAsync(() -> write(snapshot), writer);
+        pendingWrite.whenComplete((path, e) -> SwingUtilities.invokeLater(
+                () -> saveCompleted(timeline, snapshot.projectName(), previousSavedEditCount, path, e)));
+        return pendingWrite;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: logs the outcome of a save of timeline; after a failure, counts its edits as unsaved again so the
+    //          next poll retries, unless another timeline is tracked by now
+    private void saveCompleted(Timeline timeline, String projectName, long previousSavedEditCount, Path path,
+                               Throwable e) {
+        if (e == null) {
+            EventLog.getInstance().logEvent(new Event(LogLevel.INFO, "Autosaved %s to %s", projectName, path));
+            return;
+        }
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        EventLog.getInstance().logEvent(new Event(LogLevel.ERROR, "Unable to autosave %s: %s", projectName,
+                cause.getMessage()));
+        if (trackedTimeline == timeline) {
+            savedEditCount = Math.min(savedEditCount, previousSavedEditCount);
+        }
+    }
+
+    /**
+     * Stops watching, saves any unsaved edits, and shuts down the writer thread once they are written.
+     *
+     * @return a future completed once every pending save has been written or has failed
+     */
+    public CompletableFuture<Void> close() {
+        pollTimer.stop();
+        timelineController.removeObserver(this);
+        saveNow();
+        CompletableFuture<Void> drained = CompletableFuture.runAsync(() -> { }, writer); // runs after earlier writes
+        writer.shutdown();
+        return drained;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: starts counting unsaved edits of the given timeline from its current edit count
+    private void track(Timeline timeline) {
+        trackedTimeline = timeline;
+        savedEditCount = timeline.getEditCount();
+        dirtySince = -1;
+        blockCache.clear();
+    }
+
+    /**
+     * Writes the snapshot to a temporary file, forces it to disk, moves it into place and removes autosaves beyond
+     * the limit. Runs on the writer thread.
+     *
+     * @param snapshot the snapshot to write
+     * @return the path of the new autosave
+     */
+    private Path write(ProjectSnapshot snapshot) {
+        String baseName = getBaseName(snapshot.projectName());
+        Path target = directory.resolve(baseName + AUTOSAVE_INFIX + LocalDateTime.now().format(TIMESTAMP_FORMAT)
+                                        + "." + ProjectFormat.BINARY.getExtension());
+        Path temp = null;
+
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "." + baseName, ".tmp." + ProjectFormat.BINARY.getExtension());
+            writeDurably(snapshot, temp);
+            moveIntoPlace(temp, target);
+            removeOldAutosaves(baseName);
+            return target;
+        } catch (IOException e) {
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // EFFECTS: writes the snapshot to path in the binary format; closing the writer forces it to the device
+    private static void writeDurably(ProjectSnapshot snapshot, Path path) throws IOException {
+        BinaryWriter binaryWriter = new BinaryWriter(path.toString());
+        binaryWriter.open();
+        try {
+            binaryWriter.write(snapshot);
+        } finally {
+            binaryWriter.close();
+        }
+    }
+
+    // EFFECTS: moves temp to target, atomically if the file system supports it
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // EFFECTS: deletes the oldest autosaves of the project until at most maxSnapshots remain
+    private void removeOldAutosaves(String baseName) {
+        String prefix = baseName + AUTOSAVE_INFIX;
+        File[] autosaves = directory.toFile().listFiles(file -> file.getName().startsWith(prefix)
+                && file.getName().endsWith("." + ProjectFormat.BINARY.getExtension()));
+        if (autosaves == null || autosaves.length <= maxSnapshots) {
+            return;
+        }
+
+        Arrays.sort(autosaves); // timestamps sort chronologically
+        for (int i = 0; i < autosaves.length - maxSnapshots; i++) {
+            autosaves[i].delete();
+        }
+    }
+
+    // EFFECTS: returns the project name with characters that are not allowed in file names replaced
+    static String getBaseName(String projectName) {
+        String baseName = projectName.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        return baseName.isEmpty() ? "untitled" : baseName;
+    }
+}
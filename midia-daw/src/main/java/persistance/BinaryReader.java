@@ -0,0 +1,247 @@
+package persistance;
+
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiUnavailableException;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.Player;
+import model.TempoMap;
+import model.Timeline;
+import model.TimelinePlayer;
+import model.instrument.Instrument;
+import model.instrument.PercussiveInstrument;
+import model.instrument.TonalInstrument;
+
+/**
+ * Reads a Timeline from a file in the binary project format written by {@link BinaryWriter}.
+ * <p>
+ * The file is read into a heap buffer and decoded in a single pass. It is not memory-mapped, as a mapping keeps
+ * the file locked on some platforms until it is garbage collected, so saving over a project that was just opened
+ * could fail.
+ */
+public record BinaryReader(String sourcePath) {
+
+    private static final int PROGRESS_STEP_BYTES = 1 << 16;
+
+    /**
+     * Reads a timeline from the binary file.
+     *
+     * @param pcs the PropertyChangeSupport to use for the timeline
+     * @return the parsed Timeline
+     * @throws IOException                if the file cannot be read, is not a binary project or is truncated
+     * @throws MidiUnavailableException   if MIDI resources are unavailable
+     * @throws InvalidMidiDataException   if invalid MIDI data is encountered
+     */
+    public Timeline read(PropertyChangeSupport pcs)
+            throws IOException, MidiUnavailableException, InvalidMidiDataException {
+        return read(pcs, ProgressListener.NONE);
+    }
+
+    /**
+     * Reads a timeline from the binary file, reporting the bytes decoded to the listener.
+     *
+     * @param pcs      the PropertyChangeSupport to use for the timeline
+     * @param listener the listener to report progress to
+     * @return the parsed Timeline
+     * @throws IOException                if the file cannot be read, is not a binary project or is truncated
+     * @throws MidiUnavailableException   if MIDI resources are unavailable
+     * @throws InvalidMidiDataException   if invalid MIDI data is encountered
+     * @throws java.util.concurrent.CancellationException if the listener cancelled the read
+     */
+    public Timeline read(PropertyChangeSupport pcs, ProgressListener listener)
+            throws IOException, MidiUnavailableException, InvalidMidiDataException {
+        try (FileChannel channel = FileChannel.open(Paths.get(sourcePath), StandardOpenOption.READ)) {
+            ByteBuffer buffer = readFully(channel);
+            ProgressReporter progress = new ProgressReporter(listener, buffer.limit(), PROGRESS_STEP_BYTES);
+            Timeline timeline = parseTimeline(buffer, pcs, progress);
+            progress.finish();
+            return timeline;
+        } catch (BufferUnderflowException e) {
+            throw new IOException(String.format("Binary project %s is truncated", sourcePath), e);
+        }
+    }
+
+    // EFFECTS: returns a heap buffer holding the whole file, positioned at its start
+    private ByteBuffer readFully(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Binary project %s is too large", sourcePath));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Parses the header and all tracks from the buffer. The timeline is built once every track has been
+     * decoded, so a truncated or cancelled read leaves nothing to clean up.
+     *
+     * @param buffer   the buffer positioned at the start of the file
+     * @param pcs      the PropertyChangeSupport to use for the timeline
+     * @param progress the reporter of the bytes decoded
+     * @return the parsed Timeline
+     * @throws IOException if the header does not describe a supported binary project
+     */
+    private Timeline parseTimeline(ByteBuffer buffer, PropertyChangeSupport pcs, ProgressReporter progress)
+            throws IOException {
+        short version = parseVersion(buffer);
+        String projectName = getString(buffer);
+        TempoMap tempoMap = parseTempoMap(buffer, version);
+        long tickPosition = getVarLong(buffer);
+        int beatDivision = (int) getVarLong(buffer);
+        int beatsPerMeasure = (int) getVarLong(buffer);
+        double horizontalScale = buffer.getDouble();
+
+        ArrayList<Integer> availableChannels = parseAvailableChannels(buffer);
+        ArrayList<MidiTrack> midiTracks = parseMidiTracks(buffer, progress);
+
+        Timeline timeline = new Timeline(projectName, pcs);
+        Player player = new TimelinePlayer(timeline);
+        player.setTempoMap(tempoMap);
+        player.setTickPosition(tickPosition);
+        player.setAvailableChannels(availableChannels);
+
+        timeline.setPlayer(player);
+        timeline.getPlayer().setBeatDivision(beatDivision);
+        timeline.getPlayer().setBeatsPerMeasure(beatsPerMeasure);
+        timeline.setHorizontalScaleFactor(horizontalScale);
+        for (MidiTrack midiTrack : midiTracks) {
+            timeline.addMidiTrack(midiTrack);
+        }
+
+        return timeline;
+    }
+
+    // EFFECTS: reads the magic and format version, returning the version; throws IOException if the buffer does
+    //          not start a binary project of a supported version
+    private short parseVersion(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 6 || buffer.getInt() != BinaryWriter.MAGIC) {
+            throw new IOException(String.format("%s is not a binary project", sourcePath));
+        }
+        short version = buffer.getShort();
+        if (version < 1 || version > BinaryWriter.FORMAT_VERSION) {
+            throw new IOException(String.format("Unsupported binary project version %d", version));
+        }
+        return version;
+    }
+
+    private ArrayList<Integer> parseAvailableChannels(ByteBuffer buffer) {
+        int channelCount = (int) getVarLong(buffer);
+        ArrayList<Integer> availableChannels = new ArrayList<>(channelCount);
+        for (int i = 0; i < channelCount; i++) {
+            availableChannels.add((int) buffer.get());
+        }
+        return availableChannels;
+    }
+
+    private ArrayList<MidiTrack> parseMidiTracks(ByteBuffer buffer, ProgressReporter progress) throws IOException {
+        long trackCount = getVarLong(buffer);
+        ArrayList<MidiTrack> midiTracks = new ArrayList<>();
+        for (long i = 0; i < trackCount; i++) {
+            midiTracks.add(parseMidiTrack(buffer, progress));
+        }
+        return midiTracks;
+    }
+
+    private TempoMap parseTempoMap(ByteBuffer buffer, short version) throws IOException {
+        List<TempoMap.Change> changes = new ArrayList<>();
+        changes.add(new TempoMap.Change(0, buffer.getFloat()));
+        long changeCount = version >= 2 ? getVarLong(buffer) : 0;
+
+        long tick = 0;
+        for (long i = 0; i < changeCount; i++) {
+            tick += getVarLong(buffer);
+            changes.add(new TempoMap.Change(tick, buffer.getFloat()));
+        }
+
+        try {
+            return new TempoMap(changes);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Binary project %s has an invalid tempo map", sourcePath), e);
+        }
+    }
+
+    private MidiTrack parseMidiTrack(ByteBuffer buffer, ProgressReporter progress) throws IOException {
+        String name = getString(buffer);
+        int channel = buffer.get();
+        int volume = buffer.get();
+        boolean tonal = buffer.get() == 0;
+        String instrumentName = getString(buffer);
+        Instrument instrument;
+        try {
+            instrument = tonal ? TonalInstrument.valueOf(instrumentName)
+                    : PercussiveInstrument.valueOf(instrumentName);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Binary project %s has an unknown instrument %s", sourcePath,
+                    instrumentName), e);
+        }
+
+        MidiTrack midiTrack = new MidiTrack(name, instrument, channel);
+        midiTrack.setVolume(volume);
+
+        long blockCount = getVarLong(buffer);
+        for (long i = 0; i < blockCount; i++) {
+            midiTrack.addBlock(parseBlock(buffer, progress));
+        }
+
+        return midiTrack;
+    }
+
+    private Block parseBlock(ByteBuffer buffer, ProgressReporter progress) {
+        Block block = new Block(getVarLong(buffer), getVarLong(buffer));
+        int noteCount = (int) getVarLong(buffer);
+        ArrayList<Note> notes = new ArrayList<>(noteCount);
+
+        long startTick = 0;
+        for (int i = 0; i < noteCount; i++) {
+            long zigzag = getVarLong(buffer);
+            startTick += (zigzag >>> 1) ^ -(zigzag & 1);
+            long durationTicks = getVarLong(buffer);
+            int pitch = buffer.get() & 0xFF;
+            int velocity = buffer.get() & 0xFF;
+            notes.add(new Note(pitch, velocity, startTick, durationTicks));
+            if ((i & 0xFFF) == 0) {
+                progress.report(buffer.position());
+            }
+        }
+
+        block.addNotes(notes);
+        return block;
+    }
+
+    // EFFECTS: reads an unsigned LEB128 varint
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[(int) getVarLong(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,243 @@
+package persistance;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import model.TempoMap;
+import model.Timeline;
+import persistance.ProjectSnapshot.BlockSnapshot;
+import persistance.ProjectSnapshot.TrackSnapshot;
+
+/**
+ * Writes a Timeline to a file in the binary project format.
+ * <p>
+ * Layout, with integers as unsigned LEB128 varints unless stated otherwise:
+ * <pre>
+ * header:  magic "MIDA" (4 bytes), format version (2 bytes), project name, bpm (float),
+ *          tempo change count followed by the tempo changes, tick position, beat division,
+ *          beats per measure, horizontal scale (double),
+ *          available channel count followed by one byte per channel, track count
+ * tempo:   tick as a delta from the previous change's tick, bpm (float); one per change after tick 0
+ * track:   name, channel (byte), volume (byte), instrument type (byte, 0 = tonal),
+ *          instrument name, block count
+ * block:   start tick, duration ticks, note count
+ * note:    start tick as a zigzag varint delta from the previous note's start tick in the block,
+ *          duration ticks, pitch (byte), velocity (byte)
+ * </pre>
+ * Strings are a varint byte length followed by UTF-8 bytes. Tracks follow the header in order, each
+ * followed by its blocks, each followed by its packed notes. Version 1 files have no tempo changes.
+ */
+public class BinaryWriter {
+
+    static final int MAGIC = 0x4D494441; // "MIDA"
+    static final short FORMAT_VERSION = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_NOTE_BYTES = 2 * 10 + 2;
+    private static final int PROGRESS_STEP_NOTES = 4096;
+
+    private final String path;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private ProgressReporter progress;
+    private long notesWritten;
+
+    /**
+     * Constructs a writer that writes to the specified path.
+     *
+     * @param path the target file path; ".midia" is appended if missing
+     */
+    public BinaryWriter(String path) {
+        path = path.trim();
+        String extension = "." + ProjectFormat.BINARY.getExtension();
+        if (!path.endsWith(extension)) {
+            path = path.concat(extension);
+        }
+        this.path = path;
+    }
+
+    /**
+     * Opens the writer for the configured path, replacing any existing file.
+     *
+     * @throws IOException if the path is not writable
+     */
+    public void open() throws IOException {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Writes the given timeline to the file.
+     *
+     * @param timeline the timeline to serialize
+     * @throws IOException if writing fails
+     */
+    public void write(Timeline timeline) throws IOException {
+        write(ProjectSnapshot.of(timeline));
+    }
+
+    /**
+     * Writes the given snapshot to the file. Safe to call off the thread that edits the snapshot's timeline.
+     *
+     * @param snapshot the snapshot to serialize
+     * @throws IOException if writing fails
+     */
+    public void write(ProjectSnapshot snapshot) throws IOException {
+        write(snapshot, ProgressListener.NONE);
+    }
+
+    /**
+     * Writes the given snapshot to the file, reporting the notes written to the listener. Safe to call off the
+     * thread that edits the snapshot's timeline.
+     *
+     * @param snapshot the snapshot to serialize
+     * @param listener the listener to report progress to
+     * @throws IOException if writing fails
+     * @throws java.util.concurrent.CancellationException if the listener cancelled the write
+     */
+    public void write(ProjectSnapshot snapshot, ProgressListener listener) throws IOException {
+        progress = new ProgressReporter(listener, snapshot.noteCount(), PROGRESS_STEP_NOTES);
+        notesWritten = 0;
+
+        writeHeader(snapshot);
+        ensureRemaining(10);
+        putVarLong(snapshot.tracks().size());
+        for (TrackSnapshot track : snapshot.tracks()) {
+            writeMidiTrack(track);
+        }
+
+        flush();
+        progress.finish();
+    }
+
+    // EFFECTS: writes the magic, format version and the project members that precede the tracks
+    private void writeHeader(ProjectSnapshot snapshot) throws IOException {
+        ensureRemaining(6);
+        buffer.putInt(MAGIC);
+        buffer.putShort(FORMAT_VERSION);
+        putString(snapshot.projectName());
+        writeTempoMap(snapshot.tempoMap());
+        ensureRemaining(3 * 10 + 8 + 10);
+        putVarLong(snapshot.tickPosition());
+        putVarLong(snapshot.beatDivision());
+        putVarLong(snapshot.beatsPerMeasure());
+        buffer.putDouble(snapshot.horizontalScaleFactor());
+        putVarLong(snapshot.availableChannels().size());
+        for (int availableChannel : snapshot.availableChannels()) {
+            ensureRemaining(1);
+            buffer.put((byte) availableChannel);
+        }
+    }
+
+    private void writeTempoMap(TempoMap tempoMap) throws IOException {
+        List<TempoMap.Change> changes = tempoMap.getChanges();
+        ensureRemaining(4 + 10);
+        buffer.putFloat(tempoMap.getInitialBpm());
+        putVarLong(changes.size() - 1);
+
+        long previousTick = 0;
+        for (TempoMap.Change change : changes.subList(1, changes.size())) {
+            ensureRemaining(10 + 4);
+            putVarLong(change.tick() - previousTick);
+            buffer.putFloat(change.bpm());
+            previousTick = change.tick();
+        }
+    }
+
+    private void writeMidiTrack(TrackSnapshot track) throws IOException {
+        putString(track.name());
+        ensureRemaining(3);
+        buffer.put((byte) track.channel());
+        buffer.put((byte) track.volume());
+        buffer.put((byte) (track.instrument().getType().equals("tonal") ? 0 : 1));
+        putString(track.instrument().name());
+
+        ensureRemaining(10);
+        putVarLong(track.blocks().size());
+        for (BlockSnapshot block : track.blocks()) {
+            writeBlock(block);
+        }
+    }
+
+    private void writeBlock(BlockSnapshot block) throws IOException {
+        ensureRemaining(3 * 10);
+        putVarLong(block.startTick());
+        putVarLong(block.durationTicks());
+        putVarLong(block.noteCount());
+
+        long previousStartTick = 0;
+        for (int i = 0; i < block.noteCount(); i++) {
+            ensureRemaining(MAX_NOTE_BYTES);
+            long startTick = block.noteStartTicks()[i];
+            long delta = startTick - previousStartTick;
+            putVarLong((delta << 1) ^ (delta >> 63)); // zigzag, notes are not necessarily in start order
+            putVarLong(block.noteDurationTicks()[i]);
+            buffer.put(block.notePitches()[i]);
+            buffer.put(block.noteVelocities()[i]);
+            previousStartTick = startTick;
+            progress.report(++notesWritten);
+        }
+    }
+
+    // EFFECTS: writes the value as an unsigned LEB128 varint; the buffer must have 10 bytes remaining
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureRemaining(10);
+        putVarLong(bytes.length);
+
+        if (bytes.length > buffer.capacity()) {
+            flush();
+            writeFully(ByteBuffer.wrap(bytes));
+        } else {
+            ensureRemaining(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    // EFFECTS: flushes the buffer if fewer than the given number of bytes remain
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    /**
+     * Forces the written bytes to the storage device and closes the writer, so a file that is moved into place
+     * afterwards never replaces another with unwritten data.
+     *
+     * @throws IOException if forcing or closing the file fails
+     */
+    public void close() throws IOException {
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package persistance;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import model.event.Event;
+import model.event.EventSink;
+
+/**
+ * Writes the events of the EventLog to a rolling log file on a background thread.
+ * <p>
+ * Logging threads only add the event to a lock-free queue; they never wait for the file, and events are
+ * dropped and counted if the queue is full. The writer thread wakes up every {@value #FLUSH_INTERVAL_MS} ms,
+ * or as soon as {@value #BATCH_SIZE} events are waiting, formats the queued events and writes them in one
+ * batch. Once the log file would grow past {@code maxFileBytes} it is renamed to {@code midia.1.log}, older
+ * files move up by one, and only {@code maxFiles} files are kept.
+ * <p>
+ * If the log file cannot be written, the sink stops and drops every later event. The error is kept for
+ * {@link #getFailure()} rather than logged, since an event about it would only come back to this sink.
+ */
+public class EventLogFileSink implements EventSink {
+
+    public static final String ENABLED_PROPERTY = "midia.eventlog.file";
+    public static final long DEFAULT_MAX_FILE_BYTES = 4L << 20;
+    public static final int DEFAULT_MAX_FILES = 5;
+
+    static final String BASE_NAME = "midia";
+    static final String EXTENSION = ".log";
+    static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+
+    private static final int BATCH_SIZE = 256;
+    private static final int FLUSH_INTERVAL_MS = 250;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final Path directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final int queueCapacity;
+
+    private final ConcurrentLinkedQueue<Event> queue;
+    private final AtomicInteger queued;
+    private final AtomicLong dropped;
+    private final Thread writerThread;
+    private volatile boolean closed;
+    private volatile long written;
+    private volatile IOException failure;
+
+    // Only touched by the writer thread
+    private FileChannel channel;
+    private final ByteBuffer buffer;
+    private long fileBytes;
+    private long bufferedEvents;
+
+    /**
+     * Creates a sink writing to the default log directory with the default rotation limits. Call
+     * {@link #start()} to begin writing.
+     */
+    public EventLogFileSink() {
+        this(getDefaultDirectory(), DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * Creates a sink. Call {@link #start()} to begin writing.
+     *
+     * @param directory    the directory the log files are written to
+     * @param maxFileBytes the size a log file may reach before it is rotated (> 0)
+     * @param maxFiles     the number of log files kept, including the current one (> 0)
+     */
+    public EventLogFileSink(Path directory, long maxFileBytes, int maxFiles) {
+        this(directory, maxFileBytes, maxFiles, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    EventLogFileSink(Path directory, long maxFileBytes, int maxFiles, int queueCapacity) {
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.queueCapacity = queueCapacity;
+
+        queue = new ConcurrentLinkedQueue<>();
+        queued = new AtomicInteger();
+        dropped = new AtomicLong();
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        writerThread = new Thread(this::run, "event-log-writer");
+        writerThread.setDaemon(true);
+    }
+
+    /**
+     * Returns the directory log files are written to by default, inside the projects directory.
+     */
+    public static Path getDefaultDirectory() {
+        return OSPathResolver.getProjectsDirectory().resolve("logs");
+    }
+
+    /**
+     * Opens the log file, appending to it, and starts the writer thread.
+     *
+     * @throws IOException if the log directory or file cannot be created
+     */
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        openLogFile();
+        writerThread.start();
+    }
+
+    /**
+     * Queues the event for the writer thread, or drops it if the queue is full or the sink is closed.
+     */
+    @Override
+    public void accept(Event event) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(event);
+        if (queued.get() == BATCH_SIZE) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Stops accepting events, writes the queued ones and closes the log file. Waits up to a few seconds for
+     * the writer thread to finish. Remove the sink from the EventLog first; an event logged while the sink
+     * closes may be lost.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the path of the current log file.
+     */
+    public Path getLogFile() {
+        return directory.resolve(BASE_NAME + EXTENSION);
+    }
+
+    /**
+     * Returns the number of events dropped because the queue was full, the sink was closed or the log file
+     * could not be written.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the error that stopped the sink from writing the log file, or null if writing has not failed.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the number of events written to the log files.
+     */
+    public long getWrittenCount() {
+        return written;
+    }
+
+    // EFFECTS: writes queued events in batches until the sink is closed, then writes the rest and closes the file
+    private void run() {
+        try {
+            while (!closed) {
+                drain();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS));
+            }
+            drain();
+            channel.close();
+        } catch (IOException e) {
+            failure = e;
+            closed = true;
+            dropped.addAndGet(bufferedEvents + queued.getAndSet(0));
+            queue.clear();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already failing
+            }
+        }
+    }
+
+    // EFFECTS: formats every queued event into the buffer and writes it to the log file
+    private void drain() throws IOException {
+        Event event;
+        while ((event = queue.peek()) != null) {
+            append(format(event));
+            queue.poll(); // only this thread takes events, and it stays queued if appending it fails
+            queued.decrementAndGet();
+            bufferedEvents++;
+        }
+        flush();
+    }
+
+    private static byte[] format(Event event) {
+        String line = TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(event.getTimeMillis())) + " ["
+                      + event.getLevel() + "] " + event.getDescription() + System.lineSeparator();
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // EFFECTS: buffers the line, first rotating the log file if the line would take it past maxFileBytes
+    private void append(byte[] line) throws IOException {
+        if (fileBytes > 0 && fileBytes + line.length > maxFileBytes) {
+            flush();
+            rotate();
+        }
+        if (buffer.remaining() < line.length) {
+            flush();
+        }
+        if (line.length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(line));
+        } else {
+            buffer.put(line);
+        }
+        fileBytes += line.length;
+    }
+
+    // EFFECTS: writes the buffer to the log file and counts the events in it as written
+    private void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+        written += bufferedEvents;
+        bufferedEvents = 0;
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: renames midia.log to midia.1.log, moves older logs up by one, deletes the oldest beyond maxFiles
+    //          and opens a new midia.log
+    private void rotate() throws IOException {
+        channel.close();
+        Files.deleteIfExists(rotatedFile(maxFiles - 1));
+        for (int i = maxFiles - 2; i >= 1; i--) {
+            if (Files.exists(rotatedFile(i))) {
+                Files.move(rotatedFile(i), rotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 1) {
+            Files.move(getLogFile(), rotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(getLogFile());
+        }
+        openLogFile();
+    }
+
+    private Path rotatedFile(int index) {
+        return directory.resolve(BASE_NAME + "." + index + EXTENSION);
+    }
+
+    private void openLogFile() throws IOException {
+        channel = FileChannel.open(getLogFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+    }
+}
@@ -1,23 +1,28 @@
 package persistance;
 
 import java.beans.PropertyChangeSupport;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.stream.Stream;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.json.JSONException;
+import org.json.JSONTokener;
 
 import model.Block;
 import model.MidiTrack;
 import model.Note;
 import model.Player;
+import model.TempoMap;
 import model.Timeline;
 import model.TimelinePlayer;
 import model.instrument.Instrument;
@@ -26,9 +31,24 @@ import model.instrument.PercussiveInstrument;
 
 /**
  * Reads a Timeline from JSON data stored in a file.
+ * <p>
+ * The file is pulled token by token and tracks, blocks and notes are built as their values arrive, so neither
+ * the file contents nor a JSON tree of the project are held in memory. Members may appear in any order; the
+ * few scalar members an object needs before it can be built are buffered until the object ends.
  */
 public record JsonReader(String sourcePath) {
 
+    private static final String[] NOTE_MEMBERS = { "pitch", "velocity", "startTick", "durationTicks" };
+    private static final long PROGRESS_STEP_BYTES = 1 << 16;
+
+    /**
+     * Receives the value of one member of a JSON object, which it must consume from the tokener.
+     */
+    @FunctionalInterface
+    private interface MemberReader {
+        void read(String key);
+    }
+
     /**
      * Reads a timeline from the JSON file.
      *
@@ -39,159 +59,480 @@ public record JsonReader(String sourcePath) {
      * @throws InvalidMidiDataException   if invalid MIDI data is encountered
      */
     public Timeline read(PropertyChangeSupport pcs) throws IOException, MidiUnavailableException, InvalidMidiDataException {
-        String jsonData = readFile(sourcePath);
-        JSONObject jsonObject = new JSONObject(jsonData);
-        return parseTimeline(jsonObject, pcs);
+        return read(pcs, ProgressListener.NONE);
     }
 
     /**
-     * Reads the given file path into a string.
+     * Reads a timeline from the JSON file, reporting the bytes read to the listener.
      *
-     * @param source the file path
-     * @return the file contents as a string
-     * @throws IOException if reading fails
+     * @param pcs      the PropertyChangeSupport to use for the timeline
+     * @param listener the listener to report progress to
+     * @return the parsed Timeline
+     * @throws IOException                if an error occurs reading data from the file
+     * @throws MidiUnavailableException   if MIDI resources are unavailable
+     * @throws InvalidMidiDataException   if invalid MIDI data is encountered
+     * @throws java.util.concurrent.CancellationException if the listener cancelled the read
      */
-    private String readFile(String source) throws IOException {
-        StringBuilder contentBuilder = new StringBuilder();
+    public Timeline read(PropertyChangeSupport pcs, ProgressListener listener)
+            throws IOException, MidiUnavailableException, InvalidMidiDataException {
+        Path path = Paths.get(sourcePath);
+        ProgressReporter progress = new ProgressReporter(listener, Files.size(path), PROGRESS_STEP_BYTES);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new CountingInputStream(Files.newInputStream(path), progress), StandardCharsets.UTF_8))) {
+            Timeline timeline = parseTimeline(new JSONTokener(reader), pcs);
+            progress.finish();
+            return timeline;
+        } catch (JSONException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw e;
+        }
+    }
 
-        try (Stream<String> stream = Files.lines(Paths.get(source), StandardCharsets.UTF_8)) {
-            stream.forEach(contentBuilder::append);
+    /**
+     * Reports the number of bytes read through it.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final ProgressReporter progress;
+        private long count;
+
+        private CountingInputStream(InputStream in, ProgressReporter progress) {
+            super(in);
+            this.progress = progress;
         }
 
-        return contentBuilder.toString();
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                progress.report(++count);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+                progress.report(count);
+            }
+            return n;
+        }
     }
 
     /**
-     * Parses a Timeline from a JSON object.
+     * Parses a Timeline from the tokener.
      *
-     * @param jsonObject the JSON object representing the timeline
-     * @param pcs        the PropertyChangeSupport to use for the timeline
+     * @param tokener the tokener positioned before the timeline object
+     * @param pcs     the PropertyChangeSupport to use for the timeline
      * @return the parsed Timeline
      */
-    private Timeline parseTimeline(JSONObject jsonObject, PropertyChangeSupport pcs) {
-        String projectName = jsonObject.getString("projectName");
-        Timeline timeline = new Timeline(projectName, pcs);
-
-        int beatDivision = jsonObject.getInt("beatDivision");
-        int beatsPerMeasure = jsonObject.getInt("beatsPerMeasure");
-        double horizontalScale = jsonObject.getDouble("horizontalScaleFactor");
-
-        Player player = parsePlayer(jsonObject.getJSONObject("player"), timeline);
+    private Timeline parseTimeline(JSONTokener tokener, PropertyChangeSupport pcs) {
+        TimelineData data = new TimelineData();
+        readObject(tokener, key -> readTimelineMember(tokener, key, data));
+        return data.toTimeline(pcs);
+    }
 
-        JSONArray midiTracksJsonArray = jsonObject.getJSONArray("midiTracks");
+    /**
+     * The timeline members, kept until the whole timeline object has been read.
+     */
+    private static final class TimelineData {
+        private String projectName;
+        private long beatDivision = -1;
+        private long beatsPerMeasure = -1;
+        private double horizontalScale = Double.NaN;
+        private PlayerData playerData;
+        private final ArrayList<MidiTrack> midiTracks = new ArrayList<>();
+
+        private Timeline toTimeline(PropertyChangeSupport pcs) {
+            require(projectName != null, "projectName");
+            require(beatDivision != -1, "beatDivision");
+            require(beatsPerMeasure != -1, "beatsPerMeasure");
+            require(!Double.isNaN(horizontalScale), "horizontalScaleFactor");
+            require(playerData != null, "player");
+
+            Timeline timeline = new Timeline(projectName, pcs);
+            timeline.setPlayer(playerData.toPlayer(timeline));
+            timeline.getPlayer().setBeatDivision((int) beatDivision);
+            timeline.getPlayer().setBeatsPerMeasure((int) beatsPerMeasure);
+            timeline.setHorizontalScaleFactor(horizontalScale);
+            for (MidiTrack midiTrack : midiTracks) {
+                timeline.addMidiTrack(midiTrack);
+            }
+
+            return timeline;
+        }
+    }
 
-        timeline.setPlayer(player);
-        timeline.getPlayer().setBeatDivision(beatDivision);
-        timeline.getPlayer().setBeatsPerMeasure(beatsPerMeasure);
-        timeline.setHorizontalScaleFactor(horizontalScale);
-        addMidiTracks(timeline, midiTracksJsonArray);
+    // MODIFIES: data
+    // EFFECTS: reads the value of the timeline member with the given key into data
+    private void readTimelineMember(JSONTokener tokener, String key, TimelineData data) {
+        switch (key) {
+            case "projectName":
+                data.projectName = readString(tokener);
+                break;
+            case "beatDivision":
+                data.beatDivision = readLong(tokener);
+                break;
+            case "beatsPerMeasure":
+                data.beatsPerMeasure = readLong(tokener);
+                break;
+            case "horizontalScaleFactor":
+                data.horizontalScale = readDouble(tokener);
+                break;
+            case "player":
+                data.playerData = parsePlayer(tokener);
+                break;
+            case "midiTracks":
+                readArray(tokener, () -> data.midiTracks.add(parseMidiTrack(tokener)));
+                break;
+            default:
+                tokener.nextValue();
+                break;
+        }
+    }
 
-        return timeline;
+    /**
+     * The player members, kept until the timeline they belong to exists.
+     */
+    private static final class PlayerData {
+        private float beatsPerMinute = Float.NaN;
+        private final ArrayList<TempoMap.Change> tempoChanges = new ArrayList<>();
+        private TempoMap tempoMap;
+        private long tickPosition = -1;
+        private ArrayList<Integer> availableChannels;
+
+        private Player toPlayer(Timeline tl) {
+            Player p = new TimelinePlayer(tl);
+            p.setTempoMap(tempoMap);
+            p.setTickPosition(tickPosition);
+            p.setAvailableChannels(availableChannels);
+            return p;
+        }
     }
 
-    private Player parsePlayer(JSONObject playerJson, Timeline tl) {
-        Player p = new TimelinePlayer(tl);
-        float beatsPerMinute = playerJson.getFloat("beatsPerMinute");
-        int tickPosition = playerJson.getInt("tickPosition");
+    private PlayerData parsePlayer(JSONTokener tokener) {
+        PlayerData data = new PlayerData();
+        readObject(tokener, key -> readPlayerMember(tokener, key, data));
 
-        JSONArray availableChannels = playerJson.getJSONArray("availableChannels");
-        ArrayList<Integer> availableChannelsList = parseIntegerArrayList(availableChannels);
+        require(!Float.isNaN(data.beatsPerMinute), "beatsPerMinute");
+        require(data.tickPosition != -1, "tickPosition");
+        require(data.availableChannels != null, "availableChannels");
 
-        p.setBPM(beatsPerMinute);
-        p.setTickPosition(tickPosition);
-        p.setAvailableChannels(availableChannelsList);
+        data.tempoChanges.add(0, new TempoMap.Change(0, data.beatsPerMinute));
+        try {
+            data.tempoMap = new TempoMap(data.tempoChanges);
+        } catch (IllegalArgumentException e) {
+            throw new JSONException("Invalid tempo map: " + e.getMessage(), e);
+        }
 
-        return p;
+        return data;
     }
 
-    /**
-     * Converts a JSONArray of integers into an ArrayList.
-     *
-     * @param jsonArray the JSON array
-     * @return a list of integers
-     */
-    private ArrayList<Integer> parseIntegerArrayList(JSONArray jsonArray) {
-        ArrayList<Integer> list = new ArrayList<>();
-
-        for (int i = 0; i < jsonArray.length(); i++) {
-            list.add(jsonArray.getInt(i));
+    // MODIFIES: data
+    // EFFECTS: reads the value of the player member with the given key into data
+    private void readPlayerMember(JSONTokener tokener, String key, PlayerData data) {
+        switch (key) {
+            case "beatsPerMinute":
+                data.beatsPerMinute = (float) readDouble(tokener);
+                break;
+            case "tempoChanges":
+                readArray(tokener, () -> data.tempoChanges.add(parseTempoChange(tokener)));
+                break;
+            case "tickPosition":
+                data.tickPosition = readLong(tokener);
+                break;
+            case "availableChannels":
+                data.availableChannels = new ArrayList<>();
+                readArray(tokener, () -> data.availableChannels.add((int) readLong(tokener)));
+                break;
+            default:
+                tokener.nextValue();
+                break;
         }
+    }
 
-        return list;
+    private TempoMap.Change parseTempoChange(JSONTokener tokener) {
+        long[] tick = { -1 };
+        float[] beatsPerMinute = { Float.NaN };
+
+        readObject(tokener, key -> {
+            switch (key) {
+                case "tick":
+                    tick[0] = readLong(tokener);
+                    break;
+                case "beatsPerMinute":
+                    beatsPerMinute[0] = (float) readDouble(tokener);
+                    break;
+                default:
+                    tokener.nextValue();
+                    break;
+            }
+        });
+
+        require(tick[0] != -1, "tick");
+        require(!Float.isNaN(beatsPerMinute[0]), "beatsPerMinute");
+        return new TempoMap.Change(tick[0], beatsPerMinute[0]);
     }
 
     /**
-     * Parses MidiTracks from JSON and adds them to the timeline.
+     * Parses a MidiTrack and its blocks from the tokener.
      *
-     * @param timeline       the timeline to receive the tracks
-     * @param midiTracksJson the JSON array of tracks
+     * @param tokener the tokener positioned before the track object
+     * @return the parsed track
      */
-    private void addMidiTracks(Timeline timeline, JSONArray midiTracksJson) {
-        for (Object midiTrackJson : midiTracksJson) {
-            JSONObject midiTrackData = (JSONObject) midiTrackJson;
-            String name = midiTrackData.getString("name");
-            int channel = midiTrackData.getInt("channel");
-            Instrument instrument = parseInstrument(midiTrackData.getJSONObject("instrument"));
-            int volume = midiTrackData.getInt("volume");
-
-            MidiTrack currentMidiTrack = new MidiTrack(name, instrument, channel);
-            currentMidiTrack.setVolume(volume);
-
-            JSONArray blocksJsonArray = midiTrackData.getJSONArray("blocks");
-            addBlocks(currentMidiTrack, blocksJsonArray);
+    private MidiTrack parseMidiTrack(JSONTokener tokener) {
+        MidiTrackData data = new MidiTrackData();
+        readObject(tokener, key -> readMidiTrackMember(tokener, key, data));
+        return data.toMidiTrack();
+    }
 
-            timeline.addMidiTrack(currentMidiTrack);
+    /**
+     * The track members, kept until the whole track object has been read.
+     */
+    private static final class MidiTrackData {
+        private String name;
+        private long channel = -1;
+        private long volume = -1;
+        private Instrument instrument;
+        private final ArrayList<Block> blocks = new ArrayList<>();
+
+        private MidiTrack toMidiTrack() {
+            require(name != null, "name");
+            require(channel != -1, "channel");
+            require(volume != -1, "volume");
+            require(instrument != null, "instrument");
+
+            MidiTrack midiTrack = new MidiTrack(name, instrument, (int) channel);
+            midiTrack.setVolume((int) volume);
+            for (Block block : blocks) {
+                midiTrack.addBlock(block);
+            }
+
+            return midiTrack;
         }
     }
 
-    private Instrument parseInstrument(JSONObject instrumentJsonObject) {
-        String className = instrumentJsonObject.getString("type");
-        String name = instrumentJsonObject.getString("name");
+    // MODIFIES: data
+    // EFFECTS: reads the value of the track member with the given key into data
+    private void readMidiTrackMember(JSONTokener tokener, String key, MidiTrackData data) {
+        switch (key) {
+            case "name":
+                data.name = readString(tokener);
+                break;
+            case "channel":
+                data.channel = readLong(tokener);
+                break;
+            case "volume":
+                data.volume = readLong(tokener);
+                break;
+            case "instrument":
+                data.instrument = parseInstrument(tokener);
+                break;
+            case "blocks":
+                readArray(tokener, () -> data.blocks.add(parseBlock(tokener)));
+                break;
+            default:
+                tokener.nextValue();
+                break;
+        }
+    }
 
-        if (className.equals("tonal")) {
-            return TonalInstrument.valueOf(name);
+    private Instrument parseInstrument(JSONTokener tokener) {
+        String[] className = new String[1];
+        String[] name = new String[1];
+
+        readObject(tokener, key -> {
+            switch (key) {
+                case "type":
+                    className[0] = readString(tokener);
+                    break;
+                case "name":
+                    name[0] = readString(tokener);
+                    break;
+                default:
+                    tokener.nextValue();
+                    break;
+            }
+        });
+
+        require(className[0] != null, "type");
+        require(name[0] != null, "name");
+
+        if (className[0].equals("tonal")) {
+            return TonalInstrument.valueOf(name[0]);
         } else {
-            return PercussiveInstrument.valueOf(name);
+            return PercussiveInstrument.valueOf(name[0]);
         }
     }
 
     /**
-     * Parses blocks from JSON and adds them to the given MidiTrack.
+     * Parses a block and its notes from the tokener. The notes are added in bulk once the block is complete.
      *
-     * @param midiTrack       the track to receive parsed blocks
-     * @param blocksJsonArray the JSON array of blocks
+     * @param tokener the tokener positioned before the block object
+     * @return the parsed block
      */
-    private void addBlocks(MidiTrack midiTrack, JSONArray blocksJsonArray) {
-        for (Object blockJson : blocksJsonArray) {
-            JSONObject blockData = (JSONObject) blockJson;
+    private Block parseBlock(JSONTokener tokener) {
+        long[] startTick = { -1 };
+        long[] durationTicks = { -1 };
+        ArrayList<Note> notes = new ArrayList<>();
+
+        readObject(tokener, key -> {
+            switch (key) {
+                case "startTick":
+                    startTick[0] = readLong(tokener);
+                    break;
+                case "durationTicks":
+                    durationTicks[0] = readLong(tokener);
+                    break;
+                case "notes":
+                    readNotes(tokener, notes);
+                    break;
+                default:
+                    tokener.nextValue();
+                    break;
+            }
+        });
+
+        require(startTick[0] != -1, "startTick");
+        require(durationTicks[0] != -1, "durationTicks");
+        return newBlock(startTick[0], durationTicks[0], notes);
+    }
 
-            long startTick = blockData.getLong("startTick");
-            long durationTicks = blockData.getLong("durationTicks");
-            Block currentBlock = new Block(startTick, durationTicks);
+    // EFFECTS: returns a block spanning the given ticks, with the notes added in bulk
+    private static Block newBlock(long startTick, long durationTicks, ArrayList<Note> notes) {
+        Block block = new Block(startTick, durationTicks);
+        block.addNotes(notes);
+        return block;
+    }
 
-            JSONArray notesJsonArray = blockData.getJSONArray("notes");
-            addNotes(currentBlock, notesJsonArray);
-            midiTrack.addBlock(currentBlock);
-        }
+    // MODIFIES: notes
+    // EFFECTS: reads a JSON array of notes into notes, reusing one scratch array for their members
+    private void readNotes(JSONTokener tokener, ArrayList<Note> notes) {
+        long[] noteValues = new long[NOTE_MEMBERS.length];
+        readArray(tokener, () -> notes.add(parseNote(tokener, noteValues)));
     }
 
     /**
-     * Parses notes from JSON and adds them to the given block.
+     * Parses a note from the tokener.
      *
-     * @param block          the block to receive parsed notes
-     * @param notesJsonArray the JSON array of notes
+     * @param tokener the tokener positioned before the note object
+     * @param values  scratch space for the note members, reused across notes
+     * @return the parsed note
      */
-    private void addNotes(Block block, JSONArray notesJsonArray) {
-        for (Object noteJson : notesJsonArray) {
-            JSONObject noteData = (JSONObject) noteJson;
+    private Note parseNote(JSONTokener tokener, long[] values) {
+        int[] seen = new int[1];
+
+        readObject(tokener, key -> {
+            for (int i = 0; i < NOTE_MEMBERS.length; i++) {
+                if (NOTE_MEMBERS[i].equals(key)) {
+                    values[i] = readLong(tokener);
+                    seen[0] |= 1 << i;
+                    return;
+                }
+            }
+            tokener.nextValue();
+        });
+
+        for (int i = 0; i < NOTE_MEMBERS.length; i++) {
+            require((seen[0] & 1 << i) != 0, NOTE_MEMBERS[i]);
+        }
 
-            int pitch = noteData.getInt("pitch");
-            int velocity = noteData.getInt("velocity");
-            long startTick = noteData.getLong("startTick");
-            long durationTicks = noteData.getLong("durationTicks");
+        return new Note((int) values[0], (int) values[1], values[2], values[3]);
+    }
+
+    // EFFECTS: reads a JSON object, passing each member key to the member reader to consume its value
+    private static void readObject(JSONTokener tokener, MemberReader memberReader) {
+        if (tokener.nextClean() != '{') {
+            throw tokener.syntaxError("A JSON object must begin with '{'");
+        }
+        if (tokener.nextClean() == '}') {
+            return;
+        }
+        tokener.back();
+
+        do {
+            String key = readString(tokener);
+            if (tokener.nextClean() != ':') {
+                throw tokener.syntaxError("Expected a ':' after a key");
+            }
+            memberReader.read(key);
+        } while (nextMember(tokener, '}'));
+    }
+
+    // EFFECTS: reads a JSON array, running the element reader once for each element to consume it
+    private static void readArray(JSONTokener tokener, Runnable elementReader) {
+        if (tokener.nextClean() != '[') {
+            throw tokener.syntaxError("A JSON array must begin with '['");
+        }
+        if (tokener.nextClean() == ']') {
+            return;
+        }
+        tokener.back();
+
+        do {
+            elementReader.run();
+        } while (nextMember(tokener, ']'));
+    }
+
+    // EFFECTS: returns true if another member follows, false if the closing bracket was reached
+    private static boolean nextMember(JSONTokener tokener, char closingBracket) {
+        char c = tokener.nextClean();
+        if (c == ',') {
+            return true;
+        }
+        if (c == closingBracket) {
+            return false;
+        }
+        throw tokener.syntaxError(String.format("Expected a ',' or '%c'", closingBracket));
+    }
+
+    private static String readString(JSONTokener tokener) {
+        char quote = tokener.nextClean();
+        if (quote != '"' && quote != '\'') {
+            throw tokener.syntaxError("Expected a string");
+        }
+        return tokener.nextString(quote);
+    }
+
+    // EFFECTS: reads an integer without allocating, failing on fractions and exponents
+    private static long readLong(JSONTokener tokener) {
+        char c = tokener.nextClean();
+        boolean negative = c == '-';
+        if (negative) {
+            c = tokener.next();
+        }
+        if (c < '0' || c > '9') {
+            throw tokener.syntaxError("Expected an integer");
+        }
+
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            c = tokener.next();
+        }
+        if (c == '.' || c == 'e' || c == 'E') {
+            throw tokener.syntaxError("Expected an integer");
+        }
+        tokener.back();
+
+        return negative ? -value : value;
+    }
+
+    private static double readDouble(JSONTokener tokener) {
+        Object value = tokener.nextValue();
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        throw tokener.syntaxError("Expected a number");
+    }
 
-            Note currentNote = new Note(pitch, velocity, startTick, durationTicks);
-            block.addNote(currentNote);
+    private static void require(boolean present, String key) {
+        if (!present) {
+            throw new JSONException(String.format("JSONObject[\"%s\"] not found.", key));
         }
     }
 }
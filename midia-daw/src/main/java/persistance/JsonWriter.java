@@ -1,32 +1,60 @@
 package persistance;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.List;
 
 import org.json.JSONObject;
 
+import model.TempoMap;
 import model.Timeline;
+import model.instrument.Instrument;
+import persistance.ProjectSnapshot.BlockSnapshot;
+import persistance.ProjectSnapshot.TrackSnapshot;
 
 /**
  * Writes a JSON representation of a Timeline to a file.
+ * <p>
+ * The timeline is streamed token by token while walking the tracks, blocks and notes of a
+ * {@link ProjectSnapshot} of it, so no JSON tree of the project is built in memory. The output has the same
+ * structure as {@link Timeline#toJson()}, either indented or compact.
  */
 public class JsonWriter {
 
     private static final int TAB_SPACING = 4;
+    private static final int PROGRESS_STEP_NOTES = 4096;
     private final String path;
+    private final boolean compact;
     private PrintWriter writer;
 
+    private int depth;
+    private boolean firstInScope;
+    private ProgressReporter progress;
+    private long notesWritten;
+
     /**
-     * Constructs a writer that writes to the specified path.
+     * Constructs a writer that writes indented JSON to the specified path.
      *
      * @param path the target file path; ".json" is appended if missing
      */
     public JsonWriter(String path) {
+        this(path, false);
+    }
+
+    /**
+     * Constructs a writer that writes to the specified path.
+     *
+     * @param path    the target file path; ".json" is appended if missing
+     * @param compact true to write without indentation or line breaks
+     */
+    public JsonWriter(String path, boolean compact) {
         path = path.trim();
         if (!path.endsWith(".json")) {
             path = path.concat(".json");
         }
         this.path = path;
+        this.compact = compact;
     }
 
     /**
@@ -39,20 +67,220 @@ public class JsonWriter {
     }
 
     /**
-     * Writes the JSON representation of the given timeline to the file.
+     * Streams the JSON representation of the given timeline to the file.
      *
      * @param timeline the timeline to serialize
      */
     public void write(Timeline timeline) {
-        JSONObject timelineJson = timeline.toJson();
-        saveToFile(timelineJson.toString(TAB_SPACING));
+        write(ProjectSnapshot.of(timeline), ProgressListener.NONE);
+    }
+
+    /**
+     * Streams the JSON representation of the given snapshot to the file, reporting the notes written to the
+     * listener. Safe to call off the thread that edits the snapshot's timeline.
+     *
+     * @param snapshot the snapshot to serialize
+     * @param listener the listener to report progress to
+     * @throws java.util.concurrent.CancellationException if the listener cancelled the write
+     */
+    public void write(ProjectSnapshot snapshot, ProgressListener listener) {
+        depth = 0;
+        firstInScope = true;
+        progress = new ProgressReporter(listener, snapshot.noteCount(), PROGRESS_STEP_NOTES);
+        notesWritten = 0;
+
+        beginObject();
+        key("projectName");
+        writeString(snapshot.projectName());
+        key("player");
+        writePlayer(snapshot);
+        key("beatDivision");
+        writer.print(snapshot.beatDivision());
+        key("beatsPerMeasure");
+        writer.print(snapshot.beatsPerMeasure());
+        key("horizontalScaleFactor");
+        writer.print(JSONObject.numberToString(snapshot.horizontalScaleFactor()));
+        key("midiTracks");
+        writeMidiTracks(snapshot.tracks());
+        endObject();
+
+        writer.flush();
+        progress.finish();
+    }
+
+    private void writeMidiTracks(List<TrackSnapshot> tracks) {
+        beginArray();
+        for (TrackSnapshot track : tracks) {
+            element();
+            writeMidiTrack(track);
+        }
+        endArray();
+    }
+
+    private void writePlayer(ProjectSnapshot snapshot) {
+        beginObject();
+        key("beatsPerMinute");
+        writer.print(JSONObject.numberToString(snapshot.tempoMap().getInitialBpm()));
+        key("tempoChanges");
+        writeTempoChanges(snapshot.tempoMap());
+        key("tickPosition");
+        writer.print(snapshot.tickPosition());
+        key("availableChannels");
+        beginArray();
+        for (int channel : snapshot.availableChannels()) {
+            element();
+            writer.print(channel);
+        }
+        endArray();
+        endObject();
+    }
+
+    // EFFECTS: writes the tempo changes after the one at tick 0, which is written as the player's beatsPerMinute
+    private void writeTempoChanges(TempoMap tempoMap) {
+        beginArray();
+        List<TempoMap.Change> changes = tempoMap.getChanges();
+        for (TempoMap.Change change : changes.subList(1, changes.size())) {
+            element();
+            beginObject();
+            key("tick");
+            writer.print(change.tick());
+            key("beatsPerMinute");
+            writer.print(JSONObject.numberToString(change.bpm()));
+            endObject();
+        }
+        endArray();
+    }
+
+    private void writeMidiTrack(TrackSnapshot track) {
+        beginObject();
+        key("channel");
+        writer.print(track.channel());
+        key("instrument");
+        writeInstrument(track.instrument());
+        key("volume");
+        writer.print(track.volume());
+        key("name");
+        writeString(track.name());
+        key("blocks");
+        beginArray();
+        for (BlockSnapshot block : track.blocks()) {
+            element();
+            writeBlock(block);
+        }
+        endArray();
+        endObject();
+    }
+
+    private void writeInstrument(Instrument instrument) {
+        beginObject();
+        key("name");
+        writeString(instrument.name());
+        key("type");
+        writeString(instrument.getType());
+        endObject();
+    }
+
+    private void writeBlock(BlockSnapshot block) {
+        beginObject();
+        key("durationTicks");
+        writer.print(block.durationTicks());
+        key("startTick");
+        writer.print(block.startTick());
+        key("notes");
+        beginArray();
+        for (int i = 0; i < block.noteCount(); i++) {
+            element();
+            writeNote(block, i);
+            progress.report(++notesWritten);
+        }
+        endArray();
+        endObject();
+    }
+
+    private void writeNote(BlockSnapshot block, int index) {
+        beginObject();
+        key("pitch");
+        writer.print(block.notePitches()[index] & 0xFF);
+        key("velocity");
+        writer.print(block.noteVelocities()[index] & 0xFF);
+        key("startTick");
+        writer.print(block.noteStartTicks()[index]);
+        key("durationTicks");
+        writer.print(block.noteDurationTicks()[index]);
+        endObject();
+    }
+
+    private void beginObject() {
+        writer.print('{');
+        depth++;
+        firstInScope = true;
+    }
+
+    private void endObject() {
+        end('}');
+    }
+
+    private void beginArray() {
+        writer.print('[');
+        depth++;
+        firstInScope = true;
+    }
+
+    private void endArray() {
+        end(']');
+    }
+
+    // EFFECTS: closes the current object or array, putting the bracket on its own line if it has members
+    private void end(char bracket) {
+        depth--;
+        if (!firstInScope) {
+            newLine();
+        }
+        writer.print(bracket);
+        // The enclosing scope has at least this member now
+        firstInScope = false;
+    }
+
+    // EFFECTS: separates the next member of the current object or array from the previous one
+    private void element() {
+        if (!firstInScope) {
+            writer.print(',');
+        }
+        newLine();
+        firstInScope = false;
+    }
+
+    private void key(String name) {
+        element();
+        writeString(name);
+        writer.print(compact ? ":" : ": ");
+    }
+
+    private void writeString(String value) {
+        writer.print(JSONObject.quote(value));
+    }
+
+    private void newLine() {
+        if (compact) {
+            return;
+        }
+        writer.print('\n');
+        for (int i = 0; i < depth * TAB_SPACING; i++) {
+            writer.print(' ');
+        }
     }
 
     /**
-     * Closes the writer.
+     * Closes the writer. The PrintWriter the JSON is written through swallows I/O errors, so they are reported
+     * here.
+     *
+     * @throws IOException if writing or closing the file failed, e.g. because the disk is full
      */
-    public void close() {
+    public void close() throws IOException {
         writer.close();
+        if (writer.checkError()) {
+            throw new IOException(String.format("Unable to write %s", path));
+        }
     }
 
     /**
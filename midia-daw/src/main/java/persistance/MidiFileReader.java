@@ -0,0 +1,512 @@
+package persistance;
+
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+import javax.sound.midi.ShortMessage;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.Player;
+import model.TempoMap;
+import model.Timeline;
+import model.event.Event;
+import model.event.EventLog;
+import model.event.LogLevel;
+import model.instrument.Instrument;
+import model.instrument.PercussiveInstrument;
+import model.instrument.TonalInstrument;
+
+/**
+ * Reads a Timeline from a Standard MIDI File of type 0 or 1.
+ * <p>
+ * The file is memory-mapped and its track chunks are decoded event by event; no {@code Sequence} is built.
+ * NOTE_ON/NOTE_OFF pairs become Notes, matched first in first out per channel and key. Each source track
+ * yields one MidiTrack per channel and program its notes were played with, or per key on the percussion
+ * channel, where keys without a {@link PercussiveInstrument} are dropped. The notes of each MidiTrack are
+ * split into Blocks every {@code barsPerBlock} bars; a block is extended past its bars when a note needs it.
+ * <p>
+ * Tempo events of every track become the tempo map, the first time signature event sets the beats per measure,
+ * and ticks are rescaled to {@link Player#PULSES_PER_QUARTER_NOTE}. Before the first tempo event the tempo is
+ * 120 BPM, as the standard specifies.
+ */
+public record MidiFileReader(String sourcePath, int barsPerBlock) {
+
+    public static final int DEFAULT_BARS_PER_BLOCK = 4;
+
+    private static final int PERCUSSION_CHANNEL = 9;
+    private static final int CHANNELS = 16;
+    private static final int KEYS = 128;
+    private static final int PROGRESS_STEP_BYTES = 1 << 16;
+
+    private static final int META = 0xFF;
+    private static final int SYSEX = 0xF0;
+    private static final int SYSEX_ESCAPE = 0xF7;
+    private static final int META_TRACK_NAME = 0x03;
+    private static final float MIDI_DEFAULT_BPM = 120;
+    private static final int META_END_OF_TRACK = 0x2F;
+    private static final int META_TEMPO = 0x51;
+    private static final int META_TIME_SIGNATURE = 0x58;
+
+    private static final TonalInstrument[] TONAL_BY_PROGRAM = new TonalInstrument[KEYS];
+    private static final PercussiveInstrument[] PERCUSSIVE_BY_KEY = new PercussiveInstrument[KEYS];
+
+    static {
+        for (TonalInstrument instrument : TonalInstrument.values()) {
+            TONAL_BY_PROGRAM[instrument.getProgramNumber()] = instrument;
+        }
+        for (PercussiveInstrument instrument : PercussiveInstrument.values()) {
+            PERCUSSIVE_BY_KEY[instrument.getProgramNumber()] = instrument;
+        }
+    }
+
+    /**
+     * Constructs a reader that splits tracks into blocks of {@link #DEFAULT_BARS_PER_BLOCK} bars.
+     *
+     * @param sourcePath the path of the MIDI file
+     */
+    public MidiFileReader(String sourcePath) {
+        this(sourcePath, DEFAULT_BARS_PER_BLOCK);
+    }
+
+    /**
+     * Reads a timeline from the MIDI file. The project is named after the file.
+     *
+     * @param pcs the PropertyChangeSupport to use for the timeline
+     * @return the imported Timeline
+     * @throws IOException if the file cannot be read, is not a type 0 or 1 MIDI file with metrical timing,
+     *                     or is truncated
+     */
+    public Timeline read(PropertyChangeSupport pcs) throws IOException {
+        return read(pcs, ProgressListener.NONE);
+    }
+
+    /**
+     * Reads a timeline from the MIDI file, reporting the bytes decoded to the listener. The project is named
+     * after the file.
+     *
+     * @param pcs      the PropertyChangeSupport to use for the timeline
+     * @param listener the listener to report progress to
+     * @return the imported Timeline
+     * @throws IOException if the file cannot be read, is not a type 0 or 1 MIDI file with metrical timing,
+     *                     or is truncated
+     * @throws java.util.concurrent.CancellationException if the listener cancelled the read
+     */
+    public Timeline read(PropertyChangeSupport pcs, ProgressListener listener) throws IOException {
+        if (barsPerBlock <= 0) {
+            throw new IllegalArgumentException("barsPerBlock must be positive, was " + barsPerBlock);
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(sourcePath), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ProgressReporter progress = new ProgressReporter(listener, buffer.limit(), PROGRESS_STEP_BYTES);
+            Timeline timeline = parseFile(buffer, pcs, progress);
+            progress.finish();
+            return timeline;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException(String.format("MIDI file %s is truncated", sourcePath), e);
+        }
+    }
+
+    /**
+     * The notes of one MidiTrack being imported, with absolute start ticks until they are split into blocks.
+     */
+    private static final class NoteGroup {
+        private final int channel;
+        private final Instrument instrument;
+        private final ArrayList<Note> notes = new ArrayList<>();
+        private String name;
+        private int volume = -1;
+
+        private NoteGroup(int channel, Instrument instrument) {
+            this.channel = channel;
+            this.instrument = instrument;
+        }
+    }
+
+    /**
+     * A NOTE_ON that has not been matched to a NOTE_OFF yet.
+     */
+    private record OpenNote(long startTick, int velocity, NoteGroup group) {}
+
+    /**
+     * The header values and file-wide settings found while reading the tracks.
+     */
+    private static final class FileState {
+        private int division;
+        private final List<TempoMap.Change> tempoChanges = new ArrayList<>();
+        private int beatsPerMeasure = -1;
+        private int droppedNotes;
+    }
+
+    private Timeline parseFile(ByteBuffer buffer, PropertyChangeSupport pcs, ProgressReporter progress)
+            throws IOException {
+        FileState state = new FileState();
+        int trackCount = parseHeader(buffer, state);
+        Map<Long, NoteGroup> groups = new LinkedHashMap<>();
+
+        int track = 0;
+        while (track < trackCount && buffer.remaining() >= 8) {
+            int type = buffer.getInt();
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IOException(String.format("MIDI file %s is truncated", sourcePath));
+            }
+
+            int offset = buffer.position();
+            ByteBuffer chunk = buffer.slice(offset, length);
+            buffer.position(offset + length);
+            if (type == chunkType("MTrk")) {
+                parseTrack(chunk, track++, state, groups, chunkPosition -> progress.report(offset + chunkPosition));
+            }
+        }
+
+        return buildTimeline(state, groups.values(), pcs);
+    }
+
+    // MODIFIES: state
+    // EFFECTS: reads the header chunk into state and returns the number of track chunks; throws IOException if
+    //          the file is not a Standard MIDI File of a supported type and timing
+    private int parseHeader(ByteBuffer buffer, FileState state) throws IOException {
+        if (buffer.remaining() < 14 || buffer.getInt() != chunkType("MThd")) {
+            throw new IOException(String.format("%s is not a MIDI file", sourcePath));
+        }
+        int headerLength = buffer.getInt();
+        int format = buffer.getShort();
+        int trackCount = buffer.getShort() & 0xFFFF;
+        state.division = buffer.getShort();
+        if (headerLength < 6 || headerLength > buffer.limit() - 8) {
+            throw new IOException(String.format("MIDI file %s has an invalid header", sourcePath));
+        }
+        buffer.position(8 + headerLength);
+
+        if (format != 0 && format != 1) {
+            throw new IOException(String.format("Unsupported MIDI file type %d", format));
+        }
+        if (state.division <= 0) {
+            throw new IOException("SMPTE timed MIDI files are not supported");
+        }
+        return trackCount;
+    }
+
+    /**
+     * Parses the events of one track chunk into note groups.
+     *
+     * @param chunk    the track data, without the chunk header
+     * @param track    the index of the track among the track chunks
+     * @param state    the file-wide state
+     * @param groups   the note groups by key, to which this track's groups are added
+     * @param progress receives the position in the chunk every few thousand events
+     * @throws IOException if the track has a malformed event
+     */
+    @SuppressWarnings("methodlength")
+    private void parseTrack(ByteBuffer chunk, int track, FileState state, Map<Long, NoteGroup> groups,
+                            LongConsumer progress) throws IOException {
+        List<ArrayDeque<OpenNote>> openNotes = new ArrayList<>(Collections.nCopies(CHANNELS * KEYS, null));
+        int[] programs = new int[CHANNELS];
+        int[] volumes = new int[CHANNELS];
+        Arrays.fill(volumes, -1);
+        String trackName = null;
+        int firstGroup = groups.size();
+
+        long tick = 0;
+        int runningStatus = -1;
+        int events = 0;
+        while (chunk.hasRemaining()) {
+            if ((++events & 0xFFF) == 0) {
+                progress.accept(chunk.position());
+            }
+            tick += getVariableLength(chunk);
+
+            int status = chunk.get(chunk.position()) & 0xFF;
+            if (status >= 0x80) {
+                chunk.get();
+            } else if (runningStatus == -1) {
+                throw new IOException(String.format("Data byte without a status byte in track %d", track + 1));
+            } else {
+                status = runningStatus;
+            }
+
+            if (status == META) {
+                runningStatus = -1;
+                int type = chunk.get() & 0xFF;
+                byte[] data = new byte[getVariableLength(chunk)];
+                chunk.get(data);
+                if (type == META_END_OF_TRACK) {
+                    break;
+                } else if (type == META_TRACK_NAME && trackName == null) {
+                    trackName = new String(data, StandardCharsets.UTF_8).trim();
+                } else if (type == META_TEMPO && data.length == 3) {
+                    int microsecondsPerQuarterNote = (data[0] & 0xFF) << 16 | (data[1] & 0xFF) << 8 | (data[2] & 0xFF);
+                    if (microsecondsPerQuarterNote > 0) {
+                        state.tempoChanges.add(new TempoMap.Change(toTimelineTicks(tick, state.division),
+                                60_000_000f / microsecondsPerQuarterNote));
+                    }
+                } else if (type == META_TIME_SIGNATURE && state.beatsPerMeasure == -1 && data.length >= 1) {
+                    state.beatsPerMeasure = data[0];
+                }
+                continue;
+            }
+            if (status == SYSEX || status == SYSEX_ESCAPE) {
+                runningStatus = -1;
+                int length = getVariableLength(chunk);
+                if (length > chunk.remaining()) {
+                    throw new IOException(String.format("MIDI file %s is truncated", sourcePath));
+                }
+                chunk.position(chunk.position() + length);
+                continue;
+            }
+
+            runningStatus = status;
+            int command = status & 0xF0;
+            int channel = status & 0x0F;
+            int data1 = chunk.get() & 0x7F;
+            int data2 = command == ShortMessage.PROGRAM_CHANGE || command == ShortMessage.CHANNEL_PRESSURE
+                    ? 0 : chunk.get() & 0x7F;
+
+            switch (command) {
+                case ShortMessage.NOTE_ON:
+                    if (data2 == 0) {
+                        // NOTE_ON with velocity 0 is a NOTE_OFF
+                        noteOff(openNotes, channel * KEYS + data1, tick, state);
+                        break;
+                    }
+                    NoteGroup group = getGroup(groups, track, channel, programs[channel], data1);
+                    if (group == null) {
+                        state.droppedNotes++;
+                    } else {
+                        noteOn(openNotes, channel * KEYS + data1, new OpenNote(tick, data2, group));
+                    }
+                    break;
+                case ShortMessage.NOTE_OFF:
+                    noteOff(openNotes, channel * KEYS + data1, tick, state);
+                    break;
+                case ShortMessage.PROGRAM_CHANGE:
+                    programs[channel] = data1;
+                    break;
+                case ShortMessage.CONTROL_CHANGE:
+                    if (data1 == 7 && volumes[channel] == -1) {
+                        volumes[channel] = data2;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // Notes still sounding at the end of the track last until its end
+        for (int slot = 0; slot < openNotes.size(); slot++) {
+            if (openNotes.get(slot) != null) {
+                for (OpenNote openNote : openNotes.get(slot)) {
+                    closeNote(openNote, slot % KEYS, tick, state);
+                }
+            }
+        }
+
+        List<NoteGroup> trackGroups = new ArrayList<>(groups.values()).subList(firstGroup, groups.size());
+        String baseName = trackName == null || trackName.isEmpty() ? "Track " + (track + 1) : trackName;
+        for (NoteGroup group : trackGroups) {
+            group.name = trackGroups.size() == 1 ? baseName : baseName + " - " + group.instrument.getName();
+            group.volume = volumes[group.channel];
+        }
+    }
+
+    // MODIFIES: openNotes
+    // EFFECTS: adds openNote to the notes sounding in the channel and key slot
+    private static void noteOn(List<ArrayDeque<OpenNote>> openNotes, int slot, OpenNote openNote) {
+        if (openNotes.get(slot) == null) {
+            openNotes.set(slot, new ArrayDeque<>(2));
+        }
+        openNotes.get(slot).add(openNote);
+    }
+
+    // MODIFIES: openNotes
+    // EFFECTS: ends the earliest note sounding in the channel and key slot at tick, if there is one
+    private static void noteOff(List<ArrayDeque<OpenNote>> openNotes, int slot, long tick, FileState state) {
+        ArrayDeque<OpenNote> open = openNotes.get(slot);
+        if (open != null && !open.isEmpty()) {
+            closeNote(open.poll(), slot % KEYS, tick, state);
+        }
+    }
+
+    // EFFECTS: returns the note group of this track for the channel and program (or key on the percussion
+    //          channel), creating it if needed; null if the key has no percussive instrument
+    private static NoteGroup getGroup(Map<Long, NoteGroup> groups, int track, int channel, int program, int key) {
+        boolean percussive = channel == PERCUSSION_CHANNEL;
+        Instrument instrument = percussive ? PERCUSSIVE_BY_KEY[key] : TONAL_BY_PROGRAM[program];
+        if (instrument == null) {
+            return null;
+        }
+
+        long groupKey = (long) track << 16 | channel << 8 | instrument.getProgramNumber();
+        NoteGroup group = groups.get(groupKey);
+        if (group == null) {
+            group = new NoteGroup(channel, instrument);
+            groups.put(groupKey, group);
+        }
+        return group;
+    }
+
+    // EFFECTS: adds the note started by openNote and ending at endTick to its group, in timeline ticks
+    private static void closeNote(OpenNote openNote, int key, long endTick, FileState state) {
+        long startTick = toTimelineTicks(openNote.startTick(), state.division);
+        long durationTicks = toTimelineTicks(endTick, state.division) - startTick;
+        int pitch = openNote.group().instrument instanceof PercussiveInstrument ? Note.PERCUSSIVE_DEFAULT_PITCH : key;
+        openNote.group().notes.add(new Note(pitch, openNote.velocity(), startTick, durationTicks));
+    }
+
+    private static long toTimelineTicks(long fileTicks, int division) {
+        if (division == Player.PULSES_PER_QUARTER_NOTE) {
+            return fileTicks;
+        }
+        return (fileTicks * Player.PULSES_PER_QUARTER_NOTE + division / 2) / division;
+    }
+
+    /**
+     * Creates the timeline with one MidiTrack per note group. Tonal groups keep their source channel unless
+     * it is already taken by a group with another instrument, in which case a free channel is used if any.
+     *
+     * @param state  the file-wide state
+     * @param groups the note groups in the order they were found
+     * @param pcs    the PropertyChangeSupport to use for the timeline
+     * @return the imported Timeline
+     */
+    private Timeline buildTimeline(FileState state, Iterable<NoteGroup> groups, PropertyChangeSupport pcs) {
+        String fileName = Path.of(sourcePath).getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        Timeline timeline = new Timeline(extension > 0 ? fileName.substring(0, extension) : fileName, pcs);
+
+        Player player = timeline.getPlayer();
+        applyTiming(state, player);
+        long blockTicks = (long) barsPerBlock * player.getBeatsPerMeasure() * Player.PULSES_PER_QUARTER_NOTE;
+
+        Instrument[] channelInstruments = new Instrument[CHANNELS];
+        int trackCount = 0;
+        for (NoteGroup group : groups) {
+            if (group.notes.isEmpty()) {
+                continue;
+            }
+
+            int channel = assignChannel(group, channelInstruments, player);
+            timeline.addMidiTrack(createMidiTrack(group, channel, blockTicks));
+            trackCount++;
+        }
+
+        Event e = new Event(state.droppedNotes > 0 ? LogLevel.WARN : LogLevel.INFO,
+                "Imported %d MidiTracks from MIDI file %s, dropped %d notes without an instrument",
+                trackCount, sourcePath, state.droppedNotes);
+        EventLog.getInstance().logEvent(e);
+
+        return timeline;
+    }
+
+    // MODIFIES: player
+    // EFFECTS: sets the tempo map and beats per measure of player from the file's tempo and time signature events
+    private static void applyTiming(FileState state, Player player) {
+        if (!state.tempoChanges.isEmpty()) {
+            List<TempoMap.Change> changes = new ArrayList<>();
+            changes.add(new TempoMap.Change(0, MIDI_DEFAULT_BPM));
+            changes.addAll(state.tempoChanges);
+            player.setTempoMap(new TempoMap(changes));
+        }
+        if (state.beatsPerMeasure > 0) {
+            player.setBeatsPerMeasure(state.beatsPerMeasure);
+        }
+    }
+
+    // MODIFIES: channelInstruments, player
+    // EFFECTS: returns the channel the group plays on and takes it from the available channels of player
+    private static int assignChannel(NoteGroup group, Instrument[] channelInstruments, Player player) {
+        int channel = group.channel;
+        if (group.instrument instanceof PercussiveInstrument) {
+            channel = PERCUSSION_CHANNEL;
+        } else if (channelInstruments[channel] != null && channelInstruments[channel] != group.instrument
+                   && !player.getAvailableChannels().isEmpty()) {
+            channel = player.getAvailableChannels().get(0);
+        }
+        channelInstruments[channel] = group.instrument;
+        player.getAvailableChannels().remove(Integer.valueOf(channel));
+        return channel;
+    }
+
+    // MODIFIES: group
+    // EFFECTS: returns a MidiTrack on the channel holding the group's notes, sorted and split into blocks
+    private static MidiTrack createMidiTrack(NoteGroup group, int channel, long blockTicks) {
+        MidiTrack midiTrack = new MidiTrack(group.name, group.instrument, channel);
+        if (group.volume != -1) {
+            midiTrack.setVolume(group.volume);
+        }
+        group.notes.sort(Comparator.comparingLong(Note::getStartTick));
+        for (Block block : splitIntoBlocks(group.notes, blockTicks)) {
+            midiTrack.addBlock(block);
+        }
+        return midiTrack;
+    }
+
+    /**
+     * Splits notes into blocks starting every blockTicks ticks, making their start ticks block-relative.
+     *
+     * @param notes      the notes with absolute start ticks, in start order
+     * @param blockTicks the length of a block in ticks
+     * @return the blocks holding at least one note, in order
+     */
+    private static List<Block> splitIntoBlocks(List<Note> notes, long blockTicks) {
+        List<Block> blocks = new ArrayList<>();
+        int from = 0;
+        while (from < notes.size()) {
+            long blockStart = notes.get(from).getStartTick() / blockTicks * blockTicks;
+            long blockEnd = blockStart + blockTicks;
+            long durationTicks = blockTicks;
+
+            int to = from;
+            ArrayList<Note> blockNotes = new ArrayList<>();
+            while (to < notes.size() && notes.get(to).getStartTick() < blockEnd) {
+                Note note = notes.get(to++);
+                note.setStartTick(note.getStartTick() - blockStart);
+                durationTicks = Math.max(durationTicks, note.getStartTick() + note.getDurationTicks());
+                blockNotes.add(note);
+            }
+
+            Block block = new Block(blockStart, durationTicks);
+            block.addNotes(blockNotes);
+            blocks.add(block);
+            from = to;
+        }
+        return blocks;
+    }
+
+    // EFFECTS: reads a MIDI variable-length quantity of at most four bytes
+    private static int getVariableLength(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            byte b = buffer.get();
+            value = value << 7 | (b & 0x7F);
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Variable-length quantity longer than four bytes");
+    }
+
+    private static int chunkType(String type) {
+        return ByteBuffer.wrap(type.getBytes(StandardCharsets.US_ASCII)).getInt();
+    }
+}
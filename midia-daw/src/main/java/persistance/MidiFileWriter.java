@@ -0,0 +1,331 @@
+package persistance;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import javax.sound.midi.ShortMessage;
+
+import model.Block;
+import model.BlockEvents;
+import model.MidiTrack;
+import model.Player;
+import model.TempoMap;
+import model.Timeline;
+
+/**
+ * Writes a Timeline to a Standard MIDI File of type 1.
+ * <p>
+ * The first track holds the project name, tempo changes and time signature; it is followed by one track per MidiTrack
+ * with its name, program change (tonal tracks only), volume and the compiled note events of its blocks.
+ * Block events are merged into tick order as they are written, so no {@code Sequence} is built and only one
+ * buffer of output is held at a time. Each track's chunk length is patched in once the track is complete.
+ * <p>
+ * Muted tracks are exported like any other; their events are the same as when they are unmuted.
+ */
+public class MidiFileWriter {
+
+    public static final String EXTENSION = "mid";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_EVENT_BYTES = 4 + 3;
+    private static final int MAX_DELTA_TICKS = 0x0FFFFFFF;
+
+    private static final int META = 0xFF;
+    private static final int META_TRACK_NAME = 0x03;
+    private static final int META_END_OF_TRACK = 0x2F;
+    private static final int META_TEMPO = 0x51;
+    private static final int META_TIME_SIGNATURE = 0x58;
+
+    private final String path;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+
+    private long lastTick;
+    private int runningStatus;
+
+    /**
+     * Constructs a writer that writes to the specified path.
+     *
+     * @param path the target file path; ".mid" is appended if missing
+     */
+    public MidiFileWriter(String path) {
+        path = path.trim();
+        if (!path.toLowerCase().endsWith("." + EXTENSION)) {
+            path = path.concat("." + EXTENSION);
+        }
+        this.path = path;
+    }
+
+    /**
+     * Opens the writer for the configured path, replacing any existing file.
+     *
+     * @throws IOException if the path is not writable
+     */
+    public void open() throws IOException {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Writes the given timeline to the file.
+     *
+     * @param timeline the timeline to export
+     * @throws IOException if writing fails, or if two consecutive events of a track are further apart than a
+     *                     MIDI delta time can express
+     */
+    public void write(Timeline timeline) throws IOException {
+        ArrayList<MidiTrack> midiTracks = timeline.getMidiTracks();
+
+        buffer.put("MThd".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(6);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) (midiTracks.size() + 1));
+        buffer.putShort((short) Player.PULSES_PER_QUARTER_NOTE);
+
+        writeConductorTrack(timeline);
+        for (MidiTrack midiTrack : midiTracks) {
+            writeMidiTrack(midiTrack);
+        }
+
+        flush();
+    }
+
+    // EFFECTS: writes the track with the project name, tempo changes and time signature
+    private void writeConductorTrack(Timeline timeline) throws IOException {
+        Player player = timeline.getPlayer();
+        long startPosition = startTrack();
+
+        putText(timeline.getProjectName());
+        List<TempoMap.Change> tempoChanges = player.getTempoMap().getChanges();
+        putTempo(tempoChanges.get(0));
+
+        ensureRemaining(MAX_EVENT_BYTES + 4);
+        putMetaHeader(META_TIME_SIGNATURE, 4);
+        buffer.put((byte) player.getBeatsPerMeasure());
+        buffer.put((byte) 2); // denominator as a power of two, the timeline counts in quarter notes
+        buffer.put((byte) 24); // MIDI clocks per metronome click
+        buffer.put((byte) 8); // 32nd notes per quarter note
+
+        for (TempoMap.Change change : tempoChanges.subList(1, tempoChanges.size())) {
+            putTempo(change);
+        }
+
+        endTrack(startPosition, lastTick);
+    }
+
+    // EFFECTS: writes a tempo meta event at the tick of the change
+    private void putTempo(TempoMap.Change change) throws IOException {
+        int microsecondsPerQuarterNote = (int) Math.min(0xFFFFFF, Math.round(60_000_000.0 / change.bpm()));
+        ensureRemaining(MAX_EVENT_BYTES + 3);
+        putMetaHeader(change.tick(), META_TEMPO, 3);
+        buffer.put((byte) (microsecondsPerQuarterNote >> 16));
+        buffer.put((byte) (microsecondsPerQuarterNote >> 8));
+        buffer.put((byte) microsecondsPerQuarterNote);
+    }
+
+    /**
+     * Writes one MidiTrack, merging the compiled events of its blocks into tick order. Ties are written in
+     * block order, matching the order in which playback adds the blocks to a {@code Track}.
+     *
+     * @param midiTrack the track to write
+     * @throws IOException if writing fails
+     */
+    private void writeMidiTrack(MidiTrack midiTrack) throws IOException {
+        long startPosition = startTrack();
+        int midiChannel = midiTrack.getChannel();
+
+        putText(midiTrack.getName());
+        if (!midiTrack.isPercussive()) {
+            putShortMessage(0, ShortMessage.PROGRAM_CHANGE, midiChannel, midiTrack.getInstrument().getProgramNumber(),
+                    -1);
+        }
+        putShortMessage(0, ShortMessage.CONTROL_CHANGE, midiChannel, 7, midiTrack.getVolume());
+
+        PriorityQueue<BlockCursor> cursors = blockCursors(midiTrack);
+        int data1Override = midiTrack.getNoteData1Override();
+        while (!cursors.isEmpty()) {
+            BlockCursor cursor = cursors.poll();
+            BlockEvents events = cursor.events;
+            int i = cursor.index;
+            int data1 = data1Override == -1 ? events.getData1(i) : data1Override;
+            putShortMessage(cursor.tick(), events.getCommand(i), midiChannel, data1, events.getData2(i));
+
+            if (++cursor.index < events.size()) {
+                cursors.add(cursor);
+            }
+        }
+
+        endTrack(startPosition, lastTick);
+    }
+
+    // EFFECTS: returns a queue holding a cursor at the first event of each block of the track that has events
+    private static PriorityQueue<BlockCursor> blockCursors(MidiTrack midiTrack) {
+        PriorityQueue<BlockCursor> cursors = new PriorityQueue<>();
+        ArrayList<Block> blocks = midiTrack.getBlocks();
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            BlockEvents events = block.getCompiledEvents();
+            if (events.size() > 0) {
+                cursors.add(new BlockCursor(events, block.getStartTick(), i));
+            }
+        }
+        return cursors;
+    }
+
+    /**
+     * The position of the next unwritten event of a block, ordered by timeline tick then block order.
+     */
+    private static final class BlockCursor implements Comparable<BlockCursor> {
+        private final BlockEvents events;
+        private final long tickOffset;
+        private final int blockOrder;
+        private int index;
+
+        private BlockCursor(BlockEvents events, long tickOffset, int blockOrder) {
+            this.events = events;
+            this.tickOffset = tickOffset;
+            this.blockOrder = blockOrder;
+        }
+
+        private long tick() {
+            return events.getTick(index) + tickOffset;
+        }
+
+        @Override
+        public int compareTo(BlockCursor other) {
+            int byTick = Long.compare(tick(), other.tick());
+            return byTick != 0 ? byTick : Integer.compare(blockOrder, other.blockOrder);
+        }
+    }
+
+    // EFFECTS: writes a track chunk header with a placeholder length and returns the chunk's file position
+    private long startTrack() throws IOException {
+        flush();
+        long startPosition = channel.position();
+        buffer.put("MTrk".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(0);
+        lastTick = 0;
+        runningStatus = -1;
+        return startPosition;
+    }
+
+    // EFFECTS: writes the end of track event at the given tick and patches the chunk length
+    private void endTrack(long startPosition, long endTick) throws IOException {
+        ensureRemaining(MAX_EVENT_BYTES);
+        putDelta(endTick);
+        buffer.put((byte) META);
+        buffer.put((byte) META_END_OF_TRACK);
+        buffer.put((byte) 0);
+        flush();
+
+        long length = channel.position() - startPosition - 8;
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4).putInt((int) length).flip();
+        while (lengthBuffer.hasRemaining()) {
+            channel.write(lengthBuffer, startPosition + 4 + lengthBuffer.position());
+        }
+    }
+
+    // EFFECTS: writes a channel message, leaving out the status byte when it repeats the previous one;
+    //          data2 of -1 writes a one data byte message
+    private void putShortMessage(long tick, int command, int midiChannel, int data1, int data2) throws IOException {
+        ensureRemaining(MAX_EVENT_BYTES);
+        putDelta(tick);
+
+        int status = command | midiChannel;
+        if (status != runningStatus) {
+            buffer.put((byte) status);
+            runningStatus = status;
+        }
+        buffer.put((byte) data1);
+        if (data2 != -1) {
+            buffer.put((byte) data2);
+        }
+    }
+
+    // EFFECTS: writes a track name meta event at the current tick
+    private void putText(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ensureRemaining(MAX_EVENT_BYTES);
+        putMetaHeader(META_TRACK_NAME, bytes.length);
+
+        if (bytes.length > buffer.capacity()) {
+            flush();
+            writeFully(ByteBuffer.wrap(bytes));
+        } else {
+            ensureRemaining(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    // EFFECTS: writes a zero delta time followed by the header of a meta event; meta events cancel running status
+    private void putMetaHeader(int type, int length) throws IOException {
+        putMetaHeader(lastTick, type, length);
+    }
+
+    private void putMetaHeader(long tick, int type, int length) throws IOException {
+        putDelta(tick);
+        buffer.put((byte) META);
+        buffer.put((byte) type);
+        putVariableLength(length);
+        runningStatus = -1;
+    }
+
+    // EFFECTS: writes the delta time from the previous event to the given tick
+    private void putDelta(long tick) throws IOException {
+        long delta = tick - lastTick;
+        if (delta > MAX_DELTA_TICKS) {
+            throw new IOException(String.format("Gap of %d ticks before tick %d is too long for a MIDI file",
+                    delta, tick));
+        }
+        putVariableLength((int) delta);
+        lastTick = tick;
+    }
+
+    // EFFECTS: writes the value as a MIDI variable-length quantity, most significant group first
+    private void putVariableLength(int value) {
+        int shift = 21;
+        while (shift > 0 && (value >>> shift) == 0) {
+            shift -= 7;
+        }
+        for (; shift > 0; shift -= 7) {
+            buffer.put((byte) (((value >>> shift) & 0x7F) | 0x80));
+        }
+        buffer.put((byte) (value & 0x7F));
+    }
+
+    // EFFECTS: flushes the buffer if fewer than the given number of bytes remain
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    /**
+     * Closes the writer.
+     *
+     * @throws IOException if closing the file fails
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+}
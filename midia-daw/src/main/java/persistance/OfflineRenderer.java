@@ -0,0 +1,264 @@
+package persistance;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.Map;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Synthesizer;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import model.PlaybackSchedule;
+import model.Player;
+import model.TempoMap;
+import model.Timeline;
+
+/**
+ * Bounces a timeline to a WAV file, as fast as the CPU allows rather than in real time.
+ * <p>
+ * The JDK's software synthesizer is opened in pull mode, producing audio only as it is read. Audio is rendered
+ * in short chunks; before each chunk the events of the {@link PlaybackSchedule} falling inside it are sent with
+ * timestamps in the synthesizer's stream time, following the {@link TempoMap}, so they sound at the exact
+ * frame they are due at. Rendering
+ * continues for a tail after the last note so releases and reverb ring out.
+ * <p>
+ * Pull mode is only offered by the synthesizer's internal {@code com.sun.media.sound.AudioSynthesizer}
+ * interface, which the JVM must export with {@code --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED}
+ * (the application jar's manifest does).
+ */
+public class OfflineRenderer {
+
+    public static final float SAMPLE_RATE = 44100;
+    public static final int CHANNELS = 2;
+    public static final int DEFAULT_BIT_DEPTH = 16;
+    public static final int DEFAULT_TAIL_MS = 2000;
+
+    private static final String AUDIO_SYNTHESIZER = "com.sun.media.sound.AudioSynthesizer";
+    private static final int CHUNK_FRAMES = 1024;
+    private static final int ALL_NOTES_OFF = 123;
+
+    private final PlaybackSchedule schedule;
+    private final TempoMap tempoMap;
+    private final int tailMs;
+
+    /**
+     * The outcome of a bounce.
+     *
+     * @param path        the file written
+     * @param frames      the number of audio frames written
+     * @param sampleRate  the sample rate of the audio
+     * @param renderNanos the wall time the render took
+     */
+    public record Result(Path path, long frames, float sampleRate, long renderNanos) {
+
+        public double audioSeconds() {
+            return frames / (double) sampleRate;
+        }
+
+        public double wallSeconds() {
+            return renderNanos / 1e9;
+        }
+
+        /**
+         * Returns the seconds of audio rendered per second of wall time.
+         */
+        public double speedFactor() {
+            return audioSeconds() / Math.max(wallSeconds(), 1e-9);
+        }
+    }
+
+    /**
+     * Creates a renderer of the given schedule at a constant tempo.
+     *
+     * @param schedule the events to render
+     * @param bpm      the tempo to render at
+     * @param tailMs   the milliseconds rendered after the end of the schedule (>= 0)
+     */
+    public OfflineRenderer(PlaybackSchedule schedule, float bpm, int tailMs) {
+        this(schedule, new TempoMap(bpm), tailMs);
+    }
+
+    /**
+     * Creates a renderer of the given schedule.
+     *
+     * @param schedule the events to render
+     * @param tempoMap the tempo changes to render with
+     * @param tailMs   the milliseconds rendered after the end of the schedule (>= 0)
+     */
+    public OfflineRenderer(PlaybackSchedule schedule, TempoMap tempoMap, int tailMs) {
+        this.schedule = schedule;
+        this.tempoMap = tempoMap;
+        this.tailMs = tailMs;
+    }
+
+    /**
+     * Creates a renderer of what the timeline's player plays, with the default tail. Must be called on the EDT;
+     * the renderer can then be used on any thread.
+     *
+     * @param timeline the timeline to render
+     * @return the renderer
+     */
+    public static OfflineRenderer of(Timeline timeline) {
+        Player player = timeline.getPlayer();
+        return new OfflineRenderer(player.updateSchedule(), player.getTempoMap(), DEFAULT_TAIL_MS);
+    }
+
+    /**
+     * Returns the number of frames a render produces.
+     */
+    public long getTotalFrames() {
+        long micros = microsAt(schedule.getEndTick()) + tailMs * 1000L;
+        return (micros * (long) SAMPLE_RATE + 999_999) / 1_000_000;
+    }
+
+    /**
+     * Renders the schedule to a WAV file at the given path. A partially written file is deleted on failure.
+     *
+     * @param path     the target file path; ".wav" is appended if missing
+     * @param bitDepth the bits per sample, 16 or 24
+     * @param listener the listener to report the frames rendered to
+     * @return the result of the render
+     * @throws IOException              if writing fails or the synthesizer cannot render offline
+     * @throws MidiUnavailableException if the synthesizer cannot be opened
+     */
+    public Result render(String path, int bitDepth, ProgressListener listener)
+            throws IOException, MidiUnavailableException {
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, bitDepth, CHANNELS, true, false);
+        WavWriter writer = new WavWriter(path, format);
+        Path target = writer.getPath();
+
+        long start = System.nanoTime();
+        Synthesizer synthesizer = MidiSystem.getSynthesizer();
+        writer.open();
+        boolean complete = false;
+        try (AudioInputStream audio = openStream(synthesizer, format)) {
+            renderTo(writer, audio, synthesizer.getReceiver(), format.getFrameSize(), listener);
+            complete = true;
+        } finally {
+            synthesizer.close();
+            writer.close();
+            if (!complete) {
+                target.toFile().delete();
+            }
+        }
+
+        return new Result(target, writer.getDataBytes() / format.getFrameSize(), SAMPLE_RATE,
+                System.nanoTime() - start);
+    }
+
+    // EFFECTS: sends the schedule's events chunk by chunk and writes the audio rendered for each chunk
+    private void renderTo(WavWriter writer, AudioInputStream audio, Receiver receiver, int frameSize,
+                          ProgressListener listener) throws IOException {
+        long totalFrames = getTotalFrames();
+        ProgressReporter progress = new ProgressReporter(listener, totalFrames, (long) SAMPLE_RATE / 4);
+        byte[] chunk = new byte[CHUNK_FRAMES * frameSize];
+        sendSetupEvents(receiver);
+
+        long cursorTick = 0;
+        long frames = 0;
+        boolean notesOff = false;
+        while (frames < totalFrames) {
+            int chunkFrames = (int) Math.min(CHUNK_FRAMES, totalFrames - frames);
+            long chunkEndMicros = Math.round((frames + chunkFrames) * 1e6 / SAMPLE_RATE);
+            cursorTick = sendEvents(receiver, cursorTick, tickAt(chunkEndMicros));
+            if (!notesOff && cursorTick > schedule.getEndTick()) {
+                notesOff = true;
+                sendAllNotesOff(receiver, microsAt(schedule.getEndTick()));
+            }
+
+            int length = chunkFrames * frameSize;
+            readFully(audio, chunk, length);
+            writer.write(chunk, 0, length);
+            frames += chunkFrames;
+            progress.report(frames);
+        }
+        progress.finish();
+    }
+
+    private void sendSetupEvents(Receiver receiver) {
+        for (PlaybackSchedule.Part part : schedule.getParts()) {
+            part.forEachSetupEvent((tick, command, channel, data1, data2) ->
+                    send(receiver, 0, command, channel, data1, data2));
+        }
+    }
+
+    // EFFECTS: sends the schedule's events from fromTick up to toTick at the times they play; returns the tick
+    //          sending has reached
+    private long sendEvents(Receiver receiver, long fromTick, long toTick) {
+        if (toTick <= fromTick) {
+            return fromTick;
+        }
+        schedule.forEachEvent(fromTick, toTick, (tick, command, channel, data1, data2) ->
+                send(receiver, microsAt(tick), command, channel, data1, data2));
+        return toTick;
+    }
+
+    // EFFECTS: silences every channel at the given stream time
+    private static void sendAllNotesOff(Receiver receiver, long timestampMicros) {
+        for (int channel = 0; channel < 16; channel++) {
+            send(receiver, timestampMicros, ShortMessage.CONTROL_CHANGE, channel, ALL_NOTES_OFF, 0);
+        }
+    }
+
+    // EFFECTS: opens the synthesizer in pull mode, rendering audio of the given format as it is read
+    private static AudioInputStream openStream(Synthesizer synthesizer, AudioFormat format)
+            throws IOException, MidiUnavailableException {
+        try {
+            Class<?> audioSynthesizer = Class.forName(AUDIO_SYNTHESIZER);
+            if (!audioSynthesizer.isInstance(synthesizer)) {
+                throw new IOException("The default synthesizer cannot render offline: " + synthesizer.getClass());
+            }
+            Method openStream = audioSynthesizer.getMethod("openStream", AudioFormat.class, Map.class);
+            return (AudioInputStream) openStream.invoke(synthesizer, format, null);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new IOException("No software synthesizer able to render offline is available", e);
+        } catch (IllegalAccessException e) {
+            throw new IOException("Offline rendering needs the JVM option "
+                                  + "--add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED", e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof MidiUnavailableException midiUnavailableException) {
+                throw midiUnavailableException;
+            }
+            throw new IOException("Unable to open the synthesizer", e.getCause());
+        }
+    }
+
+    // EFFECTS: reads exactly length bytes of audio into the buffer
+    private static void readFully(AudioInputStream audio, byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = audio.read(buffer, read, length - read);
+            if (count < 0) {
+                throw new IOException("The synthesizer stopped producing audio");
+            }
+            read += count;
+        }
+    }
+
+    // EFFECTS: sends a short message at the given stream time in microseconds
+    private static void send(Receiver receiver, long timestampMicros, int command, int channel, int data1,
+                             int data2) {
+        try {
+            receiver.send(new ShortMessage(command, channel, data1, data2), timestampMicros);
+        } catch (InvalidMidiDataException e) {
+            throw new RuntimeException("Invalid MIDI data found while rendering", e);
+        }
+    }
+
+    // EFFECTS: returns the first tick at or after the given stream time
+    private long tickAt(long micros) {
+        return (long) Math.ceil(tempoMap.microsToTicks(micros));
+    }
+
+    // EFFECTS: returns the stream time the given tick plays at
+    private long microsAt(long tick) {
+        return Math.round(tempoMap.ticksToMicros(tick));
+    }
+}
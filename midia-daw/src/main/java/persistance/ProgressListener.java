@@ -0,0 +1,26 @@
+package persistance;
+
+/**
+ * Receives the progress of a project being read, written or bounced, and may cancel it.
+ * <p>
+ * Reads report bytes of the file consumed, writes report notes written, bounces report audio frames rendered.
+ * The listener is called on the thread doing the work, at most every few thousand notes, tens of kilobytes or
+ * fraction of a second of audio, and once more when the work is done.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * A listener that ignores progress and never cancels.
+     */
+    ProgressListener NONE = (processed, total) -> true;
+
+    /**
+     * Reports progress.
+     *
+     * @param processed the amount processed so far
+     * @param total     the total amount to process, in the same unit
+     * @return true to continue, false to cancel the read or write
+     */
+    boolean progress(long processed, long total);
+}
@@ -0,0 +1,44 @@
+package persistance;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Throttles the progress of one read or write to a ProgressListener and turns its cancellation into a
+ * CancellationException thrown out of the reader or writer.
+ */
+final class ProgressReporter {
+
+    private final ProgressListener listener;
+    private final long total;
+    private final long step;
+    private long nextReport;
+
+    /**
+     * Creates a reporter.
+     *
+     * @param listener the listener to report to
+     * @param total    the total amount to process
+     * @param step     the least progress between two reports (> 0)
+     */
+    ProgressReporter(ProgressListener listener, long total, long step) {
+        this.listener = listener;
+        this.total = total;
+        this.step = step;
+    }
+
+    // EFFECTS: reports the progress if it advanced by at least step since the last report;
+    //          throws CancellationException if the listener cancels
+    void report(long processed) {
+        if (processed >= nextReport) {
+            nextReport = processed + step;
+            if (!listener.progress(processed, total)) {
+                throw new CancellationException("Cancelled at " + processed + " of " + total);
+            }
+        }
+    }
+
+    // EFFECTS: reports that everything was processed; the work is done, so it can no longer be cancelled
+    void finish() {
+        listener.progress(total, total);
+    }
+}
@@ -0,0 +1,150 @@
+package persistance;
+
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiUnavailableException;
+
+import model.Timeline;
+
+/**
+ * The file formats a project can be saved in, identified by their file extension.
+ */
+public enum ProjectFormat {
+    JSON("json", "JSON project"),
+    BINARY("midia", "MIDIA binary project");
+
+    private final String extension;
+    private final String description;
+
+    ProjectFormat(String extension, String description) {
+        this.extension = extension;
+        this.description = description;
+    }
+
+    /**
+     * Returns the format of the file at the given path, judged by its extension.
+     *
+     * @param path the file path
+     * @return BINARY for ".midia" files, otherwise JSON
+     */
+    public static ProjectFormat fromPath(String path) {
+        return path.trim().toLowerCase().endsWith("." + BINARY.extension) ? BINARY : JSON;
+    }
+
+    /**
+     * Returns true if the file at the given path has the extension of any project format.
+     *
+     * @param path the file path
+     * @return true if the path ends with a project file extension
+     */
+    public static boolean isProjectFile(String path) {
+        for (ProjectFormat format : values()) {
+            if (path.toLowerCase().endsWith("." + format.extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a timeline from the file at the given path in this format.
+     *
+     * @param path the file path
+     * @param pcs  the PropertyChangeSupport to use for the timeline
+     * @return the read timeline
+     * @throws IOException                if the file cannot be read or is not in this format
+     * @throws MidiUnavailableException   if MIDI resources are unavailable
+     * @throws InvalidMidiDataException   if invalid MIDI data is encountered
+     */
+    public Timeline read(String path, PropertyChangeSupport pcs)
+            throws IOException, MidiUnavailableException, InvalidMidiDataException {
+        return read(path, pcs, ProgressListener.NONE);
+    }
+
+    /**
+     * Reads a timeline from the file at the given path in this format, reporting the bytes read to the listener.
+     *
+     * @param path     the file path
+     * @param pcs      the PropertyChangeSupport to use for the timeline
+     * @param listener the listener to report progress to
+     * @return the read timeline
+     * @throws IOException                if the file cannot be read or is not in this format
+     * @throws MidiUnavailableException   if MIDI resources are unavailable
+     * @throws InvalidMidiDataException   if invalid MIDI data is encountered
+     * @throws java.util.concurrent.CancellationException if the listener cancelled the read
+     */
+    public Timeline read(String path, PropertyChangeSupport pcs, ProgressListener listener)
+            throws IOException, MidiUnavailableException, InvalidMidiDataException {
+        switch (this) {
+            case BINARY:
+                return new BinaryReader(path).read(pcs, listener);
+            default:
+                return new JsonReader(path).read(pcs, listener);
+        }
+    }
+
+    /**
+     * Writes the timeline to the given path in this format. The extension is appended if missing.
+     *
+     * @param path     the target file path
+     * @param timeline the timeline to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String path, Timeline timeline) throws IOException {
+        write(path, ProjectSnapshot.of(timeline), ProgressListener.NONE);
+    }
+
+    /**
+     * Writes the snapshot to the given path in this format, reporting the notes written to the listener.
+     * The extension is appended if missing.
+     *
+     * @param path     the target file path
+     * @param snapshot the snapshot to write
+     * @param listener the listener to report progress to
+     * @throws IOException if the file cannot be written
+     * @throws java.util.concurrent.CancellationException if the listener cancelled the write
+     */
+    public void write(String path, ProjectSnapshot snapshot, ProgressListener listener) throws IOException {
+        switch (this) {
+            case BINARY:
+                BinaryWriter binaryWriter = new BinaryWriter(path);
+                binaryWriter.open();
+                try {
+                    binaryWriter.write(snapshot, listener);
+                } finally {
+                    binaryWriter.close();
+                }
+                break;
+            default:
+                JsonWriter jsonWriter = new JsonWriter(path);
+                jsonWriter.open();
+                try {
+                    jsonWriter.write(snapshot, listener);
+                } finally {
+                    jsonWriter.close();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Returns the path with this format's extension appended if it is missing, as the writers do.
+     *
+     * @param path the file path
+     * @return the path ending with this format's extension
+     */
+    public String withExtension(String path) {
+        path = path.trim();
+        return path.endsWith("." + extension) ? path : path.concat("." + extension);
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,191 @@
+package persistance;
+
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.Timeline;
+
+/**
+ * Reads and writes projects on a background thread, so the EDT stays responsive while large projects load.
+ * <p>
+ * Every operation returns a future and reports its progress to a {@link ProgressListener} on its background
+ * thread. An operation is cancelled when the listener returns false or the future is cancelled; its future then
+ * completes with a CancellationException. Reads and writes run one at a time in the order they were started, and
+ * so do bounces and stem exports, on a thread of their own so that a save never waits behind a render.
+ * <p>
+ * A timeline is read with a PropertyChangeSupport of its own, so nothing it fires while it is built reaches
+ * the UI. Attach the application's PropertyChangeSupport on the EDT before handing it to the
+ * TimelineController. Writes take a {@link ProjectSnapshot}, which must be taken on the EDT, and go to a
+ * temporary file that replaces the target only once it is complete. Stem exports wait on the render thread
+ * for their own pool of render threads.
+ */
+public final class ProjectIO {
+
+    private static final ExecutorService EXECUTOR = newDaemonExecutor("project-io");
+    private static final ExecutorService RENDER_EXECUTOR = newDaemonExecutor("project-render");
+
+    /**
+     * A read or write that reports its progress to the given listener.
+     */
+    @FunctionalInterface
+    private interface Task<T> {
+        T run(ProgressListener listener) throws Exception;
+    }
+
+    /**
+     * Writes a complete file to a temporary path, reporting its progress to the given listener.
+     */
+    @FunctionalInterface
+    interface TempFileWriter {
+        void write(String tempPath, ProgressListener listener) throws IOException;
+    }
+
+    private ProjectIO() {
+    }
+
+    /**
+     * Reads the project at the given path in the format given by its extension.
+     *
+     * @param path     the file path
+     * @param listener the listener to report the bytes read to
+     * @return a future completed with the timeline, which has a detached PropertyChangeSupport
+     */
+    public static CompletableFuture<Timeline> readAsync(String path, ProgressListener listener) {
+        return submit(EXECUTOR, listener, cancellable -> ProjectFormat.fromPath(path).read(path,
+                detachedSupport(path), cancellable));
+    }
+
+    /**
+     * Imports the Standard MIDI File at the given path.
+     *
+     * @param path     the file path
+     * @param listener the listener to report the bytes read to
+     * @return a future completed with the timeline, which has a detached PropertyChangeSupport
+     */
+    public static CompletableFuture<Timeline> importMidiAsync(String path, ProgressListener listener) {
+        return submit(EXECUTOR, listener, cancellable -> new MidiFileReader(path).read(detachedSupport(path),
+                cancellable));
+    }
+
+    /**
+     * Writes the snapshot to the given path in the given format. The extension is appended if missing. An
+     * existing file is only replaced once the new one is complete, and is left untouched on failure.
+     *
+     * @param path     the target file path
+     * @param format   the format to write
+     * @param snapshot the snapshot to write
+     * @param listener the listener to report the notes written to
+     * @return a future completed with the path written
+     */
+    public static CompletableFuture<Path> writeAsync(String path, ProjectFormat format, ProjectSnapshot snapshot,
+                                                     ProgressListener listener) {
+        return replaceAsync(Paths.get(format.withExtension(path)), format.getExtension(), listener,
+                (temp, cancellable) -> format.write(temp, snapshot, cancellable));
+    }
+
+    /**
+     * Has the writer write a temporary file next to the target, then moves it over the target. The temporary
+     * file is deleted if the writer fails, leaving an existing target untouched.
+     *
+     * @param target    the file to replace
+     * @param extension the extension of the temporary file, without the dot
+     * @param listener  the listener the writer reports to
+     * @param writer    writes the temporary file
+     * @return a future completed with the target
+     */
+    static CompletableFuture<Path> replaceAsync(Path target, String extension, ProgressListener listener,
+                                                TempFileWriter writer) {
+        return submit(EXECUTOR, listener, cancellable -> {
+            Path absoluteTarget = target.toAbsolutePath();
+            Path temp = Files.createTempFile(absoluteTarget.getParent(), "." + absoluteTarget.getFileName(),
+                    ".tmp." + extension);
+            try {
+                writer.write(temp.toString(), cancellable);
+                try {
+                    Files.move(temp, absoluteTarget, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, absoluteTarget, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return absoluteTarget;
+        });
+    }
+
+    /**
+     * Bounces the renderer's timeline to a WAV file at the given path. The extension is appended if missing.
+     *
+     * @param path     the target file path
+     * @param renderer the renderer, created on the EDT
+     * @param bitDepth the bits per sample, 16 or 24
+     * @param listener the listener to report the audio frames rendered to
+     * @return a future completed with the result of the render
+     */
+    public static CompletableFuture<OfflineRenderer.Result> bounceAsync(String path, OfflineRenderer renderer,
+                                                                        int bitDepth, ProgressListener listener) {
+        return submit(RENDER_EXECUTOR, listener, cancellable -> renderer.render(path, bitDepth, cancellable));
+    }
+
+    /**
+     * Bounces each stem of the renderer to a WAV file in the given directory, rendering the stems concurrently.
+     *
+     * @param directory the directory to write the stems to, created if missing
+     * @param renderer  the renderer, created on the EDT
+     * @param bitDepth  the bits per sample, 16 or 24
+     * @param threads   the number of render threads (> 0)
+     * @param listener  the listener to report the audio frames rendered across all stems to
+     * @return a future completed with the result of the export
+     */
+    public static CompletableFuture<StemRenderer.Result> exportStemsAsync(Path directory, StemRenderer renderer,
+                                                                          int bitDepth, int threads,
+                                                                          ProgressListener listener) {
+        return submit(RENDER_EXECUTOR, listener,
+                cancellable -> renderer.render(directory, bitDepth, threads, cancellable));
+    }
+
+    // EFFECTS: runs the task on the executor, cancelling it once the listener returns false or the returned
+    //          future is cancelled; a timeline read after the future was cancelled is closed
+    private static <T> CompletableFuture<T> submit(ExecutorService executor, ProgressListener listener,
+                                                   Task<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ProgressListener cancellable = (processed, total) -> !future.isCancelled()
+                && listener.progress(processed, total);
+
+        executor.execute(() -> {
+            if (future.isCancelled()) {
+                return;
+            }
+            try {
+                T result = task.run(cancellable);
+                if (!future.complete(result) && result instanceof Timeline timeline) {
+                    timeline.getPlayer().close();
+                }
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    // EFFECTS: returns a single-thread executor whose daemon thread has the given name
+    private static ExecutorService newDaemonExecutor(String threadName) {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static PropertyChangeSupport detachedSupport(String path) {
+        return new PropertyChangeSupport(path);
+    }
+}
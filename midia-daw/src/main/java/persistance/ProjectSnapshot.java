@@ -0,0 +1,133 @@
+package persistance;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.Player;
+import model.TempoMap;
+import model.Timeline;
+import model.instrument.Instrument;
+
+/**
+ * An immutable copy of everything a project file stores, taken from a Timeline at one point in time.
+ * <p>
+ * A snapshot holds no references to the model, so it can be serialized on any thread while the timeline keeps
+ * being edited. Notes are packed into arrays per block, and blocks whose version did not change since a
+ * previous snapshot can share that snapshot's copy.
+ *
+ * @param projectName           the project name
+ * @param tempoMap              the tempo changes, immutable and therefore shared with the player
+ * @param tickPosition          the playback position
+ * @param beatDivision          the beat division
+ * @param beatsPerMeasure       the beats per measure
+ * @param horizontalScaleFactor the horizontal scale factor
+ * @param availableChannels     the channels not used by a tonal track
+ * @param tracks                the tracks in timeline order
+ * @param editCount             the timeline's edit count when the snapshot was taken
+ */
+public record ProjectSnapshot(String projectName, TempoMap tempoMap, long tickPosition, int beatDivision,
+                              int beatsPerMeasure, double horizontalScaleFactor, List<Integer> availableChannels,
+                              List<TrackSnapshot> tracks, long editCount) {
+
+    /**
+     * The stored state of a MidiTrack.
+     */
+    public record TrackSnapshot(String name, int channel, int volume, Instrument instrument,
+                                List<BlockSnapshot> blocks) {}
+
+    /**
+     * The stored state of a Block, with the notes' fields in parallel arrays in block order.
+     */
+    public record BlockSnapshot(long version, long startTick, long durationTicks, long[] noteStartTicks,
+                                long[] noteDurationTicks, byte[] notePitches, byte[] noteVelocities) {
+
+        private static BlockSnapshot of(Block block) {
+            ArrayList<Note> notes = block.getNotes();
+            int count = notes.size();
+            long[] startTicks = new long[count];
+            long[] durationTicks = new long[count];
+            byte[] pitches = new byte[count];
+            byte[] velocities = new byte[count];
+
+            for (int i = 0; i < count; i++) {
+                Note note = notes.get(i);
+                startTicks[i] = note.getStartTick();
+                durationTicks[i] = note.getDurationTicks();
+                pitches[i] = (byte) note.getPitch();
+                velocities[i] = (byte) note.getVelocity();
+            }
+
+            return new BlockSnapshot(block.getVersion(), block.getStartTick(), block.getDurationTicks(), startTicks,
+                    durationTicks, pitches, velocities);
+        }
+
+        public int noteCount() {
+            return noteStartTicks.length;
+        }
+    }
+
+    /**
+     * Returns the number of notes in all blocks of all tracks.
+     */
+    public long noteCount() {
+        long count = 0;
+        for (TrackSnapshot track : tracks) {
+            for (BlockSnapshot block : track.blocks()) {
+                count += block.noteCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Takes a snapshot of the timeline, copying every block.
+     *
+     * @param timeline the timeline to copy
+     * @return the snapshot
+     */
+    public static ProjectSnapshot of(Timeline timeline) {
+        return of(timeline, new IdentityHashMap<>());
+    }
+
+    /**
+     * Takes a snapshot of the timeline, reusing the block copies in blockCache whose version is still current.
+     * Must be called on the thread that edits the timeline.
+     * <p>
+     * Afterwards blockCache holds exactly the block copies of this snapshot, ready for the next one.
+     *
+     * @param timeline   the timeline to copy
+     * @param blockCache block copies of a previous snapshot, by block identity; updated in place
+     * @return the snapshot
+     */
+    public static ProjectSnapshot of(Timeline timeline, Map<Block, BlockSnapshot> blockCache) {
+        Map<Block, BlockSnapshot> current = new IdentityHashMap<>();
+        List<TrackSnapshot> tracks = new ArrayList<>(timeline.getMidiTracks().size());
+
+        for (MidiTrack midiTrack : timeline.getMidiTracks()) {
+            List<BlockSnapshot> blocks = new ArrayList<>(midiTrack.getBlocks().size());
+            for (Block block : midiTrack.getBlocks()) {
+                BlockSnapshot blockSnapshot = blockCache.get(block);
+                if (blockSnapshot == null || blockSnapshot.version() != block.getVersion()) {
+                    blockSnapshot = BlockSnapshot.of(block);
+                }
+                current.put(block, blockSnapshot);
+                blocks.add(blockSnapshot);
+            }
+            tracks.add(new TrackSnapshot(midiTrack.getName(), midiTrack.getChannel(), midiTrack.getVolume(),
+                    midiTrack.getInstrument(), List.copyOf(blocks)));
+        }
+
+        blockCache.clear();
+        blockCache.putAll(current);
+
+        Player player = timeline.getPlayer();
+        return new ProjectSnapshot(timeline.getProjectName(), player.getTempoMap(), player.getTickPosition(),
+                player.getBeatDivision(), player.getBeatsPerMeasure(), timeline.getHorizontalScaleFactor(),
+                List.copyOf(player.getAvailableChannels()), List.copyOf(tracks), timeline.getEditCount());
+    }
+}
@@ -0,0 +1,270 @@
+package persistance;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.midi.MidiUnavailableException;
+
+import model.MidiTrack;
+import model.PlaybackSchedule;
+import model.Player;
+import model.Timeline;
+
+/**
+ * Bounces every audible track of a timeline to its own WAV file, rendering the tracks concurrently.
+ * <p>
+ * Each stem is an {@link OfflineRenderer} of a single track, which opens a synthesizer of its own, so stems
+ * share no state while they render. They run on a fixed pool of worker threads, by default one per available
+ * core. Every stem is as long as the whole timeline, so the files line up when they are imported together.
+ */
+public class StemRenderer {
+
+    private final List<Stem> stems;
+
+    /**
+     * One track to bounce.
+     *
+     * @param fileName the name of the file the stem is written to, without extension
+     * @param renderer the renderer of the track
+     */
+    public record Stem(String fileName, OfflineRenderer renderer) {
+    }
+
+    /**
+     * The outcome of a stem export.
+     *
+     * @param stems       the result of each stem, in timeline order
+     * @param threads     the number of worker threads the stems were rendered on
+     * @param renderNanos the wall time the whole export took
+     */
+    public record Result(List<OfflineRenderer.Result> stems, int threads, long renderNanos) {
+
+        public double audioSeconds() {
+            double seconds = 0;
+            for (OfflineRenderer.Result stem : stems) {
+                seconds += stem.audioSeconds();
+            }
+            return seconds;
+        }
+
+        public double wallSeconds() {
+            return renderNanos / 1e9;
+        }
+
+        /**
+         * Returns the seconds of audio rendered across all stems per second of wall time.
+         */
+        public double speedFactor() {
+            return audioSeconds() / Math.max(wallSeconds(), 1e-9);
+        }
+    }
+
+    /**
+     * Creates a renderer of the given stems.
+     *
+     * @param stems the stems to render; their file names must be distinct
+     */
+    public StemRenderer(List<Stem> stems) {
+        this.stems = List.copyOf(stems);
+    }
+
+    /**
+     * Creates a renderer of every track the timeline's player plays, that is every track that is neither muted
+     * nor silent. Each stem is named after its track's position and name in the timeline, e.g. "03 Bass", and
+     * has the default tail. Must be called on the EDT; the renderer can then be used on any thread.
+     *
+     * @param timeline the timeline to render
+     * @return the renderer
+     */
+    public static StemRenderer of(Timeline timeline) {
+        Player player = timeline.getPlayer();
+        List<MidiTrack> midiTracks = timeline.getMidiTracks();
+        List<Stem> stems = new ArrayList<>();
+
+        for (int i = 0; i < midiTracks.size(); i++) {
+            MidiTrack midiTrack = midiTracks.get(i);
+            if (midiTrack.isMuted() || midiTrack.getVolume() == 0) {
+                continue;
+            }
+            PlaybackSchedule schedule = new PlaybackSchedule(List.of(PlaybackSchedule.Part.of(midiTrack)),
+                    timeline.getLengthTicks());
+            String fileName = String.format("%02d %s", i + 1, AutoSaveService.getBaseName(midiTrack.getName()));
+            stems.add(new Stem(fileName, new OfflineRenderer(schedule, player.getTempoMap(),
+                    OfflineRenderer.DEFAULT_TAIL_MS)));
+        }
+        return new StemRenderer(stems);
+    }
+
+    /**
+     * Returns the number of worker threads used by default, one per available core.
+     */
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public List<Stem> getStems() {
+        return stems;
+    }
+
+    /**
+     * Returns the number of frames a render produces across all stems.
+     */
+    public long getTotalFrames() {
+        long totalFrames = 0;
+        for (Stem stem : stems) {
+            totalFrames += stem.renderer().getTotalFrames();
+        }
+        return totalFrames;
+    }
+
+    /**
+     * Renders every stem to a WAV file in the given directory, which is created if missing, on the given
+     * number of worker threads. Progress is the sum of the frames rendered by every stem and is reported from
+     * the worker threads, one call at a time. If a stem fails or the export is cancelled, the remaining stems
+     * are cancelled and every stem file of the export is deleted.
+     *
+     * @param directory the directory to write the stems to
+     * @param bitDepth  the bits per sample, 16 or 24
+     * @param threads   the number of worker threads (> 0)
+     * @param listener  the listener to report the audio frames rendered to
+     * @return the result of the export
+     * @throws IOException              if writing fails or the synthesizer cannot render offline
+     * @throws MidiUnavailableException if a synthesizer cannot be opened
+     */
+    public Result render(Path directory, int bitDepth, int threads, ProgressListener listener)
+            throws IOException, MidiUnavailableException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        int poolSize = Math.max(1, Math.min(threads, stems.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize, workerFactory());
+        StemProgress progress = new StemProgress(listener, getTotalFrames(), stems.size());
+
+        List<Future<OfflineRenderer.Result>> futures = submitStems(pool, directory, bitDepth, progress);
+        pool.shutdown();
+
+        List<OfflineRenderer.Result> results = awaitStems(futures, pool, progress);
+        listener.progress(progress.totalFrames, progress.totalFrames);
+        return new Result(List.copyOf(results), poolSize, System.nanoTime() - start);
+    }
+
+    // EFFECTS: submits the render of every stem to the pool, reporting to progress
+    private List<Future<OfflineRenderer.Result>> submitStems(ExecutorService pool, Path directory, int bitDepth,
+                                                             StemProgress progress) {
+        List<Future<OfflineRenderer.Result>> futures = new ArrayList<>();
+        for (int i = 0; i < stems.size(); i++) {
+            Stem stem = stems.get(i);
+            String path = directory.resolve(stem.fileName() + "." + WavWriter.EXTENSION).toString();
+            int index = i;
+            futures.add(pool.submit(() -> stem.renderer().render(path, bitDepth,
+                    (processed, total) -> progress.report(index, processed))));
+        }
+        return futures;
+    }
+
+    // EFFECTS: waits for every stem and returns their results; if one failed or the export was cancelled,
+    //          cancels the rest, deletes the stems written and throws the first failure
+    private static List<OfflineRenderer.Result> awaitStems(List<Future<OfflineRenderer.Result>> futures,
+                                                           ExecutorService pool, StemProgress progress)
+            throws IOException, MidiUnavailableException {
+        List<OfflineRenderer.Result> results = new ArrayList<>();
+        Throwable failure = null;
+        for (Future<OfflineRenderer.Result> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                progress.cancel();
+                if (failure == null || failure instanceof CancellationException) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                progress.cancel();
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                failure = new CancellationException("Interrupted while rendering stems");
+                break;
+            }
+        }
+
+        if (failure != null) {
+            deleteStems(results);
+            rethrow(failure);
+        }
+        return results;
+    }
+
+    private static void deleteStems(List<OfflineRenderer.Result> results) throws IOException {
+        for (OfflineRenderer.Result result : results) {
+            Files.deleteIfExists(result.path());
+        }
+    }
+
+    /**
+     * Sums the progress of concurrently rendering stems and cancels all of them once one is cancelled.
+     */
+    private static final class StemProgress {
+
+        private final ProgressListener listener;
+        private final long totalFrames;
+        private final long[] stemFrames;
+        private long processed;
+        private volatile boolean cancelled;
+
+        StemProgress(ProgressListener listener, long totalFrames, int stems) {
+            this.listener = listener;
+            this.totalFrames = totalFrames;
+            this.stemFrames = new long[stems];
+        }
+
+        // MODIFIES: this
+        // EFFECTS: records the frames rendered by the stem at index and reports the sum; returns false once the
+        //          listener has cancelled or another stem failed
+        synchronized boolean report(int index, long frames) {
+            if (cancelled) {
+                return false;
+            }
+            processed += frames - stemFrames[index];
+            stemFrames[index] = frames;
+            if (!listener.progress(Math.min(processed, totalFrames), totalFrames)) {
+                cancelled = true;
+            }
+            return !cancelled;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    // EFFECTS: rethrows the failure of a stem as the checked exception render declares
+    private static void rethrow(Throwable failure) throws IOException, MidiUnavailableException {
+        if (failure instanceof IOException ioException) {
+            throw ioException;
+        } else if (failure instanceof MidiUnavailableException midiUnavailableException) {
+            throw midiUnavailableException;
+        } else if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (failure instanceof Error error) {
+            throw error;
+        }
+        throw new IOException("Unable to render stems", failure);
+    }
+
+    private static ThreadFactory workerFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, "stem-renderer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,149 @@
+package persistance;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Writes signed little-endian PCM audio to a WAV file.
+ * <p>
+ * The RIFF header is written with placeholder sizes when the writer is opened and patched once it is closed,
+ * so audio can be written as it is produced without knowing its length in advance. Audio goes through one
+ * direct buffer to the file channel.
+ */
+public class WavWriter {
+
+    public static final String EXTENSION = "wav";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int HEADER_SIZE = 44;
+    private static final short FORMAT_PCM = 1;
+    private static final long MAX_DATA_BYTES = 0xFFFFFFFFL - (HEADER_SIZE - 8);
+
+    private final String path;
+    private final AudioFormat format;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long dataBytes;
+
+    /**
+     * Constructs a writer that writes audio of the given format to the specified path.
+     *
+     * @param path   the target file path; ".wav" is appended if missing
+     * @param format the format of the audio; must be signed little-endian PCM of 16 or 24 bits
+     * @throws IllegalArgumentException if the format cannot be written
+     */
+    public WavWriter(String path, AudioFormat format) {
+        if (!format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) || format.isBigEndian()
+                || (format.getSampleSizeInBits() != 16 && format.getSampleSizeInBits() != 24)) {
+            throw new IllegalArgumentException("Only 16 and 24 bit signed little-endian PCM is supported: " + format);
+        }
+
+        path = path.trim();
+        if (!path.toLowerCase().endsWith("." + EXTENSION)) {
+            path = path.concat("." + EXTENSION);
+        }
+        this.path = path;
+        this.format = format;
+    }
+
+    /**
+     * Opens the writer for the configured path, replacing any existing file, and writes the header.
+     *
+     * @throws IOException if the path is not writable
+     */
+    public void open() throws IOException {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        dataBytes = 0;
+
+        int channels = format.getChannels();
+        int bytesPerSample = format.getSampleSizeInBits() / 8;
+        int sampleRate = Math.round(format.getSampleRate());
+
+        buffer.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(0);
+        buffer.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        buffer.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(16);
+        buffer.putShort(FORMAT_PCM);
+        buffer.putShort((short) channels);
+        buffer.putInt(sampleRate);
+        buffer.putInt(sampleRate * channels * bytesPerSample);
+        buffer.putShort((short) (channels * bytesPerSample));
+        buffer.putShort((short) format.getSampleSizeInBits());
+        buffer.put("data".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(0);
+    }
+
+    /**
+     * Appends audio to the file.
+     *
+     * @param audio  the audio, in the writer's format
+     * @param offset the index of the first byte to write
+     * @param length the number of bytes to write, a whole number of frames
+     * @throws IOException if writing fails, or if the audio would exceed the 4 GB limit of a WAV file
+     */
+    public void write(byte[] audio, int offset, int length) throws IOException {
+        if (dataBytes + length > MAX_DATA_BYTES) {
+            throw new IOException("The audio is too long for a WAV file");
+        }
+        dataBytes += length;
+
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(audio, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    public Path getPath() {
+        return Paths.get(path);
+    }
+
+    /**
+     * Returns the number of audio bytes written so far.
+     */
+    public long getDataBytes() {
+        return dataBytes;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes any buffered audio, patches the sizes in the header and closes the writer.
+     *
+     * @throws IOException if writing or closing the file fails
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+            ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            size.putInt(0, (int) (dataBytes + HEADER_SIZE - 8));
+            channel.write(size, 4);
+            size.clear();
+            size.putInt(0, (int) dataBytes);
+            channel.write(size, HEADER_SIZE - 4);
+        } finally {
+            channel.close();
+        }
+    }
+}
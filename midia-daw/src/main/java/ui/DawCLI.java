@@ -1,13 +1,15 @@
 package ui;
 
+import java.beans.PropertyChangeSupport;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.InputMismatchException;
 import java.util.Scanner;
+import java.util.concurrent.CompletionException;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
@@ -16,9 +18,14 @@ import model.*;
 import model.instrument.Instrument;
 import model.instrument.PercussiveInstrument;
 import model.instrument.TonalInstrument;
-import persistance.JsonReader;
-import persistance.JsonWriter;
+import persistance.MidiFileReader;
+import persistance.MidiFileWriter;
 import persistance.OSPathResolver;
+import persistance.OfflineRenderer;
+import persistance.ProgressListener;
+import persistance.ProjectFormat;
+import persistance.ProjectIO;
+import persistance.StemRenderer;
 
 /**
  * Digital Audio Workstation console-based application
@@ -30,7 +37,6 @@ public class DawCLI {
 
     private TimelineController timelineController;
     private Scanner sc;
-    private JsonWriter writer;
     private final Path projDirectory = OSPathResolver.getProjectsDirectory();
 
     // EFFECTS: initializes an empty timeline, sets up Scanner, and runs the application
@@ -44,6 +50,242 @@ public class DawCLI {
         }
     }
 
+    // EFFECTS: exports every project file in sourceDirectory to a Standard MIDI File of the same name in
+    //          targetDirectory, printing one line per project; returns the number of projects that failed
+    public static int exportMidi(Path sourceDirectory, Path targetDirectory) {
+        File[] projectFiles = sourceDirectory.toFile().listFiles(file -> ProjectFormat.isProjectFile(file.getName()));
+        if (projectFiles == null) {
+            System.out.printf("%s is not a directory%n", sourceDirectory);
+            return 1;
+        }
+
+        if (!createDirectory(targetDirectory)) {
+            return projectFiles.length;
+        }
+
+        Arrays.sort(projectFiles);
+        int failed = 0;
+        for (File projectFile : projectFiles) {
+            Path target = withExtension(targetDirectory, projectFile, MidiFileWriter.EXTENSION);
+            if (!exportMidi(projectFile.getPath(), target)) {
+                failed++;
+            }
+        }
+
+        System.out.printf("Exported %d of %d projects%n", projectFiles.length - failed, projectFiles.length);
+        return failed;
+    }
+
+    // EFFECTS: exports the project at path to target, returns true if successful
+    private static boolean exportMidi(String path, Path target) {
+        long start = System.nanoTime();
+        Timeline timeline = readProject(path);
+        if (timeline == null) {
+            return false;
+        }
+
+        try {
+            writeMidiFile(timeline, target);
+        } catch (IOException e) {
+            System.out.printf("Unable to export %s: %s%n", path, e.getMessage());
+            target.toFile().delete();
+            return false;
+        } finally {
+            timeline.getPlayer().close();
+        }
+
+        System.out.printf("%s -> %s (%d ms)%n", path, target, (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    // EFFECTS: reads the project at path, printing why and returning null if it cannot be read
+    private static Timeline readProject(String path) {
+        try {
+            return ProjectFormat.fromPath(path).read(path, new PropertyChangeSupport(path));
+        } catch (IOException | RuntimeException e) {
+            System.out.printf("Unable to load %s: %s%n", path, e.getMessage());
+        } catch (MidiUnavailableException | InvalidMidiDataException e) {
+            System.out.printf("The project %s had invalid MIDI data: %s%n", path, e.getMessage());
+        }
+        return null;
+    }
+
+    // EFFECTS: writes the timeline to a Standard MIDI File at target
+    private static void writeMidiFile(Timeline timeline, Path target) throws IOException {
+        MidiFileWriter writer = new MidiFileWriter(target.toString());
+        writer.open();
+        try {
+            writer.write(timeline);
+        } finally {
+            writer.close();
+        }
+    }
+
+    // MODIFIES: directory
+    // EFFECTS: creates directory and its parents if missing; prints why and returns false if that fails
+    private static boolean createDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            return true;
+        } catch (IOException e) {
+            System.out.printf("Unable to create output directory %s%n", directory);
+            return false;
+        }
+    }
+
+    // EFFECTS: returns the path in directory named like file, with its extension replaced by extension
+    private static Path withExtension(Path directory, File file, String extension) {
+        String name = file.getName();
+        return directory.resolve(name.substring(0, name.lastIndexOf('.')) + "." + extension);
+    }
+
+    // EFFECTS: returns a listener printing the progress as a percentage after the activity, on one line
+    private static ProgressListener percentProgress(String activity) {
+        int[] lastPercent = { -1 };
+        return (processed, total) -> {
+            int percent = total == 0 ? 100 : (int) (processed * 100 / total);
+            if (percent != lastPercent[0]) {
+                lastPercent[0] = percent;
+                System.out.printf("\r%s... %d%%", activity, percent);
+            }
+            return true;
+        };
+    }
+
+    // EFFECTS: bounces the project at path to a WAV file at target with the given bits per sample, printing the
+    //          progress and render speed; returns true if successful
+    public static boolean bounceWav(Path path, Path target, int bitDepth) {
+        Timeline timeline;
+        try {
+            timeline = ProjectFormat.fromPath(path.toString()).read(path.toString(),
+                    new PropertyChangeSupport(path));
+        } catch (IOException | RuntimeException | MidiUnavailableException | InvalidMidiDataException e) {
+            System.out.printf("Unable to load %s: %s%n", path, e.getMessage());
+            return false;
+        }
+
+        try {
+            return bounceWav(timeline, target.toString(), bitDepth);
+        } finally {
+            timeline.getPlayer().close();
+        }
+    }
+
+    // EFFECTS: bounces the timeline to a WAV file at path, printing the progress and render speed;
+    //          returns true if successful
+    private static boolean bounceWav(Timeline timeline, String path, int bitDepth) {
+        try {
+            OfflineRenderer.Result result = OfflineRenderer.of(timeline).render(path, bitDepth,
+                    percentProgress("Bouncing"));
+            System.out.println();
+            System.out.printf("%s -> %s: %.1f s of audio in %.1f s (%.1fx real time)%n", timeline.getProjectName(),
+                    result.path(), result.audioSeconds(), result.wallSeconds(), result.speedFactor());
+            return true;
+        } catch (IOException | MidiUnavailableException | IllegalArgumentException e) {
+            System.out.println();
+            System.out.printf("Unable to bounce %s: %s%n", timeline.getProjectName(), e.getMessage());
+            return false;
+        }
+    }
+
+    // EFFECTS: bounces every audible track of the project at path to its own WAV file in directory with the given
+    //          bits per sample, on the given number of threads, printing the progress and render speed;
+    //          returns true if successful
+    public static boolean exportStems(Path path, Path directory, int bitDepth, int threads) {
+        Timeline timeline;
+        try {
+            timeline = ProjectFormat.fromPath(path.toString()).read(path.toString(),
+                    new PropertyChangeSupport(path));
+        } catch (IOException | RuntimeException | MidiUnavailableException | InvalidMidiDataException e) {
+            System.out.printf("Unable to load %s: %s%n", path, e.getMessage());
+            return false;
+        }
+
+        try {
+            return exportStems(timeline, directory, bitDepth, threads);
+        } finally {
+            timeline.getPlayer().close();
+        }
+    }
+
+    // EFFECTS: bounces every audible track of the timeline to its own WAV file in directory, printing the
+    //          progress and render speed; returns true if successful
+    private static boolean exportStems(Timeline timeline, Path directory, int bitDepth, int threads) {
+        try {
+            StemRenderer.Result result = StemRenderer.of(timeline).render(directory, bitDepth, threads,
+                    percentProgress("Exporting stems"));
+            System.out.println();
+            for (OfflineRenderer.Result stem : result.stems()) {
+                System.out.printf("  %s%n", stem.path());
+            }
+            System.out.printf("%s -> %d stems in %s: %.1f s of audio in %.1f s on %d threads (%.1fx real time)%n",
+                    timeline.getProjectName(), result.stems().size(), directory, result.audioSeconds(),
+                    result.wallSeconds(), result.threads(), result.speedFactor());
+            return true;
+        } catch (IOException | MidiUnavailableException | IllegalArgumentException e) {
+            System.out.println();
+            System.out.printf("Unable to export stems of %s: %s%n", timeline.getProjectName(), e.getMessage());
+            return false;
+        }
+    }
+
+    // EFFECTS: imports every Standard MIDI File in sourceDirectory as a binary project of the same name in
+    //          targetDirectory, splitting tracks into blocks of barsPerBlock bars and printing one line per file;
+    //          returns the number of files that failed, or 1 if barsPerBlock is not positive
+    public static int importMidi(Path sourceDirectory, Path targetDirectory, int barsPerBlock) {
+        if (barsPerBlock < 1) {
+            System.out.printf("Bars per block must be at least 1, was %d%n", barsPerBlock);
+            return 1;
+        }
+        File[] midiFiles = sourceDirectory.toFile().listFiles(file -> file.getName().toLowerCase()
+                .endsWith("." + MidiFileWriter.EXTENSION));
+        if (midiFiles == null) {
+            System.out.printf("%s is not a directory%n", sourceDirectory);
+            return 1;
+        }
+
+        if (!createDirectory(targetDirectory)) {
+            return midiFiles.length;
+        }
+
+        Arrays.sort(midiFiles);
+        int failed = 0;
+        for (File midiFile : midiFiles) {
+            Path target = withExtension(targetDirectory, midiFile, ProjectFormat.BINARY.getExtension());
+            if (!importMidi(midiFile.getPath(), target, barsPerBlock)) {
+                failed++;
+            }
+        }
+
+        System.out.printf("Imported %d of %d MIDI files%n", midiFiles.length - failed, midiFiles.length);
+        return failed;
+    }
+
+    // EFFECTS: imports the MIDI file at path and saves it to target, returns true if successful
+    private static boolean importMidi(String path, Path target, int barsPerBlock) {
+        long start = System.nanoTime();
+        Timeline timeline;
+        try {
+            timeline = new MidiFileReader(path, barsPerBlock).read(new PropertyChangeSupport(path));
+        } catch (IOException | RuntimeException e) {
+            System.out.printf("Unable to import %s: %s%n", path, e.getMessage());
+            return false;
+        }
+
+        try {
+            ProjectFormat.BINARY.write(target.toString(), timeline);
+        } catch (IOException | RuntimeException e) {
+            System.out.printf("Unable to save %s: %s%n", target, e.getMessage());
+            target.toFile().delete();
+            return false;
+        } finally {
+            timeline.getPlayer().close();
+        }
+
+        System.out.printf("%s -> %s (%d ms)%n", path, target, (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
     // EFFECTS: displays and handles user interaction with the program
     @SuppressWarnings("methodlength")
     private void appLoop() throws MidiUnavailableException {
@@ -115,10 +357,11 @@ public class DawCLI {
     }
 
     // EFFECTS: displays and handles user interaction with timeline
+    @SuppressWarnings("methodlength")
     private void timelineOptions() {
         while (true) {
             displayTimelineOptions();
-            String input = getStringInput(new String[] { "p", "t", "s", "b", "y", "r" }, false);
+            String input = getStringInput(new String[] { "p", "t", "s", "b", "y", "w", "e", "r" }, false);
 
             switch (input) {
                 case "p":
@@ -136,6 +379,12 @@ public class DawCLI {
                 case "y":
                     changeTimelineBPM();
                     break;
+                case "w":
+                    bounce();
+                    break;
+                case "e":
+                    stems();
+                    break;
                 case "r":
                     return;
             }
@@ -147,7 +396,7 @@ public class DawCLI {
     private void load() throws MidiUnavailableException {
         clearConsole();
         File projectsDirectory = new File(projDirectory.toString());
-        File[] projectFiles = projectsDirectory.listFiles(file -> file.getName().endsWith(".json"));
+        File[] projectFiles = projectsDirectory.listFiles(file -> ProjectFormat.isProjectFile(file.getName()));
 
         assert projectFiles != null;
         displayProjects(projectFiles);
@@ -155,15 +404,26 @@ public class DawCLI {
         System.out.println("Select an index to load");
         int index = getNumericalInput(1, projectFiles.length, false) - 1;
 
-        JsonReader reader = new JsonReader(projectFiles[index].getPath());
+        loadProject(projectFiles[index].getPath());
+    }
+
+    // MODIFIES: this
+    // EFFECTS: loads the project at path into the timeline controller, printing the progress
+    private void loadProject(String path) throws MidiUnavailableException {
         try {
-            System.out.println("Loading...");
-            Timeline newTimeline = reader.read(timelineController.getPropertyChangeSupport());
+            Timeline newTimeline = ProjectIO.readAsync(path, percentProgress("Loading")).join();
+            System.out.println();
+            newTimeline.setPropertyChangeSupport(timelineController.getPropertyChangeSupport());
             timelineController.setInstance(newTimeline);
-        } catch (IOException e) {
-            System.out.println("Something went terribly wrong, unable to load project");
-        } catch (InvalidMidiDataException e) {
-            System.out.println("The project had invalid MIDI data! Unable to load project");
+        } catch (CompletionException e) {
+            System.out.println();
+            if (e.getCause() instanceof MidiUnavailableException midiUnavailableException) {
+                throw midiUnavailableException;
+            } else if (e.getCause() instanceof InvalidMidiDataException) {
+                System.out.println("The project had invalid MIDI data! Unable to load project");
+            } else {
+                System.out.println("Something went terribly wrong, unable to load project");
+            }
         }
     }
 
@@ -172,7 +432,7 @@ public class DawCLI {
         int i = 1;
         for (File projectFile : projectFiles) {
             String projectName = projectFile.getName();
-            System.out.printf("[%d] %s%n", i++, projectName.substring(0, projectName.length() - 5));
+            System.out.printf("[%d] %s%n", i++, projectName);
         }
     }
 
@@ -196,11 +456,9 @@ public class DawCLI {
             save();
         } else {
             try {
-                writer = new JsonWriter(projDirectory.resolve( timeline.getProjectName() + ".json").toString());
-                writer.open();
-                writer.write(timeline);
-                writer.close();
-            } catch (FileNotFoundException e) {
+                ProjectFormat format = getFormatInput();
+                format.write(projDirectory.resolve(timeline.getProjectName()).toString(), timeline);
+            } catch (IOException e) {
                 System.out.println("Unable to save");
             }
         }
@@ -214,12 +472,10 @@ public class DawCLI {
         Timeline timeline = timelineController.getTimeline();
         timeline.setProjectName(name);
 
-        writer = new JsonWriter(projDirectory.resolve(name + ".json").toString());
+        ProjectFormat format = getFormatInput();
         try {
-            writer.open();
-            writer.write(timeline);
-            writer.close();
-        } catch (FileNotFoundException e) {
+            format.write(projDirectory.resolve(name).toString(), timeline);
+        } catch (IOException e) {
             System.out.println("Unable to save file, the name must not have invalid characters\n"
                     + "Press enter to continue");
 
@@ -227,6 +483,13 @@ public class DawCLI {
         }
     }
 
+    // EFFECTS: prompts user for the file format to save the project in
+    private ProjectFormat getFormatInput() {
+        System.out.println("Save as JSON [j] or compact binary [b]?");
+        String input = getStringInput(new String[] { "j", "b" }, false);
+        return input.equals("b") ? ProjectFormat.BINARY : ProjectFormat.JSON;
+    }
+
     // MODIFIES: this
     // EFFECTS: changes the BPM of the timeline to the prompted input
     private void changeTimelineBPM() {
@@ -269,8 +532,7 @@ public class DawCLI {
         Player player = timeline.getPlayer();
 
         if (timeline.getLengthTicks() - player.getTickPosition() == 0) {
-            player.getSequencer().setTickPosition(0);
-            player.syncToSequencerTickPosition();
+            player.setTickPosition(0);
         }
         try {
             timeline.play();
@@ -283,6 +545,34 @@ public class DawCLI {
 
     }
 
+    // EFFECTS: prompts for a file name and bit depth and bounces the timeline to a WAV file in the projects folder
+    private void bounce() {
+        clearConsole();
+        System.out.println("Name the WAV file\nIf the file already exists it will be overwritten");
+        String name = getStringInput(null, true);
+        System.out.println("16-bit [1] or 24-bit [2]?");
+        int bitDepth = getStringInput(new String[] { "1", "2" }, false).equals("2") ? 24 : 16;
+
+        bounceWav(timelineController.getTimeline(), projDirectory.resolve(name).toString(), bitDepth);
+        System.out.println("Press enter to continue");
+        sc.nextLine();
+    }
+
+    // EFFECTS: prompts for a folder name and bit depth and exports the stems of the timeline to that folder in the
+    //          projects folder
+    private void stems() {
+        clearConsole();
+        System.out.println("Name the folder for the stems\nExisting stems in it will be overwritten");
+        String name = getStringInput(null, true);
+        System.out.println("16-bit [1] or 24-bit [2]?");
+        int bitDepth = getStringInput(new String[] { "1", "2" }, false).equals("2") ? 24 : 16;
+
+        exportStems(timelineController.getTimeline(), projDirectory.resolve(name), bitDepth,
+                StemRenderer.defaultThreads());
+        System.out.println("Press enter to continue");
+        sc.nextLine();
+    }
+
     // EFFECTS: displays timeline options
     private void displayTimelineOptions() {
         clearConsole();
@@ -301,6 +591,8 @@ public class DawCLI {
         System.out.println("Change timeline position (seconds) [s]");
         System.out.println("Change timeline position (beat)    [b]");
         System.out.println("Change timeline BPM                [y]");
+        System.out.println("Bounce to WAV                      [w]");
+        System.out.println("Export stems                       [e]");
         System.out.println("Return to menu                     [r]");
     }
 
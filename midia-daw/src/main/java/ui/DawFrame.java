@@ -6,19 +6,20 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Objects;
 
 import javax.imageio.ImageIO;
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 
-import model.Timeline;
 import model.TimelineController;
 import model.editing.DawClipboard;
 import model.event.Event;
 import model.event.EventLog;
-import persistance.JsonWriter;
+import persistance.AutoSaveService;
+import persistance.EventLogFileSink;
 import ui.media.MediaControlPanel;
 import ui.menubar.MenuBar;
 import ui.menubar.menus.FileMenu;
@@ -34,6 +35,8 @@ public class DawFrame extends JFrame implements PropertyChangeListener {
     private final MediaControlPanel mediaControlPanel;
     private final TimelineController timelineController;
     private final DawClipboard dawClipboard;
+    private final AutoSaveService autoSaveService;
+    private EventLogFileSink eventLogFileSink;
 
     /**
      * Creates the main application frame and initializes UI components.
@@ -41,6 +44,7 @@ public class DawFrame extends JFrame implements PropertyChangeListener {
      * @throws IOException              if UI resources cannot be loaded
      */
     DawFrame() throws IOException {
+        startEventLogFileSink();
         timelineController = new TimelineController();
         menuBar = new MenuBar(timelineController);
         mediaControlPanel = new MediaControlPanel(timelineController);
@@ -48,11 +52,13 @@ public class DawFrame extends JFrame implements PropertyChangeListener {
         timelineViewPanel = new TimelineViewPanel(timelineController, dawClipboard);
 
         timelineController.addObserver(this);
+        autoSaveService = new AutoSaveService(timelineController, Paths.get(FileMenu.AUTO_SAVE_FILE_DIRECTORY));
+        autoSaveService.start();
 
         this.setLayout(new BorderLayout());
         this.setIconImage(ImageIO.read(Objects
                 .requireNonNull(getClass().getResourceAsStream("/images/logo.png"))));
-        this.setDefaultCloseOperation(EXIT_ON_CLOSE);
+        this.setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
         this.setBounds(new Rectangle(800, 600));
         this.addWindowListener(onCloseWindowAdapter());
 
@@ -66,6 +72,25 @@ public class DawFrame extends JFrame implements PropertyChangeListener {
 
     }
 
+    /**
+     * Starts writing the event log to the log directory, unless disabled with
+     * {@code -Dmidia.eventlog.file=false}.
+     */
+    private void startEventLogFileSink() {
+        if (!Boolean.parseBoolean(System.getProperty(EventLogFileSink.ENABLED_PROPERTY, "true"))) {
+            return;
+        }
+        EventLogFileSink sink = new EventLogFileSink();
+        try {
+            sink.start();
+        } catch (IOException e) {
+            System.out.println("Unable to open the event log file: " + e.getMessage());
+            return;
+        }
+        EventLog.getInstance().addSink(sink);
+        eventLogFileSink = sink;
+    }
+
     /**
      * Handles timeline-related property changes to update the frame UI.
      *
@@ -78,10 +103,6 @@ public class DawFrame extends JFrame implements PropertyChangeListener {
         if (propertyName.equals("timelineReplaced") || propertyName.equals("projectName")) {
             updateTitle();
         }
-
-        if (propertyName.equals("timelineAboutToBeReplaced")) {
-            autoSave();
-        }
     }
 
     /**
@@ -93,35 +114,27 @@ public class DawFrame extends JFrame implements PropertyChangeListener {
     }
 
     /**
-     * Creates a window listener that auto-saves and prints the event log on close.
+     * Creates a window listener that auto-saves, prints the event log, closes the log file and exits on close.
+     * The window is hidden right away; the application exits once the final autosave has been written.
      *
-     * @return a WindowAdapter that handles windowClosing to auto-save and dump the event log
+     * @return a WindowAdapter that handles windowClosing to auto-save, dump the event log and exit
      */
     private WindowAdapter onCloseWindowAdapter() {
         return new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                autoSave();
-                for (Event event : EventLog.getInstance()) {
-                    System.out.printf("[%s] %s%n", event.getDate(), event.getDescription());
-                }
+                setVisible(false);
+                autoSaveService.close().thenRun(() -> SwingUtilities.invokeLater(() -> {
+                    for (Event event : EventLog.getInstance()) {
+                        System.out.printf("[%s] [%s] %s%n", event.getDate(), event.getLevel(), event.getDescription());
+                    }
+                    if (eventLogFileSink != null) {
+                        EventLog.getInstance().removeSink(eventLogFileSink);
+                        eventLogFileSink.close();
+                    }
+                    System.exit(0);
+                }));
             }
         };
     }
-
-    /**
-     * Auto-saves the current timeline to the auto-save directory.
-     */
-    public void autoSave() {
-        Timeline t = timelineController.getTimeline();
-        JsonWriter writer = new JsonWriter(FileMenu.AUTO_SAVE_FILE_DIRECTORY.concat(t.getProjectName()));
-
-        try {
-            writer.open();
-            writer.write(t);
-            writer.close();
-        } catch (FileNotFoundException e) {
-            System.out.println("Unable to auto save, invalid path");
-        }
-    }
 }
@@ -1,16 +1,38 @@
 package ui;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 import com.formdev.flatlaf.FlatDarculaLaf;
 
+import persistance.MidiFileReader;
+import persistance.OfflineRenderer;
+import persistance.StemRenderer;
+
 /**
  * Launches the DAW UI; entry point of the application.
+ * <p>
+ * {@code --cli} starts the console interface instead. {@code --export-midi <projects> [output]} exports every
+ * project in a directory to Standard MIDI Files, and {@code --import-midi <midi files> [output] [bars per block]}
+ * saves every MIDI file in a directory as a binary project, {@code --bounce <project> [output] [bit depth]}
+ * renders a project to a WAV file, and {@code --stems <project> [directory] [bit depth] [threads]} renders each
+ * of its tracks to a WAV file in a directory, all without opening any interface.
  */
 public class Main {
 
     public static void main(String[] args) throws Exception {
         if (args.length > 0 && args[0].equals("--cli"))
             new DawCLI();
-        else {
+        else if (args.length > 1 && args[0].equals("--export-midi")) {
+            int failed = DawCLI.exportMidi(Paths.get(args[1]), Paths.get(args.length > 2 ? args[2] : args[1]));
+            System.exit(failed == 0 ? 0 : 1);
+        } else if (args.length > 1 && args[0].equals("--import-midi")) {
+            System.exit(importMidi(args));
+        } else if (args.length > 1 && args[0].equals("--bounce")) {
+            System.exit(bounce(args));
+        } else if (args.length > 1 && args[0].equals("--stems")) {
+            System.exit(exportStems(args));
+        } else {
             FlatDarculaLaf.setup();
             new DawFrame();
         }
@@ -21,4 +43,49 @@ public class Main {
             .filter(t -> !t.isDaemon())
             .count() == 1;
     }
+
+    // EFFECTS: runs --import-midi <midi files> [output] [bars per block] and returns the exit status
+    private static int importMidi(String[] args) {
+        int barsPerBlock = args.length > 3 ? parsePositive(args[3]) : MidiFileReader.DEFAULT_BARS_PER_BLOCK;
+        if (barsPerBlock < 1) {
+            System.out.println("Usage: --import-midi <midi files> [output] [bars per block, at least 1]");
+            return 2;
+        }
+        int failed = DawCLI.importMidi(Paths.get(args[1]), Paths.get(args.length > 2 ? args[2] : args[1]),
+                barsPerBlock);
+        return failed == 0 ? 0 : 1;
+    }
+
+    // EFFECTS: runs --bounce <project> [output] [bit depth] and returns the exit status
+    private static int bounce(String[] args) {
+        Path project = Paths.get(args[1]);
+        Path target = args.length > 2 ? Paths.get(args[2]) : project.resolveSibling(baseName(project));
+        int bitDepth = args.length > 3 ? Integer.parseInt(args[3]) : OfflineRenderer.DEFAULT_BIT_DEPTH;
+        return DawCLI.bounceWav(project, target, bitDepth) ? 0 : 1;
+    }
+
+    // EFFECTS: runs --stems <project> [directory] [bit depth] [threads] and returns the exit status
+    private static int exportStems(String[] args) {
+        Path project = Paths.get(args[1]);
+        Path directory = args.length > 2 ? Paths.get(args[2]) : project.resolveSibling(baseName(project) + " stems");
+        int bitDepth = args.length > 3 ? Integer.parseInt(args[3]) : OfflineRenderer.DEFAULT_BIT_DEPTH;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : StemRenderer.defaultThreads();
+        return DawCLI.exportStems(project, directory, bitDepth, threads) ? 0 : 1;
+    }
+
+    // EFFECTS: returns the positive integer in value, or -1 if it is not one
+    private static int parsePositive(String value) {
+        try {
+            int number = Integer.parseInt(value.trim());
+            return number > 0 ? number : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // EFFECTS: returns the file name of path without its extension
+    private static String baseName(Path path) {
+        String name = path.getFileName().toString();
+        return name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+    }
 }
@@ -11,10 +11,13 @@ import ui.windows.timeline.midi.TrackRenderPanel;
 
 /**
  * Container panel that overlays a moving playhead line above track components.
- * Observes the timeline/player and repaints when the position changes.
+ * Observes the timeline/player and repaints the columns the line left and entered when the position changes;
+ * rebinding to another player repaints the whole panel.
  */
 public abstract class LineContainerPanel extends JPanel {
 
+    private static final int LINE_REPAINT_SLACK = 1;
+
     private final TimelineController timelineController;
     private Player player;
     private int lineX;
@@ -35,11 +38,23 @@ public abstract class LineContainerPanel extends JPanel {
     }
 
     /**
-     * Updates the x-position of the playhead line from the current tick and repaints.
+     * Updates the x-position of the playhead line from the current tick.
+     * <p>
+     * Only the old and new line columns are repainted; children paint just the part inside that clip.
      */
     public void updateLineX() {
+        int oldLineX = lineX;
         this.lineX = timelineController.getTimeline().scaleTickToPixel(player.getTickPosition());
-        repaint();
+
+        if (oldLineX != lineX) {
+            repaintLineColumn(oldLineX);
+            repaintLineColumn(lineX);
+        }
+    }
+
+    // EFFECTS: schedules a repaint of the column covering the playhead line at x, with slack for scaled displays
+    private void repaintLineColumn(int x) {
+        repaint(x - LINE_REPAINT_SLACK, 0, 1 + 2 * LINE_REPAINT_SLACK, getHeight());
     }
 
     /**
@@ -67,10 +82,13 @@ public abstract class LineContainerPanel extends JPanel {
     }
 
     /**
-     * Rebinds to the current player (e.g., on timeline replacement) and updates the playhead.
+     * Rebinds to the current player (e.g., on timeline replacement) and repaints the whole panel.
+     * <p>
+     * Unlike tick movement, a replaced timeline changes everything under the playhead, not just its columns.
      */
     protected void updatePlayer() {
         this.player = timelineController.getTimeline().getPlayer();
         updateLineX();
+        repaint();
     }
 }
\ No newline at end of file
@@ -247,6 +247,10 @@ public class MediaControlPanel extends JPanel implements ActionListener, ChangeL
             case "tickPosition":
                 updateTimeDisplay();
                 break;
+            case "tempoMap":
+                updateBpmValue();
+                updateTimeDisplay();
+                break;
             default:
                 break;
         }
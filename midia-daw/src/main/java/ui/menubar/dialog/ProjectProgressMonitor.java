@@ -0,0 +1,84 @@
+package ui.menubar.dialog;
+
+import java.awt.Component;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+
+import persistance.ProgressListener;
+
+/**
+ * Shows the progress of a project being read or written in the background, and cancels it when the user
+ * presses Cancel.
+ * <p>
+ * Progress may be reported from any thread; the monitor is only updated on the EDT, at most once per pending
+ * event. The monitor pops up only if the work looks like it will take a while.
+ */
+public class ProjectProgressMonitor implements ProgressListener {
+
+    private static final int SCALE = 1000;
+
+    private final ProgressMonitor monitor;
+    private final String unit;
+    private final AtomicBoolean updatePending;
+
+    private volatile long processed;
+    private volatile long total;
+    private volatile boolean cancelled;
+    private boolean closed;
+
+    /**
+     * Creates a monitor. Must be called on the EDT.
+     *
+     * @param parent  the component the monitor is shown over
+     * @param message the description of the work
+     * @param unit    the unit progress is reported in, such as "bytes"
+     */
+    public ProjectProgressMonitor(Component parent, String message, String unit) {
+        this.unit = unit;
+        this.updatePending = new AtomicBoolean();
+        monitor = new ProgressMonitor(parent, message, " ", 0, SCALE);
+        monitor.setMillisToDecideToPopup(250);
+        monitor.setMillisToPopup(500);
+    }
+
+    /**
+     * Records the progress and schedules an update of the monitor.
+     *
+     * @return false once the user has pressed Cancel
+     */
+    @Override
+    public boolean progress(long processed, long total) {
+        this.processed = processed;
+        this.total = total;
+        if (updatePending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::update);
+        }
+        return !cancelled;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: shows the latest progress, and records whether the user pressed Cancel
+    private void update() {
+        updatePending.set(false);
+        if (closed) {
+            return;
+        }
+        long total = this.total;
+        long processed = Math.min(this.processed, total);
+        monitor.setNote(String.format("%,d of %,d %s", processed, total, unit));
+        monitor.setProgress(total == 0 ? SCALE : (int) (processed * SCALE / total));
+        if (monitor.isCanceled()) {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Closes the monitor. Must be called on the EDT.
+     */
+    public void close() {
+        closed = true;
+        monitor.close();
+    }
+}
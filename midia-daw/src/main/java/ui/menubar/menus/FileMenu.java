@@ -1,27 +1,40 @@
 package ui.menubar.menus;
 
 import java.awt.event.ActionEvent;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiUnavailableException;
 import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
-import javax.swing.filechooser.FileFilter;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import org.json.JSONException;
 
 import model.Timeline;
 import model.TimelineController;
-import persistance.JsonReader;
-import persistance.JsonWriter;
+import model.event.Event;
+import model.event.EventLog;
+import model.event.LogLevel;
+import persistance.MidiFileWriter;
 import persistance.OSPathResolver;
+import persistance.OfflineRenderer;
+import persistance.ProjectFormat;
+import persistance.ProjectIO;
+import persistance.ProjectSnapshot;
+import persistance.StemRenderer;
+import persistance.WavWriter;
+import ui.menubar.dialog.ProjectProgressMonitor;
 
 /**
- * The File menu, responsible for opening, saving, creating, and deleting projects.
+ * The File menu, responsible for opening, saving, creating, importing, exporting, bouncing, and deleting projects.
  */
 public class FileMenu extends Menu {
 
@@ -31,12 +44,19 @@ public class FileMenu extends Menu {
     private final MenuItem open;
     private final MenuItem save;
     private final MenuItem newProject;
+    private final MenuItem importMidi;
+    private final MenuItem exportMidi;
+    private final MenuItem bounceWav;
+    private final MenuItem exportStems;
     private final MenuItem delete;
 
     private final JFileChooser fileChooser;
+    private final JFileChooser midiFileChooser;
+    private final JFileChooser wavFileChooser;
+    private final JFileChooser stemsDirectoryChooser;
 
     /**
-     * Constructs the File menu with menu items and a JSON-only file chooser.
+     * Constructs the File menu with menu items and a file chooser offering each project format.
      *
      * @param timelineController the controller used to handle menu actions
      */
@@ -46,14 +66,37 @@ public class FileMenu extends Menu {
         open = new MenuItem("Open Project", this);
         save = new MenuItem("Save Project", this);
         newProject = new MenuItem("New Project", this);
+        importMidi = new MenuItem("Import MIDI File", this);
+        exportMidi = new MenuItem("Export as MIDI", this);
+        bounceWav = new MenuItem("Bounce to WAV", this);
+        exportStems = new MenuItem("Export Stems", this);
         delete = new MenuItem("Delete a Project", this);
 
-        FileFilter jsonFilter = new FileNameExtensionFilter("JSON file", "json");
-
         UIManager.put("FileChooser.readOnly", Boolean.TRUE);
-        fileChooser = new JFileChooser(PROJECTS_DIRECTORY);
-        fileChooser.setFileFilter(jsonFilter);
-        fileChooser.setAcceptAllFileFilterUsed(false);
+        fileChooser = createProjectFileChooser();
+
+        midiFileChooser = new JFileChooser(PROJECTS_DIRECTORY);
+        midiFileChooser.setAcceptAllFileFilterUsed(false);
+        midiFileChooser.setFileFilter(new FileNameExtensionFilter("Standard MIDI File", MidiFileWriter.EXTENSION));
+
+        wavFileChooser = new JFileChooser(PROJECTS_DIRECTORY);
+        wavFileChooser.setAcceptAllFileFilterUsed(false);
+        wavFileChooser.setFileFilter(new FileNameExtensionFilter("WAV Audio", WavWriter.EXTENSION));
+
+        stemsDirectoryChooser = new JFileChooser(PROJECTS_DIRECTORY);
+        stemsDirectoryChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+    }
+
+    // EFFECTS: returns a file chooser in the projects directory offering each project format
+    private static JFileChooser createProjectFileChooser() {
+        JFileChooser chooser = new JFileChooser(PROJECTS_DIRECTORY);
+        chooser.setAcceptAllFileFilterUsed(false);
+        for (ProjectFormat format : ProjectFormat.values()) {
+            chooser.addChoosableFileFilter(new FileNameExtensionFilter(format.getDescription(),
+                    format.getExtension()));
+        }
+        chooser.setFileFilter(chooser.getChoosableFileFilters()[0]);
+        return chooser;
     }
 
     /**
@@ -67,6 +110,14 @@ public class FileMenu extends Menu {
             openProject();
         } else if (e.getSource().equals(save)) {
             saveProject();
+        } else if (e.getSource().equals(importMidi)) {
+            importMidi();
+        } else if (e.getSource().equals(exportMidi)) {
+            exportMidi();
+        } else if (e.getSource().equals(bounceWav)) {
+            bounceWav();
+        } else if (e.getSource().equals(exportStems)) {
+            exportStems();
         } else if (e.getSource().equals(delete)) {
             deleteProject();
         }
@@ -80,7 +131,8 @@ public class FileMenu extends Menu {
     }
 
     /**
-     * Prompts the user to open a project JSON file and loads it into the application.
+     * Prompts the user to open a project file and loads it into the application in the background, in the
+     * format given by the file's extension.
      */
     private void openProject() {
         int result = fileChooser.showOpenDialog(this);
@@ -90,22 +142,25 @@ public class FileMenu extends Menu {
         }
 
         String path = fileChooser.getSelectedFile().getPath();
-        JsonReader reader = new JsonReader(path);
+        ProjectProgressMonitor progress = new ProjectProgressMonitor(this,
+                "Opening " + fileChooser.getSelectedFile().getName(), "bytes");
 
-        try {
-            Timeline newTimeline = reader.read(timelineController.getPropertyChangeSupport());
-            timelineController.setInstance(newTimeline);
-        } catch (JSONException e) {
-            System.out.printf("Invalid JSON data at path %s%n", path);
-        } catch (IOException | MidiUnavailableException | InvalidPathException e) {
-            System.out.println("Unable to load file");
-        } catch (InvalidMidiDataException e) {
-            System.out.println("The file had invalid MIDI data, cannot load");
-        }
+        replaceTimelineWhenRead(ProjectIO.readAsync(path, progress), progress, cause -> {
+            if (cause instanceof CancellationException) {
+                System.out.println("Opening cancelled");
+            } else if (cause instanceof JSONException) {
+                System.out.printf("Invalid JSON data at path %s%n", path);
+            } else if (cause instanceof InvalidMidiDataException) {
+                System.out.println("The file had invalid MIDI data, cannot load");
+            } else {
+                System.out.println("Unable to load file");
+            }
+        });
     }
 
     /**
-     * Saves the current project to a chosen file path.
+     * Saves the current project to a chosen file path in the background, in the format of the selected file
+     * filter.
      */
     private void saveProject() {
         int result = fileChooser.showSaveDialog(this);
@@ -115,19 +170,206 @@ public class FileMenu extends Menu {
         }
 
         String path = fileChooser.getSelectedFile().getPath();
-        JsonWriter writer = new JsonWriter(path);
+        Timeline timeline = timelineController.getTimeline();
+        timeline.setProjectName(fileChooser.getSelectedFile().getName());
 
-        try {
-            Timeline timeline = timelineController.getTimeline();
-            timeline.setProjectName(fileChooser.getSelectedFile().getName());
+        ProjectProgressMonitor progress = new ProjectProgressMonitor(this,
+                "Saving " + timeline.getProjectName(), "notes");
+        ProjectIO.writeAsync(path, getSelectedFormat(), ProjectSnapshot.of(timeline), progress)
+                .whenComplete((target, e) -> SwingUtilities.invokeLater(() -> {
+                    progress.close();
+                    if (e == null) {
+                        return;
+                    }
+                    if (unwrap(e) instanceof CancellationException) {
+                        System.out.println("Save cancelled");
+                    } else {
+                        System.out.println("Invalid path in Project Save");
+                    }
+                }));
+    }
 
+    /**
+     * Replaces the timeline with the one being read once reading completes, on the EDT.
+     *
+     * @param read      the timeline being read, with a detached PropertyChangeSupport
+     * @param progress  the monitor showing the read's progress, closed when it completes
+     * @param onFailure reports why the read failed or was cancelled
+     */
+    private void replaceTimelineWhenRead(CompletableFuture<Timeline> read, ProjectProgressMonitor progress,
+                                         Consumer<Throwable> onFailure) {
+        read.whenComplete((timeline, e) -> SwingUtilities.invokeLater(() -> {
+            progress.close();
+            if (e != null) {
+                onFailure.accept(unwrap(e));
+                return;
+            }
+            timeline.setPropertyChangeSupport(timelineController.getPropertyChangeSupport());
+            timelineController.setInstance(timeline);
+        }));
+    }
+
+    // EFFECTS: returns the exception a background task failed with
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Returns the project format of the file filter selected in the file chooser.
+     */
+    private ProjectFormat getSelectedFormat() {
+        FileNameExtensionFilter filter = (FileNameExtensionFilter) fileChooser.getFileFilter();
+        for (ProjectFormat format : ProjectFormat.values()) {
+            if (format.getExtension().equals(filter.getExtensions()[0])) {
+                return format;
+            }
+        }
+        return ProjectFormat.JSON;
+    }
+
+    /**
+     * Prompts the user for a Standard MIDI File and opens it as a new project once it has been read in the
+     * background.
+     */
+    private void importMidi() {
+        int result = midiFileChooser.showOpenDialog(this);
+
+        if (result == JFileChooser.CANCEL_OPTION || result == JFileChooser.ERROR_OPTION) {
+            return;
+        }
+
+        String path = midiFileChooser.getSelectedFile().getPath();
+        ProjectProgressMonitor progress = new ProjectProgressMonitor(this,
+                "Importing " + midiFileChooser.getSelectedFile().getName(), "bytes");
+
+        replaceTimelineWhenRead(ProjectIO.importMidiAsync(path, progress), progress, cause -> {
+            if (cause instanceof CancellationException) {
+                System.out.println("Import cancelled");
+            } else {
+                System.out.println("Unable to import MIDI file: " + cause.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Exports the current project to a chosen path as a Standard MIDI File.
+     */
+    private void exportMidi() {
+        int result = midiFileChooser.showSaveDialog(this);
+
+        if (result == JFileChooser.CANCEL_OPTION || result == JFileChooser.ERROR_OPTION) {
+            return;
+        }
+
+        try {
+            MidiFileWriter writer = new MidiFileWriter(midiFileChooser.getSelectedFile().getPath());
             writer.open();
-            writer.write(timeline);
-            writer.close();
+            try {
+                writer.write(timelineController.getTimeline());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Unable to export MIDI file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Bounces the current project to a chosen path as a WAV file of the chosen bit depth in the background,
+     * and reports how much faster than real time it rendered.
+     */
+    private void bounceWav() {
+        int result = wavFileChooser.showSaveDialog(this);
+
+        if (result == JFileChooser.CANCEL_OPTION || result == JFileChooser.ERROR_OPTION) {
+            return;
+        }
+
+        int bitDepth = chooseBitDepth("Bounce to WAV");
+        if (bitDepth == -1) {
+            return;
+        }
+
+        Timeline timeline = timelineController.getTimeline();
+        ProjectProgressMonitor progress = new ProjectProgressMonitor(this,
+                "Bouncing " + timeline.getProjectName(), "frames");
+        ProjectIO.bounceAsync(wavFileChooser.getSelectedFile().getPath(), OfflineRenderer.of(timeline),
+                        bitDepth, progress)
+                .whenComplete((bounce, e) -> SwingUtilities.invokeLater(() -> {
+                    progress.close();
+                    bounceCompleted(timeline.getProjectName(), bounce, e);
+                }));
+    }
+
+    // EFFECTS: reports the outcome of a bounce of the named project
+    private static void bounceCompleted(String projectName, OfflineRenderer.Result bounce, Throwable e) {
+        if (e == null) {
+            EventLog.getInstance().logEvent(new Event(LogLevel.INFO,
+                    "Bounced %s to %s: %.1f s of audio in %.1f s (%.1fx real time)", projectName, bounce.path(),
+                    bounce.audioSeconds(), bounce.wallSeconds(), bounce.speedFactor()));
+            System.out.printf("Bounced %.1f s of audio in %.1f s (%.1fx real time)%n", bounce.audioSeconds(),
+                    bounce.wallSeconds(), bounce.speedFactor());
+        } else if (unwrap(e) instanceof CancellationException) {
+            System.out.println("Bounce cancelled");
+        } else {
+            System.out.println("Unable to bounce to WAV: " + unwrap(e).getMessage());
+        }
+    }
+
+    /**
+     * Bounces every audible track of the current project to its own WAV file in a chosen directory, rendering
+     * the tracks concurrently in the background, one per available core.
+     */
+    private void exportStems() {
+        int result = stemsDirectoryChooser.showDialog(this, "Export Stems Here");
+
+        if (result == JFileChooser.CANCEL_OPTION || result == JFileChooser.ERROR_OPTION) {
+            return;
+        }
+
+        int bitDepth = chooseBitDepth("Export Stems");
+        if (bitDepth == -1) {
+            return;
+        }
+
+        Timeline timeline = timelineController.getTimeline();
+        ProjectProgressMonitor progress = new ProjectProgressMonitor(this,
+                "Exporting stems of " + timeline.getProjectName(), "frames");
+        Path directory = stemsDirectoryChooser.getSelectedFile().toPath();
+        ProjectIO.exportStemsAsync(directory, StemRenderer.of(timeline), bitDepth, StemRenderer.defaultThreads(),
+                        progress)
+                .whenComplete((export, e) -> SwingUtilities.invokeLater(() -> {
+                    progress.close();
+                    stemsExported(timeline.getProjectName(), directory, export, e);
+                }));
+    }
+
+    // EFFECTS: reports the outcome of a stem export of the named project to directory
+    private static void stemsExported(String projectName, Path directory, StemRenderer.Result export,
+                                      Throwable e) {
+        if (e == null) {
+            EventLog.getInstance().logEvent(new Event(LogLevel.INFO,
+                    "Exported %d stems of %s to %s: %.1f s of audio in %.1f s on %d threads",
+                    export.stems().size(), projectName, directory, export.audioSeconds(), export.wallSeconds(),
+                    export.threads()));
+            System.out.printf("Exported %d stems: %.1f s of audio in %.1f s (%.1fx real time)%n",
+                    export.stems().size(), export.audioSeconds(), export.wallSeconds(), export.speedFactor());
+        } else if (unwrap(e) instanceof CancellationException) {
+            System.out.println("Stem export cancelled");
+        } else {
+            System.out.println("Unable to export stems: " + unwrap(e).getMessage());
+        }
+    }
 
-        } catch (FileNotFoundException e) {
-            System.out.println("Invalid path in Project Save");
+    // EFFECTS: asks for the bit depth of WAV files; returns 16 or 24, or -1 if the dialog was closed
+    private int chooseBitDepth(String title) {
+        String[] bitDepths = { "16-bit", "24-bit" };
+        int choice = JOptionPane.showOptionDialog(this, "Bit depth of the WAV file", title,
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, bitDepths, bitDepths[0]);
+        if (choice == JOptionPane.CLOSED_OPTION) {
+            return -1;
         }
+        return choice == 0 ? 16 : 24;
     }
 
     /**
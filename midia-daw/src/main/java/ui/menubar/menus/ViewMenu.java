@@ -2,8 +2,12 @@ package ui.menubar.menus;
 
 import java.awt.event.ActionEvent;
 
+import javax.swing.JOptionPane;
+
+import model.CoalescingPropertyChangeSupport;
 import model.TimelineController;
 import ui.menubar.dialog.BeatConfigurationInputDialog;
+import ui.windows.timeline.midi.TrackRenderPanel;
 
 /**
  * View the menu for timeline-related display settings (e.g., beat configuration).
@@ -11,6 +15,7 @@ import ui.menubar.dialog.BeatConfigurationInputDialog;
 public class ViewMenu extends Menu {
 
     private final MenuItem beatConfiguration;
+    private final MenuItem paintStatistics;
     private final BeatConfigurationInputDialog beatConfigurationInputDialog;
 
     /**
@@ -22,6 +27,7 @@ public class ViewMenu extends Menu {
         super("View", timelineController);
         this.timelineController = timelineController;
         beatConfiguration = new MenuItem("Beat configuration", this);
+        paintStatistics = new MenuItem("Paint statistics", this);
         beatConfigurationInputDialog = new BeatConfigurationInputDialog(this, timelineController);
     }
 
@@ -32,7 +38,24 @@ public class ViewMenu extends Menu {
     public void actionPerformed(ActionEvent e) {
         if (e.getSource().equals(beatConfiguration)) {
             beatConfigurationInputDialog.display();
+        } else if (e.getSource().equals(paintStatistics)) {
+            showPaintStatistics();
         }
     }
 
+    /**
+     * Shows the track paint and event dispatch counters collected since the last time they were shown,
+     * then resets them.
+     */
+    private void showPaintStatistics() {
+        CoalescingPropertyChangeSupport pcs = timelineController.getPropertyChangeSupport();
+        JOptionPane.showMessageDialog(this, String.format("Track paints: %d%nAverage paint time: %.3f ms%n"
+                        + "Events fired: %d%nEvents delivered: %d",
+                TrackRenderPanel.getPaintCount(), TrackRenderPanel.getAveragePaintMs(),
+                pcs.getFiredCount(), pcs.getDeliveredCount()),
+                "Paint statistics", JOptionPane.INFORMATION_MESSAGE);
+        TrackRenderPanel.resetPaintStatistics();
+        pcs.resetStatistics();
+    }
+
 }
@@ -24,7 +24,8 @@ public class PianoRollFrame extends JFrame implements PropertyChangeListener {
      */
     public PianoRollFrame(JFrame parent, Block block, TimelineController timelineController, MidiTrack parentMidiTrack, String title) {
         super(title);
-        pianoRollPlayer = new PianoRollPlayer(block, parentMidiTrack, timelineController.getTimeline().getPlayer().getBPM());
+        pianoRollPlayer = new PianoRollPlayer(block, parentMidiTrack, timelineController.getTimeline().getPlayer()
+                .getBPMAt(block.getStartTick()));
         timelineController.addObserver(this);
 
         setLayout(new BorderLayout());
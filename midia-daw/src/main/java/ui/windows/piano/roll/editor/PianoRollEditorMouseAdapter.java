@@ -150,7 +150,7 @@ public class PianoRollEditorMouseAdapter extends MouseInputAdapter {
      * Removes the specified note from the block and notifies listeners.
      */
     private void removeNote(Note note) {
-        boolean removeSuccessful = pianoRollPlayer.getBlock().getNotes().remove(note);
+        boolean removeSuccessful = pianoRollPlayer.getBlock().removeNote(note);
         assert removeSuccessful : String.format("Note %s was note found when removing", note);
         notifyControllerNoteChange("noteRemoved");
     }
@@ -159,13 +159,7 @@ public class PianoRollEditorMouseAdapter extends MouseInputAdapter {
      * Returns the note under the given tick and pitch, or null if none.
      */
     private Note getNoteOnPosition(long tick, int pitch) {
-        for (Note n : pianoRollPlayer.getBlock().getNotes()) {
-            if (n.getStartTick() <= tick && n.getStartTick() + n.getDurationTicks() >= tick && pitch == n.getPitch()) {
-                return n;
-            }
-        }
-
-        return null;
+        return pianoRollPlayer.getBlock().getNoteAt(tick, pitch);
     }
 
     /**
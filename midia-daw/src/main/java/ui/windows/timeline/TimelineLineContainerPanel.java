@@ -3,10 +3,13 @@ package ui.windows.timeline;
 import model.Player;
 import model.TimelineController;
 import ui.common.LineContainerPanel;
+import ui.windows.timeline.midi.TrackRenderPanel;
 
+import java.awt.Component;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 
+
 /**
  * Overlay panel rendering the playhead line over the timeline track area.
  */
@@ -26,8 +29,15 @@ public class TimelineLineContainerPanel extends LineContainerPanel implements Pr
 
         switch (propertyName) {
             case "tickPosition":
+                updateLineX();
+                updatePlayingNotes();
+                break;
+            case "playbackEnded":
+                updatePlayingNotes();
+                break;
             case "horizontalScaleFactor":
                 updateLineX();
+                repaint();
                 break;
             case "timelineReplaced":
                 updatePlayer();
@@ -40,4 +50,15 @@ public class TimelineLineContainerPanel extends LineContainerPanel implements Pr
                 break;
         }
     }
+
+    /**
+     * Lets each track repaint the notes that started or stopped playing.
+     */
+    private void updatePlayingNotes() {
+        for (Component component : getComponents()) {
+            if (component instanceof TrackRenderPanel trackRenderPanel) {
+                trackRenderPanel.updatePlayingTick();
+            }
+        }
+    }
 }
@@ -0,0 +1,263 @@
+package ui.windows.timeline.midi;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.SwingUtilities;
+
+import model.Block;
+import model.MidiTrack;
+import model.TimelineController;
+
+/**
+ * Caches the notes of each Block rendered into a transparent image, so the timeline can blit whole blocks
+ * instead of drawing every note on each repaint.
+ * <p>
+ * A thumbnail is keyed by the block's version and the {@link NoteLayout} it was drawn with, so any edit,
+ * rescale or change of the track's pitch range makes it stale. Missing thumbnails are rendered lazily by a
+ * small pool of worker threads from a snapshot of the notes taken on the EDT; until one is ready the caller
+ * draws the notes directly. The least recently used thumbnails are evicted once the cache exceeds its memory cap,
+ * and the thumbnails of blocks removed from the timeline as soon as they are removed.
+ * <p>
+ * The worker pool is started on the first render and shut down by {@link #close()}. All methods must be called on
+ * the EDT.
+ */
+public class BlockThumbnailCache implements PropertyChangeListener {
+
+    private static final long MAX_CACHED_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_THUMBNAIL_WIDTH = 8192;
+    private static final int WORKER_COUNT = 2;
+
+    private record Key(long blockVersion, NoteLayout layout) {
+    }
+
+    private record Thumbnail(Key key, BufferedImage image) {
+        long bytes() {
+            return (long) image.getWidth() * image.getHeight() * Integer.BYTES;
+        }
+    }
+
+    private final LinkedHashMap<Block, Thumbnail> thumbnails;
+    private final HashMap<Block, Key> pending;
+    private final TimelineController timelineController;
+    private ExecutorService workers; // null until the first render and after close
+    private long cachedBytes;
+
+    /**
+     * Constructs an empty cache of the blocks of the controller's timeline.
+     *
+     * @param timelineController the controller whose timeline the blocks belong to
+     */
+    public BlockThumbnailCache(TimelineController timelineController) {
+        this.timelineController = timelineController;
+        thumbnails = new LinkedHashMap<>(16, 0.75f, true);
+        pending = new HashMap<>();
+    }
+
+    /**
+     * Returns the thumbnail of the block for the given layout, or null if it is not ready yet.
+     * <p>
+     * On a miss, a render is scheduled (unless one is already pending) and {@code onReady} is run on the EDT
+     * once the thumbnail has been added. Empty blocks and blocks too wide to cache are never rendered.
+     *
+     * @param block   the block to look up
+     * @param layout  the layout the notes must be drawn with
+     * @param height  the height of the thumbnail in pixels
+     * @param onReady run on the EDT when a scheduled thumbnail becomes available
+     * @return an image of the block's notes, with x = 0 at the block's start tick, or null
+     */
+    BufferedImage getThumbnail(Block block, NoteLayout layout, int height, Runnable onReady) {
+        Key key = new Key(block.getVersion(), layout);
+        Thumbnail thumbnail = thumbnails.get(block);
+
+        if (thumbnail != null && thumbnail.key().equals(key)) {
+            return thumbnail.image();
+        }
+
+        int originX = layout.tickToPixel(block.getStartTick());
+        // One pixel of slack covers rounding the note start and duration separately
+        int width = layout.tickToPixel(block.getLastNoteEndTickTimeline()) - originX + 1;
+        if (block.getNotes().isEmpty() || width > MAX_THUMBNAIL_WIDTH || key.equals(pending.get(block))) {
+            return null;
+        }
+
+        pending.put(block, key);
+        NoteSnapshot snapshot = new NoteSnapshot(block);
+        workers().execute(() -> {
+            BufferedImage image = render(snapshot, layout, originX, height);
+            SwingUtilities.invokeLater(() -> {
+                if (!pending.remove(block, key) || block.getVersion() != key.blockVersion()) {
+                    return;
+                }
+                put(block, new Thumbnail(key, image));
+                onReady.run();
+            });
+        });
+
+        return null;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns the worker pool, starting it if needed
+    private ExecutorService workers() {
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(WORKER_COUNT, r -> {
+                Thread thread = new Thread(r, "Block thumbnail renderer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return workers;
+    }
+
+    // EFFECTS: draws the snapshot notes into a new transparent image
+    private static BufferedImage render(NoteSnapshot snapshot, NoteLayout layout, int originX, int height) {
+        int width = 1;
+        for (int i = 0; i < snapshot.size; i++) {
+            int endX = layout.tickToPixel(snapshot.startTicks[i]) + layout.tickToPixel(snapshot.durationTicks[i]);
+            width = Math.max(width, endX - originX);
+        }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(TrackRenderPanel.NOTE_COLOR);
+        for (int i = 0; i < snapshot.size; i++) {
+            layout.fillNote(g, snapshot.startTicks[i], snapshot.durationTicks[i], snapshot.pitches[i], originX);
+        }
+        g.dispose();
+
+        return image;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: adds the thumbnail, evicting the least recently used ones while over the memory cap
+    private void put(Block block, Thumbnail thumbnail) {
+        Thumbnail replaced = thumbnails.put(block, thumbnail);
+        if (replaced != null) {
+            cachedBytes -= replaced.bytes();
+        }
+        cachedBytes += thumbnail.bytes();
+
+        Iterator<Thumbnail> eldest = thumbnails.values().iterator();
+        while (cachedBytes > MAX_CACHED_BYTES && eldest.hasNext()) {
+            cachedBytes -= eldest.next().bytes();
+            eldest.remove();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: drops the thumbnails of blocks that were edited since they were rendered
+    private void evictStale() {
+        Iterator<Map.Entry<Block, Thumbnail>> entries = thumbnails.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Block, Thumbnail> entry = entries.next();
+            if (entry.getKey().getVersion() != entry.getValue().key().blockVersion()) {
+                cachedBytes -= entry.getValue().bytes();
+                entries.remove();
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: drops the thumbnails and forgets the pending renders of blocks no longer on the timeline
+    private void evictRemoved() {
+        Set<Block> blocks = new HashSet<>();
+        for (MidiTrack midiTrack : timelineController.getTimeline().getMidiTracks()) {
+            blocks.addAll(midiTrack.getBlocks());
+        }
+
+        Iterator<Map.Entry<Block, Thumbnail>> entries = thumbnails.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Block, Thumbnail> entry = entries.next();
+            if (!blocks.contains(entry.getKey())) {
+                cachedBytes -= entry.getValue().bytes();
+                entries.remove();
+            }
+        }
+        pending.keySet().retainAll(blocks);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: drops all thumbnails and forgets pending renders
+    private void clear() {
+        thumbnails.clear();
+        pending.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Drops all thumbnails and shuts down the worker pool. Renders still running are discarded. A later lookup
+     * starts a new pool.
+     */
+    public void close() {
+        clear();
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    /**
+     * Drops thumbnails made stale by note and block edits or of removed blocks and tracks, and everything when
+     * the timeline or its scale changes.
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> propertyChange(evt));
+            return;
+        }
+
+        switch (evt.getPropertyName()) {
+            case "pianoRollNoteEdited":
+            case "blockUpdated":
+                evictStale();
+                break;
+            case "blockDeleted":
+            case "midiTracks":
+                evictRemoved();
+                break;
+            case "timelineReplaced":
+            case "horizontalScaleFactor":
+                clear();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * The notes of a block, copied on the EDT so they can be drawn on a worker thread.
+     */
+    private static final class NoteSnapshot {
+        private long[] startTicks = new long[16];
+        private long[] durationTicks = new long[16];
+        private int[] pitches = new int[16];
+        private int size;
+
+        NoteSnapshot(Block block) {
+            block.forEachNoteTimeline((startTick, duration, pitch, velocity) -> {
+                if (size == startTicks.length) {
+                    startTicks = Arrays.copyOf(startTicks, size * 2);
+                    durationTicks = Arrays.copyOf(durationTicks, size * 2);
+                    pitches = Arrays.copyOf(pitches, size * 2);
+                }
+                startTicks[size] = startTick;
+                durationTicks[size] = duration;
+                pitches[size] = pitch;
+                size++;
+            });
+        }
+    }
+}
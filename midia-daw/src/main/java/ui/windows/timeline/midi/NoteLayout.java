@@ -0,0 +1,95 @@
+package ui.windows.timeline.midi;
+
+import java.awt.Graphics;
+import java.util.Objects;
+
+/**
+ * Places notes within the height of a rendered track, relative to the pitch range of all notes in the track.
+ * Shared by direct painting and block thumbnail rendering so both produce identical pixels.
+ */
+final class NoteLayout {
+
+    private static final int MIN_NOTE_RANGE = 16;
+    private static final int NOTE_RANGE_PADDING = 2;
+    private static final double NOTE_CORNER_RADIUS = 0.3;
+
+    private final double pixelsPerTick;
+    private final int minPitch;
+    private final int maxPitch;
+    private final int trackHeight;
+    private final int blockHeightMargin;
+    private final int pitchOffset;
+    private final double heightDouble;
+    private final int height;
+    private final int noteRounding;
+
+    /**
+     * Creates a layout for a track whose notes span the given pitch range.
+     *
+     * @param pixelsPerTick     the horizontal scale
+     * @param minPitch          the lowest pitch in the track
+     * @param maxPitch          the highest pitch in the track
+     * @param trackHeight       the drawable height of the track
+     * @param blockHeightMargin the total vertical margin around blocks
+     */
+    NoteLayout(double pixelsPerTick, int minPitch, int maxPitch, int trackHeight, int blockHeightMargin) {
+        this.pixelsPerTick = pixelsPerTick;
+        this.minPitch = minPitch;
+        this.maxPitch = maxPitch;
+        this.trackHeight = trackHeight;
+        this.blockHeightMargin = blockHeightMargin;
+
+        int range = Math.abs(minPitch - maxPitch);
+        int rangeAdjusted = Math.max(range, MIN_NOTE_RANGE);
+        heightDouble = trackHeight / (double) (rangeAdjusted + NOTE_RANGE_PADDING);
+        noteRounding = (int) Math.round(heightDouble * NOTE_CORNER_RADIUS);
+        pitchOffset = minPitch - (range == 0 ? (MIN_NOTE_RANGE / 2) : 0);
+        height = (int) Math.round(heightDouble);
+    }
+
+    /**
+     * Fills the rectangle of a note in the current color.
+     *
+     * @param g             the graphics to draw on
+     * @param startTick     the start tick of the note on the timeline
+     * @param durationTicks the duration of the note
+     * @param pitch         the pitch of the note
+     * @param originX       the x pixel of the graphics' origin on the timeline
+     */
+    void fillNote(Graphics g, long startTick, long durationTicks, int pitch, int originX) {
+        int relativePitch = pitch - pitchOffset + (NOTE_RANGE_PADDING / 2);
+
+        int x = tickToPixel(startTick) - originX;
+        int y = trackHeight - (int) Math.round(relativePitch * heightDouble - (double) blockHeightMargin / 2);
+        int width = tickToPixel(durationTicks);
+
+        g.fillRoundRect(x, y, width, height, noteRounding, noteRounding);
+    }
+
+    /**
+     * Returns the x pixel of the given timeline tick.
+     */
+    int tickToPixel(long tick) {
+        return (int) Math.round(tick * pixelsPerTick);
+    }
+
+    /**
+     * Two layouts are equal if they place every note at the same pixels.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NoteLayout other)) {
+            return false;
+        }
+        return pixelsPerTick == other.pixelsPerTick && minPitch == other.minPitch && maxPitch == other.maxPitch
+                && trackHeight == other.trackHeight && blockHeightMargin == other.blockHeightMargin;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(pixelsPerTick, minPitch, maxPitch, trackHeight, blockHeightMargin);
+    }
+}
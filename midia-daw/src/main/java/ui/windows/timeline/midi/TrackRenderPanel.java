@@ -3,6 +3,7 @@ package ui.windows.timeline.midi;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 
 import javax.swing.JFrame;
@@ -12,6 +13,7 @@ import javax.swing.SwingUtilities;
 import model.Block;
 import model.MidiTrack;
 import model.Note;
+import model.NoteVisitor;
 import model.Player;
 import model.Timeline;
 import model.TimelineController;
@@ -28,7 +30,7 @@ public class TrackRenderPanel extends JPanel {
 
     public static final int WIDTH_PADDING = 300;
 
-    private static final Color NOTE_COLOR = Color.decode("#ECF0F1");
+    static final Color NOTE_COLOR = Color.decode("#ECF0F1");
     private static final Color BLOCK_BACKGROUND_COLOR = Color.decode("#34495E");
     private static final Color LINE_COLOR = Color.decode("#333333");
 
@@ -36,20 +38,26 @@ public class TrackRenderPanel extends JPanel {
     private static final int BLOCK_HEIGHT_MARGIN = 6;
     private static final int EMPTY_BLOCK_WIDTH = 100;
 
-    private static final int MIN_NOTE_RANGE = 16;
-    private static final int NOTE_RANGE_PADDING = 2;
-    private static final double NOTE_CORNER_RADIUS = 0.3;
+    private static long paintCount;
+    private static long paintNanos;
 
     private final MidiTrack midiTrack;
     private final TimelineController timelineController;
     private PianoRollFrame pianoRollFrame;
     private final DawClipboard dawClipboard;
+    private final BlockThumbnailCache thumbnailCache;
+
+    private long playingTick = -1; // the playback tick notes are highlighted for, -1 if not playing
+    private long pitchRangeVersion = -1;
+    private int[] pitchRange;
 
     /**
      * Constructs a render panel for the provided track and attaches mouse interactions.
      */
-    public TrackRenderPanel(MidiTrack midiTrack, TimelineController timelineController, DawClipboard dawClipboard) {
+    public TrackRenderPanel(MidiTrack midiTrack, TimelineController timelineController, DawClipboard dawClipboard,
+                            BlockThumbnailCache thumbnailCache) {
         this.dawClipboard = dawClipboard;
+        this.thumbnailCache = thumbnailCache;
         this.timelineController = timelineController;
         this.midiTrack = midiTrack;
 
@@ -59,17 +67,32 @@ public class TrackRenderPanel extends JPanel {
         this.addMouseListener(mouseAdapter());
     }
 
-    // EFFECTS: Draws all blocks in the midiTrack
+    // EFFECTS: Draws the blocks, grid lines and notes of the midiTrack that fall within the clip
     @Override
     public void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
         super.paintComponent(g);
 
-        drawBlockBorders(midiTrack.getBlocks(), g);
-        drawLines(g);
-        drawBlockNotes(midiTrack.getBlocks(), g);
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        // One pixel of slack on either side covers rounding in the pixel/tick conversions
+        Timeline timeline = timelineController.getTimeline();
+        long fromTick = Math.max(0, timeline.scalePixelToTick(clip.x - 1));
+        long toTick = timeline.scalePixelToTick(clip.x + clip.width + 1);
+
+        drawBlockBorders(fromTick, toTick, g);
+        drawLines(fromTick, toTick, g);
+        drawBlockNotes(fromTick, toTick, g);
+
+        paintCount++;
+        paintNanos += System.nanoTime() - paintStart;
     }
 
-    private void drawLines(Graphics g) {
+    // EFFECTS: draws the beat division and measure lines between the given ticks
+    private void drawLines(long fromTick, long toTick, Graphics g) {
         Timeline timeline = timelineController.getTimeline();
 
         int beatDivisions = timeline.getPlayer().getBeatDivision();
@@ -77,8 +100,9 @@ public class TrackRenderPanel extends JPanel {
 
         long divisionTickInterval = Player.PULSES_PER_QUARTER_NOTE / beatDivisions;
         long measureTickInterval = (long) Player.PULSES_PER_QUARTER_NOTE * beatsPerMeasure;
+        long firstTick = (fromTick / divisionTickInterval) * divisionTickInterval;
 
-        for (long tick = 0; tick <= getWidth() / timeline.getPixelsPerTick(); tick += divisionTickInterval) {
+        for (long tick = firstTick; tick <= toTick; tick += divisionTickInterval) {
             g.setColor(LINE_COLOR);
             int pixelPosition = timeline.scaleTickToPixel(tick);
 
@@ -106,10 +130,10 @@ public class TrackRenderPanel extends JPanel {
         g.setColor(tempColor);
     }
 
-    private void drawBlockBorders(ArrayList<Block> blocks, Graphics g) {
-        for (Block b : blocks) {
-            drawBlock(b, g);
-        }
+    // EFFECTS: draws the blocks that are visible between the given ticks
+    private void drawBlockBorders(long fromTick, long toTick, Graphics g) {
+        // Short blocks are drawn EMPTY_BLOCK_WIDTH ticks wide, so look that far back
+        midiTrack.forEachBlockInRange(fromTick - EMPTY_BLOCK_WIDTH, toTick, b -> drawBlock(b, g));
     }
 
     // EFFECTS: returns the pitch range of the notes within the blocks
@@ -146,67 +170,104 @@ public class TrackRenderPanel extends JPanel {
     }
 
     // MODIFIES: this
-    // EFFECTS: draws the specified blocks and their notes. the height of notes is 
-    //          drawn relative to all other notes in the blocks
-    @SuppressWarnings("methodlength")
-    private void drawBlockNotes(ArrayList<Block> blocks, Graphics g) {
-        Timeline timeline = timelineController.getTimeline();
-        int[] pitchRange = determineRange(blocks);
+    // EFFECTS: returns the pitch range of the notes in the track, recomputing it only after the track changed
+    private int[] getPitchRange() {
+        if (pitchRangeVersion != midiTrack.getVersion()) {
+            pitchRange = determineRange(midiTrack.getBlocks());
+            pitchRangeVersion = midiTrack.getVersion();
+        }
+
+        return pitchRange;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: draws the notes sounding between the given ticks. the height of notes is
+    //          drawn relative to all other notes in the blocks. blocks are blitted from their cached
+    //          thumbnail when it is ready, then notes under the playhead are drawn over it
+    private void drawBlockNotes(long fromTick, long toTick, Graphics g) {
+        int[] range = getPitchRange();
+        NoteLayout layout = new NoteLayout(timelineController.getTimeline().getPixelsPerTick(),
+                range[0], range[1], TrackLabelPanel.HEIGHT - BLOCK_HEIGHT_MARGIN, BLOCK_HEIGHT_MARGIN);
+
+        NoteVisitor noteDrawer = (startTick, durationTicks, pitch, velocity) ->
+                layout.fillNote(g, startTick, durationTicks, pitch, 0);
+
+        g.setColor(NOTE_COLOR);
+        midiTrack.forEachBlockInRange(fromTick, toTick, b -> {
+            BufferedImage thumbnail = thumbnailCache.getThumbnail(b, layout, getHeight(), this::repaint);
+            if (thumbnail != null) {
+                g.drawImage(thumbnail, layout.tickToPixel(b.getStartTick()), 0, null);
+            } else {
+                b.forEachNoteTimelineInRange(fromTick, toTick, noteDrawer);
+            }
+        });
 
-        int minPitch = pitchRange[0];
-        int maxPitch = pitchRange[1];
+        if (playingTick != -1) {
+            g.setColor(Color.BLACK);
+            midiTrack.forEachBlockInRange(playingTick, playingTick,
+                    b -> b.forEachNoteTimelineInRange(playingTick, playingTick, noteDrawer));
+        }
+    }
 
-        int trackHeight = TrackLabelPanel.HEIGHT - BLOCK_HEIGHT_MARGIN;
-        int range = Math.abs(minPitch - maxPitch);
-        int rangeAdjusted = Math.max(range, MIN_NOTE_RANGE);
-        double heightDouble = trackHeight / (double) (rangeAdjusted + NOTE_RANGE_PADDING);
-        int noteRounding = (int) Math.round(heightDouble * NOTE_CORNER_RADIUS);
+    /**
+     * Highlights the notes at the current playback tick, repainting only the notes whose playing
+     * state differs from the previous update. Only notes under the old or the new tick can differ.
+     */
+    public void updatePlayingTick() {
+        long oldPlayingTick = playingTick;
+        long newPlayingTick = getPlayingTick();
+        if (oldPlayingTick == newPlayingTick) {
+            return;
+        }
 
-        for (Block b : blocks) {
-            for (Note n : b.getNotesTimeline()) {
-                int pitchOffset = minPitch - (range == 0 ? (MIN_NOTE_RANGE / 2) : 0);
-                int relativePitch = n.getPitch() - pitchOffset + (NOTE_RANGE_PADDING / 2);
-
-                int x = timeline.scaleTickToPixel(n.getStartTick());
-                int y = trackHeight - (int) Math.round(relativePitch * heightDouble - (double) BLOCK_HEIGHT_MARGIN / 2);
-                int height = (int) Math.round(heightDouble);
-                int width = timeline.scaleTickToPixel(n.getDurationTicks());
-
-                g.setColor(NOTE_COLOR);
-                if (isNotePlaying(n)) {
-                    g.setColor(Color.BLACK);
-                }
-                g.fillRoundRect(x, y, width, height, noteRounding, noteRounding);
+        playingTick = newPlayingTick;
+
+        NoteVisitor repaintIfFlipped = (startTick, durationTicks, pitch, velocity) -> {
+            if (isNotePlaying(startTick, durationTicks, oldPlayingTick)
+                    != isNotePlaying(startTick, durationTicks, newPlayingTick)) {
+                repaintNote(startTick, durationTicks);
+            }
+        };
+
+        for (long tick : new long[] { oldPlayingTick, newPlayingTick }) {
+            if (tick != -1) {
+                midiTrack.forEachBlockInRange(tick, tick,
+                        b -> b.forEachNoteTimelineInRange(tick, tick, repaintIfFlipped));
             }
         }
     }
 
+    // EFFECTS: schedules a repaint of the columns covered by the note, with a pixel of slack on either side
+    private void repaintNote(long startTick, long durationTicks) {
+        Timeline timeline = timelineController.getTimeline();
+        int x = timeline.scaleTickToPixel(startTick);
+        int width = timeline.scaleTickToPixel(durationTicks);
+        repaint(x - 1, 0, width + 2, getHeight());
+    }
+
+    /**
+     * Returns true if the note with the given timing overlaps the playback tick.
+     */
+    private boolean isNotePlaying(long startTick, long durationTicks, long playingTick) {
+        return playingTick != -1 && startTick <= playingTick && playingTick <= startTick + durationTicks;
+    }
+
     /**
-     * Returns true if the given note overlaps the current playback tick.
+     * Returns the current playback tick, or -1 if the timeline is not playing.
      */
-    private boolean isNotePlaying(Note n) {
+    private long getPlayingTick() {
         if (!timelineController.isPlaying()) {
-            return false;
+            return -1;
         }
 
-        long tick = timelineController.getTimeline().getPlayer().getTickPosition();
-
-        return n.getStartTick() <= tick && tick <= n.getStartTick() + n.getDurationTicks();
+        return timelineController.getTimeline().getPlayer().getTickPosition();
     }
 
     /**
      * Returns the maximum drawn width (in pixels) based on the end of the last block.
      */
     public int getScaledWidth() {
-        long endPixel = 0;
-        for (Block b : midiTrack.getBlocks()) {
-            long temp = b.getStartTick() + b.getDurationTicks();
-            if (temp > endPixel) {
-                endPixel = temp;
-            }
-        }
-
-        return timelineController.getTimeline().scaleTickToPixel(endPixel);
+        return timelineController.getTimeline().scaleTickToPixel(midiTrack.getEndTick());
     }
 
     @Override
@@ -263,16 +324,32 @@ public class TrackRenderPanel extends JPanel {
     }
 
     private Block getBlock(long tick) {
-        for (Block b : midiTrack.getBlocks()) {
-            if (b.getStartTick() <= tick && b.getStartTick() + b.getDurationTicks() >= tick) {
-                return b;
-            }
-        }
-
-        return null;
+        return midiTrack.getBlockAt(tick);
     }
 
     public MidiTrack getMidiTrack() {
         return midiTrack;
     }
+
+    /**
+     * Returns the number of times any track render panel has painted since the last reset.
+     */
+    public static long getPaintCount() {
+        return paintCount;
+    }
+
+    /**
+     * Returns the average time spent in paintComponent, in milliseconds, since the last reset.
+     */
+    public static double getAveragePaintMs() {
+        return paintCount == 0 ? 0 : paintNanos / (paintCount * 1_000_000.0);
+    }
+
+    /**
+     * Resets the paint counters of all track render panels.
+     */
+    public static void resetPaintStatistics() {
+        paintCount = 0;
+        paintNanos = 0;
+    }
 }
\ No newline at end of file
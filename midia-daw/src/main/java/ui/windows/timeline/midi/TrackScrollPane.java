@@ -23,6 +23,7 @@ public class TrackScrollPane extends BlankScrollPane
     private final TimelineController timelineController;
     private final LineContainerPanel lineContainer;
     private final DawClipboard dawClipboard;
+    private final BlockThumbnailCache thumbnailCache;
 
     /**
      * Constructs the track area, initializes scroll policies, and populates render panels.
@@ -30,6 +31,7 @@ public class TrackScrollPane extends BlankScrollPane
     public TrackScrollPane(TimelineController timelineController, DawClipboard dawClipboard) {
         this.timelineController = timelineController;
         this.dawClipboard = dawClipboard;
+        this.thumbnailCache = new BlockThumbnailCache(timelineController);
         lineContainer = new TimelineLineContainerPanel(timelineController,
                 timelineController.getTimeline().getPlayer());
 
@@ -38,6 +40,7 @@ public class TrackScrollPane extends BlankScrollPane
         this.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
         this.setMinimumSize(new Dimension(0, 0));
         timelineController.addObserver(this);
+        timelineController.addObserver(thumbnailCache);
 
         updateTrackRenderPanels();
     }
@@ -48,7 +51,7 @@ public class TrackScrollPane extends BlankScrollPane
     private void updateTrackRenderPanels() {
         lineContainer.removeAll();
         for (MidiTrack track : timelineController.getTimeline().getMidiTracks()) {
-            lineContainer.add(new TrackRenderPanel(track, timelineController, dawClipboard));
+            lineContainer.add(new TrackRenderPanel(track, timelineController, dawClipboard, thumbnailCache));
         }
 
         revalidate();
@@ -81,6 +84,15 @@ public class TrackScrollPane extends BlankScrollPane
 
     }
 
+    /**
+     * Shuts down the thumbnail renderers once the track area is removed from its window or the window is disposed.
+     */
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        thumbnailCache.close();
+    }
+
     /**
      * Notifies listeners when the content width changes, enabling ruler resizes.
      */
@@ -5,6 +5,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.sound.midi.ShortMessage;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -29,6 +31,21 @@ public class BlockTest {
         assertEquals("Start tick: 10, duration: 1000, current note count: 0", block.info());
     }
 
+    @Test
+    void testAddNotes() {
+        block.addNote(new Note(60, 100, 0, 100));
+        long version = block.getVersion();
+
+        assertEquals(2, block.addNotes(List.of(new Note(61, 100, 200, 300), new Note(62, 100, 900, 200),
+                new Note(63, 100, 400, 100))));
+        assertEquals(3, block.getNotes().size());
+        assertEquals(63, block.getNotes().get(2).getPitch());
+        assertEquals(510, block.getLastNoteEndTickTimeline());
+        assertNotEquals(version, block.getVersion());
+        assertEquals(block.getNotes().get(1), block.getNoteAt(250, 61));
+        assertEquals(6, block.getCompiledEvents().size());
+    }
+
     @Test
     void testDurationSetter() {
         assertEquals(1000, block.getDurationTicks());
@@ -164,6 +181,115 @@ public class BlockTest {
         UtilTest.checkNotesEqual(expectedNotes, block.getNotesTimeline());
     }
 
+    @Test
+    void testForEachNoteTimeline() {
+        block.addNote(new Note(60, 60, 0, 5));
+        block.addNote(new Note(65, 90, 9, 17));
+
+        ArrayList<Note> visitedNotes = new ArrayList<>();
+        block.forEachNoteTimeline((startTick, durationTicks, pitch, velocity) ->
+                visitedNotes.add(new Note(pitch, velocity, startTick, durationTicks)));
+
+        UtilTest.checkNotesEqual(block.getNotesTimeline(), visitedNotes);
+        assertEquals(10, visitedNotes.get(0).getStartTick());
+        assertEquals(19, visitedNotes.get(1).getStartTick());
+    }
+
+    @Test
+    void testGetNoteAt() {
+        Note note1 = new Note(60, 60, 0, 100);
+        Note note2 = new Note(60, 60, 100, 100);
+        Note note3 = new Note(62, 60, 50, 10);
+        block.addNote(note1);
+        block.addNote(note2);
+
+        assertSame(note1, block.getNoteAt(0, 60));
+        assertSame(note1, block.getNoteAt(99, 60));
+        assertSame(note1, block.getNoteAt(100, 60)); // the note added first wins on a shared tick
+        assertSame(note2, block.getNoteAt(101, 60));
+        assertSame(note2, block.getNoteAt(200, 60));
+        assertNull(block.getNoteAt(201, 60));
+        assertNull(block.getNoteAt(50, 62));
+
+        // The index follows notes added, edited and removed afterwards
+        block.addNote(note3);
+        assertSame(note3, block.getNoteAt(55, 62));
+        note3.setPitch(64);
+        note3.setStartTick(500);
+        assertNull(block.getNoteAt(55, 62));
+        assertSame(note3, block.getNoteAt(505, 64));
+        note1.setDurationTicks(400);
+        assertSame(note1, block.getNoteAt(300, 60));
+        assertSame(note1, block.getNoteAt(150, 60), "An edited note keeps its place in the list order");
+
+        block.removeNote(note1);
+        assertNull(block.getNoteAt(300, 60));
+        assertSame(note2, block.getNoteAt(150, 60));
+    }
+
+    @Test
+    void testVersion() {
+        MidiTrack midiTrack = new MidiTrack("track", model.instrument.TonalInstrument.ACOUSTIC_GRAND_PIANO, 0);
+        Note note = new Note(60, 60, 0, 5);
+        midiTrack.addBlock(block);
+
+        long blockVersion = block.getVersion();
+        long trackVersion = midiTrack.getVersion();
+        block.addNote(note);
+        assertTrue(block.getVersion() > blockVersion);
+        assertTrue(midiTrack.getVersion() > trackVersion);
+
+        blockVersion = block.getVersion();
+        trackVersion = midiTrack.getVersion();
+        note.setVelocity(100);
+        assertTrue(block.getVersion() > blockVersion);
+        assertTrue(midiTrack.getVersion() > trackVersion);
+
+        // A clone belongs to no block, editing it leaves the original untouched
+        blockVersion = block.getVersion();
+        note.clone().setPitch(20);
+        assertEquals(blockVersion, block.getVersion());
+
+        assertTrue(block.removeNote(note));
+        assertFalse(block.removeNote(note));
+        assertTrue(block.getVersion() > blockVersion);
+
+        blockVersion = block.getVersion();
+        note.setPitch(40);
+        assertEquals(blockVersion, block.getVersion());
+    }
+
+    @Test
+    void testCompiledEvents() {
+        Note note1 = new Note(60, 60, 10, 5);
+        Note note2 = new Note(62, 50, 0, 20);
+        block.addNote(note1);
+        block.addNote(note2);
+
+        BlockEvents events = block.getCompiledEvents();
+        assertEquals(4, events.size());
+        long[] expectedTicks = {0, 10, 15, 20};
+        int[] expectedCommands = {ShortMessage.NOTE_ON, ShortMessage.NOTE_ON, ShortMessage.NOTE_OFF,
+            ShortMessage.NOTE_OFF};
+        int[] expectedPitches = {62, 60, 60, 62};
+        int[] expectedVelocities = {50, 60, 0, 0};
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(expectedTicks[i], events.getTick(i));
+            assertEquals(expectedCommands[i], events.getCommand(i));
+            assertEquals(expectedPitches[i], events.getData1(i));
+            assertEquals(expectedVelocities[i], events.getData2(i));
+        }
+
+        // Moving the block keeps the block-relative events
+        block.setStartTick(500);
+        assertSame(events, block.getCompiledEvents());
+
+        note1.setVelocity(100);
+        BlockEvents recompiled = block.getCompiledEvents();
+        assertNotSame(events, recompiled);
+        assertEquals(100, recompiled.getData2(1));
+    }
+
     @Test
     void testClone() {
         block.addNote(new Note(42, 60, 22, 100));
@@ -5,12 +5,15 @@ import org.junit.jupiter.api.Test;
 
 import model.event.Event;
 import model.event.EventLog;
+import model.event.EventSink;
+import model.event.LogLevel;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -56,4 +59,114 @@ public class EventLogTest {
 		assertEquals("Event log cleared.", itr.next().getDescription());
 		assertFalse(itr.hasNext());
 	}
+
+	@Test
+	public void testMinimumLevel() {
+		EventLog el = EventLog.getInstance();
+		LogLevel oldLevel = el.getMinimumLevel();
+		try {
+			el.setMinimumLevel(LogLevel.WARN);
+			el.clear();
+			long filtered = el.getFilteredCount();
+			assertFalse(el.isLoggable(LogLevel.INFO));
+			assertTrue(el.isLoggable(LogLevel.ERROR));
+
+			Event warning = new Event(LogLevel.WARN, "W");
+			el.logEvent(new Event(LogLevel.DEBUG, "D"));
+			el.logEvent(new Event("I"));
+			el.logEvent(warning);
+
+			assertEquals(filtered + 2, el.getFilteredCount());
+			Iterator<Event> itr = el.iterator();
+			assertSame(warning, itr.next()); // the clear event was below the minimum level too
+			assertFalse(itr.hasNext());
+		} finally {
+			el.setMinimumLevel(oldLevel);
+		}
+	}
+
+	@Test
+	public void testParseLevel() {
+		assertEquals(LogLevel.WARN, LogLevel.parse("WARN", LogLevel.INFO));
+		assertEquals(LogLevel.DEBUG, LogLevel.parse(" debug ", LogLevel.INFO));
+		assertEquals(LogLevel.ERROR, LogLevel.parse("Error", LogLevel.INFO));
+		assertEquals(LogLevel.INFO, LogLevel.parse("verbose", LogLevel.INFO));
+		assertEquals(LogLevel.WARN, LogLevel.parse("", LogLevel.WARN));
+		assertEquals(EventLog.DEFAULT_MINIMUM_LEVEL, LogLevel.parse(null, EventLog.DEFAULT_MINIMUM_LEVEL));
+	}
+
+	@Test
+	public void testSinkKeptAfterLevelChange() {
+		EventLog el = EventLog.getInstance();
+		LogLevel oldLevel = el.getMinimumLevel();
+		List<Event> received = new ArrayList<>();
+		EventSink sink = received::add;
+		el.addSink(sink);
+		try {
+			el.setMinimumLevel(LogLevel.WARN);
+			Event warning = new Event(LogLevel.WARN, "W");
+			el.logEvent(new Event("I"));
+			el.logEvent(warning);
+
+			el.setMinimumLevel(LogLevel.DEBUG);
+			Event debug = new Event(LogLevel.DEBUG, "D");
+			el.logEvent(debug);
+
+			assertEquals(List.of(warning, debug), received);
+		} finally {
+			el.removeSink(sink);
+			el.setMinimumLevel(oldLevel);
+		}
+	}
+
+	@Test
+	public void testCapacity() {
+		EventLog el = EventLog.getInstance();
+		el.clear();
+		int capacity = el.getCapacity();
+		for (int i = 0; i < capacity + 10; i++) {
+			el.logEvent(new Event("E" + i));
+		}
+
+		List<Event> l = new ArrayList<>();
+		for (Event next : el) {
+			l.add(next);
+		}
+		assertEquals(capacity, l.size());
+		assertEquals("E10", l.get(0).getDescription());
+		assertEquals("E" + (capacity + 9), l.get(capacity - 1).getDescription());
+		assertTrue(el.getDroppedCount() >= 11);
+	}
+
+	@Test
+	public void testConcurrentLogging() throws InterruptedException {
+		EventLog el = EventLog.getInstance();
+		el.clear();
+		int perThread = el.getCapacity() / 8;
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			String prefix = "T" + t + "-";
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < perThread; i++) {
+					el.logEvent(new Event(prefix + i));
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		int[] next = new int[threads.length];
+		int count = 0;
+		for (Event event : el) {
+			if (event.getDescription().startsWith("T")) {
+				String[] parts = event.getDescription().substring(1).split("-");
+				int t = Integer.parseInt(parts[0]);
+				assertEquals(next[t]++, Integer.parseInt(parts[1])); // each thread's events in order
+				count++;
+			}
+		}
+		assertEquals(threads.length * perThread, count);
+	}
 }
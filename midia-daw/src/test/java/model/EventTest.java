@@ -4,6 +4,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import model.event.Event;
+import model.event.EventLog;
+import model.event.LogLevel;
 
 import java.util.Calendar;
 import java.util.Date;
@@ -34,6 +36,59 @@ public class EventTest {
         assertEquals("Sensor open at door", e.getDescription());
     }
 
+    @Test
+    public void testLevel() {
+        assertEquals(LogLevel.INFO, e.getLevel());
+        Event warning = new Event(LogLevel.WARN, "Sensor open at door");
+        assertEquals(LogLevel.WARN, warning.getLevel());
+        assertNotEquals(e, warning);
+        assertTrue(LogLevel.ERROR.isAtLeast(LogLevel.WARN));
+        assertFalse(LogLevel.DEBUG.isAtLeast(LogLevel.INFO));
+    }
+
+    @Test
+    public void testLazyDescription() {
+        long before = System.currentTimeMillis();
+        Event lazy = new Event(LogLevel.DEBUG, "Note %d at tick %d", 60, 960L);
+        assertTrue(lazy.getTimeMillis() >= before);
+        assertEquals(lazy.getTimeMillis(), lazy.getDate().getTime());
+        assertEquals("Note 60 at tick 960", lazy.getDescription());
+        assertSame(lazy.getDescription(), lazy.getDescription());
+        assertEquals("100% literal", new Event(LogLevel.INFO, "100% literal").getDescription());
+    }
+
+    @Test
+    public void testBlockEventsMatchOldDescriptions() {
+        EventLog el = EventLog.getInstance();
+        LogLevel oldLevel = el.getMinimumLevel();
+        try {
+            el.setMinimumLevel(LogLevel.DEBUG);
+            Block block = new Block(0, 1000);
+            Note note = new Note(60, 100, 10, 20);
+            block.addNote(note);
+            assertEquals(String.format("Added note: %s to Block: %s", note, block.info()), lastDescription(el));
+
+            Note outOfBounds = new Note(60, 100, 990, 20);
+            block.addNote(outOfBounds);
+            assertEquals(String.format("Unable to add note (out of bounds): %s to Block: %s", outOfBounds,
+                    block.info()), lastDescription(el));
+
+            block.removeNote(0);
+            assertEquals(String.format("Removed note: %s from Block: %s", note, block.info()), lastDescription(el));
+        } finally {
+            el.setMinimumLevel(oldLevel);
+        }
+    }
+
+    private static String lastDescription(EventLog el) {
+        Event last = null;
+        for (Event event : el) {
+            last = event;
+        }
+        assertNotNull(last);
+        return last.getDescription();
+    }
+
     @Test
     public void testToString() {
         assertEquals(d.toString() + "\n" + "Sensor open at door", e.toString());
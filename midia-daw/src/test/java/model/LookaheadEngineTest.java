@@ -0,0 +1,234 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.instrument.TonalInstrument;
+
+public class LookaheadEngineTest {
+
+    // At 60 BPM one tick lasts 1/960 of a second
+    private static final float BPM = 60;
+    private static final long MICROS_PER_BEAT = 1_000_000;
+
+    private AtomicLong clock;
+    private AtomicReference<PlaybackSchedule> schedule;
+    private AtomicInteger endCount;
+    private RecordingReceiver receiver;
+    private LookaheadEngine engine;
+
+    /**
+     * Records the messages it receives as "timestamp command channel data1 data2" strings.
+     */
+    private static class RecordingReceiver implements Receiver {
+        private final List<String> messages = new ArrayList<>();
+
+        @Override
+        public synchronized void send(MidiMessage message, long timeStamp) {
+            ShortMessage shortMessage = (ShortMessage) message;
+            messages.add(String.format("%d %d %d %d %d", timeStamp, shortMessage.getCommand(),
+                    shortMessage.getChannel(), shortMessage.getData1(), shortMessage.getData2()));
+        }
+
+        @Override
+        public void close() {
+        }
+
+        synchronized List<String> getMessages() {
+            return new ArrayList<>(messages);
+        }
+
+        synchronized List<String> getNoteMessages() {
+            List<String> notes = new ArrayList<>();
+            for (String message : messages) {
+                String command = message.split(" ")[1];
+                if (command.equals(String.valueOf(ShortMessage.NOTE_ON))
+                        || command.equals(String.valueOf(ShortMessage.NOTE_OFF))) {
+                    notes.add(message);
+                }
+            }
+            return notes;
+        }
+    }
+
+    @BeforeEach
+    void runBefore() {
+        clock = new AtomicLong(0);
+        schedule = new AtomicReference<>(PlaybackSchedule.EMPTY);
+        endCount = new AtomicInteger(0);
+        receiver = new RecordingReceiver();
+        engine = new LookaheadEngine(schedule::get, endCount::incrementAndGet, receiver, clock::get, true, 50, null);
+    }
+
+    @AfterEach
+    void runAfter() {
+        engine.close();
+    }
+
+    @Test
+    void testScheduleWindow() {
+        Block first = new Block(0, 1000);
+        first.addNote(new Note(60, 100, 0, 500));
+        Block overlapping = new Block(200, 2000);
+        overlapping.addNote(new Note(64, 90, 1000, 500));
+        PlaybackSchedule.Part part = new PlaybackSchedule.Part(3, 5, 100, -1, new long[] { 0, 200 },
+                new BlockEvents[] { first.getCompiledEvents(), overlapping.getCompiledEvents() });
+        PlaybackSchedule playbackSchedule = new PlaybackSchedule(List.of(part), 1500);
+
+        List<String> events = new ArrayList<>();
+        PlaybackSchedule.EventConsumer collector = (tick, command, channel, data1, data2) ->
+                events.add(String.format("%d %d %d %d %d", tick, command, channel, data1, data2));
+
+        playbackSchedule.forEachEvent(0, 500, collector);
+        assertEquals(List.of("0 144 3 60 100"), events);
+
+        events.clear();
+        playbackSchedule.forEachEvent(500, 10_000, collector);
+        // The NOTE_OFF at 1700 is after the end of the schedule
+        assertEquals(List.of("1200 144 3 64 90", "500 128 3 60 0"), events);
+
+        events.clear();
+        part.forEachSetupEvent(collector);
+        assertEquals(List.of("0 192 3 5 0", "0 176 3 7 100"), events);
+
+        PlaybackSchedule.Part percussive = new PlaybackSchedule.Part(9, -1, 80, 36, new long[] { 0 },
+                new BlockEvents[] { first.getCompiledEvents() });
+        events.clear();
+        percussive.forEachSetupEvent(collector);
+        new PlaybackSchedule(List.of(percussive), 1000).forEachEvent(0, 1000, collector);
+        assertEquals(List.of("0 176 9 7 80", "0 144 9 36 100", "500 128 9 36 0"), events);
+    }
+
+    @Test
+    void testPlayToEnd() throws Exception {
+        schedule.set(scheduleOf(2, new Note(60, 100, 0, 960), new Note(62, 100, 960, 960)));
+
+        engine.start(0, new TempoMap(BPM));
+        assertTrue(engine.isRunning());
+        waitUntil(() -> receiver.getNoteMessages().size() == 1);
+        assertEquals(List.of("-1 192 2 0 0", "-1 176 2 7 100", "0 144 2 60 100"), receiver.getMessages());
+
+        clock.set(MICROS_PER_BEAT - 50_000); // the second note is inside the lookahead window
+        waitUntil(() -> receiver.getNoteMessages().size() == 3);
+        assertEquals(List.of("0 144 2 60 100", "1000000 128 2 60 0", "1000000 144 2 62 100"),
+                receiver.getNoteMessages());
+        assertEquals(0, endCount.get());
+
+        clock.set(2 * MICROS_PER_BEAT);
+        waitUntil(() -> endCount.get() == 1);
+        assertFalse(engine.isRunning());
+        assertEquals(1920, engine.getTickPosition());
+        assertTrue(receiver.getNoteMessages().contains("2000000 128 2 62 0"));
+        assertTrue(receiver.getMessages().contains("-1 176 15 123 0"));
+    }
+
+    @Test
+    void testStop() throws Exception {
+        schedule.set(scheduleOf(0, new Note(60, 100, 0, 10_000)));
+
+        engine.start(480, new TempoMap(BPM));
+        clock.set(MICROS_PER_BEAT / 2);
+        assertEquals(960, engine.getTickPosition());
+        engine.stop();
+        assertFalse(engine.isRunning());
+        assertEquals(960, engine.getTickPosition());
+        assertTrue(receiver.getNoteMessages().isEmpty(), "Notes starting before the start tick are not played");
+
+        clock.set(10 * MICROS_PER_BEAT);
+        assertEquals(960, engine.getTickPosition());
+        assertEquals(0, endCount.get());
+    }
+
+    @Test
+    void testTempoChange() throws Exception {
+        schedule.set(scheduleOf(0, new Note(60, 100, 0, 10_000)));
+
+        engine.start(0, new TempoMap(BPM));
+        clock.set(MICROS_PER_BEAT / 2);
+        engine.setTempoMap(new TempoMap(BPM * 2));
+        clock.set(MICROS_PER_BEAT);
+        assertEquals(480 + 960, engine.getTickPosition());
+        engine.stop();
+    }
+
+    @Test
+    void testTempoMap() throws Exception {
+        schedule.set(scheduleOf(1, new Note(60, 100, 0, 960), new Note(62, 100, 1920, 960)));
+        // One beat at 60 BPM, then 120 BPM
+        TempoMap tempoMap = new TempoMap(List.of(new TempoMap.Change(0, BPM), new TempoMap.Change(960, BPM * 2)));
+
+        engine.start(0, tempoMap);
+        clock.set(MICROS_PER_BEAT + MICROS_PER_BEAT / 2); // tick 1920
+        assertEquals(1920, engine.getTickPosition());
+        waitUntil(() -> receiver.getNoteMessages().size() == 3);
+        assertEquals(List.of("0 144 1 60 100", "1000000 128 1 60 0", "1500000 144 1 62 100"),
+                receiver.getNoteMessages());
+        engine.stop();
+
+        engine.start(1920, tempoMap);
+        clock.set(2 * MICROS_PER_BEAT);
+        assertEquals(1920 + 960, engine.getTickPosition(), "Starting mid-song plays at the tempo there");
+        engine.stop();
+    }
+
+    @Test
+    void testRefresh() throws Exception {
+        PlaybackSchedule initial = scheduleOf(0, new Note(60, 100, 0, 960));
+        schedule.set(initial);
+        engine.start(0, new TempoMap(BPM));
+        waitUntil(() -> receiver.getNoteMessages().size() == 1);
+
+        engine.refresh(); // unchanged
+        assertEquals(3, receiver.getMessages().size());
+
+        PlaybackSchedule.Part edited = PlaybackSchedule.Part.of(trackOf(0, new Note(64, 80, 480, 480)));
+        schedule.set(new PlaybackSchedule(List.of(edited), 960));
+        engine.refresh();
+        List<String> messages = receiver.getMessages();
+        assertEquals(2, Collections.frequency(messages, "-1 176 0 7 100"), "The setup of the edited part is sent");
+        assertTrue(messages.contains("51042 128 0 60 0"), "The sounding note is released after the sent events");
+
+        clock.set(MICROS_PER_BEAT / 2);
+        waitUntil(() -> receiver.getNoteMessages().contains("500000 144 0 64 80"));
+        engine.stop();
+    }
+
+    // EFFECTS: returns a schedule of a single track on the given channel with a block at tick 0 holding the notes
+    private static PlaybackSchedule scheduleOf(int channel, Note... notes) {
+        MidiTrack midiTrack = trackOf(channel, notes);
+        return new PlaybackSchedule(List.of(PlaybackSchedule.Part.of(midiTrack)), midiTrack.getLastNoteEndTick());
+    }
+
+    private static MidiTrack trackOf(int channel, Note... notes) {
+        MidiTrack midiTrack = new MidiTrack("test", TonalInstrument.ACOUSTIC_GRAND_PIANO, channel);
+        Block block = new Block(0, 10_000);
+        for (Note note : notes) {
+            block.addNote(note);
+        }
+        midiTrack.addBlock(block);
+        return midiTrack;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the scheduler");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -169,6 +169,66 @@ public class MidiTrackTest {
         assertEquals(4, midiTrack.getBlocks().size());
     }
 
+    @Test
+    void testLastNoteEndTick() {
+        Block b1 = new Block(0, 1000);
+        Block b2 = new Block(2000, 1000);
+        Note n1 = new Note(60, 60, 0, 500);
+        Note n2 = new Note(60, 60, 100, 900);
+        assertEquals(0, midiTrack.getLastNoteEndTick());
+
+        b1.addNote(n1);
+        midiTrack.addBlock(b1);
+        midiTrack.addBlock(b2);
+        assertEquals(500, midiTrack.getLastNoteEndTick());
+
+        b2.addNote(n2);
+        assertEquals(3000, midiTrack.getLastNoteEndTick());
+
+        // Notes and blocks edited in place
+        n2.setDurationTicks(400);
+        assertEquals(2500, midiTrack.getLastNoteEndTick());
+        b2.setStartTick(0);
+        assertEquals(500, midiTrack.getLastNoteEndTick());
+        n1.setStartTick(450);
+        assertEquals(950, midiTrack.getLastNoteEndTick());
+
+        // Removing the latest ending note or block
+        b1.removeNote(0);
+        assertEquals(500, midiTrack.getLastNoteEndTick());
+        midiTrack.removeBlock(1);
+        assertEquals(0, midiTrack.getLastNoteEndTick());
+    }
+
+    @Test
+    void testBlockIndex() {
+        Block b1 = new Block(0, 1000);
+        Block b2 = new Block(2000, 500);
+        assertNull(midiTrack.getBlockAt(0));
+        assertEquals(0, midiTrack.getEndTick());
+
+        midiTrack.addBlock(b1);
+        midiTrack.addBlock(b2);
+        assertSame(b1, midiTrack.getBlockAt(0));
+        assertSame(b1, midiTrack.getBlockAt(1000));
+        assertNull(midiTrack.getBlockAt(1500));
+        assertSame(b2, midiTrack.getBlockAt(2500));
+        assertEquals(2500, midiTrack.getEndTick());
+
+        b1.setStartTick(3000);
+        assertNull(midiTrack.getBlockAt(500));
+        assertSame(b1, midiTrack.getBlockAt(3500));
+        assertEquals(4000, midiTrack.getEndTick());
+
+        b1.setDurationTicks(100);
+        assertNull(midiTrack.getBlockAt(3500));
+        assertEquals(3100, midiTrack.getEndTick());
+
+        midiTrack.removeBlock(0);
+        assertNull(midiTrack.getBlockAt(3000));
+        assertEquals(2500, midiTrack.getEndTick());
+    }
+
     @Test
     void testVolumeConversions() {
         midiTrack.setVolume(0);
@@ -391,6 +451,9 @@ public class MidiTrackTest {
         assertEquals(1, block2.getNotes().size());
         UtilTest.assertNoteEquals(block.getNotes().get(0), n);
         UtilTest.assertNoteEquals(block2.getNotes().get(0), n2);
+        assertSame(block, midiTrack.getBlockAt(2200));
+        assertSame(block2, midiTrack.getBlockAt(3500));
+        assertEquals(4000, midiTrack.getEndTick());
     }
 
         @Test
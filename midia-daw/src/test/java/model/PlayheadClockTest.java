@@ -0,0 +1,149 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PlayheadClockTest {
+
+    private static final int BEAT = Player.PULSES_PER_QUARTER_NOTE;
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // The fake engine plays from startTick at startNanos, following the fake wall time, lagging behind by lag
+    private volatile long startTick;
+    private volatile long startNanos;
+    private AtomicLong lag;
+    private AtomicBoolean engineRunning;
+    private AtomicLong nanos;
+    private volatile TempoMap tempoMap;
+    private PlayheadClock clock;
+
+    @BeforeEach
+    void runBefore() {
+        lag = new AtomicLong();
+        engineRunning = new AtomicBoolean();
+        nanos = new AtomicLong(1_000_000_000L);
+        tempoMap = new TempoMap(60); // one beat per second
+        clock = new PlayheadClock(this::engineTick, engineRunning::get, () -> tempoMap, nanos::get);
+    }
+
+    @AfterEach
+    void runAfter() {
+        clock.close();
+    }
+
+    @Test
+    void testStartAndInterpolate() {
+        assertFalse(clock.getLatestSample().running());
+        assertEquals(0, clock.getTick());
+
+        start(BEAT);
+        assertTrue(clock.getLatestSample().running());
+        assertEquals(BEAT, clock.getTick());
+
+        nanos.addAndGet(500 * MS);
+        assertEquals(BEAT + BEAT / 2, clock.getTick(), "The playhead moves with wall time between samples");
+    }
+
+    @Test
+    void testInterpolateFollowsTempoMap() {
+        tempoMap = new TempoMap(60).withChange(BEAT, 120);
+        start(0);
+
+        nanos.addAndGet(1500 * MS);
+        assertEquals(2 * BEAT, clock.getTick());
+    }
+
+    @Test
+    void testSampleAndMonotonic() {
+        start(0);
+        nanos.addAndGet(100 * MS);
+        long estimate = clock.getTick();
+        assertEquals(BEAT / 10, estimate);
+
+        // The engine reports a slightly earlier tick than the estimate
+        lag.set(5);
+        PlayheadClock.Sample sample = clock.sample();
+        assertNotNull(sample);
+        assertEquals(estimate - 5, sample.tick());
+        assertEquals(estimate, clock.getTick(), "The playhead does not move backwards");
+
+        nanos.addAndGet(100 * MS);
+        assertEquals(2 * BEAT / 10 - 5, clock.getTick());
+    }
+
+    @Test
+    void testStop() {
+        start(0);
+        nanos.addAndGet(250 * MS);
+        assertEquals(BEAT / 4, clock.getTick());
+
+        engineRunning.set(false);
+        clock.stop(BEAT / 5);
+        assertFalse(clock.isRunning());
+        nanos.addAndGet(1000 * MS);
+        assertEquals(BEAT / 5, clock.getTick(), "A stopped playhead stays where playback stopped");
+        assertNull(clock.sample(), "A stopped clock publishes no samples");
+
+        // Restarting earlier is not held back by the previous playback
+        start(0);
+        assertEquals(0, clock.getTick());
+    }
+
+    @Test
+    void testClockThread() throws InterruptedException {
+        start(0);
+        assertTrue(clock.isRunning());
+
+        lag.set(-3 * BEAT);
+        waitFor(() -> clock.getLatestSample().tick() == 3 * BEAT);
+
+        // Samples of an engine that is not playing are dropped until the clock is stopped
+        engineRunning.set(false);
+        lag.set(-4 * BEAT);
+        assertNull(clock.sample());
+        assertTrue(clock.isRunning());
+        clock.stop(4 * BEAT);
+        assertFalse(clock.isRunning());
+        assertEquals(4 * BEAT, clock.getTick());
+
+        // The clock thread samples again after a restart
+        start(BEAT);
+        lag.set(-2 * BEAT);
+        waitFor(() -> clock.getLatestSample().tick() == 3 * BEAT);
+        assertEquals(2, clock.getLatestSample().run());
+
+        clock.close();
+        clock.start(0);
+        assertFalse(clock.isRunning(), "A closed clock does not start");
+    }
+
+    // MODIFIES: this
+    // EFFECTS: starts the fake engine and the clock at the given tick
+    private void start(long tick) {
+        startTick = tick;
+        startNanos = nanos.get();
+        engineRunning.set(true);
+        clock.start(tick);
+    }
+
+    private long engineTick() {
+        double micros = tempoMap.ticksToMicros(startTick) + (nanos.get() - startNanos) / 1000.0;
+        return Math.round(tempoMap.microsToTicks(micros)) - lag.get();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the clock thread");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TempoMapTest {
+
+    private static final int BEAT = Player.PULSES_PER_QUARTER_NOTE;
+
+    @Test
+    void testConstant() {
+        TempoMap tempoMap = new TempoMap(120);
+        assertTrue(tempoMap.isConstant());
+        assertEquals(120, tempoMap.getInitialBpm());
+        assertEquals(120, tempoMap.getBpmAt(1_000_000));
+        assertEquals(500, tempoMap.ticksToMs(BEAT), 1e-9);
+        assertEquals(2 * BEAT, tempoMap.msToTicks(1000));
+        assertEquals(0, tempoMap.msToTicks(0));
+    }
+
+    @Test
+    void testChanges() {
+        // 60 BPM for one beat, 120 BPM for two beats, then 240 BPM
+        TempoMap tempoMap = new TempoMap(List.of(new TempoMap.Change(3 * BEAT, 240),
+                new TempoMap.Change(0, 60), new TempoMap.Change(BEAT, 120)));
+
+        assertEquals(3, tempoMap.size());
+        assertFalse(tempoMap.isConstant());
+        assertEquals(60, tempoMap.getBpmAt(BEAT - 1));
+        assertEquals(120, tempoMap.getBpmAt(BEAT));
+        assertEquals(240, tempoMap.getBpmAt(10 * BEAT));
+
+        assertEquals(500, tempoMap.ticksToMs(BEAT / 2), 1e-9);
+        assertEquals(1000, tempoMap.ticksToMs(BEAT), 1e-9);
+        assertEquals(2000, tempoMap.ticksToMs(3 * BEAT), 1e-9);
+        assertEquals(2250, tempoMap.ticksToMs(4 * BEAT), 1e-9);
+
+        assertEquals(BEAT / 2, tempoMap.msToTicks(500));
+        assertEquals(2 * BEAT, tempoMap.msToTicks(1500));
+        assertEquals(4 * BEAT, tempoMap.msToTicks(2250));
+        assertEquals(3 * BEAT + BEAT / 2, tempoMap.microsToTicks(2_125_000), 1e-9);
+    }
+
+    @Test
+    void testManyChangesMatchLinearScan() {
+        Random random = new Random(0);
+        List<TempoMap.Change> changes = new ArrayList<>();
+        changes.add(new TempoMap.Change(0, 100));
+        long tick = 0;
+        for (int i = 0; i < 5000; i++) {
+            tick += 1 + random.nextInt(4 * BEAT);
+            changes.add(new TempoMap.Change(tick, 40 + random.nextInt(200)));
+        }
+        TempoMap tempoMap = new TempoMap(changes);
+
+        for (int i = 0; i < 2000; i++) {
+            long sample = random.nextLong(tick + 10 * BEAT);
+            double expectedMicros = 0;
+            for (int c = 0; c < changes.size() && changes.get(c).tick() < sample; c++) {
+                long end = c + 1 < changes.size() ? Math.min(sample, changes.get(c + 1).tick()) : sample;
+                expectedMicros += (end - changes.get(c).tick()) * 60_000_000.0 / (changes.get(c).bpm() * BEAT);
+            }
+            assertEquals(expectedMicros, tempoMap.ticksToMicros(sample), 1e-3);
+            assertEquals(sample, tempoMap.microsToTicks(tempoMap.ticksToMicros(sample)), 1e-6);
+        }
+    }
+
+    @Test
+    void testEdits() {
+        TempoMap tempoMap = new TempoMap(90);
+        TempoMap changed = tempoMap.withChange(BEAT, 180);
+        assertEquals(90, tempoMap.getBpmAt(BEAT), "Edits leave the original map untouched");
+        assertEquals(180, changed.getBpmAt(BEAT));
+
+        TempoMap replaced = changed.withChange(BEAT, 45).withInitialBpm(60);
+        assertEquals(List.of(new TempoMap.Change(0, 60), new TempoMap.Change(BEAT, 45)), replaced.getChanges());
+
+        assertEquals(new TempoMap(60), replaced.withoutChange(BEAT));
+        assertSame(replaced, replaced.withoutChange(0), "The initial tempo cannot be removed");
+        assertSame(replaced, replaced.withoutChange(BEAT + 1));
+
+        // A change keeping the tempo is dropped
+        assertEquals(new TempoMap(60), new TempoMap(60).withChange(2 * BEAT, 60));
+        assertEquals(new TempoMap(60).hashCode(), new TempoMap(60).withChange(2 * BEAT, 60).hashCode());
+    }
+
+    @Test
+    void testInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new TempoMap(0));
+        assertThrows(IllegalArgumentException.class, () -> new TempoMap(Float.NaN));
+        assertThrows(IllegalArgumentException.class, () -> new TempoMap(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> new TempoMap(List.of(new TempoMap.Change(BEAT, 120))));
+        assertThrows(IllegalArgumentException.class, () -> new TempoMap(120).withChange(-1, 100));
+    }
+}
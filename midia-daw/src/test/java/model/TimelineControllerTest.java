@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
 
 import org.junit.jupiter.api.*;
 
@@ -53,6 +54,37 @@ public class TimelineControllerTest extends UtilTest {
         assertEquals(2, testObserver.getValue());
     }
 
+    @Test
+    void testCoalescedEvents() {
+        ArrayList<PropertyChangeEvent> received = new ArrayList<>();
+        tc.addObserver(received::add);
+        CoalescingPropertyChangeSupport pcs = tc.getPropertyChangeSupport();
+        pcs.resetStatistics();
+
+        for (long tick = 1; tick <= 100; tick++) {
+            pcs.firePropertyChange("tickPosition", tick - 1, tick);
+        }
+        pcs.firePropertyChange("midiTracks", null, new ArrayList<>());
+        pcs.firePropertyChange("bpm", 120f, 140f);
+        pcs.firePropertyChange("bpm", 140f, 120f);
+
+        // The held back ticks are flushed before the immediate event, keeping the firing order
+        assertEquals(2, received.size());
+        assertEquals("tickPosition", received.get(0).getPropertyName());
+        assertEquals(0L, received.get(0).getOldValue());
+        assertEquals(100L, received.get(0).getNewValue());
+        assertEquals("midiTracks", received.get(1).getPropertyName());
+
+        pcs.flush();
+        assertEquals(2, received.size(), "The bpm change ended where it started");
+
+        assertEquals(103, pcs.getFiredCount());
+        assertEquals(2, pcs.getDeliveredCount());
+
+        pcs.flush();
+        assertEquals(2, received.size());
+    }
+
     @Test
     void testPlayback() throws InterruptedException {
         tc.playTimeline();
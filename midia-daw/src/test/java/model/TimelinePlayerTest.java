@@ -409,6 +409,74 @@ public class TimelinePlayerTest extends UtilTest {
         assertEquals(4, timeline.getPlayer().getSequence().getTracks().length);
     }
 
+    @Test
+    void testIncrementalUpdateSequence() throws InvalidMidiDataException {
+        MidiTrack midiTrack1 = timeline.createMidiTrack("track", instr);
+        MidiTrack midiTrack2 = timeline.createMidiTrack("track", instr);
+        Block b1 = new Block(0, 1000);
+        Block b2 = new Block(0, 1000);
+        Note n1 = new Note(60, 60, 0, 5);
+        b1.addNote(n1);
+        b2.addNote(new Note(62, 90, 9, 17));
+        midiTrack1.addBlock(b1);
+        midiTrack2.addBlock(b2);
+
+        timeline.updatePlayerSequence();
+        Track[] tracks = timeline.getPlayer().getSequence().getTracks();
+        assertEquals(2, tracks.length);
+
+        // Nothing changed, both tracks are reused
+        timeline.updatePlayerSequence();
+        Track[] unchangedTracks = timeline.getPlayer().getSequence().getTracks();
+        assertSame(tracks[0], unchangedTracks[0]);
+        assertSame(tracks[1], unchangedTracks[1]);
+
+        // Editing a note in place only rebuilds its own track
+        n1.setPitch(72);
+        timeline.updatePlayerSequence();
+        Track[] editedTracks = timeline.getPlayer().getSequence().getTracks();
+        assertEquals(2, editedTracks.length);
+        assertSame(tracks[1], editedTracks[0]);
+        assertNotSame(tracks[0], editedTracks[1]);
+        assertEquals(72, editedTracks[1].get(2).getMessage().getMessage()[1]);
+
+        midiTrack2.setVolume(0);
+        timeline.updatePlayerSequence();
+        assertEquals(1, timeline.getPlayer().getSequence().getTracks().length);
+        assertSame(editedTracks[1], timeline.getPlayer().getSequence().getTracks()[0]);
+
+        timeline.removeMidiTrack(0);
+        timeline.updatePlayerSequence();
+        assertEquals(0, timeline.getPlayer().getSequence().getTracks().length);
+    }
+
+    @Test
+    void testLengthTicks() {
+        MidiTrack midiTrack1 = timeline.createMidiTrack("track", instr);
+        MidiTrack midiTrack2 = new MidiTrack("track", instr, 1);
+        Block b1 = new Block(0, 1000);
+        Block b2 = new Block(960, 1000);
+        Note n1 = new Note(60, 60, 0, 500);
+        b1.addNote(n1);
+        b2.addNote(new Note(62, 90, 0, 960));
+
+        midiTrack1.addBlock(b1);
+        assertEquals(500, timeline.getLengthTicks());
+        midiTrack2.addBlock(b2);
+        timeline.addMidiTrack(midiTrack2);
+        assertEquals(1920, timeline.getLengthTicks());
+
+        b2.setStartTick(0);
+        assertEquals(960, timeline.getLengthTicks());
+        n1.setDurationTicks(1000);
+        assertEquals(1000, timeline.getLengthTicks());
+
+        timeline.removeMidiTrack(0);
+        assertEquals(960, timeline.getLengthTicks());
+        timeline.removeMidiTrack(0);
+        assertEquals(0, timeline.getLengthTicks());
+    }
+
     @Test
     void testTempoChange() {
         MidiTrack testTrack = timeline.createMidiTrack("track", instr);
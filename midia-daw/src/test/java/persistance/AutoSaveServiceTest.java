@@ -0,0 +1,197 @@
+package persistance;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static persistance.UtilTest.skipIfHeadless;
+
+import java.beans.PropertyChangeSupport;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.Timeline;
+import model.TimelineController;
+import model.instrument.TonalInstrument;
+import persistance.ProjectSnapshot.BlockSnapshot;
+
+public class AutoSaveServiceTest {
+
+    private Path directory;
+    private TimelineController timelineController;
+
+    @BeforeEach
+    void runBefore() throws IOException {
+        skipIfHeadless();
+        directory = UtilTest.cleanWriteDirectory("autosave");
+        timelineController = new TimelineController();
+        timelineController.getTimeline().setProjectName("autosaved");
+    }
+
+    @Test
+    void testEditCount() {
+        Timeline timeline = timelineController.getTimeline();
+        long edits = timeline.getEditCount();
+
+        MidiTrack midiTrack = timeline.createMidiTrack("piano", TonalInstrument.ACOUSTIC_GRAND_PIANO);
+        assertEquals(++edits, timeline.getEditCount());
+        Block block = new Block(0, 1000);
+        midiTrack.addBlock(block);
+        assertEquals(++edits, timeline.getEditCount());
+        block.addNote(new Note(60, 100, 0, 100));
+        assertEquals(++edits, timeline.getEditCount());
+        midiTrack.setName("keys");
+        assertEquals(++edits, timeline.getEditCount());
+        timeline.getPlayer().setBPM(140);
+        assertEquals(++edits, timeline.getEditCount());
+
+        timeline.getPlayer().setTickPosition(500);
+        timeline.setHorizontalScaleFactor(2);
+        assertEquals(edits, timeline.getEditCount());
+
+        new Block(0, 10).addNote(new Note(60, 100, 0, 1)); // not part of the timeline
+        assertEquals(edits, timeline.getEditCount());
+    }
+
+    @Test
+    void testNothingToSave() throws Exception {
+        AutoSaveService service = new AutoSaveService(timelineController, directory, 1, 0, 5);
+
+        assertFalse(service.saveIfDue(0));
+        assertNull(service.saveNow().get());
+        assertEquals(0, countAutosaves());
+    }
+
+    @Test
+    void testEditThreshold() throws Exception {
+        AutoSaveService service = new AutoSaveService(timelineController, directory, 3, 1000, 5);
+        Timeline timeline = timelineController.getTimeline();
+
+        timeline.getPlayer().setBPM(100);
+        timeline.getPlayer().setBPM(101);
+        assertFalse(service.saveIfDue(0));
+        timeline.getPlayer().setBPM(102);
+        assertTrue(service.saveIfDue(1));
+        assertFalse(service.saveIfDue(2));
+
+        Path path = service.saveNow().get();
+        assertNull(path, "Nothing changed since the last save");
+        service.close().get();
+
+        File[] autosaves = listAutosaves();
+        assertEquals(1, autosaves.length);
+        Timeline saved = new BinaryReader(autosaves[0].getPath()).read(new PropertyChangeSupport("test"));
+        assertEquals(102, saved.getPlayer().getBPM());
+        assertEquals(1, directory.toFile().list().length, "No temporary files are left behind");
+    }
+
+    @Test
+    void testDirtyTime() throws Exception {
+        AutoSaveService service = new AutoSaveService(timelineController, directory, 1000, 5, 5);
+        Timeline timeline = timelineController.getTimeline();
+
+        timeline.getPlayer().setBPM(100);
+        assertFalse(service.saveIfDue(10_000));
+        assertFalse(service.saveIfDue(14_999));
+        assertTrue(service.saveIfDue(15_000));
+        service.close().get();
+        assertEquals(1, countAutosaves());
+    }
+
+    @Test
+    void testRotation() throws Exception {
+        AutoSaveService service = new AutoSaveService(timelineController, directory, 1, 0, 2);
+        Timeline timeline = timelineController.getTimeline();
+
+        Path last = null;
+        for (int i = 0; i < 4; i++) {
+            timeline.getPlayer().setBPM(100 + i);
+            last = service.saveNow().get();
+            Thread.sleep(5); // distinct timestamps
+        }
+        service.close().get();
+
+        File[] autosaves = listAutosaves();
+        assertEquals(2, autosaves.length);
+        assertEquals(last.getFileName().toString(), autosaves[1].getName());
+        Timeline saved = new BinaryReader(last.toString()).read(new PropertyChangeSupport("test"));
+        assertEquals(103, saved.getPlayer().getBPM());
+    }
+
+    @Test
+    void testTimelineReplaced() throws Exception {
+        AutoSaveService service = new AutoSaveService(timelineController, directory, 1000, 1000, 5);
+        CompletableFuture<?>[] closed = new CompletableFuture<?>[1];
+
+        SwingUtilities.invokeAndWait(() -> {
+            service.start();
+            timelineController.getTimeline().createMidiTrack("piano", TonalInstrument.ACOUSTIC_GRAND_PIANO);
+            timelineController.setInstance(new Timeline("replacement", timelineController.getPropertyChangeSupport()));
+            // Building the replacement did not count as unsaved edits
+            assertFalse(service.saveIfDue(Long.MAX_VALUE));
+            closed[0] = service.close();
+        });
+        closed[0].get();
+
+        File[] autosaves = listAutosaves();
+        assertEquals(1, autosaves.length);
+        assertTrue(autosaves[0].getName().startsWith("autosaved" + AutoSaveService.AUTOSAVE_INFIX));
+        Timeline saved = new BinaryReader(autosaves[0].getPath()).read(new PropertyChangeSupport("test"));
+        assertEquals(1, saved.getMidiTracks().size());
+    }
+
+    @Test
+    void testSnapshotReusesUnchangedBlocks() {
+        Timeline timeline = timelineController.getTimeline();
+        MidiTrack midiTrack = timeline.createMidiTrack("piano", TonalInstrument.ACOUSTIC_GRAND_PIANO);
+        Block unchanged = new Block(0, 1000);
+        Block edited = new Block(1000, 1000);
+        midiTrack.addBlock(unchanged);
+        midiTrack.addBlock(edited);
+        unchanged.addNote(new Note(60, 100, 0, 100));
+
+        Map<Block, BlockSnapshot> blockCache = new IdentityHashMap<>();
+        ProjectSnapshot first = ProjectSnapshot.of(timeline, blockCache);
+        edited.addNote(new Note(62, 90, 10, 20));
+        ProjectSnapshot second = ProjectSnapshot.of(timeline, blockCache);
+
+        assertSame(first.tracks().get(0).blocks().get(0), second.tracks().get(0).blocks().get(0));
+        assertNotSame(first.tracks().get(0).blocks().get(1), second.tracks().get(0).blocks().get(1));
+        assertEquals(0, first.tracks().get(0).blocks().get(1).noteCount());
+        assertEquals(1, second.tracks().get(0).blocks().get(1).noteCount());
+        assertEquals(62, second.tracks().get(0).blocks().get(1).notePitches()[0]);
+
+        midiTrack.removeBlock(0);
+        ProjectSnapshot third = ProjectSnapshot.of(timeline, blockCache);
+        assertEquals(1, third.tracks().get(0).blocks().size());
+        assertEquals(1, blockCache.size());
+    }
+
+    @Test
+    void testBaseName() {
+        assertEquals("a_b_c", AutoSaveService.getBaseName("a/b\\c"));
+        assertEquals("untitled", AutoSaveService.getBaseName("  "));
+    }
+
+    private File[] listAutosaves() {
+        File[] autosaves = directory.toFile()
+                .listFiles(file -> file.getName().contains(AutoSaveService.AUTOSAVE_INFIX));
+        assertNotNull(autosaves);
+        Arrays.sort(autosaves);
+        return autosaves;
+    }
+
+    private int countAutosaves() {
+        return listAutosaves().length;
+    }
+}
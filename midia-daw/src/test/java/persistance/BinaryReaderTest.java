@@ -0,0 +1,66 @@
+package persistance;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static persistance.UtilTest.skipIfHeadless;
+
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import model.Timeline;
+import model.instrument.TonalInstrument;
+
+public class BinaryReaderTest {
+
+    PropertyChangeSupport pcsTest = new PropertyChangeSupport("test");
+
+    @Test
+    void testReaderNonExistentFile() throws IOException {
+        BinaryReader reader = new BinaryReader(UtilTest.getReadFilePath("noSuchFile.midia"));
+        assertThrows(IOException.class, () -> reader.read(pcsTest));
+    }
+
+    @Test
+    void testNotBinaryProject() throws IOException {
+        BinaryReader reader = new BinaryReader(UtilTest.getReadFilePath("testReaderNewTimeline.json"));
+        assertThrows(IOException.class, () -> reader.read(pcsTest));
+    }
+
+    @Test
+    void testTruncatedProject() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testBinaryTruncated.midia");
+        Timeline timeline = new Timeline("truncated", null);
+        timeline.setPropertyChangeSupport(new PropertyChangeSupport(timeline));
+        UtilTest.addSampleSong(timeline);
+        ProjectFormat.BINARY.write(path, timeline);
+
+        byte[] bytes = Files.readAllBytes(Path.of(path));
+        Files.write(Path.of(path), Arrays.copyOf(bytes, bytes.length - 10));
+
+        assertThrows(IOException.class, () -> new BinaryReader(path).read(pcsTest));
+    }
+
+    @Test
+    void testUnknownInstrument() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testBinaryUnknownInstrument.midia");
+        Timeline timeline = new Timeline("corrupt", null);
+        timeline.setPropertyChangeSupport(new PropertyChangeSupport(timeline));
+        timeline.createMidiTrack("lead", TonalInstrument.PAD_2);
+        ProjectFormat.BINARY.write(path, timeline);
+
+        // Replace the instrument name with one of the same length that no instrument has
+        String bytes = new String(Files.readAllBytes(Path.of(path)), StandardCharsets.ISO_8859_1);
+        assertTrue(bytes.contains("PAD_2"));
+        Files.write(Path.of(path), bytes.replace("PAD_2", "PAD_?").getBytes(StandardCharsets.ISO_8859_1));
+
+        IOException e = assertThrows(IOException.class, () -> new BinaryReader(path).read(pcsTest));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+    }
+}
@@ -0,0 +1,86 @@
+package persistance;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static persistance.UtilTest.skipIfHeadless;
+
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.Timeline;
+import model.instrument.TonalInstrument;
+
+public class BinaryWriterTest {
+
+    PropertyChangeSupport pcsTest = new PropertyChangeSupport("test");
+
+    @Test
+    void testWriteInvalidPath() {
+        try {
+            new BinaryWriter(UtilTest.getWriteFilePath("\0exception")).open();
+            fail("Excepted exception due to invalid path");
+        } catch (InvalidPathException e) {
+            // pass
+        } catch (IOException e) {
+            fail("Expected InvalidPathException, got " + e.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    void testEmptyTimeline() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testBinaryEmptyTimeline");
+        Timeline timeline = new Timeline("bob", null);
+
+        ProjectFormat.BINARY.write(path, timeline);
+
+        Timeline timeline2 = new BinaryReader(path + ".midia").read(pcsTest);
+        UtilTest.assertTimelineEquals(timeline, timeline2);
+    }
+
+    @Test
+    void testMidiTracksTimeline() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testBinaryMidiTracksTimeline.midia");
+        Timeline timeline = new Timeline("joe ♪", null);
+        timeline.setPropertyChangeSupport(new PropertyChangeSupport(timeline));
+        UtilTest.addSampleSong(timeline);
+        timeline.getPlayer().setBPM(133.5f);
+        timeline.getPlayer().addTempoChange(1L << 36, 61);
+        timeline.getPlayer().addTempoChange(960, 200.5f);
+        timeline.getPlayer().setTickPosition(1000);
+        timeline.setHorizontalScaleFactor(1.25);
+
+        // Notes out of start order and ticks beyond 32 bits exercise the delta and varint encoding
+        MidiTrack lead = timeline.createMidiTrack("lead", TonalInstrument.PAD_2);
+        Block block = new Block(1L << 40, 1L << 35);
+        lead.addBlock(block);
+        block.addNote(new Note(127, 1, 5000, 10));
+        block.addNote(new Note(0, 127, 0, (1L << 34) + 3));
+
+        ProjectFormat.BINARY.write(path, timeline);
+
+        Timeline timeline2 = ProjectFormat.fromPath(path).read(path, pcsTest);
+        UtilTest.assertTimelineEquals(timeline, timeline2);
+        assertEquals(1.25, timeline2.getHorizontalScaleFactor());
+        assertEquals(timeline.getLengthTicks(), timeline2.getLengthTicks());
+        assertTrue(Files.size(Path.of(path)) < timeline.toJson().toString().length() / 4);
+    }
+
+    @Test
+    void testProjectFormatFromPath() {
+        assertEquals(ProjectFormat.BINARY, ProjectFormat.fromPath("song.midia"));
+        assertEquals(ProjectFormat.BINARY, ProjectFormat.fromPath("SONG.MIDIA "));
+        assertEquals(ProjectFormat.JSON, ProjectFormat.fromPath("song.json"));
+        assertEquals(ProjectFormat.JSON, ProjectFormat.fromPath("song"));
+        assertTrue(ProjectFormat.isProjectFile("song.midia"));
+        assertFalse(ProjectFormat.isProjectFile("song.mid"));
+    }
+}
@@ -0,0 +1,155 @@
+package persistance;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.event.Event;
+import model.event.EventLog;
+import model.event.LogLevel;
+
+public class EventLogFileSinkTest {
+
+    private Path directory;
+
+    @BeforeEach
+    void runBefore() throws IOException {
+        directory = UtilTest.cleanWriteDirectory("logs");
+    }
+
+    @Test
+    void testWritesEvents() throws IOException {
+        EventLogFileSink sink = new EventLogFileSink(directory, 1 << 20, 3);
+        sink.start();
+        sink.accept(new Event(LogLevel.WARN, "Note %d out of bounds", 60));
+        sink.accept(new Event("Second"));
+        sink.close();
+
+        List<String> lines = Files.readAllLines(sink.getLogFile());
+        assertEquals(2, lines.size());
+        String timestamp = "\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3}";
+        assertTrue(lines.get(0).matches(timestamp + " \\[WARN] Note 60 out of bounds"));
+        assertTrue(lines.get(1).endsWith(" [INFO] Second"));
+        assertEquals(2, sink.getWrittenCount());
+        assertEquals(0, sink.getDroppedCount());
+
+        sink.accept(new Event("After close"));
+        assertEquals(1, sink.getDroppedCount());
+    }
+
+    @Test
+    void testAppendsToExistingLog() throws IOException {
+        Files.writeString(directory.resolve("midia.log"), "earlier session" + System.lineSeparator());
+        EventLogFileSink sink = new EventLogFileSink(directory, 1 << 20, 3);
+        sink.start();
+        sink.accept(new Event("later session"));
+        sink.close();
+
+        List<String> lines = Files.readAllLines(sink.getLogFile());
+        assertEquals("earlier session", lines.get(0));
+        assertTrue(lines.get(1).endsWith("later session"));
+    }
+
+    @Test
+    void testRotation() throws IOException {
+        EventLogFileSink sink = new EventLogFileSink(directory, 1000, 3);
+        sink.start();
+        for (int i = 0; i < 200; i++) {
+            sink.accept(new Event(String.format("Event %03d", i)));
+        }
+        sink.close();
+
+        assertEquals(3, directory.toFile().list().length);
+        assertFalse(Files.exists(directory.resolve("midia.3.log")));
+        for (String name : List.of("midia.log", "midia.1.log", "midia.2.log")) {
+            assertTrue(Files.size(directory.resolve(name)) <= 1000);
+        }
+        List<String> newest = Files.readAllLines(directory.resolve("midia.log"));
+        assertTrue(newest.get(newest.size() - 1).endsWith("Event 199"));
+        List<String> older = Files.readAllLines(directory.resolve("midia.1.log"));
+        String lastOlder = older.get(older.size() - 1);
+        String firstNewest = newest.get(0);
+        assertEquals(Integer.parseInt(lastOlder.substring(lastOlder.length() - 3)) + 1,
+                Integer.parseInt(firstNewest.substring(firstNewest.length() - 3)));
+    }
+
+    @Test
+    void testQueueFull() throws IOException {
+        EventLogFileSink sink = new EventLogFileSink(directory, 1 << 20, 3, 10);
+        for (int i = 0; i < 15; i++) {
+            sink.accept(new Event("Event " + i)); // queued until the writer starts
+        }
+        assertEquals(5, sink.getDroppedCount());
+
+        sink.start();
+        sink.close();
+        List<String> lines = Files.readAllLines(sink.getLogFile());
+        assertEquals(10, lines.size());
+        assertTrue(lines.get(9).endsWith("Event 9"));
+    }
+
+    @Test
+    void testWriteFailure() throws IOException {
+        EventLogFileSink sink = new EventLogFileSink(directory, 100, 3);
+        sink.start();
+        // Rotating fails once the directory is gone
+        Files.delete(sink.getLogFile());
+        Files.delete(directory);
+        assertNull(sink.getFailure());
+
+        for (int i = 0; i < 20; i++) {
+            sink.accept(new Event("Event " + i));
+        }
+        sink.close();
+
+        assertNotNull(sink.getFailure());
+        assertTrue(sink.getWrittenCount() < 20);
+        assertEquals(20, sink.getWrittenCount() + sink.getDroppedCount());
+    }
+
+    @Test
+    void testConcurrentProducers() throws Exception {
+        EventLogFileSink sink = new EventLogFileSink(directory, 1 << 20, 3);
+        sink.start();
+        EventLog eventLog = EventLog.getInstance();
+        eventLog.addSink(sink);
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            String prefix = "Producer " + t + " event ";
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    eventLog.logEvent(new Event(LogLevel.ERROR, prefix + i));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        eventLog.removeSink(sink);
+        eventLog.logEvent(new Event(LogLevel.ERROR, "Producer 0 event after removal"));
+        sink.close();
+
+        int[] next = new int[threads.length];
+        for (String line : Files.readAllLines(sink.getLogFile())) {
+            int start = line.indexOf("Producer ");
+            if (start < 0) {
+                continue;
+            }
+            String[] parts = line.substring(start).split(" ");
+            int t = Integer.parseInt(parts[1]);
+            assertEquals(String.valueOf(next[t]++), parts[3], "Each producer's events are in order");
+        }
+        for (int count : next) {
+            assertEquals(1000, count);
+        }
+        assertEquals(0, sink.getDroppedCount());
+    }
+}
@@ -1,14 +1,19 @@
 package persistance;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 import static persistance.UtilTest.skipIfHeadless;
 
 import java.beans.PropertyChangeSupport;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
 
+import org.json.JSONException;
 import org.junit.jupiter.api.Test;
 
 import model.Timeline;
@@ -64,4 +69,39 @@ public class JsonReaderTest {
             fail("File should exist and be accessible");
         }
     }
+
+    @Test
+    void testMembersInAnyOrder() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testReaderMembersInAnyOrder.json");
+        Files.writeString(Path.of(path), "{\"midiTracks\": [{\"blocks\": [{\"notes\": [{\"durationTicks\": 10,"
+                + " \"startTick\": 5, \"velocity\": 90, \"pitch\": 60, \"unknown\": [1, {}]}],"
+                + " \"startTick\": 100, \"durationTicks\": 960}], \"name\": \"lead\", \"volume\": 80,"
+                + " \"instrument\": {\"type\": \"tonal\", \"name\": \"PAD_2\"}, \"channel\": 3}],"
+                + " \"projectName\": \"order\", \"horizontalScaleFactor\": 2, \"beatsPerMeasure\": 3,"
+                + " \"beatDivision\": 2, \"player\": {\"availableChannels\": [], \"tickPosition\": 7,"
+                + " \"beatsPerMinute\": 90.5}}");
+
+        Timeline timeline = new JsonReader(path).read(pcsTest);
+        assertEquals("order", timeline.getProjectName());
+        assertEquals(2, timeline.getHorizontalScaleFactor());
+        assertEquals(90.5f, timeline.getPlayer().getBPM());
+        assertEquals(7, timeline.getPlayer().getTickPosition());
+        assertEquals(3, timeline.getPlayer().getBeatsPerMeasure());
+        assertEquals(2, timeline.getPlayer().getBeatDivision());
+        assertEquals(1, timeline.getMidiTracks().size());
+        assertEquals(3, timeline.getTrack(0).getChannel());
+        assertEquals(80, timeline.getTrack(0).getVolume());
+        assertEquals(100, timeline.getTrack(0).getBlock(0).getStartTick());
+        assertEquals(60, timeline.getTrack(0).getBlock(0).getNotes().get(0).getPitch());
+        assertEquals(115, timeline.getLengthTicks());
+    }
+
+    @Test
+    void testMissingMember() throws IOException {
+        String path = UtilTest.getWriteFilePath("testReaderMissingMember.json");
+        Files.writeString(Path.of(path), "{\"projectName\": \"missing\"}");
+
+        assertThrows(JSONException.class, () -> new JsonReader(path).read(pcsTest));
+    }
 }
@@ -5,11 +5,14 @@ import static persistance.UtilTest.skipIfHeadless;
 
 import java.beans.PropertyChangeSupport;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
 
+import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 
 import model.Timeline;
@@ -141,4 +144,54 @@ public class JsonWriterTest {
         }
     }
 
+    @Test
+    void testStreamedMatchesToJson() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testStreamedMatchesToJson.json");
+        Timeline timeline = new Timeline("joe \"quoted\"", null);
+        timeline.setPropertyChangeSupport(new PropertyChangeSupport(timeline));
+        UtilTest.addSampleSong(timeline);
+        timeline.getPlayer().setBPM(133.5f);
+        timeline.getPlayer().addTempoChange(3840, 90.25f);
+        timeline.setHorizontalScaleFactor(1.25);
+
+        jsonWriter = new JsonWriter(path);
+        jsonWriter.open();
+        jsonWriter.write(timeline);
+        jsonWriter.close();
+
+        String written = Files.readString(Path.of(path));
+        assertTrue(new JSONObject(written).similar(timeline.toJson()));
+        assertTrue(written.contains("\n    \"projectName\": "));
+
+        Timeline read = new JsonReader(path).read(new PropertyChangeSupport("test"));
+        assertEquals(timeline.getPlayer().getTempoMap(), read.getPlayer().getTempoMap());
+        read.getPlayer().close();
+    }
+
+    @Test
+    void testCompactTimeline() throws MidiUnavailableException {
+        skipIfHeadless();
+        try {
+            String path = UtilTest.getWriteFilePath("testCompactTimeline.json");
+            jsonWriter = new JsonWriter(path, true);
+            Timeline timeline = new Timeline("joe", null);
+            timeline.setPropertyChangeSupport(new PropertyChangeSupport(timeline));
+            UtilTest.addSampleSong(timeline);
+
+            jsonWriter.open();
+            jsonWriter.write(timeline);
+            jsonWriter.close();
+
+            assertFalse(Files.readString(Path.of(path)).contains("\n"));
+
+            jsonReader = new JsonReader(path);
+            Timeline timeline2 = jsonReader.read(pcsTest);
+            UtilTest.assertTimelineEquals(timeline, timeline2);
+        } catch (IOException e) {
+            fail("Exception should not have been thrown");
+        } catch (InvalidMidiDataException e) {
+            fail("InvalidMidiDataException should not have been thrown");
+        }
+    }
 }
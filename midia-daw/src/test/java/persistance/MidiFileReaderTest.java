@@ -0,0 +1,240 @@
+package persistance;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static persistance.UtilTest.skipIfHeadless;
+
+import java.beans.PropertyChangeSupport;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.junit.jupiter.api.Test;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.Player;
+import model.TempoMap;
+import model.Timeline;
+import model.instrument.PercussiveInstrument;
+import model.instrument.TonalInstrument;
+
+public class MidiFileReaderTest {
+
+    PropertyChangeSupport pcsTest = new PropertyChangeSupport("test");
+
+    @Test
+    void testReaderNonExistentFile() {
+        try {
+            new MidiFileReader("./data/noSuchFile.mid").read(pcsTest);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // pass
+        }
+    }
+
+    @Test
+    void testNotMidiFile() throws IOException {
+        String path = UtilTest.getWriteFilePath("testNotMidi.mid");
+        Files.writeString(Path.of(path), "{\"projectName\": \"json\"}");
+        try {
+            new MidiFileReader(path).read(pcsTest);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // pass
+        }
+    }
+
+    @Test
+    void testTruncated() throws Exception {
+        String path = UtilTest.getWriteFilePath("testMidiTruncated.mid");
+        Sequence sequence = new Sequence(Sequence.PPQ, 480);
+        Track track = sequence.createTrack();
+        for (int i = 0; i < 100; i++) {
+            addNote(track, 0, 60, 100, i * 480L, 240);
+        }
+        MidiSystem.write(sequence, 1, new File(path));
+        byte[] bytes = Files.readAllBytes(Path.of(path));
+        Files.write(Path.of(path), Arrays.copyOf(bytes, bytes.length - 20));
+
+        try {
+            new MidiFileReader(path).read(pcsTest);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // pass
+        }
+    }
+
+    @Test
+    void testType1() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testMidiType1.mid");
+        Sequence sequence = new Sequence(Sequence.PPQ, 480);
+
+        Track conductor = sequence.createTrack();
+        conductor.add(new MidiEvent(new MetaMessage(0x51, new byte[] { 0x09, 0x27, (byte) 0xC0 }, 3), 0)); // 100 bpm
+        conductor.add(new MidiEvent(new MetaMessage(0x58, new byte[] { 3, 2, 24, 8 }, 4), 0));
+
+        Track keys = sequence.createTrack();
+        keys.add(new MidiEvent(new MetaMessage(0x03, "keys".getBytes(), 4), 0));
+        keys.add(new MidiEvent(new ShortMessage(ShortMessage.PROGRAM_CHANGE, 0, 0, 0), 0));
+        keys.add(new MidiEvent(new ShortMessage(ShortMessage.CONTROL_CHANGE, 0, 7, 90), 0));
+        keys.add(new MidiEvent(new ShortMessage(ShortMessage.PROGRAM_CHANGE, 1, 40, 0), 0));
+        addNote(keys, 0, 60, 100, 0, 480);
+        addNote(keys, 0, 60, 80, 240, 480); // overlaps the first, paired first in first out
+        addNote(keys, 0, 64, 70, 1400, 200); // crosses the first bar line
+        addNote(keys, 1, 72, 50, 1440, 480); // second bar, another channel and program
+        // NOTE_ON with velocity 0 ends a note
+        keys.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 50, 60), 3000));
+        keys.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 50, 0), 3100));
+
+        Track drums = sequence.createTrack();
+        addNote(drums, 9, 36, 127, 0, 120);
+        addNote(drums, 9, 42, 100, 240, 120);
+        addNote(drums, 9, 20, 100, 0, 120); // no percussive instrument, dropped
+
+        MidiSystem.write(sequence, 1, new File(path));
+
+        Timeline timeline = new MidiFileReader(path, 1).read(pcsTest);
+        assertEquals("testMidiType1", timeline.getProjectName());
+        assertEquals(100, timeline.getPlayer().getBPM(), 0.001);
+        assertEquals(3, timeline.getPlayer().getBeatsPerMeasure());
+
+        ArrayList<MidiTrack> midiTracks = timeline.getMidiTracks();
+        assertEquals(4, midiTracks.size());
+
+        MidiTrack piano = midiTracks.get(0);
+        assertEquals("keys - Acoustic Grand Piano", piano.getName());
+        assertEquals(TonalInstrument.ACOUSTIC_GRAND_PIANO, piano.getInstrument());
+        assertEquals(0, piano.getChannel());
+        assertEquals(90, piano.getVolume());
+
+        final long bar = 3 * Player.PULSES_PER_QUARTER_NOTE;
+        assertEquals(2, piano.getBlocks().size());
+        Block firstBar = piano.getBlock(0);
+        assertEquals(0, firstBar.getStartTick());
+        assertEquals(2800 + 400, firstBar.getDurationTicks()); // extended for the note crossing the bar line
+        assertNoteEquals(new Note(60, 100, 0, 960), firstBar.getNotes().get(0));
+        assertNoteEquals(new Note(60, 80, 480, 960), firstBar.getNotes().get(1));
+        assertNoteEquals(new Note(64, 70, 2800, 400), firstBar.getNotes().get(2));
+        Block thirdBar = piano.getBlock(1);
+        assertEquals(2 * bar, thirdBar.getStartTick());
+        assertEquals(bar, thirdBar.getDurationTicks());
+        assertNoteEquals(new Note(50, 60, 6000 - 2 * bar, 200), thirdBar.getNotes().get(0));
+
+        MidiTrack violin = midiTracks.get(1);
+        assertEquals("keys - Violin", violin.getName());
+        assertEquals(TonalInstrument.VIOLIN, violin.getInstrument());
+        assertEquals(1, violin.getChannel());
+        assertEquals(1, violin.getBlocks().size());
+        assertEquals(bar, violin.getBlock(0).getStartTick());
+        assertNoteEquals(new Note(72, 50, 2880 - bar, 960), violin.getBlock(0).getNotes().get(0));
+
+        MidiTrack bassDrum = midiTracks.get(2);
+        assertEquals("Track 3 - " + PercussiveInstrument.ELECTRIC_BASS_DRUM.getName(), bassDrum.getName());
+        assertEquals(PercussiveInstrument.ELECTRIC_BASS_DRUM, bassDrum.getInstrument());
+        assertTrue(bassDrum.isPercussive());
+        assertNoteEquals(new Note(Note.PERCUSSIVE_DEFAULT_PITCH, 127, 0, 240), bassDrum.getBlock(0).getNotes().get(0));
+        assertEquals(PercussiveInstrument.CLOSED_HI_HAT, midiTracks.get(3).getInstrument());
+
+        assertFalse(timeline.getPlayer().getAvailableChannels().contains(0));
+        assertFalse(timeline.getPlayer().getAvailableChannels().contains(1));
+    }
+
+    @Test
+    void testType0SharedChannel() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testMidiType0.mid");
+        Sequence sequence = new Sequence(Sequence.PPQ, Player.PULSES_PER_QUARTER_NOTE);
+        Track track = sequence.createTrack();
+        addNote(track, 2, 60, 100, 0, 100);
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.PROGRAM_CHANGE, 2, 33, 0), 500));
+        addNote(track, 2, 40, 100, 1000, 100);
+        MidiSystem.write(sequence, 0, new File(path));
+
+        Timeline timeline = new MidiFileReader(path).read(pcsTest);
+        ArrayList<MidiTrack> midiTracks = timeline.getMidiTracks();
+        assertEquals(2, midiTracks.size());
+        assertEquals(TonalInstrument.ACOUSTIC_GRAND_PIANO, midiTracks.get(0).getInstrument());
+        assertEquals(2, midiTracks.get(0).getChannel());
+        // The program change moves the later notes to their own track on a free channel
+        assertEquals(TonalInstrument.ELECTRIC_BASS_FINGER, midiTracks.get(1).getInstrument());
+        assertNotEquals(2, midiTracks.get(1).getChannel());
+        assertNoteEquals(new Note(40, 100, 1000, 100), midiTracks.get(1).getBlock(0).getNotes().get(0));
+    }
+
+    @Test
+    void testExportRoundTrip() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testMidiRoundTrip.mid");
+        Timeline timeline = new Timeline("round trip", pcsTest);
+        UtilTest.addSampleSong(timeline);
+        timeline.getPlayer().setBPM(96);
+        timeline.getPlayer().addTempoChange(1920, 150);
+        timeline.getPlayer().addTempoChange(7680, 72);
+
+        MidiFileWriter writer = new MidiFileWriter(path);
+        writer.open();
+        writer.write(timeline);
+        writer.close();
+
+        Timeline imported = new MidiFileReader(path, 2).read(pcsTest);
+        assertEquals(96, imported.getPlayer().getBPM(), 0.001);
+        List<TempoMap.Change> tempoChanges = imported.getPlayer().getTempoMap().getChanges();
+        assertEquals(3, tempoChanges.size());
+        assertEquals(1920, tempoChanges.get(1).tick());
+        assertEquals(150, tempoChanges.get(1).bpm(), 0.001);
+        assertEquals(7680, tempoChanges.get(2).tick());
+        assertEquals(72, tempoChanges.get(2).bpm(), 0.001);
+        assertEquals(timeline.getMidiTracks().size(), imported.getMidiTracks().size());
+        for (int i = 0; i < timeline.getMidiTracks().size(); i++) {
+            MidiTrack expected = timeline.getMidiTracks().get(i);
+            MidiTrack actual = imported.getMidiTracks().get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getInstrument(), actual.getInstrument());
+            assertEquals(expected.getChannel(), actual.getChannel());
+            assertEquals(expected.getVolume(), actual.getVolume());
+            assertEquals(compiledEvents(expected), compiledEvents(actual));
+        }
+    }
+
+    private static void addNote(Track track, int channel, int pitch, int velocity, long startTick, long duration)
+            throws InvalidMidiDataException {
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, pitch, velocity), startTick));
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, pitch, 0), startTick + duration));
+    }
+
+    private static void assertNoteEquals(Note expected, Note actual) {
+        assertEquals(expected.getPitch(), actual.getPitch());
+        assertEquals(expected.getVelocity(), actual.getVelocity());
+        assertEquals(expected.getStartTick(), actual.getStartTick());
+        assertEquals(expected.getDurationTicks(), actual.getDurationTicks());
+    }
+
+    // EFFECTS: returns the track's channel events as sorted "tick status data1 data2" strings
+    private static List<String> compiledEvents(MidiTrack midiTrack) throws InvalidMidiDataException {
+        Track track = new Sequence(Sequence.PPQ, Player.PULSES_PER_QUARTER_NOTE).createTrack();
+        midiTrack.applyToTrack(track);
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < track.size(); i++) {
+            if (track.get(i).getMessage() instanceof ShortMessage message) {
+                events.add(String.format("%d %d %d %d", track.get(i).getTick(), message.getStatus(),
+                        message.getData1(), message.getData2()));
+            }
+        }
+        events.sort(null);
+        return events;
+    }
+}
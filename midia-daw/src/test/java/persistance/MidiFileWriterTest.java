@@ -0,0 +1,164 @@
+package persistance;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static persistance.UtilTest.skipIfHeadless;
+
+import java.beans.PropertyChangeSupport;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiFileFormat;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.junit.jupiter.api.Test;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.Player;
+import model.Timeline;
+import model.instrument.TonalInstrument;
+
+public class MidiFileWriterTest {
+
+    PropertyChangeSupport pcsTest = new PropertyChangeSupport("test");
+
+    @Test
+    void testWriteInvalidPath() {
+        try {
+            new MidiFileWriter(UtilTest.getWriteFilePath("\0exception")).open();
+            fail("Excepted exception due to invalid path");
+        } catch (InvalidPathException e) {
+            // pass
+        } catch (IOException e) {
+            fail("Expected InvalidPathException, got " + e.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    void testSampleSong() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testMidiSampleSong");
+        Timeline timeline = new Timeline("sample", pcsTest);
+        UtilTest.addSampleSong(timeline);
+        timeline.getPlayer().setBPM(150);
+        timeline.getPlayer().setBeatsPerMeasure(3);
+
+        // Overlapping blocks, with notes out of start order, must be merged into tick order
+        MidiTrack lead = timeline.createMidiTrack("lead", TonalInstrument.PAD_2);
+        Block first = new Block(0, 4000);
+        Block second = new Block(500, 4000);
+        lead.addBlock(first);
+        lead.addBlock(second);
+        first.addNote(new Note(60, 100, 2000, 1000));
+        first.addNote(new Note(62, 90, 0, 1000));
+        second.addNote(new Note(64, 80, 0, 3000));
+        lead.setMuted(true);
+
+        write(path, timeline);
+
+        File file = new File(path + ".mid");
+        MidiFileFormat format = MidiSystem.getMidiFileFormat(file);
+        assertEquals(1, format.getType());
+        assertEquals(Sequence.PPQ, format.getDivisionType());
+        assertEquals(Player.PULSES_PER_QUARTER_NOTE, format.getResolution());
+
+        Sequence sequence = MidiSystem.getSequence(file);
+        Track[] tracks = sequence.getTracks();
+        assertEquals(timeline.getMidiTracks().size() + 1, tracks.length);
+
+        MetaMessage tempo = findMeta(tracks[0], 0x51);
+        byte[] tempoData = tempo.getData();
+        assertEquals(400_000, (tempoData[0] & 0xFF) << 16 | (tempoData[1] & 0xFF) << 8 | (tempoData[2] & 0xFF));
+        assertEquals(3, findMeta(tracks[0], 0x58).getData()[0]);
+        assertEquals("sample", new String(findMeta(tracks[0], 0x03).getData()));
+
+        for (int i = 0; i < timeline.getMidiTracks().size(); i++) {
+            MidiTrack midiTrack = timeline.getMidiTracks().get(i);
+            assertEquals(midiTrack.getName(), new String(findMeta(tracks[i + 1], 0x03).getData()));
+
+            Track expected = new Sequence(Sequence.PPQ, Player.PULSES_PER_QUARTER_NOTE).createTrack();
+            midiTrack.applyToTrack(expected);
+            assertShortMessagesEqual(expected, tracks[i + 1]);
+        }
+    }
+
+    @Test
+    void testEmptyTimeline() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testMidiEmptyTimeline.mid");
+        Timeline timeline = new Timeline("empty", pcsTest);
+        timeline.createMidiTrack("no blocks", TonalInstrument.ACOUSTIC_GRAND_PIANO);
+
+        write(path, timeline);
+
+        Sequence sequence = MidiSystem.getSequence(new File(path));
+        assertEquals(2, sequence.getTracks().length);
+        assertEquals(0, sequence.getTickLength());
+    }
+
+    @Test
+    void testGapTooLong() throws Exception {
+        skipIfHeadless();
+        String path = UtilTest.getWriteFilePath("testMidiGapTooLong");
+        Timeline timeline = new Timeline("gap", pcsTest);
+        Block block = new Block(1L << 30, 100);
+        block.addNote(new Note(60, 100, 0, 10));
+        timeline.createMidiTrack("far", TonalInstrument.ACOUSTIC_GRAND_PIANO).addBlock(block);
+
+        try {
+            write(path, timeline);
+            fail("Expected IOException for a delta time beyond the MIDI range");
+        } catch (IOException e) {
+            // pass
+        }
+    }
+
+    private static void write(String path, Timeline timeline) throws IOException {
+        MidiFileWriter writer = new MidiFileWriter(path);
+        writer.open();
+        try {
+            writer.write(timeline);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static MetaMessage findMeta(Track track, int type) {
+        for (int i = 0; i < track.size(); i++) {
+            if (track.get(i).getMessage() instanceof MetaMessage meta && meta.getType() == type) {
+                return meta;
+            }
+        }
+        fail("No meta event of type " + type);
+        return null;
+    }
+
+    private static void assertShortMessagesEqual(Track expected, Track actual) {
+        int j = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            MidiEvent expectedEvent = expected.get(i);
+            if (!(expectedEvent.getMessage() instanceof ShortMessage expectedMessage)) {
+                continue;
+            }
+            while (!(actual.get(j).getMessage() instanceof ShortMessage)) {
+                j++;
+            }
+            ShortMessage actualMessage = (ShortMessage) actual.get(j).getMessage();
+            assertEquals(expectedEvent.getTick(), actual.get(j).getTick());
+            assertEquals(expectedMessage.getStatus(), actualMessage.getStatus());
+            assertEquals(expectedMessage.getData1(), actualMessage.getData1());
+            assertEquals(expectedMessage.getData2(), actualMessage.getData2());
+            j++;
+        }
+        for (; j < actual.size(); j++) {
+            assertFalse(actual.get(j).getMessage() instanceof ShortMessage, "Unexpected event in exported track");
+        }
+    }
+}
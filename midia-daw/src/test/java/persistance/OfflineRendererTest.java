@@ -0,0 +1,161 @@
+package persistance;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.beans.PropertyChangeSupport;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.jupiter.api.Test;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.PlaybackSchedule;
+import model.Player;
+import model.Timeline;
+import model.instrument.TonalInstrument;
+
+public class OfflineRendererTest {
+
+    @Test
+    void testWavWriter() throws Exception {
+        String path = UtilTest.getWriteFilePath("testWavWriter");
+        WavWriter writer = new WavWriter(path, new AudioFormat(48000, 24, 1, true, false));
+        assertEquals(Path.of(path + ".wav"), writer.getPath());
+
+        writer.open();
+        byte[] samples = new byte[3 * 30_000];
+        samples[3 * 29_999 + 2] = 0x40;
+        writer.write(samples, 0, samples.length);
+        writer.close();
+
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(writer.getPath().toFile())) {
+            AudioFormat format = in.getFormat();
+            assertEquals(48000, format.getSampleRate());
+            assertEquals(24, format.getSampleSizeInBits());
+            assertEquals(1, format.getChannels());
+            assertEquals(30_000, in.getFrameLength());
+            byte[] read = in.readAllBytes();
+            assertArrayEquals(samples, read);
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new WavWriter(path, new AudioFormat(44100, 16, 2, true, true)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new WavWriter(path, new AudioFormat(44100, 8, 2, true, false)));
+    }
+
+    @Test
+    void testRender() throws Exception {
+        OfflineRenderer renderer = new OfflineRenderer(sampleSchedule(), 120, 500);
+        long expectedFrames = Math.round(1.5 * OfflineRenderer.SAMPLE_RATE); // one second of notes, then the tail
+        assertEquals(expectedFrames, renderer.getTotalFrames());
+
+        for (int bitDepth : new int[] { 16, 24 }) {
+            String path = UtilTest.getWriteFilePath("testRender" + bitDepth + ".wav");
+            long[] lastProgress = { -1, -1 };
+            OfflineRenderer.Result result = renderer.render(path, bitDepth, (processed, total) -> {
+                assertTrue(processed > lastProgress[0]);
+                lastProgress[0] = processed;
+                lastProgress[1] = total;
+                return true;
+            });
+
+            assertEquals(Path.of(path), result.path());
+            assertEquals(expectedFrames, result.frames());
+            assertEquals(expectedFrames, lastProgress[0]);
+            assertEquals(expectedFrames, lastProgress[1]);
+            assertEquals(1.5, result.audioSeconds(), 0.001);
+            assertTrue(result.speedFactor() > 0);
+
+            try (AudioInputStream in = AudioSystem.getAudioInputStream(new File(path))) {
+                assertEquals(bitDepth, in.getFormat().getSampleSizeInBits());
+                assertEquals(OfflineRenderer.CHANNELS, in.getFormat().getChannels());
+                assertEquals(expectedFrames, in.getFrameLength());
+
+                int frameSize = in.getFormat().getFrameSize();
+                byte[] audio = in.readAllBytes();
+                int firstSound = firstNonSilentFrame(audio, frameSize);
+                // The first note starts half a beat in; the synthesizer delays every event by a few milliseconds
+                assertTrue(firstSound >= OfflineRenderer.SAMPLE_RATE / 4, "Silent before the first note");
+                assertTrue(firstSound < OfflineRenderer.SAMPLE_RATE / 4 + OfflineRenderer.SAMPLE_RATE / 20,
+                        "Sounds once the first note starts");
+            }
+        }
+    }
+
+    @Test
+    void testRenderCancelled() throws IOException {
+        String path = UtilTest.getWriteFilePath("testRenderCancelled.wav");
+        Files.deleteIfExists(Path.of(path));
+        OfflineRenderer renderer = new OfflineRenderer(sampleSchedule(), 120, OfflineRenderer.DEFAULT_TAIL_MS);
+
+        assertThrows(CancellationException.class, () -> renderer.render(path, 16, (processed, total) -> false));
+        assertFalse(new File(path).exists(), "A cancelled bounce leaves no file behind");
+    }
+
+    @Test
+    void testRenderEmpty() throws Exception {
+        String path = UtilTest.getWriteFilePath("testRenderEmpty.wav");
+        OfflineRenderer renderer = new OfflineRenderer(PlaybackSchedule.EMPTY, 120, 100);
+
+        OfflineRenderer.Result result = renderer.render(path, 16, ProgressListener.NONE);
+        assertEquals(Math.round(0.1 * OfflineRenderer.SAMPLE_RATE), result.frames());
+    }
+
+    @Test
+    void testBounceProjectFile() throws Exception {
+        // Reading and bouncing a project opens no playback engine, so this runs without a MIDI device
+        Timeline timeline = ProjectFormat.JSON.read(UtilTest.getReadFilePath("testReaderExtensive.json"),
+                new PropertyChangeSupport("test"));
+        try {
+            OfflineRenderer renderer = OfflineRenderer.of(timeline);
+            String path = UtilTest.getWriteFilePath("testBounceProjectFile.wav");
+            OfflineRenderer.Result result = renderer.render(path, 16, ProgressListener.NONE);
+            assertFalse(timeline.getPlayer().isPlaying());
+
+            try (AudioInputStream in = AudioSystem.getAudioInputStream(result.path().toFile())) {
+                assertEquals(renderer.getTotalFrames(), in.getFrameLength());
+                assertTrue(firstNonSilentFrame(in.readAllBytes(), in.getFormat().getFrameSize()) >= 0,
+                        "The project's notes are audible");
+            }
+        } finally {
+            timeline.getPlayer().close();
+        }
+    }
+
+    // EFFECTS: returns a schedule of two quarter notes starting on the second eighth note, one second long at 120 BPM
+    private static PlaybackSchedule sampleSchedule() {
+        MidiTrack midiTrack = new MidiTrack("piano", TonalInstrument.ACOUSTIC_GRAND_PIANO, 0);
+        Block block = new Block(0, 4 * Player.PULSES_PER_QUARTER_NOTE);
+        block.addNote(new Note(60, 127, Player.PULSES_PER_QUARTER_NOTE / 2, Player.PULSES_PER_QUARTER_NOTE));
+        block.addNote(new Note(67, 127, Player.PULSES_PER_QUARTER_NOTE, Player.PULSES_PER_QUARTER_NOTE));
+        midiTrack.addBlock(block);
+        return new PlaybackSchedule(List.of(PlaybackSchedule.Part.of(midiTrack)), midiTrack.getLastNoteEndTick());
+    }
+
+    // EFFECTS: returns the index of the first frame with a sample louder than the noise floor
+    private static int firstNonSilentFrame(byte[] audio, int frameSize) {
+        int bytesPerSample = frameSize / OfflineRenderer.CHANNELS;
+        ByteBuffer samples = ByteBuffer.wrap(audio).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i + bytesPerSample <= audio.length; i += bytesPerSample) {
+            int sample = bytesPerSample == 2 ? samples.getShort(i)
+                    : (samples.get(i) & 0xFF | (samples.get(i + 1) & 0xFF) << 8 | samples.get(i + 2) << 16) >> 8;
+            if (Math.abs(sample) > 64) {
+                return i / frameSize;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,186 @@
+package persistance;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static persistance.UtilTest.skipIfHeadless;
+
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.Timeline;
+import model.instrument.TonalInstrument;
+
+public class ProjectIOTest {
+
+    private static final int NOTE_COUNT = 20_000;
+
+    private PropertyChangeSupport pcsTest;
+    private Timeline timeline;
+    private Path directory;
+
+    @BeforeEach
+    void runBefore() throws IOException {
+        skipIfHeadless();
+        pcsTest = new PropertyChangeSupport("test");
+        timeline = new Timeline("async", pcsTest);
+        UtilTest.addSampleSong(timeline);
+        MidiTrack midiTrack = timeline.createMidiTrack("many notes", TonalInstrument.ACOUSTIC_GRAND_PIANO);
+        Block block = new Block(0, NOTE_COUNT * 10L);
+        List<Note> notes = new ArrayList<>(NOTE_COUNT);
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            notes.add(new Note(40 + i % 40, 100, i * 10L, 10));
+        }
+        block.addNotes(notes);
+        midiTrack.addBlock(block);
+
+        directory = UtilTest.cleanWriteDirectory("async");
+    }
+
+    @Test
+    void testWriteAndReadEachFormat() throws Exception {
+        for (ProjectFormat format : ProjectFormat.values()) {
+            List<long[]> writeProgress = new ArrayList<>();
+            Path written = ProjectIO.writeAsync(directory.resolve("project").toString(), format,
+                    ProjectSnapshot.of(timeline), recorder(writeProgress)).get();
+            assertEquals(directory.resolve("project." + format.getExtension()).toAbsolutePath(), written);
+            assertProgress(writeProgress, ProjectSnapshot.of(timeline).noteCount());
+
+            List<long[]> readProgress = new ArrayList<>();
+            Timeline read = ProjectIO.readAsync(written.toString(), recorder(readProgress)).get();
+            assertProgress(readProgress, Files.size(written));
+            assertNotSame(pcsTest, read.getPropertyChangeSupport(), "Read with a detached PropertyChangeSupport");
+            UtilTest.assertTimelineEquals(timeline, read);
+            UtilTest.assertTimelineEquals(format.read(written.toString(), pcsTest), read);
+        }
+        assertEquals(2, directory.toFile().list().length, "No temporary files are left behind");
+    }
+
+    @Test
+    void testCancelledRead() throws Exception {
+        String path = directory.resolve("cancelled.json").toString();
+        ProjectFormat.JSON.write(path, timeline);
+
+        CompletableFuture<Timeline> read = ProjectIO.readAsync(path, (processed, total) -> processed == 0);
+        assertThrows(CancellationException.class, read::get);
+        assertTrue(read.isCancelled());
+    }
+
+    @Test
+    void testCancelledFuture() throws Exception {
+        String path = directory.resolve("cancelled.midia").toString();
+        ProjectFormat.BINARY.write(path, timeline);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CompletableFuture<Timeline> read = ProjectIO.readAsync(path, (processed, total) -> {
+            started.countDown();
+            try {
+                cancelled.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(read.cancel(false));
+        cancelled.countDown();
+        assertThrows(CancellationException.class, read::join);
+        // The I/O thread is free again once the cancelled read has stopped
+        assertNotNull(ProjectIO.readAsync(path, ProgressListener.NONE).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCancelledWriteKeepsExistingFile() throws Exception {
+        String path = directory.resolve("existing.midia").toString();
+        ProjectFormat.BINARY.write(path, new Timeline("existing", pcsTest));
+        byte[] existing = Files.readAllBytes(Path.of(path));
+
+        CompletableFuture<Path> write = ProjectIO.writeAsync(path, ProjectFormat.BINARY, ProjectSnapshot.of(timeline),
+                (processed, total) -> processed < total / 2);
+        assertThrows(CancellationException.class, write::get);
+
+        assertArrayEquals(existing, Files.readAllBytes(Path.of(path)));
+        assertEquals(1, directory.toFile().list().length, "No temporary files are left behind");
+    }
+
+    @Test
+    void testFailedJsonWriteKeepsExistingFile() throws Exception {
+        Path full = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(full), "Needs /dev/full to simulate a full disk");
+        String path = directory.resolve("existing.json").toString();
+        ProjectFormat.JSON.write(path, new Timeline("existing", pcsTest));
+        byte[] existing = Files.readAllBytes(Path.of(path));
+
+        ProjectSnapshot snapshot = ProjectSnapshot.of(timeline);
+        CompletableFuture<Path> write = ProjectIO.replaceAsync(Path.of(path), "json", ProgressListener.NONE,
+                (temp, listener) -> {
+                    // The temporary file is written to a full disk
+                    Files.delete(Path.of(temp));
+                    Files.createSymbolicLink(Path.of(temp), full);
+                    ProjectFormat.JSON.write(temp, snapshot, listener);
+                });
+        ExecutionException e = assertThrows(ExecutionException.class, write::get);
+        assertInstanceOf(IOException.class, e.getCause());
+
+        assertArrayEquals(existing, Files.readAllBytes(Path.of(path)));
+        assertEquals(1, directory.toFile().list().length, "No temporary files are left behind");
+    }
+
+    @Test
+    void testReadMissingFile() {
+        CompletableFuture<Timeline> read = ProjectIO.readAsync(directory.resolve("missing.json").toString(),
+                ProgressListener.NONE);
+        ExecutionException e = assertThrows(ExecutionException.class, read::get);
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    void testImportMidi() throws Exception {
+        String path = directory.resolve("imported.mid").toString();
+        MidiFileWriter writer = new MidiFileWriter(path);
+        writer.open();
+        writer.write(timeline);
+        writer.close();
+
+        List<long[]> progress = new ArrayList<>();
+        Timeline imported = ProjectIO.importMidiAsync(path, recorder(progress)).get();
+        assertProgress(progress, Files.size(Path.of(path)));
+        assertEquals("imported", imported.getProjectName());
+        assertEquals(timeline.getMidiTracks().size(), imported.getMidiTracks().size());
+    }
+
+    private static ProgressListener recorder(List<long[]> progress) {
+        return (processed, total) -> {
+            progress.add(new long[] { processed, total });
+            return true;
+        };
+    }
+
+    // EFFECTS: asserts the progress only grew, was reported in steps, and ended at the total
+    private static void assertProgress(List<long[]> progress, long total) {
+        assertTrue(progress.size() > 2, "Progress was reported while working");
+        long previous = -1;
+        for (long[] report : progress) {
+            assertEquals(total, report[1]);
+            assertTrue(report[0] >= previous);
+            previous = report[0];
+        }
+        assertEquals(total, previous);
+    }
+}
@@ -0,0 +1,117 @@
+package persistance;
+
+import java.beans.PropertyChangeSupport;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.json.JSONObject;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.Player;
+import model.Timeline;
+import model.instrument.TonalInstrument;
+
+/**
+ * Measures load time and peak heap of {@link JsonReader} and {@link BinaryReader} on a generated project with
+ * one million notes, next to a plain {@link JSONObject} parse of the JSON file (the tree the original reader
+ * built before creating any model objects).
+ * <p>
+ * Not a unit test; run the main method with a fixed heap, e.g. {@code -Xmx2g}, on a machine with MIDI support.
+ */
+public class ProjectLoadBenchmark {
+
+    private static final int TRACKS = 8;
+    private static final int BLOCKS_PER_TRACK = 125;
+    private static final int NOTES_PER_BLOCK = 1000;
+
+    public static void main(String[] args) throws Exception {
+        Path path = Files.createTempFile("midia-benchmark", ".json");
+        Path binaryPath = Files.createTempFile("midia-benchmark", ".midia");
+        writeProject(path, binaryPath);
+        System.out.printf("Generated %d notes, JSON size: %.1f MB, binary size: %.1f MB%n",
+                TRACKS * BLOCKS_PER_TRACK * NOTES_PER_BLOCK, Files.size(path) / 1e6, Files.size(binaryPath) / 1e6);
+
+        for (int run = 1; run <= 3; run++) {
+            measure("JSONObject tree (run " + run + ")", () -> new JSONObject(Files.readString(path)));
+            measure("JsonReader (run " + run + ")",
+                    () -> new JsonReader(path.toString()).read(new PropertyChangeSupport("benchmark")));
+            measure("BinaryReader (run " + run + ")",
+                    () -> new BinaryReader(binaryPath.toString()).read(new PropertyChangeSupport("benchmark")));
+        }
+
+        Files.delete(path);
+        Files.delete(binaryPath);
+        System.exit(0);
+    }
+
+    private static void writeProject(Path path, Path binaryPath) throws Exception {
+        Timeline timeline = new Timeline("benchmark", new PropertyChangeSupport("benchmark"));
+        Random random = new Random(0);
+        long blockTicks = 4L * Player.PULSES_PER_QUARTER_NOTE * 8;
+
+        for (int t = 0; t < TRACKS; t++) {
+            MidiTrack midiTrack = timeline.createMidiTrack("track " + t, TonalInstrument.ACOUSTIC_GRAND_PIANO);
+            for (int b = 0; b < BLOCKS_PER_TRACK; b++) {
+                Block block = new Block(b * blockTicks, blockTicks);
+                ArrayList<Note> notes = new ArrayList<>(NOTES_PER_BLOCK);
+                for (int n = 0; n < NOTES_PER_BLOCK; n++) {
+                    long duration = 1 + random.nextInt(Player.PULSES_PER_QUARTER_NOTE);
+                    notes.add(new Note(24 + random.nextInt(80), 1 + random.nextInt(127),
+                            random.nextLong(blockTicks - duration), duration));
+                }
+                block.addNotes(notes);
+                midiTrack.addBlock(block);
+            }
+        }
+
+        JsonWriter writer = new JsonWriter(path.toString(), true);
+        writer.open();
+        writer.write(timeline);
+        writer.close();
+        ProjectFormat.BINARY.write(binaryPath.toString(), timeline);
+        timeline.getPlayer().close();
+    }
+
+    private interface Load {
+        Object run() throws Exception;
+    }
+
+    private static void measure(String name, Load load) throws Exception {
+        System.gc();
+        long baseline = usedHeap();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+
+        long start = System.nanoTime();
+        Object result = load.run();
+        long elapsed = System.nanoTime() - start;
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        System.out.printf("%-28s %8.0f ms, peak heap above baseline: %6.1f MB%n",
+                name, elapsed / 1e6, (peak - baseline) / 1e6);
+        if (result instanceof Timeline timeline) {
+            timeline.getPlayer().close();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,93 @@
+package persistance;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.PlaybackSchedule;
+import model.Player;
+import model.instrument.TonalInstrument;
+
+/**
+ * Measures how much faster {@link StemRenderer} exports the stems of a generated project on one thread per core
+ * than on a single thread, which renders the tracks one after another.
+ * <p>
+ * Not a unit test; run the main method on a machine with several cores, optionally passing the number of
+ * tracks and the number of threads to compare against.
+ */
+public class StemRenderBenchmark {
+
+    private static final int BARS = 16;
+    private static final float BPM = 120;
+
+    public static void main(String[] args) throws Exception {
+        int tracks = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : StemRenderer.defaultThreads();
+        StemRenderer renderer = generateStems(tracks);
+        Path directory = Files.createTempDirectory("midia-stems");
+        System.out.printf("Generated %d tracks of %d bars, %.1f s of audio in total, %d cores%n", tracks, BARS,
+                renderer.getTotalFrames() / OfflineRenderer.SAMPLE_RATE, StemRenderer.defaultThreads());
+
+        // The first render loads the soundbank and warms up the JIT
+        renderer.render(directory, OfflineRenderer.DEFAULT_BIT_DEPTH, threads, ProgressListener.NONE);
+
+        for (int run = 1; run <= 3; run++) {
+            StemRenderer.Result sequential = renderer.render(directory, OfflineRenderer.DEFAULT_BIT_DEPTH, 1,
+                    ProgressListener.NONE);
+            StemRenderer.Result parallel = renderer.render(directory, OfflineRenderer.DEFAULT_BIT_DEPTH, threads,
+                    ProgressListener.NONE);
+            System.out.printf("Run %d: one after another %6.2f s (%5.1fx real time), %2d threads %6.2f s "
+                              + "(%5.1fx real time), speedup %.2fx%n", run,
+                    sequential.wallSeconds(), sequential.speedFactor(), parallel.threads(), parallel.wallSeconds(),
+                    parallel.speedFactor(), sequential.wallSeconds() / parallel.wallSeconds());
+        }
+
+        delete(directory);
+        System.exit(0);
+    }
+
+    // EFFECTS: returns a renderer of the given number of tracks, each on its own channel, playing random chords
+    private static StemRenderer generateStems(int tracks) {
+        Random random = new Random(0);
+        long barTicks = 4L * Player.PULSES_PER_QUARTER_NOTE;
+        List<StemRenderer.Stem> stems = new ArrayList<>();
+
+        for (int t = 0; t < tracks; t++) {
+            int channel = t < 9 ? t : t + 1; // skip the percussion channel
+            TonalInstrument instrument = TonalInstrument.values()[random.nextInt(TonalInstrument.values().length)];
+            MidiTrack midiTrack = new MidiTrack("track " + t, instrument, channel % 16);
+            Block block = new Block(0, BARS * barTicks);
+            List<Note> notes = new ArrayList<>();
+            for (long tick = 0; tick < BARS * barTicks; tick += Player.PULSES_PER_QUARTER_NOTE / 2) {
+                for (int voice = 0; voice < 3; voice++) {
+                    notes.add(new Note(36 + random.nextInt(48), 40 + random.nextInt(80), tick,
+                            Player.PULSES_PER_QUARTER_NOTE / 2));
+                }
+            }
+            block.addNotes(notes);
+            midiTrack.addBlock(block);
+
+            PlaybackSchedule schedule = new PlaybackSchedule(List.of(PlaybackSchedule.Part.of(midiTrack)),
+                    BARS * barTicks);
+            stems.add(new StemRenderer.Stem(String.format("%02d track", t + 1),
+                    new OfflineRenderer(schedule, BPM, OfflineRenderer.DEFAULT_TAIL_MS)));
+        }
+        return new StemRenderer(stems);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,143 @@
+package persistance;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Block;
+import model.MidiTrack;
+import model.Note;
+import model.PlaybackSchedule;
+import model.Player;
+import model.Timeline;
+import model.instrument.PercussiveInstrument;
+import model.instrument.TonalInstrument;
+
+public class StemRendererTest {
+
+    private static final int BEAT = Player.PULSES_PER_QUARTER_NOTE;
+
+    private Path directory;
+
+    @BeforeEach
+    void runBefore() throws IOException {
+        directory = UtilTest.cleanWriteDirectory("stems");
+    }
+
+    @Test
+    void testOf() throws Exception {
+        Timeline timeline = new Timeline("stems", new PropertyChangeSupport("test"));
+        try {
+            addTrack(timeline.createMidiTrack("piano", TonalInstrument.ACOUSTIC_GRAND_PIANO), 8);
+            addTrack(timeline.createMidiTrack("muted", TonalInstrument.ACOUSTIC_GRAND_PIANO), 4).setMuted(true);
+            addTrack(timeline.createMidiTrack("kick/snare", PercussiveInstrument.ACOUSTIC_BASS_DRUM), 2);
+
+            List<StemRenderer.Stem> stems = StemRenderer.of(timeline).getStems();
+            assertEquals(2, stems.size());
+            assertEquals("01 piano", stems.get(0).fileName());
+            assertEquals("03 kick_snare", stems.get(1).fileName());
+            // Every stem spans the whole timeline, so the stems line up
+            assertEquals(stems.get(0).renderer().getTotalFrames(), stems.get(1).renderer().getTotalFrames());
+        } finally {
+            timeline.getPlayer().close();
+        }
+    }
+
+    @Test
+    void testRender() throws Exception {
+        StemRenderer renderer = new StemRenderer(List.of(
+                stem("01 lead", 0, 2 * BEAT),
+                stem("02 bass", 1, 2 * BEAT),
+                stem("03 pad", 2, 2 * BEAT)));
+        long stemFrames = renderer.getStems().get(0).renderer().getTotalFrames();
+        assertEquals(3 * stemFrames, renderer.getTotalFrames());
+
+        long[] lastProgress = { -1, -1 };
+        StemRenderer.Result result = renderer.render(directory, 16, 2, (processed, total) -> {
+            assertTrue(processed >= lastProgress[0]);
+            lastProgress[0] = processed;
+            lastProgress[1] = total;
+            return true;
+        });
+
+        assertEquals(2, result.threads());
+        assertEquals(3, result.stems().size());
+        assertEquals(renderer.getTotalFrames(), lastProgress[0]);
+        assertEquals(renderer.getTotalFrames(), lastProgress[1]);
+        assertEquals(3 * stemFrames / OfflineRenderer.SAMPLE_RATE, result.audioSeconds(), 0.001);
+
+        String[] names = { "01 lead.wav", "02 bass.wav", "03 pad.wav" };
+        for (int i = 0; i < names.length; i++) {
+            Path path = directory.resolve(names[i]);
+            assertEquals(path, result.stems().get(i).path());
+            try (AudioInputStream in = AudioSystem.getAudioInputStream(path.toFile())) {
+                assertEquals(stemFrames, in.getFrameLength());
+            }
+        }
+    }
+
+    @Test
+    void testRenderMatchesSequential() throws Exception {
+        StemRenderer renderer = new StemRenderer(List.of(stem("lead", 0, BEAT), stem("bass", 1, BEAT)));
+
+        Path sequentialDirectory = UtilTest.TEST_PATH_WRITE.resolve("stems-sequential");
+        renderer.render(sequentialDirectory, 16, 1, ProgressListener.NONE);
+        StemRenderer.Result parallel = renderer.render(directory, 16, 2, ProgressListener.NONE);
+
+        for (OfflineRenderer.Result stem : parallel.stems()) {
+            Path sequential = sequentialDirectory.resolve(stem.path().getFileName());
+            assertArrayEquals(Files.readAllBytes(sequential), Files.readAllBytes(stem.path()),
+                    "Stems rendered concurrently sound the same as stems rendered one at a time");
+        }
+    }
+
+    @Test
+    void testRenderCancelled() {
+        StemRenderer renderer = new StemRenderer(List.of(stem("lead", 0, 8 * BEAT), stem("bass", 1, 8 * BEAT)));
+
+        assertThrows(CancellationException.class, () -> renderer.render(directory, 16, 2,
+                (processed, total) -> processed < total / 4));
+        String[] left = directory.toFile().list();
+        assertEquals(0, left == null ? 0 : left.length, "A cancelled export leaves no stems behind");
+    }
+
+    @Test
+    void testRenderFailed() throws IOException {
+        StemRenderer renderer = new StemRenderer(List.of(stem("lead", 0, BEAT), stem("bass", 1, BEAT)));
+
+        assertThrows(IllegalArgumentException.class, () -> renderer.render(directory, 8, 2, ProgressListener.NONE));
+        String[] left = directory.toFile().list();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    // EFFECTS: returns a stem of one track on the given channel playing a note every beat for the given ticks,
+    //          in a schedule of four beats at 120 BPM
+    private static StemRenderer.Stem stem(String fileName, int channel, long ticks) {
+        MidiTrack midiTrack = new MidiTrack(fileName, TonalInstrument.ACOUSTIC_GRAND_PIANO, channel);
+        addTrack(midiTrack, (int) (ticks / BEAT));
+        PlaybackSchedule schedule = new PlaybackSchedule(List.of(PlaybackSchedule.Part.of(midiTrack)),
+                Math.max(ticks, 4 * BEAT));
+        return new StemRenderer.Stem(fileName, new OfflineRenderer(schedule, 120, 100));
+    }
+
+    // EFFECTS: adds a block to the track with a note on each of the given number of beats; returns the track
+    private static MidiTrack addTrack(MidiTrack midiTrack, int beats) {
+        Block block = new Block(0, (long) beats * BEAT);
+        for (int i = 0; i < beats; i++) {
+            block.addNote(new Note(48 + midiTrack.getChannel() * 7 + i % 5, 100, (long) i * BEAT, BEAT / 2));
+        }
+        midiTrack.addBlock(block);
+        return midiTrack;
+    }
+}
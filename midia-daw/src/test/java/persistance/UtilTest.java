@@ -12,6 +12,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
 import java.awt.*;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -38,6 +39,19 @@ public class UtilTest {
         assumeFalse(GraphicsEnvironment.isHeadless(), "Skipping playback test in CI");
     }
 
+    // MODIFIES: the file system
+    // EFFECTS: creates the directory of the given name under TEST_PATH_WRITE if missing, deletes every file in it
+    //          and returns it
+    public static Path cleanWriteDirectory(String name) throws IOException {
+        Path directory = TEST_PATH_WRITE.resolve(name);
+        Files.createDirectories(directory);
+        File[] oldFiles = directory.toFile().listFiles();
+        for (File file : oldFiles == null ? new File[0] : oldFiles) {
+            assertTrue(file.delete());
+        }
+        return directory;
+    }
+
     public static void assertTimelineEquals(Timeline timeline1, Timeline timeline2) {
         assertEquals(timeline1.getProjectName(), timeline2.getProjectName());
         assertEquals(timeline1.getPlayer().getBeatDivision(), timeline2.getPlayer().getBeatDivision());
@@ -50,6 +64,7 @@ public class UtilTest {
 
     public static void assertPlayerEquals(Player p1, Player p2) {
         assertEquals(p1.getBPM(), p2.getBPM());
+        assertEquals(p1.getTempoMap(), p2.getTempoMap());
         assertEquals(p1.getTickPosition(), p2.getTickPosition());
         assertEquals(p1.getAvailableChannels(), p2.getAvailableChannels());
     }